@@ -0,0 +1,448 @@
+// Arquivo: BatchProcessor.java
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Modo em lote, sem interface gráfica: aplica uma sequência de filtros
+ * (por exemplo "gaussianblur,sharpen,zhangsuen") a todos os arquivos de um
+ * diretório ou de um padrão glob, vários arquivos ao mesmo tempo.
+ *
+ * Uso:
+ *   java Main --batch ENTRADA --pipeline f1,f2,... [--out dir] [--threads n] [--in-flight n] [--mapped] [--stream]
+ *             [--format png|tif|ppm|raw|jpg...] [--png-level 0-9] [--png-filter adaptive|none|sub|up|average|paeth]
+ *
+ * ENTRADA é um diretório ou um padrão glob. As saídas (PNG por padrão, mesmo
+ * nome base; entradas com o mesmo nome base, como a.jpg e a.png, mantêm a
+ * extensão: a.jpg.png e a.png.png) vão para o diretório de saída (padrão:
+ * ENTRADA/saida), junto com summary.csv, que tem o tempo de leitura, processamento e escrita de cada arquivo.
+ * TIFF, PPM e raw gravam sem compressão, bem mais rápido que o PNG; no PNG,
+ * um nível baixo (1) também encurta a escrita, e imagens grandes são
+ * comprimidas em paralelo (ExportOptions).
+ *
+ * A memória fica limitada porque no máximo 'in-flight' imagens decodificadas
+ * existem ao mesmo tempo: a próxima só é agendada quando uma termina de ser salva.
+ * Com --mapped, cada imagem fica num arquivo mapeado (MappedImage) e é filtrada
+ * em faixas (StripProcessor), para imagens grandes demais para o heap.
+ * Com --stream, entradas PNG cuja sequência só tem filtros de vizinhança são
+ * lidas, filtradas e gravadas linha a linha (StreamingFilter), se a saída for
+ * PNG, TIFF, PNM ou raw; nesse caso o tempo todo fica em process_ms.
+ */
+public class BatchProcessor {
+
+    private static final String SUMMARY_FILE = "summary.csv";
+
+    private final List<File> inputs;
+    private final String[] pipeline;
+    private final File outputDir;
+    private final int threads;
+    private final int inFlight;
+    private boolean mapped;
+    private boolean stream;
+    private String format = "png";
+    private ExportOptions exportOptions = ExportOptions.fromProperties();
+    /** Imagens reaproveitadas entre os passos e entre os arquivos. */
+    private final RasterPool pool = new RasterPool();
+    /** Nome da saída de cada entrada (null se repetido), calculado no início de run. */
+    private Map<File, String> outputNames = new HashMap<>();
+
+    public BatchProcessor(List<File> inputs, String[] pipeline, File outputDir, int threads, int inFlight) {
+        if (threads < 1 || inFlight < 1) {
+            throw new IllegalArgumentException("threads e in-flight devem ser >= 1");
+        }
+        for (String name : pipeline) {
+            if (!Arrays.asList(ImageProcessor.FILTER_NAMES).contains(name)) {
+                throw new IllegalArgumentException("Filtro desconhecido: " + name);
+            }
+        }
+        this.inputs = inputs;
+        this.pipeline = pipeline;
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.inFlight = inFlight;
+    }
+
+    /** Processa as imagens fora do heap, em faixas (para imagens muito grandes). */
+    public void setMapped(boolean mapped) {
+        this.mapped = mapped;
+    }
+
+    /** Aplica filtros a PNGs em fluxo, linha a linha, quando a sequência permite. */
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    /** Extensão (e formato) das saídas: png, tif, ppm, raw ou qualquer uma do ImageIO. */
+    public void setFormat(String format) {
+        String name = format.trim().toLowerCase(Locale.ROOT);
+        if (name.startsWith(".")) name = name.substring(1);
+        if (ImageFileManager.extensionOf(new File("saida." + name)) == null) {
+            throw new IllegalArgumentException("Formato de saída desconhecido: " + format);
+        }
+        this.format = name;
+    }
+
+    public void setExportOptions(ExportOptions exportOptions) {
+        this.exportOptions = exportOptions;
+    }
+
+    /** Tempos de um arquivo, em nanossegundos. */
+    private static class Result {
+        String output = "";
+        int width;
+        int height;
+        long readNanos;
+        long processNanos;
+        long writeNanos;
+        String error;
+    }
+
+    /**
+     * Processa todos os arquivos e grava o resumo.
+     * @return quantos arquivos falharam
+     */
+    public int run() throws IOException, InterruptedException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Não foi possível criar " + outputDir);
+        }
+
+        outputNames = outputNames();
+        Result[] results = new Result[inputs.size()];
+        Semaphore permits = new Semaphore(inFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Cada arquivo já divide os filtros em faixas no TileScheduler: com vários
+        // arquivos ao mesmo tempo, o pool dos filtros fica com a parte de cada um
+        // nos núcleos, senão seriam arquivos x núcleos faixas disputando os mesmos núcleos
+        int fileWorkers = Math.max(1, Math.min(Math.min(threads, inFlight), inputs.size()));
+        int filterParallelism = TileScheduler.getParallelism();
+        if (fileWorkers > 1) {
+            TileScheduler.setParallelism(Math.max(1, filterParallelism / fileWorkers));
+        }
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                // Agenda só quando há vaga: a fila nunca guarda mais que 'inFlight' arquivos
+                permits.acquire();
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        results[index] = process(inputs.get(index));
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            TileScheduler.setParallelism(filterParallelism);
+        }
+        long totalNanos = System.nanoTime() - start;
+
+        int failures = writeSummary(results);
+        System.out.printf(Locale.ROOT, "%d arquivos, %d falhas, %.1f s (imagens reaproveitadas: %d de %d)%n",
+                inputs.size(), failures, totalNanos / 1e9, pool.getHits(), pool.getHits() + pool.getMisses());
+        DecodedImageCache cache = DecodedImageCache.forBatch();
+        if (cache != null) {
+            System.out.printf(Locale.ROOT, "cache de imagens: %d da memória, %d do disco, %d decodificadas%n",
+                    cache.getMemoryHits(), cache.getDiskHits(), cache.getMisses());
+        }
+        return failures;
+    }
+
+    private Result process(File input) {
+        if (outputNames.get(input) == null) {
+            // Gravar duas entradas no mesmo arquivo perderia uma delas sem aviso
+            Result result = new Result();
+            result.error = "Saída repetida: " + baseName(input) + "." + format;
+            System.err.println("Erro em " + input + ": " + result.error);
+            return result;
+        }
+        if (stream && input.getName().toLowerCase().endsWith(".png") && StreamingFilter.supports(pipeline)
+                && ImageFileManager.isRowFormat(ImageFileManager.formatOf(outputFor(input)))) {
+            return processStreaming(input);
+        }
+        if (mapped) return processMapped(input);
+        Result result = new Result();
+        try {
+            long t0 = System.nanoTime();
+            BufferedImage image = ImageFileManager.loadImage(input, pool);
+            long t1 = System.nanoTime();
+            result.width = image.getWidth();
+            result.height = image.getHeight();
+            for (String name : pipeline) {
+                BufferedImage next = ImageProcessor.applyFilter(name, image, pool);
+                pool.release(image);
+                image = next;
+            }
+            long t2 = System.nanoTime();
+            File output = outputFor(input);
+            ImageFileManager.saveImage(image, output, exportOptions);
+            pool.release(image);
+            long t3 = System.nanoTime();
+
+            result.output = output.getName();
+            result.readNanos = t1 - t0;
+            result.processNanos = t2 - t1;
+            result.writeNanos = t3 - t2;
+        } catch (Exception | OutOfMemoryError e) {
+            result.error = e.toString();
+            System.err.println("Erro em " + input + ": " + e);
+        }
+        return result;
+    }
+
+    /** Como process, mas sem decodificar a imagem inteira: lê, filtra e grava em fluxo. */
+    private Result processStreaming(File input) {
+        Result result = new Result();
+        try {
+            long t0 = System.nanoTime();
+            File output = outputFor(input);
+            Dimension size = StreamingFilter.filterPng(input, pipeline, output, exportOptions);
+            result.width = size.width;
+            result.height = size.height;
+            result.output = output.getName();
+            result.processNanos = System.nanoTime() - t0;
+        } catch (Exception | OutOfMemoryError e) {
+            result.error = e.toString();
+            System.err.println("Erro em " + input + ": " + e);
+        }
+        return result;
+    }
+
+    /** Como process, mas com a imagem em arquivos mapeados do começo ao fim. */
+    private Result processMapped(File input) {
+        Result result = new Result();
+        MappedImage image = null;
+        try {
+            long t0 = System.nanoTime();
+            image = ImageFileManager.loadMapped(input);
+            long t1 = System.nanoTime();
+            result.width = image.getWidth();
+            result.height = image.getHeight();
+            for (String name : pipeline) {
+                MappedImage next = StripProcessor.applyFilter(name, image);
+                image.close();
+                image = next;
+            }
+            long t2 = System.nanoTime();
+            File output = outputFor(input);
+            ImageFileManager.saveImage(image, output, exportOptions);
+            long t3 = System.nanoTime();
+
+            result.output = output.getName();
+            result.readNanos = t1 - t0;
+            result.processNanos = t2 - t1;
+            result.writeNanos = t3 - t2;
+        } catch (Exception | OutOfMemoryError e) {
+            result.error = e.toString();
+            System.err.println("Erro em " + input + ": " + e);
+        } finally {
+            if (image != null) {
+                try {
+                    image.close();
+                } catch (IOException e) {
+                    System.err.println("Erro ao apagar temporário de " + input + ": " + e);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int writeSummary(Result[] results) throws IOException {
+        int failures = 0;
+        File summary = new File(outputDir, SUMMARY_FILE);
+        try (PrintWriter out = new PrintWriter(summary, StandardCharsets.UTF_8.name())) {
+            out.println("input,output,width,height,read_ms,process_ms,write_ms,status");
+            for (int i = 0; i < results.length; i++) {
+                Result r = results[i];
+                String status = r.error == null ? "ok" : r.error;
+                if (r.error != null) failures++;
+                out.printf(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.3f,%.3f,%s%n",
+                        csv(inputs.get(i).getPath()), csv(r.output), r.width, r.height,
+                        r.readNanos / 1e6, r.processNanos / 1e6, r.writeNanos / 1e6, csv(status));
+            }
+        }
+        return failures;
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private File outputFor(File input) {
+        return new File(outputDir, outputNames.get(input));
+    }
+
+    /**
+     * Nome da saída de cada entrada: o nome base com a extensão do formato, ou o
+     * nome inteiro se outra entrada tiver o mesmo nome base (a.jpg e a.png viram
+     * a.jpg.png e a.png.png). Se ainda assim dois nomes coincidirem (sem
+     * diferenciar maiúsculas, como em alguns sistemas de arquivos), só a
+     * primeira entrada recebe o nome; as outras ficam com null e falham.
+     */
+    private Map<File, String> outputNames() {
+        Map<String, Integer> bases = new HashMap<>();
+        for (File input : inputs) {
+            bases.merge(baseName(input).toLowerCase(Locale.ROOT), 1, Integer::sum);
+        }
+        Map<File, String> names = new HashMap<>();
+        Map<String, File> taken = new HashMap<>();
+        for (File input : inputs) {
+            boolean shared = bases.get(baseName(input).toLowerCase(Locale.ROOT)) > 1;
+            String name = (shared ? input.getName() : baseName(input)) + "." + format;
+            boolean free = taken.putIfAbsent(name.toLowerCase(Locale.ROOT), input) == null;
+            names.put(input, free ? name : null);
+        }
+        return names;
+    }
+
+    private static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Lista os arquivos de entrada: todos os arquivos de imagem de um diretório,
+     * ou os que casam com um padrão glob no nome (ex.: "fotos/*.jpg").
+     */
+    public static List<File> listInputs(String spec) throws IOException {
+        File asFile = new File(spec);
+        File dir;
+        PathMatcher matcher;
+        if (asFile.isDirectory()) {
+            dir = asFile;
+            matcher = null;
+        } else {
+            dir = asFile.getParentFile() == null ? new File(".") : asFile.getParentFile();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + asFile.getName());
+        }
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Diretório inválido: " + dir);
+        }
+        Arrays.sort(files);
+        List<File> inputs = new ArrayList<>();
+        for (File f : files) {
+            if (!f.isFile()) continue;
+            boolean selected = matcher != null
+                    ? matcher.matches(Paths.get(f.getName()))
+                    : isImageFile(f);
+            if (selected) inputs.add(f);
+        }
+        return inputs;
+    }
+
+    private static boolean isImageFile(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && ImageIO.getImageReadersBySuffix(name.substring(dot + 1).toLowerCase()).hasNext();
+    }
+
+    /**
+     * Ponto de entrada do modo em lote (chamado pelo Main).
+     * @return código de saída: 0 sucesso, 1 algum arquivo falhou, 2 argumentos inválidos
+     */
+    public static int execute(String[] args) {
+        String input = null;
+        String pipelineSpec = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int inFlight = -1;
+        boolean mapped = false;
+        boolean stream = false;
+        String format = null;
+        ExportOptions exportOptions = ExportOptions.fromProperties();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        input = args[++i];
+                        break;
+                    case "--pipeline":
+                        pipelineSpec = args[++i];
+                        break;
+                    case "--out":
+                        output = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--in-flight":
+                        inFlight = Integer.parseInt(args[++i]);
+                        break;
+                    case "--mapped":
+                        mapped = true;
+                        break;
+                    case "--stream":
+                        stream = true;
+                        break;
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    case "--png-level":
+                        exportOptions.setCompressionLevel(Integer.parseInt(args[++i]));
+                        break;
+                    case "--png-filter":
+                        exportOptions.setPngFilter(ExportOptions.PngFilter.parse(args[++i]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento desconhecido: " + args[i]);
+                }
+            }
+            if (input == null || pipelineSpec == null) {
+                throw new IllegalArgumentException("--batch e --pipeline são obrigatórios");
+            }
+            if (inFlight < 0) inFlight = 2 * threads;
+
+            List<File> inputs = listInputs(input);
+            File outputDir = output != null ? new File(output) : new File(inputDirOf(input), "saida");
+            String[] pipeline = pipelineSpec.trim().toLowerCase().split("\\s*,\\s*");
+            BatchProcessor batch = new BatchProcessor(inputs, pipeline, outputDir, threads, inFlight);
+            batch.setMapped(mapped);
+            batch.setStream(stream);
+            if (format != null) batch.setFormat(format);
+            batch.setExportOptions(exportOptions);
+            return batch.run() == 0 ? 0 : 1;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Erro: " + e.getMessage());
+            System.err.println("Uso: java Main --batch ENTRADA --pipeline f1,f2,... "
+                    + "[--out dir] [--threads n] [--in-flight n] [--mapped] [--stream] "
+                    + "[--format png|tif|ppm|raw|jpg...] [--png-level 0-9] [--png-filter adaptive|none|sub|up|average|paeth]");
+            System.err.println("Filtros: " + String.join(", ", ImageProcessor.FILTER_NAMES));
+            return 2;
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Erro: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static File inputDirOf(String spec) {
+        File asFile = new File(spec);
+        if (asFile.isDirectory()) return asFile;
+        return asFile.getParentFile() == null ? new File(".") : asFile.getParentFile();
+    }
+}
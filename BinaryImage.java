@@ -0,0 +1,182 @@
+// Arquivo: BinaryImage.java
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Imagem binária compactada: 64 pixels por long, em ordem de linhas.
+ * O bit i da palavra j de uma linha é o pixel x = 64 * j + i.
+ * 1 = Objeto (Preto), 0 = Fundo (Branco). Bits além da largura ficam sempre em 0.
+ */
+public class BinaryImage {
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BinaryImage(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Tamanho inválido: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /** Palavras da imagem (linha y começa em y * getWordsPerRow()). */
+    long[] words() {
+        return words;
+    }
+
+    public boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y, boolean value) {
+        int idx = y * wordsPerRow + (x >>> 6);
+        if (value) {
+            words[idx] |= 1L << x;
+        } else {
+            words[idx] &= ~(1L << x);
+        }
+    }
+
+    /** Número de pixels de objeto. */
+    public long countOnes() {
+        long count = 0;
+        for (long w : words) {
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    public BinaryImage copy() {
+        BinaryImage copy = new BinaryImage(width, height);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    /**
+     * Binariza uma imagem: pixels com média (R + G + B) / 3 abaixo do limiar viram objeto (1).
+     * Em TYPE_BYTE_GRAY a amostra passa pela tabela cinza → sRGB (ver Thresholding.rows).
+     * As faixas de linhas são binarizadas em paralelo.
+     */
+    public static BinaryImage fromImage(BufferedImage image, int threshold) {
+        return Thresholding.global(Thresholding.rows(image), image.getWidth(), image.getHeight(), threshold);
+    }
+
+    /** Converte para TYPE_INT_ARGB (preto e branco), escrevendo direto no DataBuffer. */
+    public BufferedImage toArgbImage() {
+        return toImage(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /** Converte para uma imagem nova do tipo 'type' (BufferedImage.TYPE_*), em preto e branco. */
+    public BufferedImage toImage(int type) {
+        BufferedImage image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), type);
+        writeTo(image);
+        return image;
+    }
+
+    /**
+     * Escreve a imagem em preto e branco numa BufferedImage já existente, do mesmo
+     * tamanho. Em TYPE_INT_ARGB escreve direto no DataBuffer; nos outros tipos
+     * diretos de 8 bits (cinza, BGR, INT_RGB, ABGR), banda por banda pelo
+     * RasterAccess; nos demais, por setRGB.
+     */
+    public void writeTo(BufferedImage image) {
+        if (image.getWidth() < width || image.getHeight() < height) {
+            throw new IllegalArgumentException("Destino menor que a imagem: " + image.getWidth() + "x" + image.getHeight());
+        }
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_4BYTE_ABGR) {
+            writeBands(image);
+            return;
+        }
+        final int black = 0xFF000000;
+        final int white = 0xFFFFFFFF;
+        boolean direct = image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getParent() == null;
+        int[] data = direct ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData() : null;
+        int stride = image.getWidth();
+        int[] line = direct ? null : new int[width];
+
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int[] dst = direct ? data : line;
+            int out = direct ? y * stride : 0;
+            for (int j = 0; j < wordsPerRow; j++) {
+                long word = words[row + j];
+                int x0 = j << 6;
+                int end = Math.min(64, width - x0);
+                for (int i = 0; i < end; i++) {
+                    dst[out + x0 + i] = ((word >>> i) & 1L) != 0 ? black : white;
+                }
+            }
+            if (!direct) image.setRGB(0, y, width, 1, line, 0, width);
+        }
+    }
+
+    /** Objeto 0 e fundo 255 em cada banda de cor; a banda alfa (a última, se houver) fica opaca. */
+    private void writeBands(BufferedImage image) {
+        int bands = RasterAccess.numBands(image);
+        int colorBands = image.getColorModel().hasAlpha() ? bands - 1 : bands;
+        int[] line = new int[width];
+        int[] opaque = new int[width];
+        Arrays.fill(opaque, 255);
+
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            for (int j = 0; j < wordsPerRow; j++) {
+                long word = words[row + j];
+                int x0 = j << 6;
+                int end = Math.min(64, width - x0);
+                for (int i = 0; i < end; i++) {
+                    line[x0 + i] = ((word >>> i) & 1L) != 0 ? 0 : 255;
+                }
+            }
+            for (int band = 0; band < bands; band++) {
+                RasterAccess.writeRow(image, band, 0, y, width, band < colorBands ? line : opaque, 0);
+            }
+        }
+    }
+
+    /**
+     * Converte para TYPE_BYTE_BINARY (1 bit por pixel), oito pixels por escrita.
+     * Na paleta padrão o índice 0 é preto, então o bit é o complemento do objeto.
+     */
+    public BufferedImage toByteBinaryImage() {
+        BufferedImage image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_BYTE_BINARY);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (width + 7) >>> 3;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int out = y * stride;
+            for (int j = 0; j < wordsPerRow; j++) {
+                // O TYPE_BYTE_BINARY guarda o pixel mais à esquerda no bit mais significativo
+                long reversed = ~Long.reverse(words[row + j]);
+                int firstByte = j << 3;
+                int bytes = Math.min(8, stride - firstByte);
+                for (int k = 0; k < bytes; k++) {
+                    data[out + firstByte + k] = (byte) (reversed >>> (56 - 8 * k));
+                }
+            }
+        }
+        return image;
+    }
+}
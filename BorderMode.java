@@ -0,0 +1,40 @@
+// Arquivo: BorderMode.java
+
+/**
+ * Como as operações de vizinhança (convolução e morfologia) enxergam
+ * os pixels fora da imagem.
+ */
+public enum BorderMode {
+    /** Repete o pixel da borda: aaa|abcd|ddd */
+    CLAMP,
+    /** Espelha sem repetir a borda: cb|abcd|cb */
+    REFLECT,
+    /** Continua do lado oposto: cd|abcd|ab */
+    WRAP,
+    /** Usa o valor 0 em todas as bandas (preto, ou transparente se houver alfa) */
+    CONSTANT;
+
+    /** Valor usado fora da imagem no modo CONSTANT. */
+    public static final int CONSTANT_VALUE = 0;
+
+    /**
+     * Índice dentro de [0, n) correspondente a i, ou -1 se o valor for a constante.
+     */
+    public int map(int i, int n) {
+        if (i >= 0 && i < n) return i;
+        switch (this) {
+            case CLAMP:
+                return i < 0 ? 0 : n - 1;
+            case REFLECT: {
+                if (n == 1) return 0;
+                int period = 2 * (n - 1);
+                int m = Math.floorMod(i, period);
+                return m < n ? m : period - m;
+            }
+            case WRAP:
+                return Math.floorMod(i, n);
+            default:
+                return -1;
+        }
+    }
+}
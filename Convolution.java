@@ -0,0 +1,225 @@
+// Arquivo: Convolution.java
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Convolução (aplicada como correlação, sem espelhar o kernel) banda por banda,
+ * direto sobre o raster e em faixas paralelas pelo TileScheduler.
+ *
+ * O caminho depende do kernel:
+ *  - caixa: somas corridas horizontal e vertical, O(1) por pixel para qualquer raio;
+ *  - separável: um passe horizontal e um vertical, O(N) por pixel em vez de O(N²);
+ *  - genérico: passe 2-D completo.
+ *
+ * Cada faixa lê suas linhas já estendidas pelo modo de borda (colunas extras
+ * nas laterais e linhas extras em cima e embaixo), de modo que todos os pixels
+ * são filtrados e o laço interno nunca testa limites. Os arrays de trabalho
+ * vêm do ScratchBuffers e o destino pode ser informado pelo chamador, então
+ * filtrar imagens do mesmo tamanho em sequência não aloca buffers novos.
+ * Os laços sobre a linha inteira ficam no PixelKernels (escalar ou vetorial).
+ */
+public class Convolution {
+
+    // Vagas do ScratchBuffers
+    private static final int PLANE = 0;
+    private static final int OUT = 1;
+    private static final int HORIZONTAL = 2;
+    private static final int COLUMN_SUM = 3;
+    private static final int FLOAT_HORIZONTAL = 0;
+    private static final int ACC = 1;
+
+    private static final PixelKernels KERNELS = PixelKernels.get();
+
+    public static BufferedImage convolve(BufferedImage image, ConvolutionKernel kernel) {
+        return convolve(image, kernel, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage convolve(BufferedImage image, ConvolutionKernel kernel, BorderMode mode) {
+        return convolve(image, kernel, mode, null);
+    }
+
+    /**
+     * Convolução escrevendo em 'dst' (mesmo tamanho e bandas da origem, como em
+     * RasterAccess.destination), ou numa imagem nova se 'dst' for null.
+     * @return o destino
+     */
+    public static BufferedImage convolve(BufferedImage image, ConvolutionKernel kernel, BorderMode mode, BufferedImage dst) {
+        if (image == null) return null;
+
+        BufferedImage src = RasterAccess.toDirect(image);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int bands = RasterAccess.numBands(src);
+        BufferedImage result = RasterAccess.destination(src, dst);
+
+        int left = kernel.getXOrigin();
+        int right = kernel.getWidth() - 1 - left;
+        int top = kernel.getYOrigin();
+        int bottom = kernel.getHeight() - 1 - top;
+        int paddedWidth = left + width + right;
+
+        TileScheduler.forEachBand(height, Math.max(top, bottom), (y0, y1) -> {
+            int first = y0 - top;
+            int last = y1 + bottom;
+            int[] plane = ScratchBuffers.ints(PLANE, paddedWidth * (last - first));
+            int[] out = ScratchBuffers.ints(OUT, width);
+
+            for (int band = 0; band < bands; band++) {
+                for (int y = first; y < last; y++) {
+                    RasterAccess.readPaddedRow(src, band, y, left, right, mode, plane, (y - first) * paddedWidth);
+                }
+                Rows rows = new Rows(plane, first, last, width, paddedWidth, RasterAccess.maxValue(src, band));
+                if (kernel.isBox() && fitsInt(kernel, rows.maxValue)) {
+                    boxRows(rows, kernel, y0, y1, out, result, band);
+                } else if (kernel.isSeparable()) {
+                    separableRows(rows, kernel, y0, y1, out, result, band);
+                } else {
+                    directRows(rows, kernel, y0, y1, out, result, band);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Linhas [first, last) de uma banda, estendidas pelo modo de borda.
+     * A coluna x da imagem está na posição x + left da linha estendida,
+     * então a janela do pixel x começa na posição x.
+     */
+    private static class Rows {
+        final int[] plane;
+        final int first;
+        final int last;
+        final int width;
+        final int paddedWidth;
+        final int maxValue;
+
+        Rows(int[] plane, int first, int last, int width, int paddedWidth, int maxValue) {
+            this.plane = plane;
+            this.first = first;
+            this.last = last;
+            this.width = width;
+            this.paddedWidth = paddedWidth;
+            this.maxValue = maxValue;
+        }
+
+        int offset(int y) {
+            return (y - first) * paddedWidth;
+        }
+    }
+
+    /**
+     * A soma de uma janela inteira cabe num int? Em 16 bits isso deixa de valer
+     * a partir de caixas de uns 181 x 181; aí a caixa vai pelo caminho separável.
+     */
+    private static boolean fitsInt(ConvolutionKernel kernel, int maxValue) {
+        return (long) kernel.getWidth() * kernel.getHeight() * maxValue <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Caixa: soma corrida horizontal de cada linha e depois soma corrida vertical
+     * das somas horizontais. Somas inteiras são exatas (fitsInt garante que não
+     * estouram); só o produto final pelo peso é float.
+     */
+    private static void boxRows(Rows rows, ConvolutionKernel kernel, int y0, int y1,
+                                int[] out, BufferedImage result, int band) {
+        int width = rows.width;
+        int kw = kernel.getWidth();
+        int top = kernel.getYOrigin();
+        int bottom = kernel.getHeight() - 1 - top;
+        float weight = kernel.data()[0];
+
+        int count = rows.last - rows.first;
+        int[] horizontal = ScratchBuffers.ints(HORIZONTAL, width * count);
+        for (int r = 0; r < count; r++) {
+            int in = r * rows.paddedWidth;
+            int off = r * width;
+            int sum = 0;
+            for (int j = 0; j < kw; j++) {
+                sum += rows.plane[in + j];
+            }
+            horizontal[off] = sum;
+            for (int x = 1; x < width; x++) {
+                sum += rows.plane[in + x + kw - 1] - rows.plane[in + x - 1];
+                horizontal[off + x] = sum;
+            }
+        }
+
+        int[] columnSum = ScratchBuffers.ints(COLUMN_SUM, width);
+        Arrays.fill(columnSum, 0, width, 0);
+        for (int r = y0 - top - rows.first; r <= y0 + bottom - rows.first; r++) {
+            int off = r * width;
+            for (int x = 0; x < width; x++) columnSum[x] += horizontal[off + x];
+        }
+        for (int y = y0; y < y1; y++) {
+            if (y > y0) {
+                int add = (y + bottom - rows.first) * width;
+                int sub = (y - top - 1 - rows.first) * width;
+                KERNELS.slide(columnSum, horizontal, add, sub, width);
+            }
+            KERNELS.scaleToSamples(columnSum, weight, width, rows.maxValue, out);
+            RasterAccess.writeRow(result, band, 0, y, width, out, 0);
+        }
+    }
+
+    /**
+     * Separável: passe horizontal com os pesos da linha (guardado em float,
+     * sem arredondar) e passe vertical com os pesos da coluna.
+     */
+    private static void separableRows(Rows rows, ConvolutionKernel kernel, int y0, int y1,
+                                      int[] out, BufferedImage result, int band) {
+        int width = rows.width;
+        int top = kernel.getYOrigin();
+        float[] rowWeights = kernel.rowWeights();
+        float[] columnWeights = kernel.columnWeights();
+
+        int count = rows.last - rows.first;
+        float[] horizontal = ScratchBuffers.floats(FLOAT_HORIZONTAL, width * count);
+        Arrays.fill(horizontal, 0, width * count, 0f);
+        for (int r = 0; r < count; r++) {
+            int in = r * rows.paddedWidth;
+            int off = r * width;
+            for (int j = 0; j < rowWeights.length; j++) {
+                float w = rowWeights[j];
+                if (w == 0f) continue;
+                KERNELS.accumulate(w, rows.plane, in + j, horizontal, off, width);
+            }
+        }
+
+        float[] acc = ScratchBuffers.floats(ACC, width);
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(acc, 0, width, 0f);
+            for (int i = 0; i < columnWeights.length; i++) {
+                float w = columnWeights[i];
+                if (w == 0f) continue;
+                KERNELS.accumulate(w, horizontal, (y - top + i - rows.first) * width, acc, width);
+            }
+            KERNELS.toSamples(acc, width, rows.maxValue, out);
+            RasterAccess.writeRow(result, band, 0, y, width, out, 0);
+        }
+    }
+
+    /** Genérico: acumula cada peso do kernel sobre a linha inteira (acesso sequencial). */
+    private static void directRows(Rows rows, ConvolutionKernel kernel, int y0, int y1,
+                                   int[] out, BufferedImage result, int band) {
+        int width = rows.width;
+        int kw = kernel.getWidth();
+        int top = kernel.getYOrigin();
+        float[] data = kernel.data();
+
+        float[] acc = ScratchBuffers.floats(ACC, width);
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(acc, 0, width, 0f);
+            for (int i = 0; i < kernel.getHeight(); i++) {
+                int off = rows.offset(y - top + i);
+                for (int j = 0; j < kw; j++) {
+                    float w = data[i * kw + j];
+                    if (w == 0f) continue;
+                    KERNELS.accumulate(w, rows.plane, off + j, acc, 0, width);
+                }
+            }
+            KERNELS.toSamples(acc, width, rows.maxValue, out);
+            RasterAccess.writeRow(result, band, 0, y, width, out, 0);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// Arquivo: ConvolutionKernel.java
+import java.util.Arrays;
+
+/**
+ * Kernel de convolução NxM com a origem no centro.
+ * Na criação o kernel é classificado para que a Convolution escolha o caminho mais barato:
+ * caixa (todos os pesos iguais, soma corrida em O(1) por pixel),
+ * separável (produto externo de uma coluna por uma linha, dois passes 1-D)
+ * ou genérico (passe 2-D completo).
+ */
+public class ConvolutionKernel {
+
+    /** Tolerância relativa ao testar se o kernel é o produto de dois vetores. */
+    private static final float SEPARABLE_EPSILON = 1e-5f;
+
+    private final int width;
+    private final int height;
+    private final float[] data;
+    private final float[] rowWeights;     // pesos horizontais, se separável
+    private final float[] columnWeights;  // pesos verticais, se separável
+    private final boolean box;
+
+    private ConvolutionKernel(int width, int height, float[] data, float[] rowWeights, float[] columnWeights, boolean box) {
+        this.width = width;
+        this.height = height;
+        this.data = data;
+        this.rowWeights = rowWeights;
+        this.columnWeights = columnWeights;
+        this.box = box;
+    }
+
+    /**
+     * Kernel arbitrário width x height (dados linha a linha).
+     * Detecta automaticamente se é uma caixa ou se é separável.
+     */
+    public static ConvolutionKernel of(int width, int height, float... data) {
+        if (width < 1 || height < 1 || data.length != width * height) {
+            throw new IllegalArgumentException("Kernel inválido: " + width + "x" + height + " com " + data.length + " pesos");
+        }
+        float[] copy = data.clone();
+
+        boolean allEqual = true;
+        for (float v : copy) {
+            if (v != copy[0]) {
+                allEqual = false;
+                break;
+            }
+        }
+
+        // Separável se for de posto 1: usa a linha e a coluna do maior peso como fatores
+        int pivot = 0;
+        for (int i = 1; i < copy.length; i++) {
+            if (Math.abs(copy[i]) > Math.abs(copy[pivot])) pivot = i;
+        }
+        float maxAbs = Math.abs(copy[pivot]);
+        if (maxAbs == 0f) {
+            return new ConvolutionKernel(width, height, copy, null, null, false);
+        }
+        int pivotRow = pivot / width;
+        int pivotColumn = pivot % width;
+        float[] column = new float[height];
+        float[] row = new float[width];
+        for (int i = 0; i < height; i++) column[i] = copy[i * width + pivotColumn];
+        for (int j = 0; j < width; j++) row[j] = copy[pivotRow * width + j] / copy[pivot];
+
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (Math.abs(copy[i * width + j] - column[i] * row[j]) > SEPARABLE_EPSILON * maxAbs) {
+                    return new ConvolutionKernel(width, height, copy, null, null, false);
+                }
+            }
+        }
+        return new ConvolutionKernel(width, height, copy, row, column, allEqual);
+    }
+
+    /**
+     * Média simples (box blur) de lado 2 * radius + 1.
+     */
+    public static ConvolutionKernel box(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Raio inválido: " + radius);
+        }
+        int size = 2 * radius + 1;
+        float[] data = new float[size * size];
+        Arrays.fill(data, 1f / (size * size));
+        return of(size, size, data);
+    }
+
+    /**
+     * Gaussiana com desvio padrão sigma, truncada em 3 sigma e normalizada.
+     */
+    public static ConvolutionKernel gaussian(double sigma) {
+        if (!(sigma > 0)) {
+            throw new IllegalArgumentException("Sigma inválido: " + sigma);
+        }
+        int radius = Math.max(1, (int) Math.ceil(3 * sigma));
+        int size = 2 * radius + 1;
+        float[] weights = new float[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            int d = i - radius;
+            sum += Math.exp(-(d * d) / (2 * sigma * sigma));
+        }
+        for (int i = 0; i < size; i++) {
+            int d = i - radius;
+            weights[i] = (float) (Math.exp(-(d * d) / (2 * sigma * sigma)) / sum);
+        }
+
+        float[] data = new float[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                data[i * size + j] = weights[i] * weights[j];
+            }
+        }
+        return new ConvolutionKernel(size, size, data, weights, weights.clone(), false);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Coluna da origem (centro; para larguras pares, o da esquerda). */
+    public int getXOrigin() {
+        return (width - 1) / 2;
+    }
+
+    /** Linha da origem (centro; para alturas pares, a de cima). */
+    public int getYOrigin() {
+        return (height - 1) / 2;
+    }
+
+    public float getWeight(int column, int row) {
+        return data[row * width + column];
+    }
+
+    public boolean isSeparable() {
+        return rowWeights != null;
+    }
+
+    /** Todos os pesos são iguais: convolução por soma corrida. */
+    public boolean isBox() {
+        return box;
+    }
+
+    float[] data() {
+        return data;
+    }
+
+    float[] rowWeights() {
+        return rowWeights;
+    }
+
+    float[] columnWeights() {
+        return columnWeights;
+    }
+}
@@ -0,0 +1,354 @@
+// Arquivo: DecodedImageCache.java
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache das imagens já decodificadas pelo ImageFileManager, em dois níveis:
+ *
+ * - memória: um ImageCache (LRU limitado em bytes) com as imagens prontas;
+ * - disco: cada imagem no formato raw do projeto (RawImage), que é só um
+ *   cabeçalho fixo seguido das amostras, então ler de volta custa o mesmo que
+ *   copiar os bytes (o arquivo pode até ser mapeado direto).
+ *
+ * As entradas são identificadas pelo hash SHA-256 do conteúdo do arquivo de
+ * origem, de modo que a mesma imagem em dois caminhos ocupa uma entrada só.
+ * Para não ler o arquivo inteiro a cada abertura, o hash fica guardado por
+ * caminho junto com a data de modificação e o tamanho (na memória e num
+ * arquivo .key no diretório do cache); enquanto os dois não mudarem, o hash
+ * guardado vale. Se mudarem, o arquivo é lido de novo e, se o conteúdo for o
+ * mesmo (só a data mudou), a entrada continua valendo.
+ *
+ * Quem recebe a imagem pode alterá-la à vontade: o cache devolve sempre uma
+ * cópia, nunca a imagem que guarda.
+ *
+ * Configuração por propriedades de sistema (shared):
+ * - pdi.cache=false desliga o cache;
+ * - pdi.cache.memory.mb: limite da memória (padrão: 1/8 do heap, até 256 MB);
+ * - pdi.cache.dir: diretório do disco (padrão: pdi-cache no diretório temporário);
+ * - pdi.cache.disk.mb: limite do disco (padrão 2048; 0 desliga o nível de disco);
+ * - pdi.cache.batch=true liga o cache também no modo em lote (forBatch).
+ *
+ * No lote cada arquivo costuma ser lido uma vez só, então o cache não acerta
+ * e só custaria a leitura extra do hash, a cópia raw no disco e o descarte
+ * das antigas; por isso lá ele fica desligado, a não ser que seja pedido.
+ *
+ * Os acertos e faltas de cada nível são contados aqui (getMemoryHits,
+ * getDiskHits, getMisses) e medidos no OperationMetrics como "load.memory",
+ * "load.disk" e "load.decode".
+ */
+public class DecodedImageCache {
+
+    private static final DecodedImageCache SHARED = fromProperties();
+
+    private static final int HASH_BUFFER_SIZE = 1 << 20;
+
+    /** Lê e decodifica o arquivo de origem quando não há entrada no cache. */
+    public interface Decoder {
+        BufferedImage decode(File input, RasterPool pool) throws IOException;
+    }
+
+    /** Hash do conteúdo de um arquivo, válido enquanto a data e o tamanho não mudarem. */
+    private static final class Stamp {
+        final long modified;
+        final long length;
+        final String hash;
+
+        Stamp(long modified, long length, String hash) {
+            this.modified = modified;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        boolean matches(File file) {
+            return file.lastModified() == modified && file.length() == length;
+        }
+    }
+
+    private final ImageCache<String> memory;
+    /** null quando não há nível de disco. */
+    private final File directory;
+    private final long maxDiskBytes;
+    private final Map<String, Stamp> stamps = new ConcurrentHashMap<>();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes limite do nível de memória (0: nenhuma imagem fica na memória)
+     * @param directory      diretório do nível de disco, ou null para não usar o disco
+     * @param maxDiskBytes   limite dos arquivos raw no diretório
+     */
+    public DecodedImageCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        if (maxDiskBytes < 0) {
+            throw new IllegalArgumentException("Limite inválido: " + maxDiskBytes);
+        }
+        this.memory = new ImageCache<>(maxMemoryBytes);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /** O cache configurado pelas propriedades de sistema, ou null com pdi.cache=false. */
+    public static DecodedImageCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * O cache do modo em lote: o shared com pdi.cache.batch=true, senão null
+     * (cada arquivo é decodificado direto, sem hash nem cópia no disco).
+     */
+    public static DecodedImageCache forBatch() {
+        return Boolean.getBoolean("pdi.cache.batch") ? SHARED : null;
+    }
+
+    private static DecodedImageCache fromProperties() {
+        if ("false".equals(System.getProperty("pdi.cache"))) return null;
+        long defaultMemory = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+        long maxMemory = Long.getLong("pdi.cache.memory.mb", defaultMemory >> 20) << 20;
+        long maxDisk = Long.getLong("pdi.cache.disk.mb", 2048) << 20;
+        String dir = System.getProperty("pdi.cache.dir");
+        File directory = dir != null ? new File(dir) : new File(System.getProperty("java.io.tmpdir"), "pdi-cache");
+        return new DecodedImageCache(maxMemory, maxDisk > 0 ? directory : null, maxDisk);
+    }
+
+    /**
+     * A imagem de 'input', da memória, do disco ou decodificada por 'decoder'.
+     *
+     * Com 'pool' (modo em lote, que lê cada arquivo uma vez e devolve as imagens
+     * à reserva), a imagem devolvida vem da reserva quando o tipo permite e
+     * não é guardada na memória, só no disco.
+     */
+    public BufferedImage load(File input, RasterPool pool, Decoder decoder) throws IOException {
+        OperationMetrics.Sample sample = OperationMetrics.start("load", null);
+        String hash = contentHash(input);
+
+        BufferedImage cached = memory.get(hash);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            BufferedImage copy = copyOf(cached, pool);
+            sample.stop("load.memory", copy);
+            return copy;
+        }
+
+        File entry = directory != null ? new File(directory, hash + ".raw") : null;
+        if (entry != null && entry.isFile()) {
+            BufferedImage image = readEntry(entry, pool);
+            if (image != null) {
+                diskHits.incrementAndGet();
+                if (pool == null) memory.put(hash, copyOf(image, null));
+                sample.stop("load.disk", image);
+                return image;
+            }
+        }
+
+        misses.incrementAndGet();
+        BufferedImage image = decoder.decode(input, pool);
+        if (entry != null && RawImage.isCompact(image)) {
+            writeEntry(entry, image);
+        }
+        if (pool == null) memory.put(hash, copyOf(image, null));
+        sample.stop("load.decode", image);
+        return image;
+    }
+
+    /** Lê uma entrada do disco; uma entrada corrompida é apagada e devolve null. */
+    private BufferedImage readEntry(File entry, RasterPool pool) {
+        try {
+            BufferedImage image = RawImage.read(entry, pool);
+            entry.setLastModified(System.currentTimeMillis()); // para o descarte por idade
+            return image;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Entrada do cache inválida, removida: " + entry + " (" + e.getMessage() + ")");
+            entry.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Grava a entrada (num temporário renomeado no fim, para que outro processo
+     * nunca leia um arquivo pela metade) e descarta as mais antigas se o
+     * diretório passar do limite. Falhas só são avisadas: o cache é opcional.
+     */
+    private void writeEntry(File entry, BufferedImage image) {
+        long size = ImageCache.sizeOf(image);
+        if (size > maxDiskBytes) return;
+        File temp = null;
+        try {
+            directory.mkdirs();
+            temp = File.createTempFile("entry", ".tmp", directory);
+            RawImage.write(image, temp);
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+            trimDisk(entry);
+        } catch (IOException e) {
+            System.err.println("Não foi possível gravar no cache: " + entry + " (" + e.getMessage() + ")");
+        } finally {
+            if (temp != null) temp.delete();
+        }
+    }
+
+    /** Apaga as entradas usadas há mais tempo até o diretório caber no limite. */
+    private synchronized void trimDisk(File keep) {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(".raw"));
+        if (entries == null) return;
+        long total = 0;
+        for (File f : entries) total += f.length();
+        if (total <= maxDiskBytes) return;
+        List<File> oldestFirst = Arrays.asList(entries);
+        oldestFirst.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : oldestFirst) {
+            if (total <= maxDiskBytes) break;
+            if (f.equals(keep)) continue;
+            long length = f.length();
+            if (f.delete()) total -= length;
+        }
+    }
+
+    /**
+     * Hash do conteúdo de 'input': o guardado para o caminho, se a data e o
+     * tamanho não mudaram, senão lido do arquivo (e guardado).
+     */
+    private String contentHash(File input) throws IOException {
+        String path = input.getCanonicalPath();
+        Stamp stamp = stamps.get(path);
+        File keyFile = directory != null ? new File(directory, hex(digest(path.getBytes(StandardCharsets.UTF_8)))
+                .substring(0, 40) + ".key") : null;
+        if (stamp == null && keyFile != null) {
+            stamp = readStamp(keyFile, path);
+        }
+        if (stamp == null || !stamp.matches(input)) {
+            long modified = input.lastModified();
+            long length = input.length();
+            stamp = new Stamp(modified, length, hashFile(input));
+            if (keyFile != null) writeStamp(keyFile, path, stamp);
+        }
+        stamps.put(path, stamp);
+        return stamp.hash;
+    }
+
+    /** Arquivo .key: o caminho, a data, o tamanho e o hash, um por linha. */
+    private static Stamp readStamp(File keyFile, String path) {
+        try {
+            List<String> lines = Files.readAllLines(keyFile.toPath(), StandardCharsets.UTF_8);
+            if (lines.size() < 4 || !lines.get(0).equals(path)) return null;
+            return new Stamp(Long.parseLong(lines.get(1)), Long.parseLong(lines.get(2)), lines.get(3));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void writeStamp(File keyFile, String path, Stamp stamp) {
+        String text = path + "\n" + stamp.modified + "\n" + stamp.length + "\n" + stamp.hash + "\n";
+        File temp = null;
+        try {
+            directory.mkdirs();
+            temp = File.createTempFile("key", ".tmp", directory);
+            Files.write(temp.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), keyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+        } catch (IOException e) {
+            System.err.println("Não foi possível gravar no cache: " + keyFile + " (" + e.getMessage() + ")");
+        } finally {
+            if (temp != null) temp.delete();
+        }
+    }
+
+    private static String hashFile(File input) throws IOException {
+        MessageDigest sha = sha256();
+        try (FileChannel channel = new FileInputStream(input).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                sha.update(buffer);
+                buffer.clear();
+            }
+        }
+        return hex(sha.digest());
+    }
+
+    private static byte[] digest(byte[] data) {
+        return sha256().digest(data);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e); // toda JVM tem
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /** Cópia de 'image' (numa imagem da reserva, se houver), copiando os arrays direto quando dá. */
+    static BufferedImage copyOf(BufferedImage image, RasterPool pool) {
+        BufferedImage copy = pool != null ? pool.acquireCompatible(image) : RasterAccess.createCompatible(image);
+        DataBuffer from = image.getRaster().getDataBuffer();
+        DataBuffer to = copy.getRaster().getDataBuffer();
+        if (image.getRaster().getParent() == null && copy.getRaster().getParent() == null
+                && from.getClass() == to.getClass() && from.getNumBanks() == 1 && to.getNumBanks() == 1
+                && from.getSize() == to.getSize() && from.getOffset() == 0 && to.getOffset() == 0
+                && image.getSampleModel().equals(copy.getSampleModel())) {
+            if (from instanceof DataBufferByte) {
+                System.arraycopy(((DataBufferByte) from).getData(), 0, ((DataBufferByte) to).getData(), 0, from.getSize());
+                return copy;
+            } else if (from instanceof DataBufferUShort) {
+                System.arraycopy(((DataBufferUShort) from).getData(), 0, ((DataBufferUShort) to).getData(), 0, from.getSize());
+                return copy;
+            } else if (from instanceof DataBufferInt) {
+                System.arraycopy(((DataBufferInt) from).getData(), 0, ((DataBufferInt) to).getData(), 0, from.getSize());
+                return copy;
+            }
+        }
+        image.copyData(copy.getRaster());
+        return copy;
+    }
+
+    /** Esquece as imagens da memória (o disco fica). */
+    public void clearMemory() {
+        memory.clear();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getMemoryBytes() {
+        return memory.getCurrentBytes();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,415 @@
+// Arquivo: EditPipeline.java
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Estado das edições globais da imagem (espelhamento, tamanho, rotação,
+ * brilho, contraste e escala de cinza) e a forma de aplicá-las.
+ *
+ * As operações pontuais viram tabelas (LUTs) combinadas numa única função
+ * por pixel, e espelhamento, escala e rotação viram uma única transformação
+ * afim. Assim exportar lê a imagem uma vez e escreve o resultado uma vez,
+ * em vez de criar uma cópia inteira por etapa. A mesma instância alimenta
+ * a pré-visualização do editor e a exportação, então as duas não divergem.
+ */
+public class EditPipeline {
+
+    // Luminância do perfil sRGB (primárias adaptadas a D50), a mesma que a
+    // conversão para ColorSpace.CS_GRAY usa; aplicada em luz linear.
+    private static final double LUMA_R = 0.2225;
+    private static final double LUMA_G = 0.7169;
+    private static final double LUMA_B = 0.0606;
+
+    /** Bits de precisão da luminância linear (índice da tabela de codificação sRGB). */
+    private static final int LINEAR_BITS = 14;
+    private static final int LINEAR_ONE = 1 << LINEAR_BITS;
+
+    /** sRGB (0..255) para luz linear, em ponto fixo. */
+    private static final int[] TO_LINEAR = new int[256];
+    /** Luz linear em ponto fixo para sRGB (0..255). */
+    private static final byte[] TO_SRGB = new byte[LINEAR_ONE + 1];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            TO_LINEAR[v] = (int) Math.round(decode(v / 255.0) * LINEAR_ONE);
+        }
+        for (int i = 0; i <= LINEAR_ONE; i++) {
+            TO_SRGB[i] = (byte) Math.round(encode((double) i / LINEAR_ONE) * 255);
+        }
+    }
+
+    private static double decode(double c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double encode(double c) {
+        return c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+    }
+
+    private double rotation = 0;
+    private double scale = 1.0;
+    private boolean flippedHorizontally = false;
+    private boolean flippedVertically = false;
+    private int grayscaleIntensity = 0;
+    private int brightness = 0;
+    private int contrast = 100;
+    /** Muda sempre que um parâmetro de cor muda de fato (para invalidar pré-visualizações). */
+    private int colorVersion = 0;
+
+    /** Volta a todos os valores neutros (nenhuma edição). */
+    public void reset() {
+        rotation = 0;
+        scale = 1.0;
+        flippedHorizontally = false;
+        flippedVertically = false;
+        setGrayscaleIntensity(0);
+        setBrightness(0);
+        setContrast(100);
+    }
+
+    /**
+     * Cópia com os valores atuais, para exportar numa thread de fundo enquanto
+     * a tela continua alterando esta instância.
+     */
+    public EditPipeline copy() {
+        EditPipeline copy = new EditPipeline();
+        copy.rotation = rotation;
+        copy.scale = scale;
+        copy.flippedHorizontally = flippedHorizontally;
+        copy.flippedVertically = flippedVertically;
+        copy.grayscaleIntensity = grayscaleIntensity;
+        copy.brightness = brightness;
+        copy.contrast = contrast;
+        copy.colorVersion = colorVersion;
+        return copy;
+    }
+
+    public double getRotation() {
+        return rotation;
+    }
+
+    /** Rotação em graus, no sentido horário. */
+    public void setRotation(double rotation) {
+        this.rotation = rotation;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public void setScale(double scale) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Escala inválida: " + scale);
+        }
+        this.scale = scale;
+    }
+
+    public boolean isFlippedHorizontally() {
+        return flippedHorizontally;
+    }
+
+    public void setFlippedHorizontally(boolean flippedHorizontally) {
+        this.flippedHorizontally = flippedHorizontally;
+    }
+
+    public boolean isFlippedVertically() {
+        return flippedVertically;
+    }
+
+    public void setFlippedVertically(boolean flippedVertically) {
+        this.flippedVertically = flippedVertically;
+    }
+
+    public int getGrayscaleIntensity() {
+        return grayscaleIntensity;
+    }
+
+    /** Mistura com a versão em cinza, de 0 (nenhuma) a 100 (só cinza). */
+    public void setGrayscaleIntensity(int grayscaleIntensity) {
+        int value = Math.max(0, Math.min(100, grayscaleIntensity));
+        if (value != this.grayscaleIntensity) colorVersion++;
+        this.grayscaleIntensity = value;
+    }
+
+    public int getBrightness() {
+        return brightness;
+    }
+
+    /** Deslocamento somado a cada canal de cor, depois do contraste. */
+    public void setBrightness(int brightness) {
+        if (brightness != this.brightness) colorVersion++;
+        this.brightness = brightness;
+    }
+
+    public int getContrast() {
+        return contrast;
+    }
+
+    /** Fator de contraste em porcentagem (100 = sem alteração). */
+    public void setContrast(int contrast) {
+        if (contrast != this.contrast) colorVersion++;
+        this.contrast = contrast;
+    }
+
+    /** Versão dos parâmetros de cor: igual enquanto brilho, contraste e cinza não mudarem. */
+    public int getColorVersion() {
+        return colorVersion;
+    }
+
+    /** Há alguma operação de cor (brilho, contraste ou cinza)? */
+    public boolean hasPointOps() {
+        return brightness != 0 || contrast != 100 || grayscaleIntensity > 0;
+    }
+
+    /** Há alguma operação geométrica (espelhamento, escala ou rotação)? */
+    public boolean hasGeometry() {
+        return flippedHorizontally || flippedVertically || scale != 1.0 || rotation % 360 != 0;
+    }
+
+    /**
+     * Transformação que leva a imagem (width x height) para um destino com o
+     * centro em (centerX, centerY): espelha, escala por scale * zoom e rotaciona
+     * em torno do centro. O zoom é só da visualização; na exportação é 1.
+     */
+    public AffineTransform createTransform(int width, int height, double centerX, double centerY, double zoom) {
+        AffineTransform tx = new AffineTransform();
+        tx.translate(centerX, centerY);
+        tx.rotate(Math.toRadians(rotation));
+        double s = scale * zoom;
+        tx.scale(flippedHorizontally ? -s : s, flippedVertically ? -s : s);
+        tx.translate(-width / 2.0, -height / 2.0);
+        return tx;
+    }
+
+    /** Largura e altura do resultado de render para uma imagem width x height. */
+    public int[] outputSize(int width, int height) {
+        int scaledWidth = Math.max(1, (int) (width * scale));
+        int scaledHeight = Math.max(1, (int) (height * scale));
+        // Mesmo retângulo de ImageProcessor.rotateImage
+        return Rotator.outputSize(scaledWidth, scaledHeight, rotation);
+    }
+
+    /**
+     * Só as operações de cor, sem mudar a geometria (usado pela pré-visualização,
+     * que aplica a geometria ao desenhar). Retorna a própria imagem se não houver nenhuma.
+     */
+    public BufferedImage applyPointOps(BufferedImage image) {
+        return applyPointOps(image, true);
+    }
+
+    /**
+     * Como applyPointOps(image), mas com 'parallel' false tudo roda na thread
+     * que chamou. Serve para os ladrilhos da pré-visualização, que são
+     * pequenos e coloridos na EDT: no TileScheduler eles esperariam atrás das
+     * faixas de um filtro que esteja rodando em segundo plano.
+     */
+    public BufferedImage applyPointOps(BufferedImage image, boolean parallel) {
+        if (image == null || !hasPointOps()) return image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PointOps ops = new PointOps();
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        TileScheduler.BandTask task = (y0, y1) -> {
+            int[] row = new int[width];
+            for (int y = y0; y < y1; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                ops.applyRow(row, dst, y * width, width);
+            }
+        };
+        if (parallel) {
+            TileScheduler.forEachBand(height, 0, task);
+        } else {
+            task.run(0, height);
+        }
+        return result;
+    }
+
+    /** As operações de cor atuais como função ARGB -> ARGB (para quem percorre pixels por conta própria). */
+    IntUnaryOperator colorFunction() {
+        if (!hasPointOps()) return IntUnaryOperator.identity();
+        PointOps ops = new PointOps();
+        return ops::apply;
+    }
+
+    /**
+     * Aplica todas as edições de uma vez: cada pixel do destino é mapeado de
+     * volta para a origem (interpolação bilinear), e as operações de cor são
+     * aplicadas ao valor amostrado antes da escrita. O resultado é TYPE_INT_ARGB,
+     * transparente fora da imagem rotacionada.
+     */
+    public BufferedImage render(BufferedImage image) {
+        if (image == null) return null;
+        if (!hasGeometry()) {
+            return hasPointOps() ? applyPointOps(image) : image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] size = outputSize(width, height);
+        int outWidth = size[0];
+        int outHeight = size[1];
+
+        AffineTransform inverse;
+        try {
+            inverse = createTransform(width, height, outWidth / 2.0, outHeight / 2.0, 1.0).createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException(e);
+        }
+        // Passo na origem a cada pixel do destino ao longo da linha
+        double dxx = inverse.getScaleX();
+        double dyx = inverse.getShearY();
+
+        int[] src = argbPixels(image);
+        PointOps ops = hasPointOps() ? new PointOps() : null;
+        BufferedImage result = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+        TileScheduler.forEachBand(outHeight, 0, (y0, y1) -> {
+            double[] point = new double[2];
+            for (int v = y0; v < y1; v++) {
+                // Centro do primeiro pixel da linha, em coordenadas de centro de pixel da origem
+                point[0] = 0.5;
+                point[1] = v + 0.5;
+                inverse.transform(point, 0, point, 0, 1);
+                double sx = point[0] - 0.5;
+                double sy = point[1] - 0.5;
+                int off = v * outWidth;
+                for (int u = 0; u < outWidth; u++, sx += dxx, sy += dyx) {
+                    int argb = sample(src, width, height, sx, sy);
+                    dst[off + u] = (ops != null && argb != 0) ? ops.apply(argb) : argb;
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int sample(int[] src, int width, int height, double x, double y) {
+        return sample(src, 0, 0, width, width, height, x, y);
+    }
+
+    /**
+     * Bilinear em (x, y), com as coordenadas de centro de pixel. Fora de
+     * [-0.5, width - 0.5] x [-0.5, height - 0.5] devolve 0 (transparente);
+     * na meia-borda repete o pixel da borda.
+     * src guarda só o recorte da imagem que começa em (originX, originY), com
+     * 'stride' pixels por linha; ele precisa conter os quatro vizinhos de (x, y).
+     */
+    static int sample(int[] src, int originX, int originY, int stride, int width, int height, double x, double y) {
+        if (x < -0.5 || y < -0.5 || x >= width - 0.5 || y >= height - 0.5) return 0;
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        int fx = (int) ((x - x0) * 256);
+        int fy = (int) ((y - y0) * 256);
+        int x1 = x0 + 1;
+        int y1 = y0 + 1;
+        if (x0 < 0) x0 = 0;
+        if (y0 < 0) y0 = 0;
+        if (x1 >= width) x1 = width - 1;
+        if (y1 >= height) y1 = height - 1;
+
+        int row0 = (y0 - originY) * stride - originX;
+        int row1 = (y1 - originY) * stride - originX;
+        int p00 = src[row0 + x0];
+        int p01 = src[row0 + x1];
+        int p10 = src[row1 + x0];
+        int p11 = src[row1 + x1];
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int top = (((p00 >>> shift) & 0xFF) << 8) + (((p01 >>> shift) & 0xFF) - ((p00 >>> shift) & 0xFF)) * fx;
+            int bottom = (((p10 >>> shift) & 0xFF) << 8) + (((p11 >>> shift) & 0xFF) - ((p10 >>> shift) & 0xFF)) * fx;
+            int value = ((top << 8) + (bottom - top) * fy + (1 << 15)) >> 16;
+            result |= value << shift;
+        }
+        return result;
+    }
+
+    /** Pixels ARGB da imagem inteira; usa o próprio array quando ela já é INT_ARGB. */
+    private static int[] argbPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride() == width
+                && image.getRaster().getDataBuffer().getOffset() == 0
+                && image.getRaster().getSampleModelTranslateX() == 0
+                && image.getRaster().getSampleModelTranslateY() == 0) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        int[] pixels = new int[width * height];
+        TileScheduler.forEachBand(height, 0, (y0, y1) ->
+                image.getRGB(0, y0, width, y1 - y0, pixels, y0 * width, width));
+        return pixels;
+    }
+
+    /**
+     * Brilho/contraste e mistura com cinza como tabelas, avaliadas com os
+     * parâmetros do momento em que foram criadas. Cada canal de saída é
+     * (tone[c] + grayMix[luminância]) >> 8: a primeira tabela já traz o
+     * contraste, o brilho e o peso da cor original; a segunda, o cinza já
+     * codificado em sRGB e multiplicado pelo seu peso.
+     */
+    private class PointOps {
+        /** Canal depois de contraste e brilho, vezes o peso da cor original (em 1/256). */
+        final int[] tone = new int[256];
+        /** Contribuição de cada canal (já ajustado) para a luminância linear. */
+        final int[] lumaR = new int[256];
+        final int[] lumaG = new int[256];
+        final int[] lumaB = new int[256];
+        /** Cinza (sRGB) vezes o seu peso, mais o arredondamento, por luminância linear. */
+        final int[] grayMix;
+        final boolean gray;
+        final float factor;
+
+        PointOps() {
+            int grayWeight = Math.round(grayscaleIntensity * 256 / 100.0f);
+            int keep = 256 - grayWeight;
+            gray = grayWeight > 0;
+            factor = contrast / 100.0f;
+            for (int v = 0; v < 256; v++) {
+                // Mesmo arredondamento e saturação do RescaleOp
+                int t = (int) (v * factor + brightness);
+                t = t < 0 ? 0 : (t > 255 ? 255 : t);
+                tone[v] = t * keep;
+                int linear = TO_LINEAR[t];
+                lumaR[v] = (int) Math.round(linear * LUMA_R);
+                lumaG[v] = (int) Math.round(linear * LUMA_G);
+                lumaB[v] = (int) Math.round(linear * LUMA_B);
+            }
+            grayMix = new int[gray ? LINEAR_ONE + 1 : 1];
+            for (int i = 0; i < grayMix.length; i++) {
+                grayMix[i] = (TO_SRGB[i] & 0xFF) * grayWeight + 128;
+            }
+        }
+
+        int apply(int argb) {
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            int mix = grayMix[gray ? Math.min(lumaR[r] + lumaG[g] + lumaB[b], LINEAR_ONE) : 0];
+            int tr = (tone[r] + mix) >> 8;
+            int tg = (tone[g] + mix) >> 8;
+            int tb = (tone[b] + mix) >> 8;
+            return (argb & 0xFF000000) | (tr << 16) | (tg << 8) | tb;
+        }
+
+        /**
+         * apply sobre 'n' pixels de 'row', escrevendo em dst[off...]. Sem cinza
+         * as tabelas se reduzem a contraste e brilho, que o PixelKernels
+         * calcula direto (e em vetores, se disponível).
+         */
+        void applyRow(int[] row, int[] dst, int off, int n) {
+            if (!gray) {
+                PixelKernels.get().rescaleArgb(row, 0, dst, off, n, factor, brightness);
+                return;
+            }
+            for (int x = 0; x < n; x++) {
+                dst[off + x] = apply(row[x]);
+            }
+        }
+    }
+}
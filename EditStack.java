@@ -0,0 +1,290 @@
+// Arquivo: EditStack.java
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pilha não destrutiva de filtros sobre uma imagem de origem.
+ *
+ * A origem nunca é alterada: o resultado é a origem passada por cada etapa
+ * ativa, em ordem. A saída de cada etapa fica num ImageCache com a chave
+ * (hash da entrada, filtro), e a chave da entrada encadeia as etapas
+ * anteriores. Assim, ao desfazer, refazer ou desligar uma etapa, as etapas
+ * de cima continuam com a mesma chave e só as de baixo são recalculadas.
+ *
+ * Cada alteração guarda a lista anterior de etapas (que é imutável) para
+ * desfazer/refazer. As alterações devem vir de uma única thread (a EDT);
+ * render() pode rodar em outra. A origem e as etapas ficam juntas num
+ * State imutável, trocado de uma vez a cada alteração, então render() lê
+ * sempre uma origem com as etapas e o hash dela, nunca uma mistura de
+ * duas alterações. O hash da origem é calculado só no primeiro render(),
+ * que roda fora da EDT, e direto sobre as amostras do raster.
+ */
+public class EditStack {
+
+    /** Orçamento padrão do cache: um quarto do heap, ou "pdi.cache.mb" se definido. */
+    private static final long DEFAULT_CACHE_BYTES = Long.getLong("pdi.cache.mb",
+            Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024)) * 1024 * 1024;
+
+    /** Uma etapa da pilha: o nome do filtro (ver ImageProcessor.applyFilter) e se está ativa. */
+    public static final class Step {
+        private final String filterName;
+        private final boolean enabled;
+
+        public Step(String filterName, boolean enabled) {
+            this.filterName = filterName;
+            this.enabled = enabled;
+        }
+
+        public String getFilterName() {
+            return filterName;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+
+    /**
+     * Estado da pilha num momento (etapas e históricos de desfazer/refazer),
+     * para voltar a ele com restore.
+     */
+    public static final class Snapshot {
+        private final List<Step> steps;
+        private final List<List<Step>> undoHistory;
+        private final List<List<Step>> redoHistory;
+
+        private Snapshot(List<Step> steps, Deque<List<Step>> undoHistory, Deque<List<Step>> redoHistory) {
+            this.steps = steps;
+            this.undoHistory = new ArrayList<>(undoHistory);
+            this.redoHistory = new ArrayList<>(redoHistory);
+        }
+    }
+
+    /** Como uma etapa é executada (por padrão, ImageProcessor.applyFilter na imagem inteira). */
+    public interface StepRunner {
+        /** @param last se é a última etapa da pilha (a que vai para a tela) */
+        BufferedImage apply(String filterName, BufferedImage input, boolean last);
+    }
+
+    /** A imagem de origem e o hash dela, calculado na primeira vez que é pedido. */
+    private static final class Source {
+        final BufferedImage image;
+        private boolean hashed;
+        private long hash;
+
+        Source(BufferedImage image) {
+            this.image = image;
+        }
+
+        synchronized long hash() {
+            if (!hashed) {
+                hash = EditStack.hash(image);
+                hashed = true;
+            }
+            return hash;
+        }
+    }
+
+    /** Origem e etapas de um momento da pilha; nunca muda depois de criado. */
+    private static final class State {
+        final Source source;
+        final List<Step> steps;
+
+        State(Source source, List<Step> steps) {
+            this.source = source;
+            this.steps = steps;
+        }
+    }
+
+    private final ImageCache<Long> cache;
+    // Volátil porque render() pode rodar fora da thread que edita a pilha
+    private volatile State state = new State(null, Collections.emptyList());
+    private final Deque<List<Step>> undoHistory = new ArrayDeque<>();
+    private final Deque<List<Step>> redoHistory = new ArrayDeque<>();
+
+    public EditStack() {
+        this(new ImageCache<>(DEFAULT_CACHE_BYTES));
+    }
+
+    public EditStack(ImageCache<Long> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Troca a imagem de origem e começa uma pilha vazia.
+     * Resultados de outras imagens continuam no cache até serem descartados pelo LRU.
+     */
+    public void setSource(BufferedImage image) {
+        state = new State(image == null ? null : new Source(image), Collections.emptyList());
+        undoHistory.clear();
+        redoHistory.clear();
+    }
+
+    public BufferedImage getSource() {
+        Source source = state.source;
+        return source == null ? null : source.image;
+    }
+
+    public List<Step> getSteps() {
+        return state.steps;
+    }
+
+    public void addStep(String filterName) {
+        List<Step> next = new ArrayList<>(getSteps());
+        next.add(new Step(filterName, true));
+        change(next);
+    }
+
+    public void removeStep(int index) {
+        List<Step> next = new ArrayList<>(getSteps());
+        next.remove(index);
+        change(next);
+    }
+
+    /** Liga ou desliga a etapa sem removê-la. */
+    public void toggleStep(int index) {
+        List<Step> next = new ArrayList<>(getSteps());
+        Step step = next.get(index);
+        next.set(index, new Step(step.getFilterName(), !step.isEnabled()));
+        change(next);
+    }
+
+    private void change(List<Step> next) {
+        undoHistory.push(getSteps());
+        redoHistory.clear();
+        setSteps(Collections.unmodifiableList(next));
+    }
+
+    private void setSteps(List<Step> steps) {
+        state = new State(state.source, steps);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(getSteps(), undoHistory, redoHistory);
+    }
+
+    /** Volta a pilha ao estado de 'snapshot', desfazendo de uma vez tudo o que veio depois. */
+    public void restore(Snapshot snapshot) {
+        setSteps(snapshot.steps);
+        undoHistory.clear();
+        undoHistory.addAll(snapshot.undoHistory);
+        redoHistory.clear();
+        redoHistory.addAll(snapshot.redoHistory);
+    }
+
+    public boolean canUndo() {
+        return !undoHistory.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoHistory.isEmpty();
+    }
+
+    public void undo() {
+        if (!canUndo()) return;
+        redoHistory.push(getSteps());
+        setSteps(undoHistory.pop());
+    }
+
+    public void redo() {
+        if (!canRedo()) return;
+        undoHistory.push(getSteps());
+        setSteps(redoHistory.pop());
+    }
+
+    /**
+     * Resultado da pilha atual. Parte da última etapa que já está no cache
+     * e só aplica os filtros depois dela. Com um ProgressTracker na thread,
+     * cada filtro recalculado é uma etapa do progresso.
+     */
+    public BufferedImage render() {
+        return render((filterName, input, last) -> ImageProcessor.applyFilter(filterName, input));
+    }
+
+    /** Como render(), executando as etapas recalculadas com 'runner'. */
+    public BufferedImage render(StepRunner runner) {
+        State state = this.state;
+        if (state.source == null) return null;
+        BufferedImage source = state.source.image;
+        long sourceHash = state.source.hash();
+        List<Step> steps = state.steps;
+
+        int count = steps.size();
+        long[] keys = new long[count];
+        long key = sourceHash;
+        for (int i = 0; i < count; i++) {
+            Step step = steps.get(i);
+            if (step.isEnabled()) {
+                key = mix(key * 31 + step.getFilterName().hashCode());
+            }
+            keys[i] = key;
+        }
+
+        // Procura de baixo para cima o resultado mais adiantado que já existe
+        BufferedImage current = source;
+        int start = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (keys[i] == sourceHash) break;
+            BufferedImage cached = cache.get(keys[i]);
+            if (cached != null) {
+                current = cached;
+                start = i + 1;
+                break;
+            }
+        }
+
+        ProgressTracker tracker = ProgressTracker.current();
+        int pending = 0;
+        for (int i = start; i < count; i++) {
+            if (steps.get(i).isEnabled()) pending++;
+        }
+        int done = 0;
+        for (int i = start; i < count; i++) {
+            Step step = steps.get(i);
+            if (!step.isEnabled()) continue;
+            if (tracker != null) tracker.beginStage(done++, pending, step.getFilterName());
+            current = runner.apply(step.getFilterName(), current, i == count - 1);
+            cache.put(keys[i], current);
+        }
+        return current;
+    }
+
+    /**
+     * Hash de 64 bits do tipo, das dimensões e das amostras (FNV-1a sobre as
+     * amostras de cada banda, lidas do raster pelo RasterAccess, sem getRGB).
+     */
+    private static long hash(BufferedImage image) {
+        BufferedImage src = RasterAccess.toDirect(image);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int bands = RasterAccess.numBands(src);
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ src.getType()) * 0x100000001b3L;
+        h = (h ^ width) * 0x100000001b3L;
+        h = (h ^ height) * 0x100000001b3L;
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int band = 0; band < bands; band++) {
+                RasterAccess.readRow(src, band, 0, y, width, row, 0);
+                for (int x = 0; x < width; x++) {
+                    h = (h ^ row[x]) * 0x100000001b3L;
+                }
+            }
+        }
+        return mix(h);
+    }
+
+    /** Finalizador do MurmurHash3: espalha os bits para chaves encadeadas não colidirem. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,88 @@
+// Arquivo: ExportOptions.java
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Opções de gravação usadas pelo ImageFileManager. O formato vem da extensão
+ * do arquivo (png, tif/tiff, ppm/pgm/pam/pnm, raw ou qualquer um do ImageIO);
+ * estas opções só valem para o PNG:
+ *  - nível do deflate, de 0 (sem compressão, o mais rápido) a 9 (o menor arquivo);
+ *  - filtro de linha: um fixo ou o adaptativo (o melhor dos cinco em cada linha);
+ *  - compressão paralela: a imagem é comprimida em segmentos independentes em
+ *    várias threads, como no pigz.
+ *
+ * Os valores padrão vêm das propriedades pdi.png.level, pdi.png.filter e
+ * pdi.png.parallel (fromProperties).
+ */
+public class ExportOptions {
+
+    /** Filtros de linha do PNG (o número é o byte gravado antes de cada linha). */
+    public enum PngFilter {
+        ADAPTIVE(-1), NONE(0), SUB(1), UP(2), AVERAGE(3), PAETH(4);
+
+        private final int code;
+
+        PngFilter(int code) {
+            this.code = code;
+        }
+
+        /** O tipo de filtro do PNG, ou -1 no adaptativo. */
+        public int code() {
+            return code;
+        }
+
+        public static PngFilter parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Filtro de PNG desconhecido: " + name
+                        + " (adaptive, none, sub, up, average, paeth)");
+            }
+        }
+    }
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private PngFilter pngFilter = PngFilter.ADAPTIVE;
+    private boolean parallelDeflate = true;
+
+    /** Opções das propriedades de sistema (ou as padrão, sem elas). */
+    public static ExportOptions fromProperties() {
+        ExportOptions options = new ExportOptions();
+        String level = System.getProperty("pdi.png.level");
+        if (level != null) options.setCompressionLevel(Integer.parseInt(level.trim()));
+        String filter = System.getProperty("pdi.png.filter");
+        if (filter != null) options.setPngFilter(PngFilter.parse(filter));
+        options.setParallelDeflate(!"false".equals(System.getProperty("pdi.png.parallel")));
+        return options;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /** Nível do deflate: 0 a 9, ou -1 para o padrão do zlib (6). */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Nível de compressão inválido: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public PngFilter getPngFilter() {
+        return pngFilter;
+    }
+
+    public void setPngFilter(PngFilter pngFilter) {
+        if (pngFilter == null) throw new IllegalArgumentException("Filtro de PNG nulo");
+        this.pngFilter = pngFilter;
+    }
+
+    public boolean isParallelDeflate() {
+        return parallelDeflate;
+    }
+
+    /** Comprime em segmentos paralelos (só faz diferença com mais de uma thread no TileScheduler). */
+    public void setParallelDeflate(boolean parallelDeflate) {
+        this.parallelDeflate = parallelDeflate;
+    }
+}
@@ -0,0 +1,99 @@
+// Arquivo: ImageCache.java
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache de imagens com limite em bytes: quando a soma dos tamanhos passa do
+ * orçamento, as menos usadas recentemente saem primeiro (LRU).
+ * Pode ser usado por várias threads.
+ */
+public class ImageCache<K> {
+
+    private final long maxBytes;
+    private final LinkedHashMap<K, BufferedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    public ImageCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Orçamento inválido: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /** Bytes ocupados pelas amostras da imagem (todos os bancos do DataBuffer). */
+    public static long sizeOf(BufferedImage image) {
+        DataBuffer db = image.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+
+    /** A imagem guardada com a chave, ou null. Conta como uso recente. */
+    public synchronized BufferedImage get(K key) {
+        BufferedImage image = entries.get(key);
+        if (image != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return image;
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Guarda a imagem e descarta as mais antigas até caber no orçamento.
+     * Uma imagem maior que o orçamento inteiro não é guardada.
+     */
+    public synchronized void put(K key, BufferedImage image) {
+        long size = sizeOf(image);
+        BufferedImage old = entries.remove(key);
+        if (old != null) currentBytes -= sizeOf(old);
+        if (size > maxBytes) return;
+
+        entries.put(key, image);
+        currentBytes += size;
+        Iterator<Map.Entry<K, BufferedImage>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<K, BufferedImage> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            currentBytes -= sizeOf(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    public synchronized void remove(K key) {
+        BufferedImage old = entries.remove(key);
+        if (old != null) currentBytes -= sizeOf(old);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -1,17 +1,26 @@
 // Arquivo: ImageEditor.java
 import java.awt.AlphaComposite;
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.FlowLayout;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.color.ColorSpace;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorConvertOp;
-import java.awt.image.RescaleOp;
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -19,9 +28,12 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JSlider;
 import javax.swing.JTabbedPane; 
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 
 
@@ -29,16 +41,46 @@ public class ImageEditor extends JFrame {
 
     // ... (Variáveis de estado e componentes da UI permanecem os mesmos) ...
     private BufferedImage image;
-    private BufferedImage grayImage; 
 
-    private double rotation = 0;
-    private double scale = 1.0;         
+    // Edições globais (rotação, tamanho, espelhamento e cor): a mesma
+    // instância desenha a pré-visualização e gera a imagem exportada
+    private final EditPipeline pipeline = new EditPipeline();
+    // Filtros aplicados, sem destruir a original: 'image' é sempre editStack.render()
+    private final EditStack editStack = new EditStack();
+    // Estado da pilha que produziu a imagem exibida (gravado em setImage)
+    private EditStack.Snapshot shownState = editStack.snapshot();
+
+    // Os filtros rodam fora da EDT, um trabalho por vez. 'generation' (só lido e
+    // escrito na EDT) identifica o trabalho mais recente; resultados de trabalhos
+    // mais antigos são descartados ao chegar.
+    private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "filtros");
+        t.setDaemon(true);
+        return t;
+    });
+    private long generation = 0;
+    private ProgressTracker currentJob;
+    private volatile double progressFraction;
+    private volatile String progressMessage = "";
+    private final AtomicBoolean progressUpdatePending = new AtomicBoolean();
     private double viewZoom = 1.0;      
-    private boolean flippedHorizontally = false;
-    private boolean flippedVertically = false;
-    private int grayscaleIntensity = 0;
-    private int brightnessValue = 0;
-    private int contrastValue = 100; 
+    // Resoluções reduzidas de 'image', construídas em segundo plano; a tela
+    // desenha o nível mais próximo do zoom e só usa a original a partir de 1:1
+    private ImagePyramid pyramid;
+    private final ExecutorService pyramidExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "piramide");
+        t.setDaemon(true);
+        return t;
+    });
+    // Filtro aplicado só ao nível da pirâmide em exibição, mostrado até o resultado completo chegar
+    private BufferedImage filterPreview;
+    private double lastDisplayScale = 1.0;
+    // Parte da imagem (em pixels da original) visível no último repaint
+    private Rectangle lastVisibleRect;
+    // Cópia em resolução de tela com as cores já aplicadas, reaproveitada entre repaints
+    private final PreviewCache previewCache = new PreviewCache();
+    // Custo da última etapa calculada (escrito pela thread dos filtros), mostrado sobre a imagem
+    private volatile OperationMetrics.Record lastCost;
 
     private final JTextField rotationField;
     private final JTextField scaleField;
@@ -46,10 +88,17 @@ public class ImageEditor extends JFrame {
     private final JSlider grayscaleSlider;
     private final JSlider brightnessSlider;
     private final JSlider contrastSlider;
+    private final JMenu editMenu;
+    private final JCheckBoxMenuItem costOverlayItem;
+    private final JPanel progressPanel;
+    private final JProgressBar progressBar;
 
     public ImageEditor() {
         super("Editor de Imagem Completo");
 
+        // Deixa um núcleo livre para a Event Dispatch Thread enquanto os filtros rodam
+        TileScheduler.setParallelism(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
         // ... (O painel imagePanel permanece o mesmo) ...
         imagePanel = new JPanel() {
             @Override
@@ -59,39 +108,24 @@ public class ImageEditor extends JFrame {
                     Graphics2D g2d = (Graphics2D) g.create();
                     g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
-                    float contrastFactor = contrastValue / 100.0f;
-                    RescaleOp combinedOp = new RescaleOp(contrastFactor, brightnessValue, null);
-
-                    AffineTransform tx = new AffineTransform();
-                    tx.translate(getWidth() / 2.0, getHeight() / 2.0);
-                    tx.rotate(Math.toRadians(rotation));
-                    
-                    double scaleX = flippedHorizontally ? -1 : 1;
-                    double scaleY = flippedVertically ? -1 : 1;
-
-                    double totalViewScale = scale * viewZoom; 
-                    tx.scale(totalViewScale * scaleX, totalViewScale * scaleY);
-                    
-                    tx.translate(-image.getWidth() / 2.0, -image.getHeight() / 2.0);
-                    
+                    AffineTransform tx = pipeline.createTransform(image.getWidth(), image.getHeight(),
+                            getWidth() / 2.0, getHeight() / 2.0, viewZoom);
+                    // Pixels de tela por pixel da imagem (inclui a escala de telas HiDPI)
+                    double displayScale = pipeline.getScale() * viewZoom * g2d.getTransform().getScaleX();
+                    lastDisplayScale = displayScale;
+                    lastVisibleRect = visibleImageRect(g2d, tx);
                     g2d.transform(tx);
-                    
-                    g2d.drawImage(image, combinedOp, 0, 0);
-
-                    if (grayscaleIntensity > 0) {
-                        if (grayImage == null) {
-                            grayImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                            ColorConvertOp op = new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null);
-                            op.filter(image, grayImage);
-                        }
-                        
-                        float alpha = grayscaleIntensity / 100.0f;
-                        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-                        g2d.drawImage(grayImage, combinedOp, 0, 0);
-                        g2d.setComposite(AlphaComposite.SrcOver);
-                    }
+
+                    // Só os ladrilhos visíveis do nível são coloridos e desenhados; ficam guardados
+                    // até a imagem, o nível ou as cores mudarem. A geometria fica com o Graphics2D
+                    BufferedImage level = filterPreview != null ? filterPreview : pyramid.closest(displayScale);
+                    previewCache.draw(g2d, level, image.getWidth(), image.getHeight(), lastVisibleRect, pipeline);
                     g2d.dispose();
                 }
+                OperationMetrics.Record cost = lastCost;
+                if (cost != null && costOverlayItem.isSelected()) {
+                    paintCost((Graphics2D) g, cost);
+                }
             }
         };
 
@@ -108,7 +142,15 @@ public class ImageEditor extends JFrame {
         fileMenu.add(openItem);
         fileMenu.add(saveItem);
         menuBar.add(fileMenu);
+        editMenu = new JMenu("Editar");
+        menuBar.add(editMenu);
+        JMenu viewMenu = new JMenu("Exibir");
+        costOverlayItem = new JCheckBoxMenuItem("Custo da última operação", true);
+        costOverlayItem.addActionListener(e -> imagePanel.repaint());
+        viewMenu.add(costOverlayItem);
+        menuBar.add(viewMenu);
         setJMenuBar(menuBar);
+        rebuildEditMenu();
 
         // --- Painel de Controle (Com Abas) ---
         JTabbedPane tabbedControlPanel = new JTabbedPane();
@@ -150,6 +192,8 @@ public class ImageEditor extends JFrame {
         JButton dilationButton = new JButton("Dilatação"); 
         JButton zhangSuenButton = new JButton("Afinar (Zhang-Suen)"); // NOVO
         JButton stentifordButton = new JButton("Afinar (Stentiford)");// NOVO
+        JButton otsuButton = new JButton("Binarizar (Otsu)");
+        JButton sauvolaButton = new JButton("Binarizar (Sauvola)");
         
        filterPanel.add(boxBlurButton);      
         filterPanel.add(gaussianBlurButton); 
@@ -159,6 +203,8 @@ public class ImageEditor extends JFrame {
         filterPanel.add(dilationButton); 
         filterPanel.add(zhangSuenButton); // ADICIONADO
         filterPanel.add(stentifordButton); // ADICIONADO
+        filterPanel.add(otsuButton);
+        filterPanel.add(sauvolaButton);
         // Grupo de Contraste
         JPanel contrastPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
         contrastPanel.add(new JLabel("Contraste:"));
@@ -216,6 +262,17 @@ public class ImageEditor extends JFrame {
         mainControlPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
         mainControlPanel.add(zoomPanel, BorderLayout.NORTH);
         mainControlPanel.add(tabbedControlPanel, BorderLayout.CENTER);
+
+        // Barra de progresso do filtro em execução (visível só durante o trabalho)
+        progressPanel = new JPanel(new BorderLayout(5, 0));
+        progressBar = new JProgressBar(0, 1000);
+        progressBar.setStringPainted(true);
+        JButton cancelButton = new JButton("Cancelar");
+        cancelButton.addActionListener(e -> { if (currentJob != null) currentJob.cancel(); });
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressPanel.setVisible(false);
+        mainControlPanel.add(progressPanel, BorderLayout.SOUTH);
         add(mainControlPanel, BorderLayout.SOUTH);
         
         
@@ -231,23 +288,23 @@ public class ImageEditor extends JFrame {
         scaleField.addActionListener(scaleAction);
         scaleButton.addActionListener(scaleAction);
         
-        flipHorizontalButton.addActionListener(e -> { flippedHorizontally = !flippedHorizontally; imagePanel.repaint(); });
-        flipVerticalButton.addActionListener(e -> { flippedVertically = !flippedVertically; imagePanel.repaint(); });
+        flipHorizontalButton.addActionListener(e -> { pipeline.setFlippedHorizontally(!pipeline.isFlippedHorizontally()); imagePanel.repaint(); });
+        flipVerticalButton.addActionListener(e -> { pipeline.setFlippedVertically(!pipeline.isFlippedVertically()); imagePanel.repaint(); });
         
         zoomInButton.addActionListener(e -> updateViewZoom(1.25)); 
         zoomOutButton.addActionListener(e -> updateViewZoom(0.8)); 
         zoomResetButton.addActionListener(e -> updateViewZoom(0)); 
 
         contrastSlider.addChangeListener(e -> {
-            contrastValue = contrastSlider.getValue();
+            pipeline.setContrast(contrastSlider.getValue());
             imagePanel.repaint();
         });
         brightnessSlider.addChangeListener(e -> {
-            brightnessValue = brightnessSlider.getValue();
+            pipeline.setBrightness(brightnessSlider.getValue());
             imagePanel.repaint();
         });
         grayscaleSlider.addChangeListener(e -> {
-            grayscaleIntensity = grayscaleSlider.getValue();
+            pipeline.setGrayscaleIntensity(grayscaleSlider.getValue());
             imagePanel.repaint();
         });
 
@@ -262,6 +319,8 @@ public class ImageEditor extends JFrame {
         
         zhangSuenButton.addActionListener(e -> applyFilter("zhangsuen")); // NOVO
         stentifordButton.addActionListener(e -> applyFilter("stentiford")); // NOVO
+        otsuButton.addActionListener(e -> applyFilter("otsu"));
+        sauvolaButton.addActionListener(e -> applyFilter("sauvola"));
         
         // --- Configuração final da Janela ---
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -275,28 +334,55 @@ public class ImageEditor extends JFrame {
     // ... (NÃO HÁ MUDANÇAS NESSES MÉTODOS) ...
     private void openImage() {
         // ... (código existente) ...
-        BufferedImage loadedImage = ImageFileManager.loadImage(this);
-        if (loadedImage != null) {
-            this.image = loadedImage;
-            this.grayImage = null; 
-            
-            this.rotation = 0;
-            this.scale = 1.0;
-            this.viewZoom = 1.0; 
-            this.flippedHorizontally = false;
-            this.flippedVertically = false;
-            this.grayscaleIntensity = 0;
-            this.brightnessValue = 0;
-            this.contrastValue = 100;
-            
-            rotationField.setText("0");
-            scaleField.setText("100");
-            grayscaleSlider.setValue(0);
-            brightnessSlider.setValue(0);
-            contrastSlider.setValue(100);
-            
-            imagePanel.repaint();
+        File input = ImageFileManager.chooseImageToOpen(this);
+        if (input == null) return;
+
+        // Ler, decodificar e passar pelo DecodedImageCache (hash e cópia raw)
+        // roda na thread dos filtros; a imagem só é instalada se nenhum trabalho
+        // mais novo começou enquanto isso (mesma geração dos filtros)
+        ProgressTracker tracker = beginJob("Abrindo " + input.getName());
+        long jobGeneration = generation;
+        filterExecutor.execute(() -> {
+            BufferedImage loaded = null;
+            Throwable error = null;
+            try {
+                loaded = ProgressTracker.callWith(tracker, () -> ImageFileManager.loadImage(input));
+            } catch (CancellationException ex) {
+                // Cancelado pelo botão ou substituído por um trabalho mais novo
+            } catch (Throwable ex) {
+                error = ex;
+            }
+            BufferedImage result = loaded;
+            Throwable failure = error;
+            SwingUtilities.invokeLater(() -> finishOpen(jobGeneration, result, failure));
+        });
+    }
+
+    private void finishOpen(long jobGeneration, BufferedImage loadedImage, Throwable error) {
+        if (!endJob(jobGeneration)) return; // já existe um trabalho mais novo
+        if (loadedImage == null) {
+            // Um filtro cancelado pela abertura pode ter deixado a pilha adiante da imagem exibida
+            editStack.restore(shownState);
+            rebuildEditMenu();
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Erro ao abrir imagem: " + error, "Erro", JOptionPane.ERROR_MESSAGE);
+            }
+            return;
         }
+        editStack.setSource(loadedImage);
+        setImage(loadedImage);
+        rebuildEditMenu();
+        
+        pipeline.reset();
+        this.viewZoom = 1.0; 
+        
+        rotationField.setText("0");
+        scaleField.setText("100");
+        grayscaleSlider.setValue(0);
+        brightnessSlider.setValue(0);
+        contrastSlider.setValue(100);
+        
+        imagePanel.repaint();
     }
 
     private void saveImage() {
@@ -305,60 +391,53 @@ public class ImageEditor extends JFrame {
             JOptionPane.showMessageDialog(this, "Nenhuma imagem para salvar!", "Aviso", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        File output = ImageFileManager.chooseSaveFile(this);
+        if (output == null) return;
+
+        // A exportação em resolução total roda na thread dos filtros, com a barra
+        // de progresso; a cópia do pipeline guarda as edições deste momento
+        BufferedImage source = image;
+        EditPipeline exportPipeline = pipeline.copy();
+        ProgressTracker tracker = beginJob("Salvando " + output.getName());
+        long jobGeneration = generation;
+        filterExecutor.execute(() -> {
+            boolean saved = false;
+            Throwable error = null;
+            try {
+                // Uma leitura e uma escrita: cor e geometria aplicadas juntas
+                BufferedImage finalImage = ProgressTracker.callWith(tracker, () -> {
+                    OperationMetrics.Sample sample = OperationMetrics.start("editor.render", source);
+                    BufferedImage rendered = exportPipeline.render(source);
+                    lastCost = sample.stop();
+                    return rendered;
+                });
+                // Fora do rastreador: cancelar não deixa um arquivo pela metade
+                tracker.checkCancelled();
+                ImageFileManager.saveImage(finalImage, output);
+                saved = true;
+            } catch (CancellationException ex) {
+                // Cancelado pelo botão ou substituído por um trabalho mais novo
+            } catch (Throwable ex) {
+                error = ex;
+            }
+            boolean done = saved;
+            Throwable failure = error;
+            SwingUtilities.invokeLater(() -> finishSave(jobGeneration, done, failure));
+        });
+    }
 
-        BufferedImage processedImage = image;
-
-        // Etapa 1: Espelhamento
-        if (flippedHorizontally || flippedVertically) {
-            int w = processedImage.getWidth();
-            int h = processedImage.getHeight();
-            int type = (processedImage.getType() == 0) ? BufferedImage.TYPE_INT_ARGB : processedImage.getType();
-            BufferedImage flipped = new BufferedImage(w, h, type);
-            Graphics2D g2 = flipped.createGraphics();
-            AffineTransform at = new AffineTransform();
-            double scaleX = flippedHorizontally ? -1 : 1;
-            double scaleY = flippedVertically ? -1 : 1;
-            if (flippedHorizontally) at.translate(w, 0);
-            if (flippedVertically) at.translate(0, h);
-            at.scale(scaleX, scaleY);
-            g2.setTransform(at);
-            g2.drawImage(processedImage, 0, 0, null);
-            g2.dispose();
-            processedImage = flipped;
-        }
-
-        // Etapa 2: Brilho e Contraste
-        if (brightnessValue != 0 || contrastValue != 100) {
-            float contrastFactor = contrastValue / 100.0f;
-            RescaleOp op = new RescaleOp(contrastFactor, brightnessValue, null);
-            BufferedImage adjustedImage = new BufferedImage(
-                processedImage.getWidth(), processedImage.getHeight(), processedImage.getType());
-            op.filter(processedImage, adjustedImage);
-            processedImage = adjustedImage;
+    private void finishSave(long jobGeneration, boolean saved, Throwable error) {
+        if (endJob(jobGeneration)) {
+            // Um filtro cancelado para salvar pode ter deixado a pilha adiante da imagem exibida
+            editStack.restore(shownState);
+            rebuildEditMenu();
+            imagePanel.repaint();
         }
-
-        // Etapa 3: Escala de Cinza
-        if (grayscaleIntensity > 0) {
-            BufferedImage tempGray = new BufferedImage(
-                processedImage.getWidth(), processedImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(processedImage, tempGray);
-            
-            BufferedImage blendedImage = new BufferedImage(
-                processedImage.getWidth(), processedImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = blendedImage.createGraphics();
-            g2.drawImage(processedImage, 0, 0, null);
-            float alpha = grayscaleIntensity / 100.0f;
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-            g2.drawImage(tempGray, 0, 0, null);
-            g2.dispose();
-            processedImage = blendedImage;
+        if (saved) {
+            JOptionPane.showMessageDialog(this, "Imagem salva com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+        } else if (error != null) {
+            JOptionPane.showMessageDialog(this, "Erro ao salvar imagem: " + error, "Erro", JOptionPane.ERROR_MESSAGE);
         }
-
-        // Etapas Finais: Redimensionar e Rotacionar
-        BufferedImage resizedImage = ImageProcessor.resizeImage(processedImage, scale);
-        BufferedImage finalImage = ImageProcessor.rotateImage(resizedImage, rotation);
-         ImageFileManager.saveImage(this, finalImage);
-       
     }
 
     private void updateRotationFromTextField() {
@@ -367,15 +446,15 @@ public class ImageEditor extends JFrame {
         try {
             double newRotation = Double.parseDouble(rotationField.getText());
             if (newRotation >= 0 && newRotation <= 360) {
-                this.rotation = newRotation;
+                pipeline.setRotation(newRotation);
                 imagePanel.repaint();
             } else {
                 JOptionPane.showMessageDialog(this, "Por favor, insira um ângulo entre 0 e 360.", "Valor Inválido", JOptionPane.ERROR_MESSAGE);
-                rotationField.setText(String.valueOf(Math.round(this.rotation)));
+                rotationField.setText(String.valueOf(Math.round(pipeline.getRotation())));
             }
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Por favor, insira um número válido para o ângulo.", "Entrada Inválida", JOptionPane.ERROR_MESSAGE);
-            rotationField.setText(String.valueOf(Math.round(this.rotation)));
+            rotationField.setText(String.valueOf(Math.round(pipeline.getRotation())));
         }
     }
 
@@ -385,15 +464,15 @@ public class ImageEditor extends JFrame {
         try {
             double newScalePercent = Double.parseDouble(scaleField.getText());
             if (newScalePercent >= 50 && newScalePercent <= 500) {
-                this.scale = newScalePercent / 100.0;
+                pipeline.setScale(newScalePercent / 100.0);
                 imagePanel.repaint();
             } else {
                 JOptionPane.showMessageDialog(this, "Por favor, insira um tamanho entre 50 e 500.", "Valor Inválido", JOptionPane.ERROR_MESSAGE);
-                scaleField.setText(String.valueOf(Math.round(this.scale * 100)));
+                scaleField.setText(String.valueOf(Math.round(pipeline.getScale() * 100)));
             }
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Por favor, insira um número válido para o tamanho.", "Entrada Inválida", JOptionPane.ERROR_MESSAGE);
-            scaleField.setText(String.valueOf(Math.round(this.scale * 100)));
+            scaleField.setText(String.valueOf(Math.round(pipeline.getScale() * 100)));
         }
     }
     
@@ -407,29 +486,204 @@ public class ImageEditor extends JFrame {
             return;
         }
         
-        // *** MUDANÇA AQUI: Bloco if/else if atualizado ***
-        if ("boxblur".equals(filterType)) {
-            this.image = ImageProcessor.applyBoxBlur(this.image);
-        } else if ("gaussianblur".equals(filterType)) {
-            this.image = ImageProcessor.applyGaussianBlur(this.image);
-        } else if ("sharpen".equals(filterType)) {
-            this.image = ImageProcessor.applySharpen(this.image);
-        } else if ("edgedetect".equals(filterType)) {
-            this.image = ImageProcessor.applyEdgeDetection(this.image);
-        } else if ("erosion".equals(filterType)) { 
-            this.image = ImageProcessor.applyErosion(this.image);
-        } else if ("dilation".equals(filterType)) { 
-            this.image = ImageProcessor.applyDilation(this.image);
-        } else if ("zhangsuen".equals(filterType)) { // NOVO
-            this.image = ImageProcessor.applyZhangSuen(this.image);
-        } else if ("stentiford".equals(filterType)) { // NOVO
-            this.image = ImageProcessor.applyStentiford(this.image);
+        editStack.addStep(filterType);
+        refreshFromEditStack(filterType);
+    }
+
+    /**
+     * Troca a imagem exibida e começa a construir a pirâmide dela. A pilha
+     * neste momento é a que corresponde à imagem exibida (shownState).
+     */
+    private void setImage(BufferedImage newImage) {
+        shownState = editStack.snapshot();
+        if (pyramid != null) pyramid.cancel();
+        this.image = newImage;
+        this.pyramid = new ImagePyramid(newImage);
+        this.filterPreview = null;
+        previewCache.clear();
+        pyramid.buildAsync(pyramidExecutor, imagePanel::repaint);
+    }
+
+    /**
+     * Recalcula a imagem a partir da pilha numa thread de fundo (só as etapas
+     * fora do cache rodam de novo). A imagem exibida só muda quando o resultado
+     * chega; se o trabalho for cancelado ou falhar, a pilha volta ao estado do
+     * último setImage (shownState), desfazendo também as alterações de trabalhos
+     * substituídos por este antes de terminar.
+     * @param previewFilter filtro acrescentado no topo, aplicado antes ao nível
+     *                      reduzido em exibição como prévia rápida (ou null)
+     */
+    private void refreshFromEditStack(String previewFilter) {
+        ProgressTracker tracker = beginJob("");
+        long jobGeneration = generation;
+        rebuildEditMenu();
+
+        // Com a tela num nível reduzido, a prévia é o filtro aplicado a esse nível;
+        // em 1:1 ou mais, o próprio filtro calcula primeiro os ladrilhos visíveis
+        BufferedImage previewSource = previewFilter == null ? null : pyramid.closest(lastDisplayScale);
+        boolean visibleFirst = previewFilter != null && previewSource == image;
+        BufferedImage previewInput = visibleFirst ? null : previewSource;
+        Rectangle visible = lastVisibleRect;
+        EditStack.StepRunner filters = (filterName, input, last) -> {
+            if (!visibleFirst || !last) return ImageProcessor.applyFilter(filterName, input);
+            return TiledFilter.apply(filterName, input, visible, partial ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (jobGeneration != generation) return;
+                        filterPreview = partial; // imagem à parte, que o TiledFilter não altera mais
+                        previewCache.clear();
+                        imagePanel.repaint();
+                    }));
+        };
+        // Cada etapa recalculada é medida como "editor.<filtro>"
+        EditStack.StepRunner runner = (filterName, input, last) -> {
+            OperationMetrics.Sample sample = OperationMetrics.start("editor." + filterName, input);
+            BufferedImage output = filters.apply(filterName, input, last);
+            lastCost = sample.stop();
+            return output;
+        };
+
+        filterExecutor.execute(() -> {
+            BufferedImage result = null;
+            Throwable error = null;
+            try {
+                if (previewInput != null) {
+                    BufferedImage preview = ProgressTracker.callWith(tracker,
+                            () -> ImageProcessor.applyFilter(previewFilter, previewInput));
+                    SwingUtilities.invokeLater(() -> {
+                        if (jobGeneration != generation) return;
+                        filterPreview = preview;
+                        imagePanel.repaint();
+                    });
+                }
+                result = ProgressTracker.callWith(tracker, () -> editStack.render(runner));
+            } catch (CancellationException ex) {
+                // Cancelado pelo botão ou substituído por um trabalho mais novo
+            } catch (Throwable ex) {
+                error = ex;
+            }
+            BufferedImage finished = result;
+            Throwable failure = error;
+            SwingUtilities.invokeLater(() -> finishJob(jobGeneration, finished, failure));
+        });
+    }
+
+    /**
+     * Começa um trabalho de fundo (filtro ou arquivo): cancela o anterior, cujo
+     * resultado será descartado pela geração, e mostra a barra de progresso.
+     */
+    private ProgressTracker beginJob(String message) {
+        if (currentJob != null) currentJob.cancel();
+        generation++;
+        ProgressTracker tracker = new ProgressTracker(this::publishProgress);
+        currentJob = tracker;
+        progressBar.setIndeterminate(true);
+        progressBar.setString(message);
+        progressPanel.setVisible(true);
+        return tracker;
+    }
+
+    /** Esconde a barra do trabalho 'jobGeneration'; false se já existe um trabalho mais novo. */
+    private boolean endJob(long jobGeneration) {
+        if (jobGeneration != generation) return false;
+        currentJob = null;
+        filterPreview = null;
+        progressPanel.setVisible(false);
+        return true;
+    }
+
+    private void finishJob(long jobGeneration, BufferedImage result, Throwable error) {
+        if (!endJob(jobGeneration)) return; // já existe um trabalho mais novo
+        if (result != null) {
+            setImage(result);
+        } else {
+            editStack.restore(shownState);
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Erro ao aplicar o filtro: " + error, "Erro", JOptionPane.ERROR_MESSAGE);
+            }
         }
-        
-        this.grayImage = null; // A imagem base mudou, invalida o cache de cinza
+        rebuildEditMenu();
         imagePanel.repaint();
     }
 
+    /** Caixa no canto superior esquerdo com o tempo, a vazão e a memória da última etapa. */
+    private void paintCost(Graphics2D g, OperationMetrics.Record cost) {
+        String text = cost.toString();
+        FontMetrics metrics = g.getFontMetrics();
+        int width = metrics.stringWidth(text) + 12;
+        int height = metrics.getHeight() + 6;
+        Graphics2D box = (Graphics2D) g.create();
+        box.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.6f));
+        box.setColor(Color.BLACK);
+        box.fillRoundRect(8, 8, width, height, 8, 8);
+        box.setComposite(AlphaComposite.SrcOver);
+        box.setColor(Color.WHITE);
+        box.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        box.drawString(text, 14, 11 + metrics.getAscent());
+        box.dispose();
+    }
+
+    /** Parte da imagem original que cai dentro da área de desenho, dada a transformação da tela. */
+    private Rectangle visibleImageRect(Graphics2D g2d, AffineTransform tx) {
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, imagePanel.getWidth(), imagePanel.getHeight());
+        try {
+            Rectangle visible = tx.createInverse().createTransformedShape(clip).getBounds();
+            return visible.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        } catch (NoninvertibleTransformException ex) {
+            return new Rectangle(0, 0, image.getWidth(), image.getHeight());
+        }
+    }
+
+    /**
+     * Chamado pelas threads do filtro. Guarda o último valor e agenda no máximo
+     * uma atualização pendente na EDT, para que um filtro com milhares de faixas
+     * não encha a fila de eventos.
+     */
+    private void publishProgress(double fraction, String message) {
+        progressFraction = fraction;
+        progressMessage = message;
+        if (progressUpdatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                progressUpdatePending.set(false);
+                double f = progressFraction;
+                progressBar.setIndeterminate(f < 0);
+                if (f >= 0) progressBar.setValue((int) Math.round(f * 1000));
+                progressBar.setString(progressMessage);
+            });
+        }
+    }
+
+    /**
+     * Menu Editar: desfazer/refazer e uma caixa por etapa da pilha,
+     * que liga ou desliga o filtro sem perder as etapas seguintes.
+     */
+    private void rebuildEditMenu() {
+        editMenu.removeAll();
+
+        JMenuItem undoItem = new JMenuItem("Desfazer");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undoItem.setEnabled(editStack.canUndo());
+        undoItem.addActionListener(e -> { editStack.undo(); refreshFromEditStack(null); });
+        editMenu.add(undoItem);
+
+        JMenuItem redoItem = new JMenuItem("Refazer");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redoItem.setEnabled(editStack.canRedo());
+        redoItem.addActionListener(e -> { editStack.redo(); refreshFromEditStack(null); });
+        editMenu.add(redoItem);
+
+        if (!editStack.getSteps().isEmpty()) {
+            editMenu.addSeparator();
+            for (int i = 0; i < editStack.getSteps().size(); i++) {
+                EditStack.Step step = editStack.getSteps().get(i);
+                int index = i;
+                JCheckBoxMenuItem stepItem = new JCheckBoxMenuItem((i + 1) + ". " + step.getFilterName(), step.isEnabled());
+                stepItem.addActionListener(e -> { editStack.toggleStep(index); refreshFromEditStack(null); });
+                editMenu.add(stepItem);
+            }
+        }
+    }
+
     private void updateViewZoom(double factor) {
         // ... (código existente) ...
         if (image == null) return;
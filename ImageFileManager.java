@@ -1,13 +1,36 @@
 // Arquivo: ImageFileManager.java
+import java.awt.Color;
 import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.beans.PropertyChangeEvent;
 import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
 
 /**
  * Classe utilitária para carregar e salvar arquivos de imagem.
+ *
+ * PNG, TIFF, PNM (ppm/pgm/pam/pnm) e raw são gravados pelos escritores do
+ * projeto (RowWriter), em faixas e sem passar pelo ImageIO; o PNG segue o
+ * ExportOptions (nível, filtro e compressão paralela). Os demais formatos
+ * (jpg, bmp, gif...) e as imagens de 16 bits ou com paleta em PNG/TIFF
+ * continuam com o ImageIO, menos a paleta com alfa em TIFF, gravada em RGBA.
  */
 public class ImageFileManager {
 
@@ -31,11 +54,10 @@ public class ImageFileManager {
      * @return A BufferedImage carregada ou null se a operação for cancelada ou falhar.
      */
     public static BufferedImage loadImage(Component parent) {
-        JFileChooser fileChooser = createConfiguredFileChooser();
-        
-        if (fileChooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+        File input = chooseImageToOpen(parent);
+        if (input != null) {
             try {
-                return ImageIO.read(fileChooser.getSelectedFile());
+                return loadImage(input);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(parent, "Erro ao abrir imagem!", "Erro", JOptionPane.ERROR_MESSAGE);
             }
@@ -43,6 +65,21 @@ public class ImageFileManager {
         return null;
     }
 
+    /**
+     * Só o diálogo de abrir (com a pré-visualização), sem carregar: quem chama
+     * lê o arquivo onde quiser, por exemplo fora da EDT.
+     * @return O arquivo escolhido ou null se o usuário cancelar.
+     */
+    public static File chooseImageToOpen(Component parent) {
+        JFileChooser fileChooser = createConfiguredFileChooser();
+        fileChooser.setAccessory(new PreviewAccessory(fileChooser));
+        
+        if (fileChooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            return fileChooser.getSelectedFile();
+        }
+        return null;
+    }
+
     /**
      * Abre um JFileChooser para o usuário salvar uma imagem.
      * @param parent O componente pai para o diálogo.
@@ -51,23 +88,355 @@ public class ImageFileManager {
     public static void saveImage(Component parent, BufferedImage imageToSave) {
         if (imageToSave == null) return;
 
+        File output = chooseSaveFile(parent);
+        if (output != null) {
+            try {
+                saveImage(imageToSave, output);
+                JOptionPane.showMessageDialog(parent, "Imagem salva com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(parent, "Erro ao salvar imagem!", "Erro", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Só o diálogo de salvar, sem gravar. Sem extensão, o arquivo ganha ".png".
+     * @return O arquivo escolhido ou null se o usuário cancelar.
+     */
+    public static File chooseSaveFile(Component parent) {
         JFileChooser fileChooser = createConfiguredFileChooser();
 
         if (fileChooser.showSaveDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            File output = fileChooser.getSelectedFile();
+            if (extensionOf(output) == null) {
+                output = new File(output.getAbsolutePath() + ".png");
+            }
+            return output;
+        }
+        return null;
+    }
+
+    /**
+     * Carrega uma imagem sem abrir diálogos. Arquivos já abertos antes vêm do
+     * DecodedImageCache, sem decodificar de novo (a menos que pdi.cache=false).
+     * @throws IOException se o arquivo não puder ser lido ou não for uma imagem suportada
+     */
+    public static BufferedImage loadImage(File input) throws IOException {
+        return load(input, null);
+    }
+
+    /**
+     * Como loadImage(File), mas numa imagem emprestada de 'pool' quando o tipo
+     * do arquivo permite (devolva-a com pool.release). Usado pelo modo em lote,
+     * que só passa pelo DecodedImageCache com pdi.cache.batch=true.
+     */
+    public static BufferedImage loadImage(File input, RasterPool pool) throws IOException {
+        return load(input, pool);
+    }
+
+    private static BufferedImage load(File input, RasterPool pool) throws IOException {
+        if (RawImage.isRaw(input)) return RawImage.read(input, pool);
+        DecodedImageCache cache = pool != null ? DecodedImageCache.forBatch() : DecodedImageCache.shared();
+        if (cache == null) return decode(input, pool);
+        return cache.load(input, pool, ImageFileManager::decode);
+    }
+
+    /** Decodifica com o ImageIO, na imagem emprestada de 'pool' se não for null. */
+    private static BufferedImage decode(File input, RasterPool pool) throws IOException {
+        if (pool == null) {
+            BufferedImage image = ImageIO.read(input);
+            if (image == null) {
+                throw new IOException("Formato de imagem não suportado: " + input);
+            }
+            return image;
+        }
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Formato de imagem não suportado: " + input);
+            }
+            ImageReader reader = readers.next();
             try {
-                File output = fileChooser.getSelectedFile();
-                if (!output.getName().toLowerCase().endsWith(".png")) {
-                    output = new File(output.getAbsolutePath() + ".png");
+                reader.setInput(stream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                int type = types.hasNext() ? types.next().getBufferedImageType() : BufferedImage.TYPE_CUSTOM;
+                if (type != BufferedImage.TYPE_CUSTOM && type != BufferedImage.TYPE_BYTE_INDEXED
+                        && type != BufferedImage.TYPE_BYTE_BINARY) {
+                    param.setDestination(pool.acquire(reader.getWidth(0), reader.getHeight(0), type));
                 }
-                ImageIO.write(imageToSave, "png", output);
-                JOptionPane.showMessageDialog(parent, "Imagem salva com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(parent, "Erro ao salvar imagem!", "Erro", JOptionPane.ERROR_MESSAGE);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Carrega uma versão reduzida da imagem para pré-visualização: o leitor
+     * decodifica só uma linha e uma coluna a cada 'step'
+     * (ImageReadParam.setSourceSubsampling), com 'step' o menor passo que faz a
+     * imagem caber em maxWidth x maxHeight. Arquivos raw são lidos inteiros.
+     */
+    public static BufferedImage loadPreview(File input, int maxWidth, int maxHeight) throws IOException {
+        if (RawImage.isRaw(input)) return RawImage.read(input);
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Formato de imagem não suportado: " + input);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int step = subsamplingStep(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Menor passo inteiro que reduz width x height para dentro de maxWidth x maxHeight. */
+    static int subsamplingStep(int width, int height, int maxWidth, int maxHeight) {
+        int stepX = (width + maxWidth - 1) / Math.max(1, maxWidth);
+        int stepY = (height + maxHeight - 1) / Math.max(1, maxHeight);
+        return Math.max(1, Math.max(stepX, stepY));
+    }
+
+    /**
+     * Salva uma imagem sem abrir diálogos. O formato vem da extensão do arquivo
+     * (png, tif, ppm, raw, jpg, bmp...); sem extensão reconhecida, salva como PNG.
+     * As opções do PNG vêm das propriedades de sistema (ExportOptions.fromProperties).
+     */
+    public static void saveImage(BufferedImage imageToSave, File output) throws IOException {
+        saveImage(imageToSave, output, ExportOptions.fromProperties());
+    }
+
+    /** Como saveImage(BufferedImage, File), com as opções de PNG dadas. */
+    public static void saveImage(BufferedImage imageToSave, File output, ExportOptions options) throws IOException {
+        String format = formatOf(output);
+        if (format.equals("raw")) {
+            // Com paleta, grava as cores (ARGB), nunca os índices
+            RawImage.write(RasterAccess.toDirect(imageToSave), output);
+            return;
+        }
+        // O TIFF do ImageIO descarta o alfa da paleta: essa vai para o escritor do projeto, em RGBA
+        boolean paletteAlpha = imageToSave.getColorModel() instanceof IndexColorModel
+                && imageToSave.getColorModel().hasAlpha();
+        boolean keepForImageIO = (format.equals("png") || (format.equals("tif") && !paletteAlpha))
+                && !isPlain8Bit(imageToSave);
+        if (isRowFormat(format) && !keepForImageIO) {
+            // PNM não tem paleta nem outro escritor: com paleta, bandsFor dá 3 ou 4 e
+            // o escritor grava as cores (getRGB), nunca os índices
+            try (RowWriter writer = openRowWriter(output, imageToSave.getWidth(), imageToSave.getHeight(),
+                    MappedImage.bandsFor(imageToSave), options)) {
+                writer.writeRows(imageToSave);
+            }
+            return;
+        }
+        if (!ImageIO.write(imageToSave, format, output)) {
+            // JPEG e BMP não aceitam alfa: grava uma cópia RGB
+            if (!imageToSave.getColorModel().hasAlpha()
+                    || !ImageIO.write(withoutAlpha(imageToSave), format, output)) {
+                throw new IOException("Sem escritor para o formato " + format + ": " + output);
+            }
+        }
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, Color.WHITE, null);
+        g.dispose();
+        return rgb;
+    }
+
+    /**
+     * Amostras de 8 bits sem paleta: o que os escritores do projeto gravam sem
+     * perder nada. PNG e TIFF de 16 bits ou com paleta ficam com o ImageIO.
+     */
+    private static boolean isPlain8Bit(BufferedImage image) {
+        return image.getSampleModel().getSampleSize(0) == 8 && !(image.getColorModel() instanceof IndexColorModel);
+    }
+
+    /** O formato pode ser gravado em faixas (openRowWriter)? */
+    public static boolean isRowFormat(String format) {
+        switch (format) {
+            case "png":
+            case "tif":
+            case "pnm":
+            case "raw":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Abre um escritor em faixas para o formato da extensão de 'output'
+     * (png, tif/tiff, ppm/pgm/pam/pnm ou raw), com 1, 3 ou 4 bandas de 8 bits.
+     * @throws IllegalArgumentException se o formato não for um desses
+     */
+    public static RowWriter openRowWriter(File output, int width, int height, int bands, ExportOptions options)
+            throws IOException {
+        String format = formatOf(output);
+        switch (format) {
+            case "png":
+                return new PngStreamWriter(output, width, height, bands, options);
+            case "tif":
+                return new TiffStreamWriter(output, width, height, bands);
+            case "pnm":
+                return new PnmStreamWriter(output, width, height, bands);
+            case "raw":
+                return new RawImage.Writer(output, width, height, bands);
+            default:
+                throw new IllegalArgumentException("Formato sem escritor em faixas: " + format);
+        }
+    }
+
+    /** Linhas decodificadas de cada vez por loadMapped. */
+    private static final int LOAD_STRIP_ROWS = 256;
+
+    /**
+     * Carrega uma imagem direto para uma MappedImage, decodificando faixas de
+     * linhas com ImageReadParam.setSourceRegion, sem ter a imagem inteira no heap.
+     * Em formatos sequenciais (PNG, JPEG) o leitor pode precisar decodificar de
+     * novo as linhas anteriores a cada faixa.
+     */
+    public static MappedImage loadMapped(File input) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Formato de imagem não suportado: " + input);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, false, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+
+                MappedImage result = null;
+                try {
+                    for (int y0 = 0; y0 < height; y0 += LOAD_STRIP_ROWS) {
+                        int rows = Math.min(LOAD_STRIP_ROWS, height - y0);
+                        param.setSourceRegion(new Rectangle(0, y0, width, rows));
+                        BufferedImage strip = reader.read(0, param);
+                        if (result == null) {
+                            result = new MappedImage(width, height, MappedImage.bandsFor(strip));
+                        }
+                        result.writeRows(strip, 0, y0, rows);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (result != null) result.close();
+                    throw e;
+                }
+                return result;
+            } finally {
+                reader.dispose();
             }
-        } 
-            
-    
-    
-    
+        }
+    }
+
+    /**
+     * Salva uma MappedImage sem copiá-la inteira para o heap (o escritor lê
+     * faixas sob demanda). O formato vem da extensão, como em saveImage.
+     */
+    public static void saveImage(MappedImage imageToSave, File output) throws IOException {
+        saveImage(imageToSave, output, ExportOptions.fromProperties());
+    }
+
+    public static void saveImage(MappedImage imageToSave, File output, ExportOptions options) throws IOException {
+        String format = formatOf(output);
+        if (isRowFormat(format)) {
+            int width = imageToSave.getWidth();
+            int height = imageToSave.getHeight();
+            try (RowWriter writer = openRowWriter(output, width, height, imageToSave.getBands(), options)) {
+                for (int y0 = 0; y0 < height; y0 += LOAD_STRIP_ROWS) {
+                    writer.writeRows(imageToSave.readStrip(y0, Math.min(height, y0 + LOAD_STRIP_ROWS)));
+                }
+            }
+            return;
+        }
+        if (!ImageIO.write(imageToSave.asRenderedImage(), format, output)) {
+            throw new IOException("Sem escritor para o formato " + format + ": " + output);
+        }
+    }
+
+    /**
+     * Formato de gravação pela extensão: "png", "tif", "pnm" e "raw" para os
+     * escritores do projeto, a própria extensão para os do ImageIO, e "png"
+     * quando a extensão não é conhecida.
+     */
+    static String formatOf(File file) {
+        String extension = extensionOf(file);
+        return extension == null ? "png" : extension;
+    }
+
+    /** Formato da extensão de 'file' (como em formatOf), ou null se ela não for conhecida. */
+    static String extensionOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return null;
+        String extension = name.substring(dot + 1).toLowerCase();
+        switch (extension) {
+            case "tif":
+            case "tiff":
+                return "tif";
+            case "ppm":
+            case "pgm":
+            case "pam":
+            case "pnm":
+                return "pnm";
+            case "png":
+            case "raw":
+                return extension;
+            default:
+                return ImageIO.getImageWritersBySuffix(extension).hasNext() ? extension : null;
+        }
+    }
+
+    /** Miniatura do arquivo selecionado no JFileChooser, lida com subamostragem. */
+    private static class PreviewAccessory extends JLabel {
+        private static final long serialVersionUID = 1L;
+        private static final int SIZE = 160;
+        private SwingWorker<ImageIcon, Void> loading;
+
+        PreviewAccessory(JFileChooser chooser) {
+            setPreferredSize(new Dimension(SIZE + 10, SIZE + 10));
+            setHorizontalAlignment(SwingConstants.CENTER);
+            chooser.addPropertyChangeListener(JFileChooser.SELECTED_FILE_CHANGED_PROPERTY, this::selected);
+        }
+
+        private void selected(PropertyChangeEvent e) {
+            if (loading != null) loading.cancel(true);
+            setIcon(null);
+            File file = (File) e.getNewValue();
+            if (file == null || !file.isFile()) return;
+            loading = new SwingWorker<ImageIcon, Void>() {
+                @Override
+                protected ImageIcon doInBackground() throws Exception {
+                    BufferedImage preview = loadPreview(file, SIZE, SIZE);
+                    double scale = Math.min(1.0, Math.min((double) SIZE / preview.getWidth(),
+                            (double) SIZE / preview.getHeight()));
+                    int w = Math.max(1, (int) Math.round(preview.getWidth() * scale));
+                    int h = Math.max(1, (int) Math.round(preview.getHeight() * scale));
+                    return new ImageIcon(preview.getScaledInstance(w, h, Image.SCALE_FAST));
+                }
+
+                @Override
+                protected void done() {
+                    if (isCancelled()) return;
+                    try {
+                        setIcon(get());
+                    } catch (Exception ex) {
+                        setIcon(null); // não é uma imagem (ou não deu para ler): sem miniatura
+                    }
+                }
+            };
+            loading.execute();
+        }
     }
 }
\ No newline at end of file
@@ -1,47 +1,53 @@
 // Arquivo: ImageProcessor.java
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Point;
-import java.awt.RenderingHints;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
-import java.util.ArrayList; // Novo
-import java.util.List; // Novo
+import java.awt.image.IndexColorModel;
 
 public class ImageProcessor {
 
-    // ... (rotateImage e resizeImage permanecem os mesmos) ...
+    /** Interpolação padrão da rotação: propriedade "pdi.rotate.filter" (padrão bilinear). */
+    public static final ResampleFilter DEFAULT_ROTATE_FILTER =
+            ResampleFilter.parse(System.getProperty("pdi.rotate.filter", "bilinear"));
+
+    /** Filtro padrão do redimensionamento: propriedade "pdi.resize.filter" (padrão lanczos3). */
+    public static final ResampleFilter DEFAULT_RESIZE_FILTER =
+            ResampleFilter.parse(System.getProperty("pdi.resize.filter", "lanczos3"));
+
     public static BufferedImage rotateImage(BufferedImage originalImage, double degrees) {
-        // ... (código existente) ...
         if (originalImage == null) {
             return null;
         }
 
-        double angle = Math.toRadians(degrees);
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-
-        int newWidth = (int) Math.abs(width * Math.cos(angle)) + (int) Math.abs(height * Math.sin(angle));
-        int newHeight = (int) Math.abs(height * Math.cos(angle)) + (int) Math.abs(width * Math.sin(angle));
+        return rotateImage(originalImage, degrees, DEFAULT_ROTATE_FILTER);
+    }
 
-        BufferedImage rotatedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = rotatedImage.createGraphics();
+    /**
+     * Gira com a interpolação escolhida (Rotator). O resultado contém a imagem
+     * girada inteira; múltiplos de 90 graus são exatos, sem interpolação.
+     * Para endireitar digitalizações (poucos graus), BICUBIC preserva melhor
+     * o texto e NEAREST é o mais rápido.
+     */
+    public static BufferedImage rotateImage(BufferedImage originalImage, double degrees, ResampleFilter filter) {
+        if (originalImage == null) {
+            return null;
+        }
 
-        AffineTransform transform = new AffineTransform();
-        transform.translate(newWidth / 2.0, newHeight / 2.0);
-        transform.rotate(angle);
-        transform.translate(-width / 2.0, -height / 2.0);
+        return OperationMetrics.measure("rotate", originalImage, sample -> Rotator.rotate(originalImage, degrees, filter));
+    }
 
-        g2d.drawImage(originalImage, transform, null);
-        g2d.dispose();
+    public static BufferedImage resizeImage(BufferedImage originalImage, double scaleFactor) {
+        if (originalImage == null || scaleFactor <= 0) {
+            return originalImage;
+        }
 
-        return rotatedImage;
+        return resizeImage(originalImage, scaleFactor, DEFAULT_RESIZE_FILTER);
     }
 
-    public static BufferedImage resizeImage(BufferedImage originalImage, double scaleFactor) {
-        // ... (código existente) ...
+    /**
+     * Redimensiona com o filtro escolhido (Resampler): NEAREST é o mais rápido,
+     * LANCZOS3 o mais nítido. Ao reduzir, todos os filtros menos NEAREST fazem a
+     * média dos pixels cobertos, sem serrilhado.
+     */
+    public static BufferedImage resizeImage(BufferedImage originalImage, double scaleFactor, ResampleFilter filter) {
         if (originalImage == null || scaleFactor <= 0) {
             return originalImage;
         }
@@ -52,15 +58,39 @@ public class ImageProcessor {
         if (newWidth < 1 || newHeight < 1) {
             return originalImage;
         }
+        return OperationMetrics.measure("resize", originalImage,
+                sample -> Resampler.resize(originalImage, newWidth, newHeight, filter));
+    }
 
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = resizedImage.createGraphics();
-
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-        g2d.dispose();
+    /**
+     * Miniatura que cabe em maxWidth x maxHeight, mantendo a proporção
+     * (Resampler.thumbnail: reduz pela metade com médias 2x2 e termina com Lanczos-3).
+     */
+    public static BufferedImage createThumbnail(BufferedImage originalImage, int maxWidth, int maxHeight) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("thumbnail", originalImage,
+                sample -> Resampler.thumbnail(originalImage, maxWidth, maxHeight));
+    }
 
-        return resizedImage;
+    /**
+     * Tipo das imagens que as operações criam a partir de 'image': o próprio
+     * tipo quando ele tem acesso direto às amostras de 8 bits (cinza, BGR,
+     * INT_RGB, INT_ARGB e 4BYTE_ABGR), para que uma sequência em cinza nunca
+     * passe para 32 bits; TYPE_INT_ARGB nos demais (indexado, binário, 16 bits,
+     * TYPE_CUSTOM). A conversão para a tela fica com quem desenha.
+     * Nos tipos sem alfa, a área fora da imagem rotacionada fica preta.
+     */
+    static int nativeType(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return image.getType();
+            default:
+                return BufferedImage.TYPE_INT_ARGB;
+        }
     }
 
     // --- MÉTODOS DE FILTRO ATUALIZADOS ---
@@ -70,16 +100,48 @@ public class ImageProcessor {
      * RENOMEADO DE applyLowPassFilter
      */
     public static BufferedImage applyBoxBlur(BufferedImage originalImage) {
+        return applyBoxBlur(originalImage, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyBoxBlur(BufferedImage originalImage, BorderMode borderMode) {
+        return applyBoxBlur(originalImage, borderMode, null);
+    }
+
+    // Kernel de blur (média 3x3)
+    private static final ConvolutionKernel BOX_3X3 = ConvolutionKernel.of(3, 3,
+        1/9f, 1/9f, 1/9f,
+        1/9f, 1/9f, 1/9f,
+        1/9f, 1/9f, 1/9f
+    );
+
+    /**
+     * Versões com 'destination': o resultado é escrito nessa imagem (mesmo tamanho
+     * e bandas da original, por exemplo de um RasterPool), que é devolvida.
+     * Com destination null, uma imagem nova é criada.
+     */
+    public static BufferedImage applyBoxBlur(BufferedImage originalImage, BorderMode borderMode, BufferedImage destination) {
         if (originalImage == null) return null;
+        return OperationMetrics.measure("boxblur", originalImage,
+                sample -> applyConvolution(originalImage, BOX_3X3, borderMode, destination));
+    }
 
-        // Kernel de blur (média 3x3)
-        float[] blurKernel = {
-            1/9f, 1/9f, 1/9f,
-            1/9f, 1/9f, 1/9f,
-            1/9f, 1/9f, 1/9f
-        };
-        
-        return applyConvolution(originalImage, blurKernel);
+    /**
+     * Box Blur de lado 2 * radius + 1. Usa somas corridas, então o custo
+     * por pixel não depende do raio.
+     */
+    public static BufferedImage applyBoxBlur(BufferedImage originalImage, int radius) {
+        return applyBoxBlur(originalImage, radius, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyBoxBlur(BufferedImage originalImage, int radius, BorderMode borderMode) {
+        return applyBoxBlur(originalImage, radius, borderMode, null);
+    }
+
+    public static BufferedImage applyBoxBlur(BufferedImage originalImage, int radius, BorderMode borderMode,
+                                             BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("boxblur", originalImage,
+                sample -> applyConvolution(originalImage, ConvolutionKernel.box(radius), borderMode, destination));
     }
 
     /**
@@ -87,396 +149,381 @@ public class ImageProcessor {
      * RENOMEADO DE applyHighPassFilter
      */
     public static BufferedImage applySharpen(BufferedImage originalImage) {
-        if (originalImage == null) return null;
+        return applySharpen(originalImage, BorderMode.CLAMP);
+    }
 
-        // Kernel de sharpen (realce)
-        float[] sharpenKernel = {
-             0f, -1f,  0f,
-            -1f,  5f, -1f,
-             0f, -1f,  0f
-        };
-        
-        return applyConvolution(originalImage, sharpenKernel);
+    public static BufferedImage applySharpen(BufferedImage originalImage, BorderMode borderMode) {
+        return applySharpen(originalImage, borderMode, null);
+    }
+
+    // Kernel de sharpen (realce)
+    private static final ConvolutionKernel SHARPEN = ConvolutionKernel.of(3, 3,
+         0f, -1f,  0f,
+        -1f,  5f, -1f,
+         0f, -1f,  0f
+    );
+
+    public static BufferedImage applySharpen(BufferedImage originalImage, BorderMode borderMode, BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("sharpen", originalImage,
+                sample -> applyConvolution(originalImage, SHARPEN, borderMode, destination));
     }
     
     /**
      * NOVO - Passa-Baixa Tipo 2: Gaussian Blur (Suavização Ponderada)
      */
     public static BufferedImage applyGaussianBlur(BufferedImage originalImage) {
+        return applyGaussianBlur(originalImage, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyGaussianBlur(BufferedImage originalImage, BorderMode borderMode) {
+        return applyGaussianBlur(originalImage, borderMode, null);
+    }
+
+    // Kernel Gaussiano 3x3 (aproximação)
+    private static final ConvolutionKernel GAUSSIAN_3X3 = ConvolutionKernel.of(3, 3,
+        1/16f, 2/16f, 1/16f,
+        2/16f, 4/16f, 2/16f,
+        1/16f, 2/16f, 1/16f
+    );
+
+    public static BufferedImage applyGaussianBlur(BufferedImage originalImage, BorderMode borderMode, BufferedImage destination) {
         if (originalImage == null) return null;
-        
-        // Kernel Gaussiano 3x3 (aproximação)
-        float[] gaussianKernel = {
-            1/16f, 2/16f, 1/16f,
-            2/16f, 4/16f, 2/16f,
-            1/16f, 2/16f, 1/16f
-        };
-        
-        return applyConvolution(originalImage, gaussianKernel);
+        return OperationMetrics.measure("gaussianblur", originalImage,
+                sample -> applyConvolution(originalImage, GAUSSIAN_3X3, borderMode, destination));
+    }
+
+    /**
+     * Gaussian Blur com desvio padrão sigma (kernel de raio 3 * sigma),
+     * executado como dois passes 1-D.
+     */
+    public static BufferedImage applyGaussianBlur(BufferedImage originalImage, double sigma) {
+        return applyGaussianBlur(originalImage, sigma, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyGaussianBlur(BufferedImage originalImage, double sigma, BorderMode borderMode) {
+        return applyGaussianBlur(originalImage, sigma, borderMode, null);
+    }
+
+    public static BufferedImage applyGaussianBlur(BufferedImage originalImage, double sigma, BorderMode borderMode,
+                                                  BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("gaussianblur", originalImage,
+                sample -> applyConvolution(originalImage, ConvolutionKernel.gaussian(sigma), borderMode, destination));
     }
 
     /**
      * NOVO - Passa-Alta Tipo 2: Detecção de Bordas (Laplacian)
      */
     public static BufferedImage applyEdgeDetection(BufferedImage originalImage) {
-        if (originalImage == null) return null;
+        return applyEdgeDetection(originalImage, BorderMode.CLAMP);
+    }
 
-        // Kernel Laplacian (8 vizinhos)
-        float[] edgeKernel = {
-            -1f, -1f, -1f,
-            -1f,  8f, -1f,
-            -1f, -1f, -1f
-        };
-        
-        return applyConvolution(originalImage, edgeKernel);
+    public static BufferedImage applyEdgeDetection(BufferedImage originalImage, BorderMode borderMode) {
+        return applyEdgeDetection(originalImage, borderMode, null);
+    }
+
+    // Kernel Laplacian (8 vizinhos)
+    private static final ConvolutionKernel LAPLACIAN = ConvolutionKernel.of(3, 3,
+        -1f, -1f, -1f,
+        -1f,  8f, -1f,
+        -1f, -1f, -1f
+    );
+
+    public static BufferedImage applyEdgeDetection(BufferedImage originalImage, BorderMode borderMode, BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("edgedetect", originalImage,
+                sample -> applyConvolution(originalImage, LAPLACIAN, borderMode, destination));
     }
 
     /**
-     * Método utilitário para aplicar qualquer kernel de convolução 3x3
+     * Aplica um kernel de convolução de qualquer tamanho.
+     * Kernels de caixa e separáveis são detectados e executados em passes 1-D.
      */
-    private static BufferedImage applyConvolution(BufferedImage originalImage, float[] kernelData) {
-        Kernel kernel = new Kernel(3, 3, kernelData);
-        ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        
-        int type = (originalImage.getType() == 0) ? BufferedImage.TYPE_INT_ARGB : originalImage.getType();
-        BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), type);
-        
-        op.filter(originalImage, resultImage);
-        return resultImage;
+    public static BufferedImage applyConvolution(BufferedImage originalImage, ConvolutionKernel kernel) {
+        return applyConvolution(originalImage, kernel, BorderMode.CLAMP);
     }
 
+    public static BufferedImage applyConvolution(BufferedImage originalImage, ConvolutionKernel kernel, BorderMode borderMode) {
+        return applyConvolution(originalImage, kernel, borderMode, null);
+    }
 
-    // ... (Métodos applyErosion e applyDilation permanecem os mesmos) ...
-    
-    public static BufferedImage applyErosion(BufferedImage originalImage) {
-        // ... (código existente) ...
+    public static BufferedImage applyConvolution(BufferedImage originalImage, ConvolutionKernel kernel, BorderMode borderMode,
+                                                 BufferedImage destination) {
         if (originalImage == null) return null;
+        return OperationMetrics.measure("convolution", originalImage,
+                sample -> Convolution.convolve(originalImage, kernel, borderMode, destination));
+    }
 
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        BufferedImage erodedImage = new BufferedImage(width, height, originalImage.getType());
-        Graphics2D g = erodedImage.createGraphics();
-        g.drawImage(originalImage, 0, 0, null);
-        g.dispose();
-
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int minA = 255, minR = 255, minG = 255, minB = 255;
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        int rgb = originalImage.getRGB(x + kx, y + ky);
-                        int a = (rgb >> 24) & 0xFF;
-                        int r = (rgb >> 16) & 0xFF;
-                        int gr = (rgb >> 8) & 0xFF;
-                        int b = rgb & 0xFF;
-
-                        minA = Math.min(minA, a);
-                        minR = Math.min(minR, r);
-                        minG = Math.min(minG, gr);
-                        minB = Math.min(minB, b);
-                    }
-                }
-                int newRgb = (minA << 24) | (minR << 16) | (minG << 8) | minB;
-                erodedImage.setRGB(x, y, newRgb);
-            }
-        }
-        return erodedImage;
+    /**
+     * Erosão 3x3 (mínimo de cada canal na vizinhança).
+     */
+    public static BufferedImage applyErosion(BufferedImage originalImage) {
+        return applyErosion(originalImage, SQUARE_3X3);
     }
-    
-    public static BufferedImage applyDilation(BufferedImage originalImage) {
-        // ... (código existente) ...
-        if (originalImage == null) return null;
 
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
+    private static final StructuringElement SQUARE_3X3 = StructuringElement.square(3);
 
-        BufferedImage dilatedImage = new BufferedImage(width, height, originalImage.getType());
-        Graphics2D g = dilatedImage.createGraphics();
-        g.drawImage(originalImage, 0, 0, null);
-        g.dispose();
-
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int maxA = 0, maxR = 0, maxG = 0, maxB = 0;
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        int rgb = originalImage.getRGB(x + kx, y + ky);
-                        int a = (rgb >> 24) & 0xFF;
-                        int r = (rgb >> 16) & 0xFF;
-                        int gr = (rgb >> 8) & 0xFF;
-                        int b = rgb & 0xFF;
-
-                        maxA = Math.max(maxA, a);
-                        maxR = Math.max(maxR, r);
-                        maxG = Math.max(maxG, gr);
-                        maxB = Math.max(maxB, b);
-                    }
-                }
-                int newRgb = (maxA << 24) | (maxR << 16) | (maxG << 8) | maxB;
-                dilatedImage.setRGB(x, y, newRgb);
-            }
-        }
-        return dilatedImage;
+    /**
+     * Erosão com um elemento estruturante qualquer (retângulo, cruz, disco).
+     * O custo por pixel não cresce com o tamanho do elemento retangular.
+     */
+    public static BufferedImage applyErosion(BufferedImage originalImage, StructuringElement element) {
+        return applyErosion(originalImage, element, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyErosion(BufferedImage originalImage, StructuringElement element, BorderMode borderMode) {
+        return applyErosion(originalImage, element, borderMode, null);
+    }
+
+    public static BufferedImage applyErosion(BufferedImage originalImage, StructuringElement element, BorderMode borderMode,
+                                             BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("erosion", originalImage,
+                sample -> Morphology.erode(originalImage, element, borderMode, destination));
     }
 
     /**
-     * Pré-processamento: Converte a imagem para um grid binário (0 ou 1).
-     * Usa um limiar de 128 na escala de cinza.
-     * 1 = Objeto (Preto), 0 = Fundo (Branco)
+     * Dilatação 3x3 (máximo de cada canal na vizinhança).
      */
-    private static int[][] binarize(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        int[][] binaryGrid = new int[width][height];
-        
-        // Limiar simples
-        final int THRESHOLD = 128;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = originalImage.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                // Média simples para escala de cinza
-                int gray = (r + g + b) / 3;
-                
-                // Se for mais escuro que o limiar, é objeto (1)
-                if (gray < THRESHOLD) {
-                    binaryGrid[x][y] = 1;
-                } else {
-                    binaryGrid[x][y] = 0;
-                }
-            }
-        }
-        return binaryGrid;
+    public static BufferedImage applyDilation(BufferedImage originalImage) {
+        return applyDilation(originalImage, SQUARE_3X3);
     }
 
     /**
-     * Pós-processamento: Converte o grid binário de volta para uma BufferedImage
+     * Dilatação com um elemento estruturante qualquer (retângulo, cruz, disco).
      */
-    private static BufferedImage arrayToImage(int[][] grid, int width, int height) {
-        
-        // *** MUDANÇA AQUI ***
-        // O tipo deve ser ARGB para ser compatível com as outras operações
-        // do paintComponent (como brilho/contraste), que não rodam em TYPE_BYTE_BINARY.
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (grid[x][y] == 1) {
-                    image.setRGB(x, y, Color.BLACK.getRGB());
-                } else {
-                    image.setRGB(x, y, Color.WHITE.getRGB());
-                }
-            }
-        }
-        return image;
+    public static BufferedImage applyDilation(BufferedImage originalImage, StructuringElement element) {
+        return applyDilation(originalImage, element, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage applyDilation(BufferedImage originalImage, StructuringElement element, BorderMode borderMode) {
+        return applyDilation(originalImage, element, borderMode, null);
+    }
+
+    public static BufferedImage applyDilation(BufferedImage originalImage, StructuringElement element, BorderMode borderMode,
+                                              BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("dilation", originalImage,
+                sample -> Morphology.dilate(originalImage, element, borderMode, destination));
+    }
+
+    /** Limiar fixo de binarização (ThresholdMethod.FIXED). */
+    static final int THRESHOLD = 128;
+
+    /**
+     * Binarização padrão antes do afinamento: propriedade "pdi.threshold"
+     * (fixed, otsu, sauvola ou niblack; padrão fixed, o limiar de 128).
+     */
+    public static final ThresholdMethod DEFAULT_THRESHOLD_METHOD =
+            ThresholdMethod.parse(System.getProperty("pdi.threshold", "fixed"));
+
+    /**
+     * Varredura padrão do afinamento: propriedade "pdi.thinning" (border_tracking
+     * ou full_scan; padrão border_tracking). As duas dão o mesmo resultado; a
+     * lista de palavras sujas evita reavaliar as regiões que já convergiram
+     * (ver ThinningMode).
+     */
+    public static final ThinningMode DEFAULT_THINNING_MODE =
+            ThinningMode.parse(System.getProperty("pdi.thinning", "border_tracking"));
+
+    /**
+     * Binariza a imagem (Thresholding) e devolve o resultado em preto e branco,
+     * no tipo de nativeType. Em digitalizações com iluminação desigual,
+     * SAUVOLA separa o texto do fundo onde um limiar global não consegue.
+     */
+    public static BufferedImage applyThreshold(BufferedImage originalImage, ThresholdMethod method) {
+        return applyThreshold(originalImage, method, null);
+    }
+
+    public static BufferedImage applyThreshold(BufferedImage originalImage, ThresholdMethod method,
+                                               BufferedImage destination) {
+        if (originalImage == null) return null;
+        return OperationMetrics.measure("threshold", originalImage,
+                sample -> toImage(Thresholding.binarize(originalImage, method), originalImage, destination));
     }
 
     /**
      * Aplica o algoritmo de afinamento Zhang-Suen
      */
     public static BufferedImage applyZhangSuen(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        int[][] grid = binarize(originalImage);
-        
-        List<Point> pixelsToDelete = new ArrayList<>();
-        boolean hasChanged;
-
-        do {
-            hasChanged = false;
-            
-            // --- PASSO 1 ---
-            for (int y = 1; y < height - 1; y++) {
-                for (int x = 1; x < width - 1; x++) {
-                    if (grid[x][y] == 0) continue;
-
-                    int[] p = {
-                        grid[x][y-1],   // P2
-                        grid[x+1][y-1], // P3
-                        grid[x+1][y],   // P4
-                        grid[x+1][y+1], // P5
-                        grid[x][y+1],   // P6
-                        grid[x-1][y+1], // P7
-                        grid[x-1][y],   // P8
-                        grid[x-1][y-1]  // P9
-                    };
-
-                    int transitions = 0; // A(P1) - Transições 0 -> 1
-                    int neighbors = 0;   // B(P1) - Vizinhos '1'
-
-                    for (int i = 0; i < p.length; i++) {
-                        neighbors += p[i];
-                        if (i < 7) {
-                            if (p[i] == 0 && p[i+1] == 1) transitions++;
-                        } else {
-                            if (p[7] == 0 && p[0] == 1) transitions++;
-                        }
-                    }
-
-                    // Condições do Zhang-Suen (Passo 1)
-                    if (grid[x][y] == 1 &&
-                        (neighbors >= 2 && neighbors <= 6) &&
-                        (transitions == 1) &&
-                        (p[0] * p[2] * p[4] == 0) && // P2 * P4 * P6 == 0
-                        (p[2] * p[4] * p[6] == 0)) { // P4 * P6 * P8 == 0
-                        
-                        pixelsToDelete.add(new Point(x, y));
-                    }
-                }
-            }
-            
-            for (Point p : pixelsToDelete) {
-                grid[p.x][p.y] = 0;
-                hasChanged = true;
-            }
-            pixelsToDelete.clear();
-
-            // --- PASSO 2 ---
-            for (int y = 1; y < height - 1; y++) {
-                for (int x = 1; x < width - 1; x++) {
-                    if (grid[x][y] == 0) continue;
-                    
-                    int[] p = {
-                        grid[x][y-1],   // P2
-                        grid[x+1][y-1], // P3
-                        grid[x+1][y],   // P4
-                        grid[x+1][y+1], // P5
-                        grid[x][y+1],   // P6
-                        grid[x-1][y+1], // P7
-                        grid[x-1][y],   // P8
-                        grid[x-1][y-1]  // P9
-                    };
-
-                    int transitions = 0;
-                    int neighbors = 0;
-
-                    for (int i = 0; i < p.length; i++) {
-                        neighbors += p[i];
-                        if (i < 7) {
-                            if (p[i] == 0 && p[i+1] == 1) transitions++;
-                        } else {
-                            if (p[7] == 0 && p[0] == 1) transitions++;
-                        }
-                    }
-                    
-                    // Condições do Zhang-Suen (Passo 2)
-                    if (grid[x][y] == 1 &&
-                        (neighbors >= 2 && neighbors <= 6) &&
-                        (transitions == 1) &&
-                        (p[0] * p[2] * p[6] == 0) && // P2 * P4 * P8 == 0
-                        (p[0] * p[4] * p[6] == 0)) { // P2 * P6 * P8 == 0
-                        
-                        pixelsToDelete.add(new Point(x, y));
-                    }
-                }
-            }
-            
-            for (Point p : pixelsToDelete) {
-                grid[p.x][p.y] = 0;
-                hasChanged = true;
-            }
-            pixelsToDelete.clear();
-
-        } while (hasChanged);
-
-        return arrayToImage(grid, width, height);
+        return applyZhangSuen(originalImage, DEFAULT_THINNING_MODE, null);
     }
-    
+
+    /**
+     * Zhang-Suen com o modo de varredura escolhido.
+     * @param stats recebe quantos pixels cada sub-passo examinou (pode ser null)
+     */
+    public static BufferedImage applyZhangSuen(BufferedImage originalImage, ThinningMode mode, ThinningStats stats) {
+        return applyZhangSuen(originalImage, mode, stats, null);
+    }
+
+    /**
+     * Zhang-Suen escrevendo o resultado (preto e branco) em 'destination', de
+     * qualquer tipo e do mesmo tamanho, ou numa imagem nova (tipo de nativeType) se for null.
+     */
+    public static BufferedImage applyZhangSuen(BufferedImage originalImage, ThinningMode mode, ThinningStats stats,
+                                               BufferedImage destination) {
+        return applyZhangSuen(originalImage, DEFAULT_THRESHOLD_METHOD, mode, stats, destination);
+    }
+
+    /** Zhang-Suen sobre a binarização escolhida (Thresholding) em vez da padrão. */
+    public static BufferedImage applyZhangSuen(BufferedImage originalImage, ThresholdMethod threshold) {
+        return applyZhangSuen(originalImage, threshold, DEFAULT_THINNING_MODE, null, null);
+    }
+
+    public static BufferedImage applyZhangSuen(BufferedImage originalImage, ThresholdMethod threshold, ThinningMode mode,
+                                               ThinningStats stats, BufferedImage destination) {
+        return OperationMetrics.measure("zhangsuen", originalImage, sample -> {
+            // Sem stats de quem chamou, usa um próprio para contar as iterações
+            ThinningStats counters = stats != null ? stats : new ThinningStats();
+            BinaryImage grid = Thresholding.binarize(originalImage, threshold);
+            Thinning.zhangSuen(grid, mode, counters);
+            sample.setIterations(counters.getIterationCount());
+            // O resultado fica no tipo da original (ver nativeType), nunca em
+            // TYPE_BYTE_BINARY, que as operações de cor do editor não tratam.
+            return toImage(grid, originalImage, destination);
+        });
+    }
+
+    private static BufferedImage toImage(BinaryImage grid, BufferedImage original, BufferedImage destination) {
+        if (destination == null) return grid.toImage(nativeType(original));
+        if (destination.getWidth() != grid.getWidth() || destination.getHeight() != grid.getHeight()) {
+            throw new IllegalArgumentException("Destino de tamanho diferente: " + destination.getWidth() + "x"
+                    + destination.getHeight() + " em vez de " + grid.getWidth() + "x" + grid.getHeight());
+        }
+        grid.writeTo(destination);
+        return destination;
+    }
+
     /**
      * Aplica o algoritmo de afinamento Stentiford
      */
     public static BufferedImage applyStentiford(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        int[][] grid = binarize(originalImage);
-        
-        boolean hasChanged = true;
-
-        while (hasChanged) {
-            hasChanged = false;
-            // Itera sobre 4 templates (Norte, Sul, Leste, Oeste)
-            for (int templateIndex = 0; templateIndex < 4; templateIndex++) {
-                List<Point> pixelsToDelete = new ArrayList<>();
-                
-                for (int y = 1; y < height - 1; y++) {
-                    for (int x = 1; x < width - 1; x++) {
-                        if (grid[x][y] == 0) continue;
-                        
-                        // Checa se é um ponto final (não deve ser deletado)
-                        if (isEndpoint(grid, x, y)) continue;
-
-                        // Checa conectividade (se deletar, não quebra a imagem)
-                        if (!preservesConnectivity(grid, x, y)) continue;
-
-                        if (matchesTemplate(grid, x, y, templateIndex)) {
-                            pixelsToDelete.add(new Point(x, y));
-                        }
-                    }
-                }
-                
-                for (Point p : pixelsToDelete) {
-                    grid[p.x][p.y] = 0;
-                    hasChanged = true;
-                }
-            }
-        }
-        
-        return arrayToImage(grid, width, height);
+        return applyStentiford(originalImage, DEFAULT_THINNING_MODE, null);
     }
 
-    // --- Helpers para Stentiford ---
+    /**
+     * Stentiford com o modo de varredura escolhido.
+     * @param stats recebe quantos pixels cada sub-passo examinou (pode ser null)
+     */
+    public static BufferedImage applyStentiford(BufferedImage originalImage, ThinningMode mode, ThinningStats stats) {
+        return applyStentiford(originalImage, mode, stats, null);
+    }
 
-    private static boolean isEndpoint(int[][] grid, int x, int y) {
-        int neighbors = 
-            grid[x][y-1] + grid[x+1][y-1] + grid[x+1][y] + grid[x+1][y+1] + 
-            grid[x][y+1] + grid[x-1][y+1] + grid[x-1][y] + grid[x-1][y-1];
-        return neighbors <= 1;
+    public static BufferedImage applyStentiford(BufferedImage originalImage, ThinningMode mode, ThinningStats stats,
+                                                BufferedImage destination) {
+        return applyStentiford(originalImage, DEFAULT_THRESHOLD_METHOD, mode, stats, destination);
     }
-    
-    private static int getTransitions(int[][] grid, int x, int y) {
-        int[] p = {
-            grid[x][y-1], grid[x+1][y-1], grid[x+1][y], grid[x+1][y+1], 
-            grid[x][y+1], grid[x-1][y+1], grid[x-1][y], grid[x-1][y-1]
-        };
-        int transitions = 0;
-        for (int i = 0; i < p.length; i++) {
-            if (p[i] == 0 && p[(i+1) % 8] == 1) transitions++;
+
+    /** Stentiford sobre a binarização escolhida (Thresholding) em vez da padrão. */
+    public static BufferedImage applyStentiford(BufferedImage originalImage, ThresholdMethod threshold) {
+        return applyStentiford(originalImage, threshold, DEFAULT_THINNING_MODE, null, null);
+    }
+
+    public static BufferedImage applyStentiford(BufferedImage originalImage, ThresholdMethod threshold, ThinningMode mode,
+                                                ThinningStats stats, BufferedImage destination) {
+        return OperationMetrics.measure("stentiford", originalImage, sample -> {
+            // Sem stats de quem chamou, usa um próprio para contar as iterações
+            ThinningStats counters = stats != null ? stats : new ThinningStats();
+            BinaryImage grid = Thresholding.binarize(originalImage, threshold);
+            Thinning.stentiford(grid, mode, counters);
+            sample.setIterations(counters.getIterationCount());
+            return toImage(grid, originalImage, destination);
+        });
+    }
+
+    /** Nomes aceitos por applyFilter, na ordem dos botões do editor. */
+    public static final String[] FILTER_NAMES = {
+        "boxblur", "gaussianblur", "sharpen", "edgedetect",
+        "erosion", "dilation", "zhangsuen", "stentiford",
+        "otsu", "sauvola", "niblack"
+    };
+
+    /**
+     * Quantos pixels de vizinhança, de cada lado, o filtro lê para produzir um pixel,
+     * ou -1 se o resultado de um pixel pode depender da imagem inteira (afinamento, Otsu).
+     */
+    public static int filterRadius(String filterName) {
+        switch (filterName) {
+            case "boxblur":
+            case "gaussianblur":
+            case "sharpen":
+            case "edgedetect":
+            case "erosion":
+            case "dilation":
+                return 1;
+            case "sauvola":
+            case "niblack":
+                return Thresholding.DEFAULT_WINDOW / 2;
+            case "zhangsuen":
+            case "stentiford":
+            case "otsu":
+                return -1;
+            default:
+                throw new IllegalArgumentException("Filtro desconhecido: " + filterName);
         }
-        return transitions;
     }
-    
-    private static boolean preservesConnectivity(int[][] grid, int x, int y) {
-        // Se A(P1) == 1, deletar quebra a conectividade
-        return getTransitions(grid, x, y) != 1;
-    }
-
-    private static boolean matchesTemplate(int[][] grid, int x, int y, int templateIndex) {
-        // p2, p3, p4, p5, p6, p7, p8, p9 (em ordem)
-        int p2 = grid[x][y-1];
-        int p3 = grid[x+1][y-1];
-        int p4 = grid[x+1][y];
-        int p5 = grid[x+1][y+1];
-        int p6 = grid[x][y+1];
-        int p7 = grid[x-1][y+1];
-        int p8 = grid[x-1][y];
-        int p9 = grid[x-1][y-1];
-
-        switch (templateIndex) {
-            case 0: // Norte
-                return (p2 == 0 && p6 == 1 && (p4 == 1 || p5 == 1 || p8 == 1 || p7 == 1) && (p4 == 1 || p2 == 1 || p8 == 1 || p9 == 1));
-            case 1: // Sul
-                return (p6 == 0 && p2 == 1 && (p8 == 1 || p9 == 1 || p4 == 1 || p3 == 1) && (p8 == 1 || p6 == 1 || p4 == 1 || p5 == 1));
-            case 2: // Leste
-                return (p4 == 0 && p8 == 1 && (p2 == 1 || p3 == 1 || p6 == 1 || p5 == 1) && (p2 == 1 || p9 == 1 || p6 == 1 || p7 == 1));
-            case 3: // Oeste
-                return (p8 == 0 && p4 == 1 && (p6 == 1 || p7 == 1 || p2 == 1 || p9 == 1) && (p6 == 1 || p5 == 1 || p2 == 1 || p3 == 1));
+
+    /**
+     * Aplica um filtro pelo nome (o mesmo usado pelos botões do editor e pelo modo em lote).
+     * @throws IllegalArgumentException se o nome não for conhecido
+     */
+    public static BufferedImage applyFilter(String filterName, BufferedImage originalImage) {
+        return applyFilter(filterName, originalImage, (BufferedImage) null);
+    }
+
+    /**
+     * applyFilter com o destino emprestado de 'pool'. Quem chama devolve o
+     * resultado ao pool (release) quando não precisar mais dele; numa sequência,
+     * a entrada de cada passo pode ser devolvida assim que o passo termina.
+     */
+    public static BufferedImage applyFilter(String filterName, BufferedImage originalImage, RasterPool pool) {
+        if (originalImage == null) return null;
+        int width = originalImage.getWidth();
+        int height = originalImage.getHeight();
+        BufferedImage destination;
+        if (filterRadius(filterName) < 0 || originalImage.getColorModel() instanceof IndexColorModel) {
+            // Imagens indexadas são filtradas como ARGB (RasterAccess.toDirect); o afinamento usa nativeType
+            destination = pool.acquire(width, height, nativeType(originalImage));
+        } else {
+            destination = pool.acquireCompatible(originalImage);
+        }
+        return applyFilter(filterName, originalImage, destination);
+    }
+
+    /**
+     * applyFilter escrevendo em 'destination' (ou numa imagem nova, se null).
+     * Os filtros de vizinhança pedem um destino do mesmo layout da original
+     * (RasterPool.acquireCompatible); o afinamento aceita qualquer tipo.
+     */
+    public static BufferedImage applyFilter(String filterName, BufferedImage originalImage, BufferedImage destination) {
+        switch (filterName) {
+            case "boxblur":
+                return applyBoxBlur(originalImage, BorderMode.CLAMP, destination);
+            case "gaussianblur":
+                return applyGaussianBlur(originalImage, BorderMode.CLAMP, destination);
+            case "sharpen":
+                return applySharpen(originalImage, BorderMode.CLAMP, destination);
+            case "edgedetect":
+                return applyEdgeDetection(originalImage, BorderMode.CLAMP, destination);
+            case "erosion":
+                return applyErosion(originalImage, SQUARE_3X3, BorderMode.CLAMP, destination);
+            case "dilation":
+                return applyDilation(originalImage, SQUARE_3X3, BorderMode.CLAMP, destination);
+            case "zhangsuen":
+                return applyZhangSuen(originalImage, DEFAULT_THINNING_MODE, null, destination);
+            case "stentiford":
+                return applyStentiford(originalImage, DEFAULT_THINNING_MODE, null, destination);
+            case "otsu":
+                return applyThreshold(originalImage, ThresholdMethod.OTSU, destination);
+            case "sauvola":
+                return applyThreshold(originalImage, ThresholdMethod.SAUVOLA, destination);
+            case "niblack":
+                return applyThreshold(originalImage, ThresholdMethod.NIBLACK, destination);
+            default:
+                throw new IllegalArgumentException("Filtro desconhecido: " + filterName);
         }
-        return false;
     }
 
 }
\ No newline at end of file
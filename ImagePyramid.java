@@ -0,0 +1,128 @@
+// Arquivo: ImagePyramid.java
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.Executor;
+
+/**
+ * Pirâmide de resoluções (mipmap) de uma imagem: o nível 0 é a própria
+ * imagem e cada nível seguinte tem metade da largura e da altura, com cada
+ * pixel a média de um bloco 2x2 do nível anterior.
+ *
+ * Os níveis são construídos em segundo plano (buildAsync), do mais fino ao
+ * mais grosso; enquanto um nível não fica pronto, closest devolve o pronto
+ * mais próximo dele. Assim a visualização reduzida nunca precisa reescalar a
+ * imagem inteira, e a original só é usada a partir de 1:1.
+ */
+public class ImagePyramid {
+
+    /** Para de reduzir quando o maior lado chega a este tamanho. */
+    private static final int MIN_SIZE = 64;
+
+    private final BufferedImage[] levels;
+    private volatile int readyLevels = 1;
+    private volatile boolean cancelled;
+
+    public ImagePyramid(BufferedImage base) {
+        int count = 1;
+        int width = base.getWidth();
+        int height = base.getHeight();
+        while (Math.max(width, height) > MIN_SIZE && width > 1 && height > 1) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+            count++;
+        }
+        levels = new BufferedImage[count];
+        levels[0] = base;
+    }
+
+    /**
+     * Constrói os níveis restantes no executor.
+     * @param onLevelReady chamado (na thread do executor) a cada nível pronto; pode ser null
+     */
+    public void buildAsync(Executor executor, Runnable onLevelReady) {
+        executor.execute(() -> {
+            for (int i = 1; i < levels.length && !cancelled; i++) {
+                levels[i] = halve(levels[i - 1]);
+                readyLevels = i + 1;
+                if (onLevelReady != null) onLevelReady.run();
+            }
+        });
+    }
+
+    /** Interrompe a construção (a imagem deixou de ser exibida). */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public BufferedImage getBase() {
+        return levels[0];
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /** O nível i, ou null se ainda não estiver pronto. */
+    public BufferedImage getLevel(int i) {
+        return i < readyLevels ? levels[i] : null;
+    }
+
+    /**
+     * Nível ideal para desenhar com 'displayScale' pixels de tela por pixel
+     * da original: o mais reduzido que ainda tem pelo menos a resolução da tela.
+     */
+    public int levelFor(double displayScale) {
+        int level = 0;
+        double scale = 1.0;
+        while (level + 1 < levels.length && scale / 2 >= displayScale) {
+            scale /= 2;
+            level++;
+        }
+        return level;
+    }
+
+    /** O nível ideal se já estiver pronto; senão, o mais próximo dele que estiver. */
+    public BufferedImage closest(double displayScale) {
+        int level = Math.min(levelFor(displayScale), readyLevels - 1);
+        return levels[level];
+    }
+
+    /**
+     * Metade da largura e da altura (arredondando para cima), cada pixel a média
+     * de um bloco 2x2 por canal. Na última coluna/linha ímpar o bloco repete a borda.
+     */
+    static BufferedImage halve(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int halfWidth = (width + 1) / 2;
+        int halfHeight = (height + 1) / 2;
+        BufferedImage result = new BufferedImage(halfWidth, halfHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+
+        TileScheduler.forEachBand(halfHeight, 0, (y0, y1) -> {
+            int[] top = new int[width];
+            int[] bottom = new int[width];
+            for (int y = y0; y < y1; y++) {
+                image.getRGB(0, 2 * y, width, 1, top, 0, width);
+                image.getRGB(0, Math.min(2 * y + 1, height - 1), width, 1, bottom, 0, width);
+                int off = y * halfWidth;
+                for (int x = 0; x < halfWidth; x++) {
+                    int x0 = 2 * x;
+                    int x1 = Math.min(x0 + 1, width - 1);
+                    dst[off + x] = average(top[x0], top[x1], bottom[x0], bottom[x1]);
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = ((a >>> shift) & 0xFF) + ((b >>> shift) & 0xFF)
+                    + ((c >>> shift) & 0xFF) + ((d >>> shift) & 0xFF);
+            result |= ((sum + 2) >> 2) << shift;
+        }
+        return result;
+    }
+}
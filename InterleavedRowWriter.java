@@ -0,0 +1,101 @@
+// Arquivo: InterleavedRowWriter.java
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Base dos escritores que gravam cada linha como bytes intercalados de 8 bits
+ * (cinza, RGB ou RGBA): confere largura e número de linhas e converte as
+ * faixas recebidas, banda a banda quando a imagem já tem as bandas do arquivo
+ * ou por getRGB quando não tem (tipos indexados, 16 bits...).
+ */
+public abstract class InterleavedRowWriter implements RowWriter {
+
+    protected final int width;
+    protected final int height;
+    protected final int bands;
+    /** Bandas na ordem inversa (BGR, ABGR), como nos rasters do Java. */
+    private final boolean reversed;
+    private final int[] samples;
+    protected int rowsWritten;
+
+    protected InterleavedRowWriter(int width, int height, int bands, boolean reversed) {
+        if (bands != 1 && bands != 3 && bands != 4) {
+            throw new IllegalArgumentException("Bandas não suportadas: " + bands);
+        }
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Tamanho inválido: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.reversed = reversed;
+        this.samples = new int[width];
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    /** Onde a próxima linha deve ser montada (width * bands bytes). */
+    protected abstract byte[] rowBuffer();
+
+    /** Grava a linha montada em rowBuffer(). */
+    protected abstract void writeRow(byte[] row) throws IOException;
+
+    @Override
+    public void writeRows(BufferedImage rows) throws IOException {
+        if (rows.getWidth() != width) {
+            throw new IllegalArgumentException("Largura diferente: " + rows.getWidth() + " != " + width);
+        }
+        if (rowsWritten + rows.getHeight() > height) {
+            throw new IllegalStateException("Linhas demais: " + (rowsWritten + rows.getHeight()) + " > " + height);
+        }
+        boolean sameBands = MappedImage.bandsFor(rows) == bands && RasterAccess.numBands(rows) == bands;
+        for (int y = 0; y < rows.getHeight(); y++) {
+            byte[] row = rowBuffer();
+            if (sameBands) {
+                for (int band = 0; band < bands; band++) {
+                    RasterAccess.readRow(rows, band, 0, y, width, samples, 0);
+                    int position = reversed ? bands - 1 - band : band;
+                    for (int x = 0, i = position; x < width; x++, i += bands) {
+                        row[i] = (byte) samples[x];
+                    }
+                }
+            } else {
+                rows.getRGB(0, y, width, 1, samples, 0, width);
+                packArgb(samples, row);
+            }
+            writeRow(row);
+            rowsWritten++;
+        }
+    }
+
+    private void packArgb(int[] argb, byte[] row) {
+        for (int x = 0, i = 0; x < width; x++) {
+            int p = argb[x];
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            if (bands == 1) {
+                row[i++] = (byte) ((r + g + b) / 3);
+            } else if (reversed) {
+                if (bands == 4) row[i++] = (byte) (p >>> 24);
+                row[i++] = (byte) b;
+                row[i++] = (byte) g;
+                row[i++] = (byte) r;
+            } else {
+                row[i++] = (byte) r;
+                row[i++] = (byte) g;
+                row[i++] = (byte) b;
+                if (bands == 4) row[i++] = (byte) (p >>> 24);
+            }
+        }
+    }
+
+    /** Para o close: todas as linhas chegaram? */
+    protected void checkComplete() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("Faltam linhas: " + rowsWritten + " de " + height);
+        }
+    }
+}
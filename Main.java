@@ -3,6 +3,14 @@ import javax.swing.UIManager;
 
 public class Main {
     public static void main(String[] args) {
+        // CSV/log periódico das métricas, se configurado (-Dpdi.metrics.csv, -Dpdi.metrics.log)
+        MetricsReporter.startFromProperties();
+
+        // Com argumentos, roda o modo em lote sem abrir a interface gráfica
+        if (args.length > 0) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(BatchProcessor.execute(args));
+        }
 
          try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,422 @@
+// Arquivo: MappedImage.java
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+/**
+ * Imagem de 8 bits por amostra guardada fora do heap, num arquivo temporário
+ * mapeado em memória. O sistema operacional decide o que fica na RAM e o que
+ * vai para o disco, então o heap usado não cresce com o tamanho da imagem.
+ *
+ * As amostras ficam intercaladas por pixel, linha após linha, na ordem de
+ * bandas do Raster (R, G, B[, A], ou uma banda só para cinza). O arquivo é
+ * mapeado em blocos de linhas inteiras de até 1 GB, porque um único
+ * MappedByteBuffer não passa de 2 GB; os índices são long, então a imagem
+ * pode ter mais de 2^31 amostras.
+ *
+ * O acesso é por linha (readRow/writeRow), como no RasterAccess, para ser
+ * usado em faixas pelo StripProcessor.
+ *
+ * Os arquivos temporários vão para o diretório da propriedade de sistema
+ * "pdi.scratch" (padrão: o diretório temporário do sistema); convém apontá-la
+ * para um disco local rápido.
+ */
+public class MappedImage implements AutoCloseable {
+
+    private static final long CHUNK_BYTES = 1L << 30;
+    private static final String SCRATCH_DIR = System.getProperty("pdi.scratch");
+
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final int rowBytes;
+    private final int rowsPerChunk;
+    private final File file;
+    private final RandomAccessFile storage;
+    private MappedByteBuffer[] chunks;
+
+    /**
+     * Cria uma imagem zerada num arquivo temporário em 'directory'
+     * (ou no diretório temporário do sistema, se null). O arquivo é apagado em close.
+     */
+    public MappedImage(int width, int height, int bands, File directory) throws IOException {
+        if (width < 1 || height < 1 || bands < 1 || bands > 4) {
+            throw new IllegalArgumentException("Tamanho inválido: " + width + "x" + height + "x" + bands);
+        }
+        if ((long) width * bands > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Linha grande demais: " + width + " pixels");
+        }
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.rowBytes = width * bands;
+        this.rowsPerChunk = (int) Math.max(1, Math.min(height, CHUNK_BYTES / rowBytes));
+
+        this.file = File.createTempFile("pdi-", ".raw", directory);
+        RandomAccessFile opened = null;
+        try {
+            opened = new RandomAccessFile(file, "rw");
+            long total = (long) rowBytes * height;
+            opened.setLength(total);
+
+            int count = (height + rowsPerChunk - 1) / rowsPerChunk;
+            chunks = new MappedByteBuffer[count];
+            FileChannel channel = opened.getChannel();
+            for (int i = 0; i < count; i++) {
+                long start = (long) i * rowsPerChunk * rowBytes;
+                long size = Math.min(total - start, (long) rowsPerChunk * rowBytes);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (opened != null) opened.close();
+            file.delete();
+            throw e;
+        }
+        this.storage = opened;
+    }
+
+    /** Cria uma imagem zerada no diretório de "pdi.scratch". */
+    public MappedImage(int width, int height, int bands) throws IOException {
+        this(width, height, bands, SCRATCH_DIR != null ? new File(SCRATCH_DIR) : null);
+    }
+
+    /** Copia uma BufferedImage (cinza vira 1 banda; com alfa, 4; o resto, 3). */
+    public static MappedImage fromImage(BufferedImage image) throws IOException {
+        BufferedImage src = RasterAccess.toDirect(image);
+        MappedImage result = new MappedImage(src.getWidth(), src.getHeight(), bandsFor(src));
+        result.writeRows(src, 0, 0, src.getHeight());
+        return result;
+    }
+
+    /**
+     * Bandas usadas para guardar a imagem: 1 (cinza), 3 (RGB) ou 4 (RGBA).
+     * Imagens com paleta (IndexColorModel, inclusive as de menos de 8 bits)
+     * guardam cores, nunca os índices: 3 ou 4, copiadas por getRGB.
+     */
+    static int bandsFor(BufferedImage image) {
+        int n = RasterAccess.numBands(image);
+        if (image.getColorModel() instanceof IndexColorModel) {
+            return image.getColorModel().hasAlpha() ? 4 : 3;
+        }
+        if (n == 1 && image.getSampleModel().getSampleSize(0) == 8) return 1;
+        if (n == 3 && image.getSampleModel().getSampleSize(0) == 8 && !image.getColorModel().hasAlpha()) return 3;
+        return image.getColorModel().hasAlpha() ? 4 : 3;
+    }
+
+    /** Tipo de BufferedImage com as mesmas bandas, na mesma ordem. */
+    static int bufferedImageType(int bands) {
+        switch (bands) {
+            case 1:
+                return BufferedImage.TYPE_BYTE_GRAY;
+            case 3:
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case 4:
+                return BufferedImage.TYPE_4BYTE_ABGR;
+            default:
+                throw new IllegalArgumentException("Bandas não suportadas: " + bands);
+        }
+    }
+
+    /**
+     * Copia as linhas [y0, y1) para uma BufferedImage no heap (do tipo de bufferedImageType).
+     */
+    public BufferedImage readStrip(int y0, int y1) {
+        BufferedImage strip = new BufferedImage(width, y1 - y0, bufferedImageType(bands));
+        int[] row = new int[width];
+        for (int y = y0; y < y1; y++) {
+            for (int band = 0; band < bands; band++) {
+                readRow(y, band, row, 0);
+                RasterAccess.writeRow(strip, band, 0, y - y0, width, row, 0);
+            }
+        }
+        return strip;
+    }
+
+    /**
+     * Vista da imagem como RenderedImage, em ladrilhos de faixas de linhas lidos
+     * sob demanda, para ser passada a um ImageWriter sem copiar tudo para o heap.
+     */
+    public RenderedImage asRenderedImage() {
+        return new StripView();
+    }
+
+    /** Copia a imagem inteira para o heap; só para imagens que cabem numa BufferedImage. */
+    public BufferedImage toBufferedImage() {
+        return readStrip(0, height);
+    }
+
+    /**
+     * Copia 'rows' linhas de 'image' (mesma largura), a partir da linha srcY,
+     * para as linhas a partir de dstY. Com as mesmas bandas a cópia é amostra
+     * por amostra; senão passa por ARGB.
+     */
+    void writeRows(BufferedImage image, int srcY, int dstY, int rows) {
+        if (image.getWidth() != width) {
+            throw new IllegalArgumentException("Largura diferente: " + image.getWidth() + " != " + width);
+        }
+        int[] row = new int[width];
+        boolean sameBands = bandsFor(image) == bands && RasterAccess.numBands(image) == bands;
+        for (int i = 0; i < rows; i++) {
+            if (sameBands) {
+                for (int band = 0; band < bands; band++) {
+                    RasterAccess.readRow(image, band, 0, srcY + i, width, row, 0);
+                    writeRow(dstY + i, band, row, 0);
+                }
+            } else {
+                image.getRGB(0, srcY + i, width, 1, row, 0, width);
+                writeArgbRow(dstY + i, row);
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    private MappedByteBuffer chunk(int y) {
+        MappedByteBuffer[] c = chunks;
+        if (c == null) {
+            throw new IllegalStateException("Imagem já fechada");
+        }
+        return c[y / rowsPerChunk];
+    }
+
+    private int offset(int x, int y) {
+        return (y % rowsPerChunk) * rowBytes + x * bands;
+    }
+
+    /** Copia as amostras da banda 'band' da linha y para dst[off .. off + width). */
+    public void readRow(int y, int band, int[] dst, int off) {
+        MappedByteBuffer buffer = chunk(y);
+        int idx = offset(0, y) + band;
+        for (int x = 0; x < width; x++, idx += bands) {
+            dst[off + x] = buffer.get(idx) & 0xFF;
+        }
+    }
+
+    /** Escreve src[off .. off + width) na banda 'band' da linha y (valores de 0 a 255). */
+    public void writeRow(int y, int band, int[] src, int off) {
+        MappedByteBuffer buffer = chunk(y);
+        int idx = offset(0, y) + band;
+        for (int x = 0; x < width; x++, idx += bands) {
+            buffer.put(idx, (byte) src[off + x]);
+        }
+    }
+
+    /**
+     * Pixel (x, y) como ARGB, como o getRGB da BufferedImage: o cinza (linear,
+     * como TYPE_BYTE_GRAY) passa por RasterAccess.GRAY_TO_SRGB e é repetido nas
+     * três cores; sem alfa, opaco.
+     */
+    public int getArgb(int x, int y) {
+        MappedByteBuffer buffer = chunk(y);
+        int idx = offset(x, y);
+        if (bands == 1) {
+            int v = RasterAccess.GRAY_TO_SRGB[buffer.get(idx) & 0xFF];
+            return 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        int r = buffer.get(idx) & 0xFF;
+        int g = buffer.get(idx + 1) & 0xFF;
+        int b = buffer.get(idx + 2) & 0xFF;
+        int a = bands == 4 ? buffer.get(idx + 3) & 0xFF : 0xFF;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /** Linha y como ARGB, em dst[0 .. width). */
+    public void readArgbRow(int y, int[] dst) {
+        for (int x = 0; x < width; x++) {
+            dst[x] = getArgb(x, y);
+        }
+    }
+
+    /** Região 'r' (dentro da imagem) como ARGB, linha após linha, em dst[0 .. r.width * r.height). */
+    public void readArgb(Rectangle r, int[] dst) {
+        int i = 0;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                dst[i++] = getArgb(x, y);
+            }
+        }
+    }
+
+    /**
+     * Escreve a linha y a partir de valores ARGB. O cinza recebe a média de R, G
+     * e B, levada de volta ao cinza linear (RasterAccess.SRGB_TO_GRAY).
+     */
+    public void writeArgbRow(int y, int[] argb) {
+        MappedByteBuffer buffer = chunk(y);
+        int idx = offset(0, y);
+        for (int x = 0; x < width; x++) {
+            int p = argb[x];
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            if (bands == 1) {
+                buffer.put(idx++, (byte) RasterAccess.SRGB_TO_GRAY[(r + g + b) / 3]);
+                continue;
+            }
+            buffer.put(idx++, (byte) r);
+            buffer.put(idx++, (byte) g);
+            buffer.put(idx++, (byte) b);
+            if (bands == 4) buffer.put(idx++, (byte) (p >>> 24));
+        }
+    }
+
+    /** RenderedImage com um ladrilho por faixa de STRIP_ROWS linhas. */
+    private class StripView implements RenderedImage {
+
+        private static final int STRIP_ROWS = 64;
+
+        private final BufferedImage sample = new BufferedImage(1, 1, bufferedImageType(bands));
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return sample.getColorModel();
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sample.getSampleModel().createCompatibleSampleModel(width, STRIP_ROWS);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (height + STRIP_ROWS - 1) / STRIP_ROWS;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return STRIP_ROWS;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            int y0 = tileY * STRIP_ROWS;
+            return getData(new Rectangle(0, y0, width, Math.min(STRIP_ROWS, height - y0)));
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            Rectangle r = rect.intersection(new Rectangle(0, 0, width, height));
+            BufferedImage strip = readStrip(r.y, r.y + r.height);
+            return strip.getRaster().createChild(r.x, 0, r.width, r.height, r.x, r.y, null);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = getColorModel().createCompatibleWritableRaster(width, height);
+            }
+            Rectangle r = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+            for (int y = r.y; y < r.y + r.height; y += STRIP_ROWS) {
+                raster.setRect(getData(new Rectangle(r.x, y, r.width, Math.min(STRIP_ROWS, r.y + r.height - y))));
+            }
+            return raster;
+        }
+    }
+
+    /**
+     * Solta o mapeamento e apaga o arquivo temporário. Os buffers só deixam de
+     * ocupar endereços quando o coletor de lixo os recolhe; só se o sistema não
+     * deixar apagar um arquivo ainda mapeado (Windows) ele fica para a saída da
+     * JVM. Nada é registrado antes disso, para um lote longo não acumular um
+     * registro por arquivo temporário.
+     */
+    @Override
+    public void close() throws IOException {
+        if (chunks == null) return;
+        chunks = null;
+        storage.close();
+        if (!file.delete() && file.exists()) file.deleteOnExit();
+    }
+}
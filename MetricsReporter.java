@@ -0,0 +1,108 @@
+// Arquivo: MetricsReporter.java
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grava periodicamente os contadores do OperationMetrics: uma linha por
+ * operação num CSV (acrescentada a cada período, com a hora) e/ou no log de
+ * erros. Uma última gravação acontece quando a JVM termina, então um lote
+ * curto também deixa o seu resumo.
+ *
+ * Configurado por propriedades de sistema (startFromProperties):
+ *   pdi.metrics.csv      arquivo CSV (sem ele, nada é gravado em arquivo)
+ *   pdi.metrics.log      "true" para escrever também em System.err
+ *   pdi.metrics.period   segundos entre gravações (padrão 60)
+ */
+public class MetricsReporter {
+
+    static final String CSV_HEADER = "timestamp,operation,count,total_ms,mean_ms,max_ms,last_ms,"
+            + "megapixels,mp_per_s,allocated_mb,thinning_iterations";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final File csv;
+    private final boolean log;
+
+    public MetricsReporter(File csv, boolean log) {
+        this.csv = csv;
+        this.log = log;
+    }
+
+    /**
+     * Começa as gravações periódicas se pdi.metrics.csv ou pdi.metrics.log
+     * estiverem definidas.
+     * @return o reporter iniciado, ou null se não há nada configurado
+     */
+    public static MetricsReporter startFromProperties() {
+        String path = System.getProperty("pdi.metrics.csv");
+        boolean log = Boolean.getBoolean("pdi.metrics.log");
+        if (!OperationMetrics.ENABLED || (path == null && !log)) return null;
+        MetricsReporter reporter = new MetricsReporter(path == null ? null : new File(path), log);
+        reporter.start(Long.getLong("pdi.metrics.period", 60));
+        return reporter;
+    }
+
+    /** Grava a cada 'periodSeconds' numa thread daemon e uma última vez no encerramento da JVM. */
+    public void start(long periodSeconds) {
+        if (periodSeconds < 1) {
+            throw new IllegalArgumentException("Período inválido: " + periodSeconds);
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::reportQuietly, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            timer.shutdownNow();
+            reportQuietly();
+        }, "metricas-final"));
+    }
+
+    private void reportQuietly() {
+        try {
+            report();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao gravar métricas: " + e);
+        }
+    }
+
+    /** Grava o estado atual de todas as operações medidas. */
+    public synchronized void report() throws IOException {
+        List<OperationMetrics.Stats> all = OperationMetrics.all();
+        if (all.isEmpty()) return;
+        String now = LocalDateTime.now().withNano(0).format(TIMESTAMP);
+        if (csv != null) {
+            boolean header = !csv.isFile() || csv.length() == 0;
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(csv, true), StandardCharsets.UTF_8))) {
+                if (header) out.println(CSV_HEADER);
+                for (OperationMetrics.Stats s : all) {
+                    out.printf(Locale.ROOT, "%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.1f,%.1f,%d%n",
+                            now, s.getOperation(), s.getCount(), s.getTotalMillis(), s.getMeanMillis(),
+                            s.getMaxMillis(), s.getLastMillis(), s.getPixels() / 1e6, s.getMegapixelsPerSecond(),
+                            s.getAllocatedBytes() / 1048576.0, s.getThinningIterations());
+                }
+            }
+        }
+        if (log) {
+            for (OperationMetrics.Stats s : all) {
+                System.err.printf(Locale.ROOT, "[métricas %s] %s: %d vezes, média %.1f ms, máximo %.1f ms, "
+                                + "%.1f MP/s, %.1f MB alocados%n",
+                        now, s.getOperation(), s.getCount(), s.getMeanMillis(), s.getMaxMillis(),
+                        s.getMegapixelsPerSecond(), s.getAllocatedBytes() / 1048576.0);
+            }
+        }
+    }
+}
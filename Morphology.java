@@ -0,0 +1,331 @@
+// Arquivo: Morphology.java
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Morfologia matemática em tons de cinza (erosão, dilatação e derivadas),
+ * aplicada banda por banda diretamente sobre o raster.
+ *
+ * O mínimo/máximo deslizante usa o algoritmo de van Herk/Gil-Werman,
+ * que custa cerca de três comparações por pixel independentemente do
+ * comprimento da janela. Retângulos são separados em um passe horizontal
+ * e um vertical; cruzes são a união de duas linhas; outros elementos
+ * (disco) são decompostos em um segmento horizontal por linha.
+ *
+ * Pixels fora da imagem seguem o BorderMode (CLAMP por padrão); as linhas já
+ * chegam estendidas, então os laços internos não testam limites.
+ * As faixas de linhas são processadas em paralelo pelo TileScheduler, com os
+ * arrays de trabalho do ScratchBuffers; erode e dilate aceitam o destino.
+ * Os laços sobre linhas inteiras ficam no PixelKernels (escalar ou vetorial).
+ */
+public class Morphology {
+
+    // Vagas do ScratchBuffers
+    private static final int PLANE = 0;
+    private static final int OUT = 1;
+    private static final int G = 2;
+    private static final int H = 3;
+    private static final int TMP = 4;
+    private static final int LINE = 5;
+    private static final int H_BLOCK = 6;
+    private static final int G_BLOCK = 7;
+
+    /**
+     * Até este comprimento a janela horizontal é calculada direto (k - 1 mínimos
+     * por pixel, todos independentes e vetorizáveis), em vez das varreduras
+     * sequenciais do van Herk/Gil-Werman.
+     */
+    static final int DIRECT_WINDOW = 7;
+
+    private static final PixelKernels KERNELS = PixelKernels.get();
+
+    /** Erosão: mínimo de cada banda sob o elemento estruturante. */
+    public static BufferedImage erode(BufferedImage image, StructuringElement se) {
+        return erode(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage erode(BufferedImage image, StructuringElement se, BorderMode mode) {
+        return apply(image, se, mode, false, null);
+    }
+
+    /** Erosão escrevendo em 'dst' (como em RasterAccess.destination), ou numa imagem nova se null. */
+    public static BufferedImage erode(BufferedImage image, StructuringElement se, BorderMode mode, BufferedImage dst) {
+        return apply(image, se, mode, false, dst);
+    }
+
+    /** Dilatação: máximo de cada banda sob o elemento estruturante. */
+    public static BufferedImage dilate(BufferedImage image, StructuringElement se) {
+        return dilate(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage dilate(BufferedImage image, StructuringElement se, BorderMode mode) {
+        return apply(image, se, mode, true, null);
+    }
+
+    /** Dilatação escrevendo em 'dst' (como em RasterAccess.destination), ou numa imagem nova se null. */
+    public static BufferedImage dilate(BufferedImage image, StructuringElement se, BorderMode mode, BufferedImage dst) {
+        return apply(image, se, mode, true, dst);
+    }
+
+    /** Abertura: erosão seguida de dilatação. Remove detalhes claros menores que o elemento. */
+    public static BufferedImage open(BufferedImage image, StructuringElement se) {
+        return open(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage open(BufferedImage image, StructuringElement se, BorderMode mode) {
+        if (image == null) return null;
+        return dilate(erode(image, se, mode), se.reflect(), mode);
+    }
+
+    /** Fechamento: dilatação seguida de erosão. Preenche detalhes escuros menores que o elemento. */
+    public static BufferedImage close(BufferedImage image, StructuringElement se) {
+        return close(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage close(BufferedImage image, StructuringElement se, BorderMode mode) {
+        if (image == null) return null;
+        return erode(dilate(image, se, mode), se.reflect(), mode);
+    }
+
+    /** Gradiente morfológico: dilatação menos erosão (realça contornos). */
+    public static BufferedImage gradient(BufferedImage image, StructuringElement se) {
+        return gradient(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage gradient(BufferedImage image, StructuringElement se, BorderMode mode) {
+        if (image == null) return null;
+        BufferedImage src = RasterAccess.toDirect(image);
+        return difference(dilate(src, se, mode), erode(src, se, mode), src);
+    }
+
+    /** Top-hat (branco): imagem menos a sua abertura. Isola detalhes claros pequenos. */
+    public static BufferedImage topHat(BufferedImage image, StructuringElement se) {
+        return topHat(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage topHat(BufferedImage image, StructuringElement se, BorderMode mode) {
+        if (image == null) return null;
+        // Com paleta, a subtração tem de ser entre cores, não entre índices
+        BufferedImage src = RasterAccess.toDirect(image);
+        return difference(src, open(src, se, mode), src);
+    }
+
+    /** Black-hat: fechamento menos a imagem. Isola detalhes escuros pequenos. */
+    public static BufferedImage blackHat(BufferedImage image, StructuringElement se) {
+        return blackHat(image, se, BorderMode.CLAMP);
+    }
+
+    public static BufferedImage blackHat(BufferedImage image, StructuringElement se, BorderMode mode) {
+        if (image == null) return null;
+        BufferedImage src = RasterAccess.toDirect(image);
+        return difference(close(src, se, mode), src, src);
+    }
+
+    private static BufferedImage apply(BufferedImage image, StructuringElement se, BorderMode mode, boolean max,
+                                       BufferedImage dst) {
+        if (image == null) return null;
+
+        BufferedImage src = RasterAccess.toDirect(image);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int bands = RasterAccess.numBands(src);
+        BufferedImage result = RasterAccess.destination(src, dst);
+
+        int padLeft = se.maxLeft();
+        int padRight = se.maxRight();
+        int paddedWidth = padLeft + width + padRight;
+
+        // A linha de saída y depende das linhas y - top .. y + bottom da origem
+        int halo = Math.max(se.top(), se.bottom());
+        TileScheduler.forEachBand(height, halo, (y0, y1) -> {
+            int first = y0 - se.top();
+            int last = y1 + se.bottom();
+            int planeLength = paddedWidth * (last - first);
+            int outLength = width * (y1 - y0);
+            int[] plane = ScratchBuffers.ints(PLANE, planeLength);
+            int[] out = ScratchBuffers.ints(OUT, outLength);
+
+            for (int band = 0; band < bands; band++) {
+                for (int y = first; y < last; y++) {
+                    RasterAccess.readPaddedRow(src, band, y, padLeft, padRight, mode, plane, (y - first) * paddedWidth);
+                }
+                // max(f) = ~min(~f): o complemento inverte a ordem, então só existe o motor de mínimo
+                if (max) KERNELS.invert(plane, planeLength);
+                erodeRows(plane, paddedWidth, padLeft, width, y1 - y0, se, out);
+                if (max) KERNELS.invert(out, outLength);
+                for (int y = y0; y < y1; y++) {
+                    RasterAccess.writeRow(result, band, 0, y, width, out, (y - y0) * width);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Subtração banda a banda (a - b, saturada em 0). A banda alfa, se existir,
+     * é copiada de 'alphaSource' para que a imagem não fique transparente.
+     * As três imagens já devem ter amostras diretas (RasterAccess.toDirect).
+     */
+    private static BufferedImage difference(BufferedImage a, BufferedImage b, BufferedImage alphaSource) {
+        BufferedImage result = RasterAccess.createCompatible(a);
+        int width = a.getWidth();
+        int height = a.getHeight();
+        int bands = RasterAccess.numBands(a);
+        int alphaBand = a.getColorModel().hasAlpha() ? bands - 1 : -1;
+
+        TileScheduler.forEachBand(height, 0, (y0, y1) -> {
+            int[] rowA = ScratchBuffers.ints(PLANE, width);
+            int[] rowB = ScratchBuffers.ints(OUT, width);
+            for (int band = 0; band < bands; band++) {
+                for (int y = y0; y < y1; y++) {
+                    if (band == alphaBand) {
+                        RasterAccess.readRow(alphaSource, band, 0, y, width, rowA, 0);
+                    } else {
+                        RasterAccess.readRow(a, band, 0, y, width, rowA, 0);
+                        RasterAccess.readRow(b, band, 0, y, width, rowB, 0);
+                        for (int x = 0; x < width; x++) {
+                            rowA[x] = Math.max(0, rowA[x] - rowB[x]);
+                        }
+                    }
+                    RasterAccess.writeRow(result, band, 0, y, width, rowA, 0);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Erosão de 'rows' linhas de saída. 'src' tem rows + top + bottom linhas estendidas
+     * pelo modo de borda, cada uma com 'padLeft' colunas extras à esquerda; a linha r
+     * de 'src' corresponde à linha de saída r - top.
+     */
+    static void erodeRows(int[] src, int paddedWidth, int padLeft, int width, int rows,
+                          StructuringElement se, int[] dst) {
+        int top = se.top();
+        int[] g = ScratchBuffers.ints(G, width + 2 * (se.getWidth() + 1));
+        int[] h = ScratchBuffers.ints(H, g.length);
+
+        switch (se.kind()) {
+            case StructuringElement.RECTANGLE: {
+                int k = se.left(0) + se.right(0) + 1;
+                int allRows = rows + se.getHeight() - 1;
+                int[] tmp = ScratchBuffers.ints(TMP, width * allRows);
+                for (int r = 0; r < allRows; r++) {
+                    lineMin(src, r * paddedWidth + padLeft - se.left(0), width, k, tmp, r * width, g, h);
+                }
+                verticalMin(tmp, 0, width, width, rows, se.getHeight(), dst);
+                break;
+            }
+            case StructuringElement.CROSS: {
+                int k = se.left(0) + se.right(0) + 1;
+                for (int r = 0; r < rows; r++) {
+                    lineMin(src, (r + top) * paddedWidth + padLeft - se.left(0), width, k, dst, r * width, g, h);
+                }
+                int[] tmp = ScratchBuffers.ints(TMP, width * rows);
+                verticalMin(src, padLeft, paddedWidth, width, rows, se.getHeight(), tmp);
+                KERNELS.min(dst, 0, tmp, 0, dst, 0, width * rows);
+                break;
+            }
+            default: {
+                // Uma linha do elemento por vez: custo proporcional à altura, não à área
+                int[] line = ScratchBuffers.ints(LINE, width);
+                for (int r = 0; r < rows; r++) {
+                    int out = r * width;
+                    for (int dy = -top; dy <= se.bottom(); dy++) {
+                        int k = se.left(dy) + se.right(dy) + 1;
+                        int in = (r + top + dy) * paddedWidth + padLeft - se.left(dy);
+                        if (dy == -top) {
+                            lineMin(src, in, width, k, dst, out, g, h);
+                        } else {
+                            lineMin(src, in, width, k, line, 0, g, h);
+                            KERNELS.min(dst, out, line, 0, dst, out, width);
+                        }
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Mínimo deslizante 1-D de van Herk/Gil-Werman:
+     * dst[i] = min(src[srcOff + i .. srcOff + i + k - 1]) para i em [0, n).
+     * A entrada já vem estendida pelo modo de borda (n + k - 1 posições válidas).
+     * 'g' e 'h' são buffers de trabalho com pelo menos n + 2k posições.
+     * Janelas de até DIRECT_WINDOW pixels não usam o algoritmo, e sim o mínimo direto.
+     */
+    static void lineMin(int[] src, int srcOff, int n, int k, int[] dst, int dstOff, int[] g, int[] h) {
+        if (k == 1) {
+            System.arraycopy(src, srcOff, dst, dstOff, n);
+            return;
+        }
+        if (k <= DIRECT_WINDOW) {
+            KERNELS.slidingMin(src, srcOff, n, k, dst, dstOff);
+            return;
+        }
+
+        // Entrada arredondada para múltiplo de k; o excesso nunca vence o mínimo
+        int length = n + k - 1;
+        int padded = ((length + k - 1) / k) * k;
+        System.arraycopy(src, srcOff, g, 0, length);
+        Arrays.fill(g, length, padded, Integer.MAX_VALUE);
+
+        // h: mínimo do ponto até o fim do bloco; g: mínimo do início do bloco até o ponto
+        for (int b = 0; b < padded; b += k) {
+            int end = b + k - 1;
+            h[end] = g[end];
+            for (int j = end - 1; j >= b; j--) {
+                h[j] = Math.min(g[j], h[j + 1]);
+            }
+            for (int j = b + 1; j <= end; j++) {
+                g[j] = Math.min(g[j - 1], g[j]);
+            }
+        }
+
+        // A janela [i, i + k - 1] cruza no máximo uma fronteira de bloco
+        KERNELS.min(h, 0, g, k - 1, dst, dstOff, n);
+    }
+
+    /**
+     * Mínimo deslizante vertical (van Herk/Gil-Werman aplicado a linhas inteiras):
+     * a linha de saída r é o mínimo das linhas r .. r + k - 1 da entrada, lidas a partir
+     * de srcOff com passo 'stride'. Percorre a entrada bloco a bloco mantendo só 2k
+     * linhas de trabalho, sempre acessando a memória em sequência.
+     */
+    static void verticalMin(int[] src, int srcOff, int stride, int width, int rows, int k, int[] dst) {
+        if (k == 1) {
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(src, srcOff + r * stride, dst, r * width, width);
+            }
+            return;
+        }
+
+        int[] hBlock = ScratchBuffers.ints(H_BLOCK, k * width);  // sufixos do bloco atual
+        int[] gBlock = ScratchBuffers.ints(G_BLOCK, k * width);  // prefixos do bloco seguinte
+
+        for (int base = 0; base < rows; base += k) {
+            // Sufixos das linhas [base, base + k)
+            System.arraycopy(src, srcOff + (base + k - 1) * stride, hBlock, (k - 1) * width, width);
+            for (int i = k - 2; i >= 0; i--) {
+                int off = i * width;
+                KERNELS.min(src, srcOff + (base + i) * stride, hBlock, off + width, hBlock, off, width);
+            }
+
+            // Prefixos das linhas seguintes, só até onde as saídas deste bloco precisam
+            int needed = Math.min(k - 1, rows - base - 1);
+            if (needed > 0) {
+                System.arraycopy(src, srcOff + (base + k) * stride, gBlock, 0, width);
+            }
+            for (int i = 1; i < needed; i++) {
+                int off = i * width;
+                KERNELS.min(gBlock, off - width, src, srcOff + (base + k + i) * stride, gBlock, off, width);
+            }
+
+            // Linha de saída base + i usa a janela [base + i, base + i + k - 1]
+            System.arraycopy(hBlock, 0, dst, base * width, width);
+            for (int i = 1; i <= needed; i++) {
+                KERNELS.min(hBlock, i * width, gBlock, (i - 1) * width, dst, (base + i) * width, width);
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+// Arquivo: OperationMetrics.java
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Contadores de desempenho por operação: quantas vezes rodou, tempo total e
+ * máximo, pixels processados (e daí megapixels por segundo), bytes alocados e,
+ * no afinamento, o número de iterações.
+ *
+ * As operações do ImageProcessor são medidas com measure; uma operação
+ * chamada de dentro de outra na mesma thread (applyBoxBlur chama
+ * applyConvolution) não é contada de novo, só a mais externa. As etapas do
+ * editor usam start/stop, que não entram nessa regra e aparecem com o próprio nome.
+ *
+ * Os bytes alocados são os da thread que chamou mais os das faixas que ela
+ * mandou rodar no ForkJoinPool do TileScheduler: cada faixa executada em outra
+ * thread mede a própria alocação e soma num contador da thread que chamou
+ * (bandAllocations). O que outras operações alocam ao mesmo tempo não entra.
+ *
+ * Cada operação é publicada por JMX como "pdi:type=OperationMetrics,name=...",
+ * com a interface OperationStatsMXBean; o MetricsReporter grava os mesmos
+ * números periodicamente. A propriedade "pdi.metrics=false" desliga tudo.
+ */
+public class OperationMetrics {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pdi.metrics"));
+
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+
+    /** Já existe uma operação medida por measure em andamento nesta thread? */
+    private static final ThreadLocal<boolean[]> ACTIVE = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    /** Bytes alocados em outras threads pelas faixas que esta thread mandou rodar. */
+    private static final ThreadLocal<LongAdder> BAND_BYTES = ThreadLocal.withInitial(LongAdder::new);
+
+    /** Sample de operações que não são contadas (aninhadas ou com as métricas desligadas). */
+    private static final Sample IGNORED = new Sample(null, 0, false);
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        if (!threads.isThreadAllocatedMemoryEnabled()) threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /** Uma operação medida; o Sample recebe as iterações, se houver. */
+    public interface Operation {
+        BufferedImage run(Sample sample);
+    }
+
+    /** Uma execução concluída. Bytes alocados é -1 quando a JVM não sabe medir. */
+    public static final class Record {
+        private final String operation;
+        private final long nanos;
+        private final long pixels;
+        private final long allocatedBytes;
+        private final int iterations;
+
+        Record(String operation, long nanos, long pixels, long allocatedBytes, int iterations) {
+            this.operation = operation;
+            this.nanos = nanos;
+            this.pixels = pixels;
+            this.allocatedBytes = allocatedBytes;
+            this.iterations = iterations;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getPixels() {
+            return pixels;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /** Iterações do afinamento (0 nas outras operações). */
+        public int getIterations() {
+            return iterations;
+        }
+
+        public double getMegapixelsPerSecond() {
+            return megapixelsPerSecond(pixels, nanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format(Locale.ROOT, "%s: %.1f ms, %.2f MP, %.1f MP/s",
+                    operation, nanos / 1e6, pixels / 1e6, getMegapixelsPerSecond()));
+            if (allocatedBytes >= 0) {
+                s.append(String.format(Locale.ROOT, ", %.1f MB alocados", allocatedBytes / 1048576.0));
+            }
+            if (iterations > 0) s.append(", ").append(iterations).append(" iterações");
+            return s.toString();
+        }
+    }
+
+    /** Uma medição em andamento (start ... stop). */
+    public static final class Sample {
+        private final String operation;
+        private final long pixels;
+        private final long allocatedBefore;
+        private final long start;
+        private int iterations;
+
+        private Sample(String operation, long pixels, boolean measured) {
+            this.operation = operation;
+            this.pixels = pixels;
+            this.allocatedBefore = measured ? allocatedByCurrentThread() : -1;
+            this.start = System.nanoTime();
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+
+        /**
+         * Termina a medição e soma nos contadores da operação.
+         * @return a execução medida, ou null com as métricas desligadas
+         */
+        public Record stop() {
+            if (operation == null) return null;
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedSince(allocatedBefore);
+            Record record = new Record(operation, nanos, pixels, allocated, iterations);
+            stats(operation).add(record);
+            return record;
+        }
+
+        /**
+         * Como stop(), para operações cujo nome e tamanho só se sabem no fim
+         * (a carga de um arquivo: de onde a imagem veio e quantos pixels tem).
+         */
+        public Record stop(String operation, BufferedImage result) {
+            if (this.operation == null) return null;
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedSince(allocatedBefore);
+            long pixels = result == null ? 0 : (long) result.getWidth() * result.getHeight();
+            Record record = new Record(operation, nanos, pixels, allocated, iterations);
+            stats(operation).add(record);
+            return record;
+        }
+    }
+
+    /** Começa a medir 'operation' sobre 'input' (os pixels contados são os da entrada). */
+    public static Sample start(String operation, BufferedImage input) {
+        if (!ENABLED) return IGNORED;
+        return new Sample(operation, input == null ? 0 : (long) input.getWidth() * input.getHeight(), true);
+    }
+
+    /**
+     * Executa e mede 'op', a menos que já esteja dentro de outra operação medida
+     * nesta thread (aí só executa). Se 'op' lançar uma exceção, nada é contado.
+     */
+    public static BufferedImage measure(String operation, BufferedImage input, Operation op) {
+        boolean[] active = ACTIVE.get();
+        if (!ENABLED || active[0]) return op.run(IGNORED);
+        active[0] = true;
+        try {
+            Sample sample = start(operation, input);
+            BufferedImage result = op.run(sample);
+            sample.stop();
+            return result;
+        } finally {
+            active[0] = false;
+        }
+    }
+
+    /**
+     * Bytes alocados até agora por esta thread, mais os das faixas que ela
+     * mandou rodar em outras; -1 se a JVM não sabe medir.
+     */
+    static long allocatedByCurrentThread() {
+        if (THREADS == null) return -1;
+        return THREADS.getCurrentThreadAllocatedBytes() + BAND_BYTES.get().sum();
+    }
+
+    /**
+     * Contador em que as faixas que esta thread manda rodar em outras somam o
+     * que alocaram (ver TileScheduler.forEachBand), ou null se não há medição.
+     */
+    static LongAdder bandAllocations() {
+        return ENABLED && THREADS != null ? BAND_BYTES.get() : null;
+    }
+
+    /** Bytes alocados desde 'before' (de allocatedByCurrentThread), ou -1 sem medição. */
+    private static long allocatedSince(long before) {
+        if (before < 0) return -1;
+        return Math.max(0, allocatedByCurrentThread() - before);
+    }
+
+    static double megapixelsPerSecond(long pixels, long nanos) {
+        return nanos <= 0 ? 0 : pixels / 1e6 / (nanos / 1e9);
+    }
+
+    /** Os contadores de 'operation', criados (e publicados por JMX) no primeiro uso. */
+    public static Stats stats(String operation) {
+        return STATS.computeIfAbsent(operation, name -> {
+            Stats stats = new Stats(name);
+            register(stats);
+            return stats;
+        });
+    }
+
+    /** Todas as operações medidas até agora, em ordem alfabética. */
+    public static List<Stats> all() {
+        List<Stats> list = new ArrayList<>(STATS.values());
+        list.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return list;
+    }
+
+    private static void register(Stats stats) {
+        try {
+            ObjectName name = new ObjectName("pdi:type=OperationMetrics,name=" + ObjectName.quote(stats.getOperation()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+        } catch (JMException | SecurityException e) {
+            System.err.println("Métricas de " + stats.getOperation() + " fora do JMX: " + e);
+        }
+    }
+
+    /** Contadores acumulados de uma operação. */
+    public static final class Stats implements OperationStatsMXBean {
+        private final String operation;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long pixels;
+        private long allocatedBytes;
+        private long iterations;
+        private Record last;
+
+        Stats(String operation) {
+            this.operation = operation;
+        }
+
+        synchronized void add(Record record) {
+            count++;
+            totalNanos += record.nanos;
+            maxNanos = Math.max(maxNanos, record.nanos);
+            pixels += record.pixels;
+            if (record.allocatedBytes > 0) allocatedBytes += record.allocatedBytes;
+            iterations += record.iterations;
+            last = record;
+        }
+
+        @Override
+        public String getOperation() {
+            return operation;
+        }
+
+        @Override
+        public synchronized long getCount() {
+            return count;
+        }
+
+        @Override
+        public synchronized double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        @Override
+        public synchronized double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        @Override
+        public synchronized double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        @Override
+        public synchronized double getLastMillis() {
+            return last == null ? 0 : last.nanos / 1e6;
+        }
+
+        @Override
+        public synchronized long getPixels() {
+            return pixels;
+        }
+
+        @Override
+        public synchronized double getMegapixelsPerSecond() {
+            return megapixelsPerSecond(pixels, totalNanos);
+        }
+
+        @Override
+        public synchronized long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public synchronized long getLastAllocatedBytes() {
+            return last == null ? 0 : last.allocatedBytes;
+        }
+
+        @Override
+        public synchronized long getThinningIterations() {
+            return iterations;
+        }
+
+        public synchronized Record getLast() {
+            return last;
+        }
+
+        @Override
+        public synchronized void reset() {
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            pixels = 0;
+            allocatedBytes = 0;
+            iterations = 0;
+            last = null;
+        }
+    }
+}
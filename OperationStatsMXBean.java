@@ -0,0 +1,33 @@
+// Arquivo: OperationStatsMXBean.java
+
+/**
+ * Contadores de uma operação publicados por JMX (ver OperationMetrics).
+ * Tempos em milissegundos; a vazão é o total de pixels pelo tempo total.
+ */
+public interface OperationStatsMXBean {
+
+    String getOperation();
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getLastMillis();
+
+    long getPixels();
+
+    double getMegapixelsPerSecond();
+
+    long getAllocatedBytes();
+
+    long getLastAllocatedBytes();
+
+    long getThinningIterations();
+
+    /** Zera os contadores. */
+    void reset();
+}
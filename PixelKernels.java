@@ -0,0 +1,128 @@
+// Arquivo: PixelKernels.java
+
+/**
+ * Laços internos de linha usados pela convolução, pela morfologia e pelas
+ * operações de cor do editor. Esta classe é a versão escalar e a referência:
+ * a VectorKernels (em simd/, com o jdk.incubator.vector) sobrescreve os mesmos
+ * métodos processando várias amostras por instrução e tem de dar exatamente o
+ * mesmo resultado, bit a bit.
+ *
+ * A implementação é escolhida uma vez, na carga da classe: a vetorial se ela
+ * foi compilada e a JVM roda com "--add-modules jdk.incubator.vector";
+ * senão, esta. A propriedade "pdi.simd=false" força a escalar.
+ */
+public class PixelKernels {
+
+    private static final PixelKernels INSTANCE = load();
+
+    private static PixelKernels load() {
+        if ("false".equals(System.getProperty("pdi.simd"))) return new PixelKernels();
+        try {
+            return (PixelKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            // Classe não compilada, módulo ausente ou vetores curtos demais para compensar
+            return new PixelKernels();
+        }
+    }
+
+    /** A implementação em uso. */
+    public static PixelKernels get() {
+        return INSTANCE;
+    }
+
+    /** Versão escalar, para comparar com a em uso. */
+    static PixelKernels scalar() {
+        return new PixelKernels();
+    }
+
+    /** Nome da implementação (aparece no benchmark). */
+    public String name() {
+        return "escalar";
+    }
+
+    /** acc[accOff + i] += w * src[srcOff + i], multiplicação e soma float separadas (sem FMA). */
+    public void accumulate(float w, int[] src, int srcOff, float[] acc, int accOff, int n) {
+        for (int i = 0; i < n; i++) {
+            acc[accOff + i] += w * src[srcOff + i];
+        }
+    }
+
+    /** acc[i] += w * src[srcOff + i] para i em [0, n). */
+    public void accumulate(float w, float[] src, int srcOff, float[] acc, int n) {
+        for (int i = 0; i < n; i++) {
+            acc[i] += w * src[srcOff + i];
+        }
+    }
+
+    /** out[i] = acc[i] arredondado e saturado em [0, maxValue]. */
+    public void toSamples(float[] acc, int n, int maxValue, int[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = toSample(acc[i], maxValue);
+        }
+    }
+
+    /** out[i] = sums[i] * weight, arredondado e saturado em [0, maxValue]. */
+    public void scaleToSamples(int[] sums, float weight, int n, int maxValue, int[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = toSample(sums[i] * weight, maxValue);
+        }
+    }
+
+    /** sums[i] += src[add + i] - src[sub + i] (janela corrida de somas). */
+    public void slide(int[] sums, int[] src, int add, int sub, int n) {
+        for (int i = 0; i < n; i++) {
+            sums[i] += src[add + i] - src[sub + i];
+        }
+    }
+
+    /** dst[dstOff + i] = min(a[aOff + i], b[bOff + i]); 'dst' pode ser 'a' ou 'b'. */
+    public void min(int[] a, int aOff, int[] b, int bOff, int[] dst, int dstOff, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[dstOff + i] = Math.min(a[aOff + i], b[bOff + i]);
+        }
+    }
+
+    /**
+     * Mínimo deslizante direto, para janelas curtas:
+     * dst[dstOff + i] = min(src[srcOff + i .. srcOff + i + k - 1]).
+     */
+    public void slidingMin(int[] src, int srcOff, int n, int k, int[] dst, int dstOff) {
+        System.arraycopy(src, srcOff, dst, dstOff, n);
+        for (int j = 1; j < k; j++) {
+            min(dst, dstOff, src, srcOff + j, dst, dstOff, n);
+        }
+    }
+
+    /** values[i] = ~values[i] (complemento, que inverte a ordem). */
+    public void invert(int[] values, int n) {
+        for (int i = 0; i < n; i++) {
+            values[i] = ~values[i];
+        }
+    }
+
+    /**
+     * Contraste e brilho em pixels ARGB: cada canal vira
+     * (int) (c * factor + brightness) saturado em [0, 255]; o alfa é mantido.
+     */
+    public void rescaleArgb(int[] src, int srcOff, int[] dst, int dstOff, int n, float factor, int brightness) {
+        for (int i = 0; i < n; i++) {
+            int argb = src[srcOff + i];
+            int r = rescale((argb >> 16) & 0xFF, factor, brightness);
+            int g = rescale((argb >> 8) & 0xFF, factor, brightness);
+            int b = rescale(argb & 0xFF, factor, brightness);
+            dst[dstOff + i] = (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    static int rescale(int c, float factor, int brightness) {
+        int t = (int) (c * factor + brightness);
+        return t < 0 ? 0 : (t > 255 ? 255 : t);
+    }
+
+    /** Arredonda e satura no intervalo da banda. */
+    static int toSample(float value, int maxValue) {
+        if (value <= 0f) return 0;
+        if (value >= maxValue) return maxValue;
+        return (int) (value + 0.5f);
+    }
+}
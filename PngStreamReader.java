@@ -0,0 +1,341 @@
+// Arquivo: PngStreamReader.java
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Leitor de PNG linha a linha: descomprime os chunks IDAT sob demanda e
+ * entrega as linhas em faixas (readRows), sem nunca ter a imagem inteira na memória.
+ *
+ * As faixas vêm no tipo usado pela MappedImage: cinza em TYPE_BYTE_GRAY,
+ * RGB em TYPE_3BYTE_BGR e qualquer coisa com alfa (cinza+alfa, RGBA ou paleta
+ * com tRNS) em TYPE_4BYTE_ABGR. Paletas são expandidas, profundidades menores
+ * que 8 bits são desempacotadas e as de 16 bits ficam só com o byte mais
+ * significativo. O tRNS de cinza e RGB (uma cor transparente) é ignorado.
+ *
+ * As cores são as que o ImageIO daria ao mesmo arquivo: cinza de 1, 2 ou 4
+ * bits vira RGB (o ImageIO o lê como uma paleta de tons de cinza), e o cinza
+ * de cinza+alfa passa por RasterAccess.GRAY_TO_SRGB (o ImageIO o lê no espaço
+ * cinza linear do Java, o mesmo do TYPE_BYTE_GRAY).
+ *
+ * PNG entrelaçado (Adam7) não pode ser lido em ordem de linhas e é recusado.
+ */
+public class PngStreamReader implements AutoCloseable {
+
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+
+    private final DataInputStream file;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int colorType;
+    private final int bands;
+    private byte[] palette;
+    private byte[] paletteAlpha;
+
+    /** Bytes que ainda faltam ler do IDAT atual (-1 depois do último). */
+    private int pendingData;
+    private DataInputStream pixels;
+    private byte[] previous;
+    private byte[] current;
+    private final int bytesPerPixel;
+    private int nextRow;
+
+    public PngStreamReader(File input) throws IOException {
+        this(new FileInputStream(input));
+    }
+
+    public PngStreamReader(InputStream input) throws IOException {
+        file = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        try {
+            if (file.readLong() != SIGNATURE) {
+                throw new IOException("Não é um arquivo PNG");
+            }
+            int length = file.readInt();
+            if (file.readInt() != chunkType("IHDR") || length != 13) {
+                throw new IOException("PNG sem IHDR");
+            }
+            width = file.readInt();
+            height = file.readInt();
+            bitDepth = file.readUnsignedByte();
+            colorType = file.readUnsignedByte();
+            int compression = file.readUnsignedByte();
+            int filter = file.readUnsignedByte();
+            int interlace = file.readUnsignedByte();
+            file.readInt(); // CRC
+            if (width < 1 || height < 1 || compression != 0 || filter != 0) {
+                throw new IOException("IHDR inválido");
+            }
+            if (interlace != 0) {
+                throw new IOException("PNG entrelaçado não pode ser lido em faixas");
+            }
+            int channels = channels(colorType);
+            if (channels < 0 || (bitDepth != 8 && bitDepth != 16 && (channels != 1 || bitDepth > 8))) {
+                throw new IOException("Combinação de cor não suportada: tipo " + colorType + ", " + bitDepth + " bits");
+            }
+            int bitsPerPixel = channels * bitDepth;
+            bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+            int rowBytes = (int) (((long) width * bitsPerPixel + 7) / 8);
+            previous = new byte[rowBytes];
+            current = new byte[rowBytes];
+
+            readUntilImageData();
+            bands = bandsFor(colorType, bitDepth, paletteAlpha != null);
+            pixels = new DataInputStream(new InflaterInputStream(new ImageDataStream(), new Inflater(), 1 << 16));
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static int chunkType(String name) {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    private static int channels(int colorType) {
+        switch (colorType) {
+            case 0:
+            case 3:
+                return 1;
+            case 2:
+                return 3;
+            case 4:
+                return 2;
+            case 6:
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    private static int bandsFor(int colorType, int bitDepth, boolean paletteAlpha) {
+        switch (colorType) {
+            case 0:
+                return bitDepth < 8 ? 3 : 1;
+            case 2:
+                return 3;
+            case 3:
+                return paletteAlpha ? 4 : 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Lê os chunks até o primeiro IDAT, guardando PLTE e tRNS. Os demais
+     * (texto, gama, perfil de cor...) não mudam as amostras e são ignorados.
+     */
+    private void readUntilImageData() throws IOException {
+        while (true) {
+            int length = file.readInt();
+            int type = file.readInt();
+            if (type == chunkType("IDAT")) {
+                pendingData = length;
+                return;
+            }
+            if (type == chunkType("IEND")) {
+                throw new IOException("PNG sem dados de imagem");
+            }
+            byte[] data = new byte[length];
+            file.readFully(data);
+            file.readInt(); // CRC
+            if (type == chunkType("PLTE")) {
+                palette = data;
+            } else if (type == chunkType("tRNS") && colorType == 3) {
+                paletteAlpha = data;
+            }
+        }
+    }
+
+    /** Os dados de todos os IDAT seguidos, como um único fluxo zlib. */
+    private class ImageDataStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (pendingData == 0) {
+                file.readInt(); // CRC do IDAT anterior
+                int length = file.readInt();
+                int type = file.readInt();
+                if (type != chunkType("IDAT")) {
+                    pendingData = -1;
+                    break;
+                }
+                pendingData = length;
+            }
+            if (pendingData < 0) return -1;
+            int n = file.read(b, off, Math.min(len, pendingData));
+            if (n < 0) throw new EOFException("PNG truncado");
+            pendingData -= n;
+            return n;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Bandas das faixas entregues: 1 (cinza), 3 (RGB) ou 4 (RGBA). */
+    public int getBands() {
+        return bands;
+    }
+
+    /** Linhas já entregues. */
+    public int getRowsRead() {
+        return nextRow;
+    }
+
+    /**
+     * As próximas até 'count' linhas, numa imagem com a largura do PNG,
+     * ou null quando todas já foram lidas.
+     */
+    public BufferedImage readRows(int count) throws IOException {
+        int rows = Math.min(count, height - nextRow);
+        if (rows <= 0) return null;
+        BufferedImage strip = new BufferedImage(width, rows, MappedImage.bufferedImageType(bands));
+        int[][] samples = new int[bands][width];
+        for (int y = 0; y < rows; y++) {
+            readScanline();
+            expand(samples);
+            for (int band = 0; band < bands; band++) {
+                RasterAccess.writeRow(strip, band, 0, y, width, samples[band], 0);
+            }
+        }
+        return strip;
+    }
+
+    /** Lê e desfaz o filtro da próxima linha, em 'current'. */
+    private void readScanline() throws IOException {
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        int filter = pixels.readUnsignedByte();
+        pixels.readFully(current);
+        unfilter(filter, current, previous, bytesPerPixel);
+        nextRow++;
+    }
+
+    static void unfilter(int filter, byte[] row, byte[] prior, int bpp) throws IOException {
+        int n = row.length;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bpp; i < n; i++) {
+                    row[i] += row[i - bpp];
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) {
+                    row[i] += prior[i];
+                }
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    row[i] += (byte) ((left + (prior[i] & 0xFF)) >>> 1);
+                }
+                break;
+            case 4:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    int b = prior[i] & 0xFF;
+                    int c = i >= bpp ? prior[i - bpp] & 0xFF : 0;
+                    row[i] += (byte) paeth(a, b, c);
+                }
+                break;
+            default:
+                throw new IOException("Filtro de linha PNG inválido: " + filter);
+        }
+    }
+
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    /** Converte a linha em 'current' para amostras de 8 bits por banda. */
+    private void expand(int[][] samples) throws IOException {
+        int step = bitDepth == 16 ? 2 : 1;
+        switch (colorType) {
+            case 0:
+                if (bitDepth < 8) {
+                    int scale = 255 / ((1 << bitDepth) - 1);
+                    for (int x = 0; x < width; x++) {
+                        int gray = packed(x) * scale;
+                        samples[0][x] = gray;
+                        samples[1][x] = gray;
+                        samples[2][x] = gray;
+                    }
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        samples[0][x] = current[x * step] & 0xFF;
+                    }
+                }
+                break;
+            case 3:
+                for (int x = 0; x < width; x++) {
+                    int index = bitDepth < 8 ? packed(x) : current[x] & 0xFF;
+                    if (palette == null || 3 * index + 2 >= palette.length) {
+                        throw new IOException("Índice fora da paleta: " + index);
+                    }
+                    samples[0][x] = palette[3 * index] & 0xFF;
+                    samples[1][x] = palette[3 * index + 1] & 0xFF;
+                    samples[2][x] = palette[3 * index + 2] & 0xFF;
+                    if (bands == 4) {
+                        samples[3][x] = index < paletteAlpha.length ? paletteAlpha[index] & 0xFF : 255;
+                    }
+                }
+                break;
+            case 4:
+                for (int x = 0; x < width; x++) {
+                    int gray = RasterAccess.GRAY_TO_SRGB[current[2 * x * step] & 0xFF];
+                    samples[0][x] = gray;
+                    samples[1][x] = gray;
+                    samples[2][x] = gray;
+                    samples[3][x] = current[(2 * x + 1) * step] & 0xFF;
+                }
+                break;
+            default:
+                int channels = channels(colorType);
+                for (int band = 0; band < channels; band++) {
+                    int[] dst = samples[band];
+                    for (int x = 0, i = band * step; x < width; x++, i += channels * step) {
+                        dst[x] = current[i] & 0xFF;
+                    }
+                }
+                break;
+        }
+    }
+
+    /** Amostra x de uma linha com menos de 8 bits por pixel (o bit mais alto vem primeiro). */
+    private int packed(int x) {
+        int bit = x * bitDepth;
+        int shift = 8 - bitDepth - (bit & 7);
+        return ((current[bit >>> 3] & 0xFF) >>> shift) & ((1 << bitDepth) - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,418 @@
+// Arquivo: PngStreamWriter.java
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Escritor de PNG linha a linha: cada faixa recebida (writeRows) é filtrada,
+ * comprimida e gravada em chunks IDAT na hora, então só algumas linhas e o
+ * buffer do compressor ficam na memória.
+ *
+ * Grava 8 bits por amostra: cinza (1 banda), RGB (3) ou RGBA (4). O nível do
+ * deflate e o filtro de linha vêm do ExportOptions; no filtro adaptativo, o de
+ * cada linha é o de menor soma dos valores absolutos dos bytes filtrados, a
+ * mesma heurística da libpng.
+ *
+ * Com a compressão paralela, as linhas são agrupadas em segmentos de cerca de
+ * SEGMENT_BYTES, filtrados e comprimidos em tarefas do TileScheduler e gravados
+ * em ordem, como no pigz: cada segmento é um trecho deflate terminado com
+ * SYNC_FLUSH (o último com FINISH), usando os últimos 32 KB filtrados do
+ * segmento anterior como dicionário, e o Adler-32 do zlib é combinado a partir
+ * dos de cada segmento. O arquivo é um PNG comum e quase do mesmo tamanho.
+ */
+public class PngStreamWriter extends InterleavedRowWriter {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Bytes (sem filtro) de cada segmento comprimido em paralelo. */
+    private static final int SEGMENT_BYTES = 1 << 20;
+    /** Janela do deflate: o dicionário que um segmento herda do anterior. */
+    private static final int WINDOW = 1 << 15;
+
+    private final DataOutputStream file;
+    private final int level;
+    /** Tipo de filtro fixo, ou -1 no adaptativo. */
+    private final int fixedFilter;
+    private final int rowBytes;
+
+    private byte[] previous;
+    private byte[] current;
+    private final byte[][] candidates = new byte[5][];
+    private boolean closed;
+
+    // Compressão serial
+    private Deflater deflater;
+    private DeflaterOutputStream compressed;
+
+    // Compressão paralela
+    private final boolean parallel;
+    private DataChunk idat;
+    private final ArrayDeque<Future<Segment>> pending = new ArrayDeque<>();
+    private int segmentRows;
+    /** Linhas anteriores a cada segmento necessárias para refazer o dicionário. */
+    private int contextRows;
+    private byte[] segment;
+    private int segmentContext;
+    private int segmentFilled;
+    private long adler = 1;
+
+    public PngStreamWriter(File output, int width, int height, int bands) throws IOException {
+        this(output, width, height, bands, new ExportOptions());
+    }
+
+    public PngStreamWriter(File output, int width, int height, int bands, ExportOptions options) throws IOException {
+        this(new FileOutputStream(output), width, height, bands, options);
+    }
+
+    public PngStreamWriter(OutputStream output, int width, int height, int bands) throws IOException {
+        this(output, width, height, bands, new ExportOptions());
+    }
+
+    public PngStreamWriter(OutputStream output, int width, int height, int bands, ExportOptions options)
+            throws IOException {
+        super(width, height, bands, false);
+        this.file = new DataOutputStream(new BufferedOutputStream(output, CHUNK_SIZE));
+        this.level = options.getCompressionLevel();
+        this.fixedFilter = options.getPngFilter().code();
+        this.rowBytes = width * bands;
+        previous = new byte[rowBytes];
+        current = new byte[rowBytes];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = new byte[rowBytes];
+        }
+        parallel = options.isParallelDeflate() && TileScheduler.getParallelism() > 1
+                && (long) rowBytes * height > 2L * SEGMENT_BYTES;
+
+        try {
+            file.write(SIGNATURE);
+            DataChunk header = new DataChunk("IHDR");
+            DataOutputStream ihdr = new DataOutputStream(header);
+            ihdr.writeInt(width);
+            ihdr.writeInt(height);
+            ihdr.writeByte(8);
+            ihdr.writeByte(bands == 1 ? 0 : bands == 3 ? 2 : 6);
+            ihdr.writeByte(0); // compressão deflate
+            ihdr.writeByte(0); // filtros adaptativos
+            ihdr.writeByte(0); // sem entrelaçamento
+            header.close();
+            if (parallel) {
+                idat = new DataChunk("IDAT");
+                writeZlibHeader(idat, level);
+                segmentRows = Math.max(1, SEGMENT_BYTES / rowBytes);
+                contextRows = (WINDOW + rowBytes) / (rowBytes + 1) + 1;
+                startSegment(null, 0);
+            } else {
+                deflater = new Deflater(level);
+                compressed = new DeflaterOutputStream(new DataChunk("IDAT"), deflater, CHUNK_SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected byte[] rowBuffer() {
+        return current;
+    }
+
+    /** Filtra a linha e manda para o compressor, ou para o segmento atual. */
+    @Override
+    protected void writeRow(byte[] row) throws IOException {
+        if (parallel) {
+            System.arraycopy(row, 0, segment, (segmentContext + segmentFilled) * rowBytes, rowBytes);
+            segmentFilled++;
+            boolean last = rowsWritten == height - 1;
+            if (segmentFilled == segmentRows || last) submitSegment(last);
+            return;
+        }
+        int best = chooseFilter(row, 0, previous, 0, candidates, bands, fixedFilter);
+        compressed.write(best);
+        compressed.write(candidates[best]);
+
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    /**
+     * Filtra a linha que começa em row[rowOff] (a anterior em prior[priorOff])
+     * em candidates[f] e devolve f: o filtro fixo, ou o melhor dos cinco.
+     */
+    static int chooseFilter(byte[] row, int rowOff, byte[] prior, int priorOff, byte[][] candidates,
+                            int bpp, int fixedFilter) {
+        int length = candidates[0].length;
+        if (fixedFilter >= 0) {
+            filter(fixedFilter, row, rowOff, prior, priorOff, candidates[fixedFilter], length, bpp);
+            return fixedFilter;
+        }
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int filter = 0; filter < candidates.length; filter++) {
+            long sum = filter(filter, row, rowOff, prior, priorOff, candidates[filter], length, bpp);
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = filter;
+            }
+        }
+        return best;
+    }
+
+    /** Aplica o filtro de linha 'filter' em dst e devolve a soma dos bytes como valores com sinal. */
+    static long filter(int filter, byte[] row, int rowOff, byte[] prior, int priorOff,
+                       byte[] dst, int length, int bpp) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            int x = row[rowOff + i] & 0xFF;
+            int a = i >= bpp ? row[rowOff + i - bpp] & 0xFF : 0;
+            int b = prior[priorOff + i] & 0xFF;
+            int c = i >= bpp ? prior[priorOff + i - bpp] & 0xFF : 0;
+            int predictor;
+            switch (filter) {
+                case 1:
+                    predictor = a;
+                    break;
+                case 2:
+                    predictor = b;
+                    break;
+                case 3:
+                    predictor = (a + b) >>> 1;
+                    break;
+                case 4:
+                    predictor = PngStreamReader.paeth(a, b, c);
+                    break;
+                default:
+                    predictor = 0;
+                    break;
+            }
+            byte value = (byte) (x - predictor);
+            dst[i] = value;
+            sum += Math.abs(value);
+        }
+        return sum;
+    }
+
+    // --- Compressão paralela ---
+
+    /** Um segmento comprimido: o trecho deflate, o Adler-32 e o tamanho dos dados filtrados. */
+    private static class Segment {
+        byte[] data;
+        long adler;
+        long length;
+    }
+
+    /** Começa um segmento novo, com as últimas linhas do anterior como contexto. */
+    private void startSegment(byte[] before, int beforeRows) {
+        int context = Math.min(contextRows, beforeRows);
+        segment = new byte[(context + segmentRows) * rowBytes];
+        if (context > 0) {
+            System.arraycopy(before, (beforeRows - context) * rowBytes, segment, 0, context * rowBytes);
+        }
+        segmentContext = context;
+        segmentFilled = 0;
+    }
+
+    private void submitSegment(boolean last) throws IOException {
+        byte[] rows = segment;
+        int context = segmentContext;
+        int count = segmentFilled;
+        pending.add(TileScheduler.submit(() -> compressSegment(rows, context, count, last)));
+        if (!last) startSegment(rows, context + count);
+        // Limita a memória: no máximo duas tarefas por thread esperando para ser gravadas
+        while (pending.size() > 2 * TileScheduler.getParallelism()) {
+            writeSegment(pending.poll());
+        }
+    }
+
+    /**
+     * Filtra as linhas [context, context + count) de 'rows' e as comprime.
+     * As linhas de contexto (as últimas do segmento anterior) são filtradas de
+     * novo só para reconstruir o dicionário, que sai idêntico porque o filtro
+     * de cada linha só depende dela e da anterior.
+     */
+    private Segment compressSegment(byte[] rows, int context, int count, boolean last) {
+        byte[][] work = new byte[5][rowBytes];
+        byte[] zeros = new byte[rowBytes];
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream((context + count) * (rowBytes + 1));
+        int dictionaryRows = Math.max(0, context - 1);
+        for (int r = context - dictionaryRows; r < context + count; r++) {
+            // Sem contexto, a primeira linha do segmento é a primeira da imagem
+            int best = r > 0
+                    ? chooseFilter(rows, r * rowBytes, rows, (r - 1) * rowBytes, work, bands, fixedFilter)
+                    : chooseFilter(rows, 0, zeros, 0, work, bands, fixedFilter);
+            filtered.write(best);
+            filtered.write(work[best], 0, rowBytes);
+        }
+        byte[] data = filtered.toByteArray();
+        int dictionaryBytes = dictionaryRows * (rowBytes + 1);
+        int length = data.length - dictionaryBytes;
+
+        Deflater segmentDeflater = new Deflater(level, true);
+        try {
+            if (dictionaryBytes > 0) {
+                int size = Math.min(WINDOW, dictionaryBytes);
+                segmentDeflater.setDictionary(data, dictionaryBytes - size, size);
+            }
+            segmentDeflater.setInput(data, dictionaryBytes, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[CHUNK_SIZE];
+            if (last) {
+                segmentDeflater.finish();
+                while (!segmentDeflater.finished()) {
+                    out.write(buffer, 0, segmentDeflater.deflate(buffer));
+                }
+            } else {
+                // SYNC_FLUSH termina no limite de um byte, então os trechos podem ser concatenados
+                int n;
+                do {
+                    n = segmentDeflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            Adler32 checksum = new Adler32();
+            checksum.update(data, dictionaryBytes, length);
+
+            Segment result = new Segment();
+            result.data = out.toByteArray();
+            result.adler = checksum.getValue();
+            result.length = length;
+            return result;
+        } finally {
+            segmentDeflater.end();
+        }
+    }
+
+    private void writeSegment(Future<Segment> future) throws IOException {
+        Segment done;
+        try {
+            done = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Gravação do PNG interrompida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+        idat.write(done.data, 0, done.data.length);
+        adler = combineAdler(adler, done.adler, done.length);
+    }
+
+    /** Cabeçalho zlib (deflate, janela de 32 KB) com o nível indicado em FLEVEL. */
+    private static void writeZlibHeader(OutputStream out, int level) throws IOException {
+        int flevel = level == Deflater.DEFAULT_COMPRESSION ? 2 : level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int cmf = 0x78;
+        int flg = flevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        out.write(cmf);
+        out.write(flg);
+    }
+
+    /** Adler-32 da concatenação, a partir dos de cada parte (adler32_combine do zlib). */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= base << 1) sum2 -= base << 1;
+        if (sum2 >= base) sum2 -= base;
+        return (sum2 << 16) | sum1;
+    }
+
+    /** Termina o fluxo comprimido e grava o IEND; exige que todas as linhas tenham sido gravadas. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            checkComplete();
+            if (parallel) {
+                while (!pending.isEmpty()) {
+                    writeSegment(pending.poll());
+                }
+                DataOutputStream trailer = new DataOutputStream(idat);
+                trailer.writeInt((int) adler);
+                idat.close();
+            } else {
+                compressed.close();
+            }
+            new DataChunk("IEND").close();
+            file.flush();
+        } finally {
+            for (Future<Segment> f : pending) {
+                f.cancel(false);
+            }
+            if (deflater != null) deflater.end();
+            file.close();
+        }
+    }
+
+    /**
+     * Acumula bytes e os grava como chunks do tipo dado, com no máximo
+     * CHUNK_SIZE bytes cada; close grava o que sobrou (um chunk vazio, se nada foi escrito).
+     */
+    private class DataChunk extends OutputStream {
+        private final byte[] type;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean written;
+
+        DataChunk(String type) {
+            this.type = type.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) flushChunk();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) flushChunk();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(buffer, 0, count);
+            file.writeInt(count);
+            file.write(type);
+            file.write(buffer, 0, count);
+            file.writeInt((int) crc.getValue());
+            count = 0;
+            written = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (count > 0 || !written) flushChunk();
+        }
+    }
+}
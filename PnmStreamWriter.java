@@ -0,0 +1,67 @@
+// Arquivo: PnmStreamWriter.java
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escritor de PNM binário, sem compressão: PGM (P5) para cinza, PPM (P6)
+ * para RGB e PAM (P7, RGB_ALPHA) quando há alfa, que o PPM não tem. O arquivo
+ * é só um cabeçalho de texto seguido das amostras de 8 bits, então gravar
+ * custa pouco mais que copiar os bytes.
+ */
+public class PnmStreamWriter extends InterleavedRowWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream file;
+    private final byte[] row;
+    private boolean closed;
+
+    public PnmStreamWriter(File output, int width, int height, int bands) throws IOException {
+        this(new FileOutputStream(output), width, height, bands);
+    }
+
+    public PnmStreamWriter(OutputStream output, int width, int height, int bands) throws IOException {
+        super(width, height, bands, false);
+        this.file = new BufferedOutputStream(output, BUFFER_SIZE);
+        this.row = new byte[width * bands];
+        String header;
+        if (bands == 4) {
+            header = "P7\nWIDTH " + width + "\nHEIGHT " + height + "\nDEPTH 4\nMAXVAL 255\n"
+                    + "TUPLTYPE RGB_ALPHA\nENDHDR\n";
+        } else {
+            header = (bands == 1 ? "P5" : "P6") + "\n" + width + " " + height + "\n255\n";
+        }
+        try {
+            file.write(header.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected byte[] rowBuffer() {
+        return row;
+    }
+
+    @Override
+    protected void writeRow(byte[] row) throws IOException {
+        file.write(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            checkComplete();
+            file.flush();
+        } finally {
+            file.close();
+        }
+    }
+}
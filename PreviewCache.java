@@ -0,0 +1,75 @@
+// Arquivo: PreviewCache.java
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Desenho da pré-visualização do editor: o nível da ImagePyramid mais
+ * próximo da resolução da tela, já com brilho, contraste e cinza aplicados.
+ *
+ * O nível é dividido em ladrilhos (TileGrid) e só os que aparecem na tela
+ * são coloridos e desenhados. Os ladrilhos coloridos ficam guardados (os
+ * menos usados saem primeiro) até que a imagem desenhada ou a versão de cor
+ * do EditPipeline mudem; entre um e outro, cada repaint só desenha o que já existe.
+ */
+public class PreviewCache {
+
+    /** Ladrilhos coloridos guardados (256 ladrilhos ARGB de 256x256 = 64 MB). */
+    private static final int MAX_TILES = 256;
+
+    private BufferedImage proxy;
+    private int colorVersion;
+    private TileGrid grid;
+    private final Map<Integer, BufferedImage> tiles = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+
+    /**
+     * Desenha em 'g' (já com a transformação da imagem original) os ladrilhos
+     * de 'level' que cobrem 'visible', esticados para o tamanho da original.
+     * @param level   nível da pirâmide escolhido para a escala da tela (ImagePyramid.closest)
+     * @param visible região visível, em pixels da imagem original
+     */
+    public void draw(Graphics2D g, BufferedImage level, int imageWidth, int imageHeight,
+                     Rectangle visible, EditPipeline pipeline) {
+        if (level != proxy || colorVersion != pipeline.getColorVersion()) {
+            clear();
+            proxy = level;
+            colorVersion = pipeline.getColorVersion();
+            grid = new TileGrid(level.getWidth(), level.getHeight());
+        }
+
+        double fx = level.getWidth() / (double) imageWidth;
+        double fy = level.getHeight() / (double) imageHeight;
+        // Região visível nas coordenadas do nível, com um pixel de folga para a interpolação
+        Rectangle inLevel = new Rectangle(
+                (int) Math.floor(visible.x * fx) - 1, (int) Math.floor(visible.y * fy) - 1,
+                (int) Math.ceil(visible.width * fx) + 3, (int) Math.ceil(visible.height * fy) + 3);
+
+        for (int index : grid.tilesIn(inLevel)) {
+            Rectangle r = grid.tileBounds(index);
+            BufferedImage tile = tiles.get(index);
+            if (tile == null) {
+                // Na própria thread (a EDT), sem esperar a vez no TileScheduler
+                tile = pipeline.applyPointOps(level.getSubimage(r.x, r.y, r.width, r.height), false);
+                tiles.put(index, tile);
+            }
+            int dx1 = (int) Math.round(r.x / fx);
+            int dy1 = (int) Math.round(r.y / fy);
+            int dx2 = (int) Math.round((r.x + r.width) / fx);
+            int dy2 = (int) Math.round((r.y + r.height) / fy);
+            g.drawImage(tile, dx1, dy1, dx2, dy2, 0, 0, r.width, r.height, null);
+        }
+    }
+
+    /** Descarta os ladrilhos guardados (a imagem desenhada mudou de conteúdo). */
+    public void clear() {
+        tiles.clear();
+        proxy = null;
+    }
+}
@@ -0,0 +1,113 @@
+// Arquivo: ProgressTracker.java
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Progresso e cancelamento cooperativo de um trabalho longo (um ou mais filtros).
+ *
+ * O rastreador fica associado à thread que executa o trabalho (callWith).
+ * Os filtros não recebem parâmetro extra: o TileScheduler consulta o
+ * rastreador da thread que pediu as faixas e o repassa às threads do pool,
+ * verificando o cancelamento antes de cada faixa e contando as faixas
+ * prontas; o afinamento faz o mesmo a cada iteração. Um trabalho cancelado
+ * termina com CancellationException no próximo ponto de verificação.
+ */
+public class ProgressTracker {
+
+    /** Recebe as atualizações, na thread que fez o progresso (não na EDT). */
+    public interface Listener {
+        /**
+         * @param fraction progresso total de 0 a 1, ou negativo se indeterminado
+         * @param message  descrição da etapa atual
+         */
+        void progressChanged(double fraction, String message);
+    }
+
+    private static final ThreadLocal<ProgressTracker> CURRENT = new ThreadLocal<>();
+
+    private final Listener listener;
+    private final ProgressTracker parent;
+    private volatile boolean cancelled;
+    private volatile int stage;
+    private volatile int stageCount = 1;
+    private volatile String stageName = "";
+
+    public ProgressTracker(Listener listener) {
+        this(listener, null);
+    }
+
+    private ProgressTracker(Listener listener, ProgressTracker parent) {
+        this.listener = listener;
+        this.parent = parent;
+    }
+
+    /**
+     * Rastreador que segue o cancelamento deste mas não publica progresso
+     * (para partes de um trabalho que informa o progresso por conta própria).
+     */
+    public ProgressTracker silentChild() {
+        return new ProgressTracker(null, this);
+    }
+
+    /** Rastreador do trabalho que roda nesta thread, ou null. */
+    public static ProgressTracker current() {
+        return CURRENT.get();
+    }
+
+    /** Executa 'work' nesta thread com 'tracker' como rastreador atual. */
+    public static <T> T callWith(ProgressTracker tracker, Callable<T> work) throws Exception {
+        ProgressTracker previous = CURRENT.get();
+        CURRENT.set(tracker);
+        try {
+            return work.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /** Pede o cancelamento; o trabalho para no próximo ponto de verificação. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /** @throws CancellationException se o trabalho foi cancelado */
+    public void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Início da etapa 'index' de 'count' (por exemplo, um filtro de uma pilha). */
+    public void beginStage(int index, int count, String name) {
+        checkCancelled();
+        stage = index;
+        stageCount = Math.max(1, count);
+        stageName = name;
+        notifyListener(index / (double) stageCount, name);
+    }
+
+    /** 'done' de 'total' faixas (ou ladrilhos) da passada atual estão prontas. */
+    void bandsDone(int done, int total) {
+        double inStage = Math.min(1.0, done / (double) total);
+        notifyListener((stage + inStage) / stageCount, stageName);
+    }
+
+    /** Uma iteração de um algoritmo sem total conhecido (afinamento). */
+    void iteration(int n) {
+        notifyListener(-1, stageName + " (iteração " + n + ")");
+    }
+
+    private void notifyListener(double fraction, String message) {
+        if (listener != null) {
+            listener.progressChanged(fraction, message);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+// Arquivo: RasterAccess.java
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Acesso direto às amostras de uma BufferedImage, banda por banda.
+ * Lê e escreve no array do DataBuffer (int[], byte[] ou short[]) sem passar
+ * pela conversão do ColorModel que getRGB/setRGB fazem a cada pixel.
+ */
+public class RasterAccess {
+
+    /**
+     * Garante que a imagem tenha amostras diretas (uma banda por canal).
+     * Imagens indexadas (paleta) são convertidas para TYPE_INT_ARGB, com as
+     * cores exatas da paleta: linha a linha por getRGB, e não por drawImage,
+     * que compõe sobre o fundo transparente e arredonda as cores semitransparentes.
+     */
+    public static BufferedImage toDirect(BufferedImage image) {
+        if (!(image.getColorModel() instanceof IndexColorModel)) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            converted.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return converted;
+    }
+
+    /**
+     * Cria uma imagem vazia com o mesmo layout (ColorModel e SampleModel) da original.
+     */
+    public static BufferedImage createCompatible(BufferedImage image, int width, int height) {
+        if (image.getType() != BufferedImage.TYPE_CUSTOM && !(image.getColorModel() instanceof IndexColorModel)) {
+            return new BufferedImage(width, height, image.getType());
+        }
+        ColorModel cm = image.getColorModel();
+        WritableRaster raster = image.getRaster().createCompatibleWritableRaster(width, height);
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
+    public static BufferedImage createCompatible(BufferedImage image) {
+        return createCompatible(image, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Destino de um filtro que lê 'src' inteira enquanto escreve: 'dst' se for
+     * informado, senão uma imagem compatível nova.
+     * @throws IllegalArgumentException se 'dst' tiver outro tamanho, outras bandas
+     *         ou dividir o DataBuffer com a origem
+     */
+    public static BufferedImage destination(BufferedImage src, BufferedImage dst) {
+        if (dst == null) return createCompatible(src);
+        if (dst.getRaster().getDataBuffer() == src.getRaster().getDataBuffer()) {
+            throw new IllegalArgumentException("O destino não pode dividir os pixels com a origem");
+        }
+        if (dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()) {
+            throw new IllegalArgumentException("Destino de tamanho diferente: " + dst.getWidth() + "x" + dst.getHeight()
+                    + " em vez de " + src.getWidth() + "x" + src.getHeight());
+        }
+        int bands = numBands(src);
+        if (numBands(dst) != bands) {
+            throw new IllegalArgumentException("Destino com " + numBands(dst) + " bandas em vez de " + bands);
+        }
+        for (int band = 0; band < bands; band++) {
+            if (maxValue(dst, band) != maxValue(src, band)) {
+                throw new IllegalArgumentException("Destino com amostras de outro tamanho na banda " + band);
+            }
+        }
+        return dst;
+    }
+
+    public static int numBands(BufferedImage image) {
+        return image.getRaster().getNumBands();
+    }
+
+    /**
+     * Valor sRGB (0 a 255) que getRGB devolve para cada amostra de 0 a 255 de
+     * TYPE_BYTE_GRAY, cujo cinza é linear: uma amostra 128 aparece como 188.
+     */
+    public static final int[] GRAY_TO_SRGB = graySrgbTable(
+            new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).getColorModel());
+
+    /** Amostra de TYPE_BYTE_GRAY que setRGB grava para o cinza sRGB (v, v, v), o caminho inverso. */
+    public static final int[] SRGB_TO_GRAY = srgbGrayTable(
+            new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).getColorModel());
+
+    /** GRAY_TO_SRGB de outro ColorModel de uma banda de 8 bits. */
+    public static int[] graySrgbTable(ColorModel model) {
+        int[] table = new int[256];
+        byte[] sample = new byte[1];
+        for (int v = 0; v < 256; v++) {
+            sample[0] = (byte) v;
+            table[v] = model.getRGB(sample) & 0xFF;
+        }
+        return table;
+    }
+
+    private static int[] srgbGrayTable(ColorModel model) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            byte[] sample = (byte[]) model.getDataElements(0xFF000000 | v * 0x010101, null);
+            table[v] = sample[0] & 0xFF;
+        }
+        return table;
+    }
+
+    /** Maior valor representável na banda (255 para amostras de 8 bits). */
+    public static int maxValue(BufferedImage image, int band) {
+        return (1 << image.getSampleModel().getSampleSize(band)) - 1;
+    }
+
+    /**
+     * Copia 'width' amostras da banda 'band', a partir de (x, y), para dst[dstOff...].
+     */
+    public static void readRow(BufferedImage image, int band, int x, int y, int width, int[] dst, int dstOff) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int sx = x - raster.getSampleModelTranslateX();
+        int sy = y - raster.getSampleModelTranslateY();
+
+        if (sm instanceof SinglePixelPackedSampleModel && db instanceof DataBufferInt) {
+            SinglePixelPackedSampleModel spp = (SinglePixelPackedSampleModel) sm;
+            int[] data = ((DataBufferInt) db).getData();
+            PackedLayout layout = PackedLayout.of(spp);
+            int mask = layout.masks[band];
+            int shift = layout.shifts[band];
+            int idx = db.getOffset() + spp.getOffset(sx, sy);
+            for (int i = 0; i < width; i++) {
+                dst[dstOff + i] = (data[idx + i] & mask) >>> shift;
+            }
+        } else if (sm instanceof ComponentSampleModel && db instanceof DataBufferByte) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            // Com um banco só (o caso comum) evita getBankIndices/getOffsets, que copiam arrays
+            int bank = db.getNumBanks() == 1 ? 0 : csm.getBankIndices()[band];
+            byte[] data = ((DataBufferByte) db).getData(bank);
+            int stride = csm.getPixelStride();
+            int idx = (bank == 0 ? db.getOffset() : db.getOffsets()[bank]) + csm.getOffset(sx, sy, band);
+            for (int i = 0; i < width; i++, idx += stride) {
+                dst[dstOff + i] = data[idx] & 0xFF;
+            }
+        } else if (sm instanceof ComponentSampleModel && db instanceof DataBufferUShort) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            // Com um banco só (o caso comum) evita getBankIndices/getOffsets, que copiam arrays
+            int bank = db.getNumBanks() == 1 ? 0 : csm.getBankIndices()[band];
+            short[] data = ((DataBufferUShort) db).getData(bank);
+            int stride = csm.getPixelStride();
+            int idx = (bank == 0 ? db.getOffset() : db.getOffsets()[bank]) + csm.getOffset(sx, sy, band);
+            for (int i = 0; i < width; i++, idx += stride) {
+                dst[dstOff + i] = data[idx] & 0xFFFF;
+            }
+        } else {
+            // Layout desconhecido: ainda evita o ColorModel, mas passa pelo SampleModel
+            int[] samples = raster.getSamples(x, y, width, 1, band, (int[]) null);
+            System.arraycopy(samples, 0, dst, dstOff, width);
+        }
+    }
+
+    /**
+     * Escreve 'width' amostras de src[srcOff...] na banda 'band', a partir de (x, y).
+     * Os valores já devem estar dentro do intervalo da banda.
+     */
+    public static void writeRow(BufferedImage image, int band, int x, int y, int width, int[] src, int srcOff) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int sx = x - raster.getSampleModelTranslateX();
+        int sy = y - raster.getSampleModelTranslateY();
+
+        if (sm instanceof SinglePixelPackedSampleModel && db instanceof DataBufferInt) {
+            SinglePixelPackedSampleModel spp = (SinglePixelPackedSampleModel) sm;
+            int[] data = ((DataBufferInt) db).getData();
+            PackedLayout layout = PackedLayout.of(spp);
+            int mask = layout.masks[band];
+            int shift = layout.shifts[band];
+            int idx = db.getOffset() + spp.getOffset(sx, sy);
+            for (int i = 0; i < width; i++) {
+                data[idx + i] = (data[idx + i] & ~mask) | ((src[srcOff + i] << shift) & mask);
+            }
+        } else if (sm instanceof ComponentSampleModel && db instanceof DataBufferByte) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            // Com um banco só (o caso comum) evita getBankIndices/getOffsets, que copiam arrays
+            int bank = db.getNumBanks() == 1 ? 0 : csm.getBankIndices()[band];
+            byte[] data = ((DataBufferByte) db).getData(bank);
+            int stride = csm.getPixelStride();
+            int idx = (bank == 0 ? db.getOffset() : db.getOffsets()[bank]) + csm.getOffset(sx, sy, band);
+            for (int i = 0; i < width; i++, idx += stride) {
+                data[idx] = (byte) src[srcOff + i];
+            }
+        } else if (sm instanceof ComponentSampleModel && db instanceof DataBufferUShort) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            // Com um banco só (o caso comum) evita getBankIndices/getOffsets, que copiam arrays
+            int bank = db.getNumBanks() == 1 ? 0 : csm.getBankIndices()[band];
+            short[] data = ((DataBufferUShort) db).getData(bank);
+            int stride = csm.getPixelStride();
+            int idx = (bank == 0 ? db.getOffset() : db.getOffsets()[bank]) + csm.getOffset(sx, sy, band);
+            for (int i = 0; i < width; i++, idx += stride) {
+                data[idx] = (short) src[srcOff + i];
+            }
+        } else {
+            int[] samples = new int[width];
+            System.arraycopy(src, srcOff, samples, 0, width);
+            raster.setSamples(x, y, width, 1, band, samples);
+        }
+    }
+
+    /**
+     * Máscaras e deslocamentos de um SinglePixelPackedSampleModel. Os getters do
+     * SampleModel devolvem cópias; guardar as do último layout usado evita alocar
+     * a cada linha lida ou escrita.
+     */
+    private static final class PackedLayout {
+        private static volatile PackedLayout last;
+
+        final SampleModel sampleModel;
+        final int[] masks;
+        final int[] shifts;
+
+        private PackedLayout(SinglePixelPackedSampleModel sm) {
+            sampleModel = sm;
+            masks = sm.getBitMasks();
+            shifts = sm.getBitOffsets();
+        }
+
+        static PackedLayout of(SinglePixelPackedSampleModel sm) {
+            PackedLayout layout = last;
+            // Imagens do mesmo tipo e tamanho têm SampleModels iguais (equals), não idênticos
+            if (layout == null || (layout.sampleModel != sm && !layout.sampleModel.equals(sm))) {
+                layout = new PackedLayout(sm);
+                last = layout;
+            }
+            return layout;
+        }
+    }
+
+    /** Copia uma banda inteira para um plano linha a linha (plane[y * width + x]). */
+    public static void readBand(BufferedImage image, int band, int[] plane) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int y = 0; y < height; y++) {
+            readRow(image, band, 0, y, width, plane, y * width);
+        }
+    }
+
+    /** Escreve um plano inteiro (plane[y * width + x]) na banda indicada. */
+    public static void writeBand(BufferedImage image, int band, int[] plane) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int y = 0; y < height; y++) {
+            writeRow(image, band, 0, y, width, plane, y * width);
+        }
+    }
+
+    /**
+     * Lê a linha y com 'left' colunas extras à esquerda e 'right' à direita, preenchidas
+     * conforme o modo de borda, em dst[dstOff .. dstOff + left + width + right).
+     * Linhas fora da imagem também são resolvidas pelo modo, então quem consome
+     * a linha nunca precisa testar limites no laço interno.
+     */
+    public static void readPaddedRow(BufferedImage image, int band, int y, int left, int right,
+                                     BorderMode mode, int[] dst, int dstOff) {
+        int width = image.getWidth();
+        int row = mode.map(y, image.getHeight());
+        if (row < 0) {
+            Arrays.fill(dst, dstOff, dstOff + left + width + right, BorderMode.CONSTANT_VALUE);
+            return;
+        }
+        readRow(image, band, 0, row, width, dst, dstOff + left);
+        for (int c = 0; c < left; c++) {
+            int sx = mode.map(c - left, width);
+            dst[dstOff + c] = sx < 0 ? BorderMode.CONSTANT_VALUE : dst[dstOff + left + sx];
+        }
+        for (int c = 0; c < right; c++) {
+            int sx = mode.map(width + c, width);
+            dst[dstOff + left + width + c] = sx < 0 ? BorderMode.CONSTANT_VALUE : dst[dstOff + left + sx];
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Arquivo: RasterPool.java
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reserva de BufferedImages livres, separadas por largura, altura e tipo,
+ * para que uma sequência de filtros (ou um lote de imagens do mesmo tamanho)
+ * reaproveite os destinos em vez de alocar uma imagem nova a cada passo.
+ *
+ * acquire devolve uma imagem livre do tamanho e tipo pedidos, ou cria uma;
+ * o conteúdo é indefinido, já que os filtros sobrescrevem todos os pixels.
+ * release devolve a imagem à reserva, que guarda no máximo 'maxBytes' (o que
+ * passar disso fica para o coletor de lixo). Imagens TYPE_CUSTOM ou indexadas
+ * não são guardadas, porque o tipo não basta para recriar o mesmo layout, nem
+ * subimagens (getSubimage), que dividem o raster com a imagem de origem.
+ *
+ * Thread-safe. Uma imagem não pode ser usada depois de devolvida.
+ */
+public class RasterPool {
+
+    /** Limite padrão: propriedade "pdi.pool.mb" (padrão 256 MB). */
+    public static final long DEFAULT_MAX_BYTES = Long.getLong("pdi.pool.mb", 256) << 20;
+
+    private final long maxBytes;
+    private final Map<Long, ArrayDeque<BufferedImage>> free = new HashMap<>();
+    private long freeBytes;
+    private long hits;
+    private long misses;
+
+    public RasterPool() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public RasterPool(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Limite inválido: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    private static Long key(int width, int height, int type) {
+        return ((long) width << 36) | ((long) height << 8) | type;
+    }
+
+    private static boolean poolable(BufferedImage image) {
+        return image.getRaster().getParent() == null
+                && image.getType() != BufferedImage.TYPE_CUSTOM
+                && image.getType() != BufferedImage.TYPE_BYTE_INDEXED
+                && image.getType() != BufferedImage.TYPE_BYTE_BINARY;
+    }
+
+    /** Imagem width x height do tipo 'type' (BufferedImage.TYPE_*), reaproveitada se houver. */
+    public synchronized BufferedImage acquire(int width, int height, int type) {
+        ArrayDeque<BufferedImage> images = free.get(key(width, height, type));
+        if (images != null && !images.isEmpty()) {
+            BufferedImage image = images.pop();
+            freeBytes -= ImageCache.sizeOf(image);
+            hits++;
+            return image;
+        }
+        misses++;
+        return new BufferedImage(width, height, type);
+    }
+
+    /** Imagem com o mesmo tamanho e layout de 'like' (como RasterAccess.createCompatible). */
+    public BufferedImage acquireCompatible(BufferedImage like) {
+        return acquireCompatible(like, like.getWidth(), like.getHeight());
+    }
+
+    public BufferedImage acquireCompatible(BufferedImage like, int width, int height) {
+        if (!poolable(like)) {
+            synchronized (this) {
+                misses++;
+            }
+            return RasterAccess.createCompatible(like, width, height);
+        }
+        return acquire(width, height, like.getType());
+    }
+
+    /** Devolve uma imagem que não será mais usada (null é ignorado). */
+    public synchronized void release(BufferedImage image) {
+        if (image == null || !poolable(image)) return;
+        long size = ImageCache.sizeOf(image);
+        if (freeBytes + size > maxBytes) return;
+        ArrayDeque<BufferedImage> images = free.computeIfAbsent(
+                key(image.getWidth(), image.getHeight(), image.getType()), k -> new ArrayDeque<>());
+        for (BufferedImage other : images) {
+            if (other == image) return;
+        }
+        images.push(image);
+        freeBytes += size;
+    }
+
+    /** Esquece todas as imagens livres. */
+    public synchronized void clear() {
+        free.clear();
+        freeBytes = 0;
+    }
+
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Quantas vezes acquire reaproveitou uma imagem. */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** Quantas vezes acquire precisou criar uma imagem. */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,248 @@
+// Arquivo: RawImage.java
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formato "raw" do projeto: a cópia direta do DataBuffer de uma BufferedImage,
+ * sem compressão nem conversão, precedida de um cabeçalho com a largura, a
+ * altura e o tipo. Ler e gravar custam o mesmo que copiar os bytes, e a imagem
+ * volta exatamente com o tipo que tinha.
+ *
+ * Cabeçalho (big-endian): "PDIRAW01", largura, altura e tipo (int cada).
+ * Seguem as amostras do DataBuffer: bytes nos tipos de 8 bits, shorts nos de
+ * 16 e ints nos empacotados em int, linha após linha.
+ *
+ * Tipos fora da lista (indexados, TYPE_CUSTOM...) e subimagens são convertidos
+ * antes para o tipo nativo do ImageProcessor.
+ */
+public class RawImage {
+
+    private static final byte[] MAGIC = "PDIRAW01".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = MAGIC.length + 12;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** O arquivo começa com o cabeçalho do formato raw? */
+    public static boolean isRaw(File file) {
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] start = new byte[MAGIC.length];
+            return in.readNBytes(start, 0, start.length) == start.length && Arrays.equals(start, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Tipos gravados como estão, e o tamanho da amostra do DataBuffer de cada um. */
+    private static int sampleBytes(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return 1;
+            case BufferedImage.TYPE_USHORT_GRAY:
+            case BufferedImage.TYPE_USHORT_565_RGB:
+            case BufferedImage.TYPE_USHORT_555_RGB:
+                return 2;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_BGR:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * O DataBuffer cobre exatamente a imagem, sem deslocamentos (não é
+     * subimagem), num tipo da lista? Então write grava a imagem como está.
+     */
+    static boolean isCompact(BufferedImage image) {
+        if (sampleBytes(image.getType()) == 0 || image.getRaster().getParent() != null) return false;
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long samples = (long) image.getWidth() * image.getHeight()
+                * (sampleBytes(image.getType()) == 1 ? image.getRaster().getNumBands() : 1);
+        return buffer.getNumBanks() == 1 && buffer.getOffset() == 0 && buffer.getSize() == samples;
+    }
+
+    public static void write(BufferedImage image, File output) throws IOException {
+        if (!isCompact(image)) {
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), ImageProcessor.nativeType(image));
+            Graphics2D g = copy.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            image = copy;
+        }
+        try (FileChannel channel = new FileOutputStream(output).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.put(header(image.getWidth(), image.getHeight(), image.getType()));
+            DataBuffer data = image.getRaster().getDataBuffer();
+            if (data instanceof DataBufferByte) {
+                byte[] array = ((DataBufferByte) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(buffer.remaining(), array.length - i);
+                    buffer.put(array, i, n);
+                    i += n;
+                    drain(buffer, channel);
+                }
+            } else if (data instanceof DataBufferUShort) {
+                short[] array = ((DataBufferUShort) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(buffer.remaining() / 2, array.length - i);
+                    buffer.asShortBuffer().put(array, i, n);
+                    buffer.position(buffer.position() + 2 * n);
+                    i += n;
+                    drain(buffer, channel);
+                }
+            } else {
+                int[] array = ((DataBufferInt) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(buffer.remaining() / 4, array.length - i);
+                    buffer.asIntBuffer().put(array, i, n);
+                    buffer.position(buffer.position() + 4 * n);
+                    i += n;
+                    drain(buffer, channel);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    private static byte[] header(int width, int height, int type) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putInt(width).putInt(height).putInt(type);
+        return header.array();
+    }
+
+    /** Grava o buffer quando ele está cheio (ou quase: sobra menos que uma amostra int). */
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        if (buffer.remaining() >= 4) return;
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    public static BufferedImage read(File input) throws IOException {
+        return read(input, null);
+    }
+
+    /** Lê um arquivo raw, numa imagem emprestada de 'pool' se não for null. */
+    public static BufferedImage read(File input, RasterPool pool) throws IOException {
+        try (FileChannel channel = new FileInputStream(input).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip(); // vazio, pronto para leitura
+            fill(buffer, channel, HEADER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int type = buffer.getInt();
+            if (!Arrays.equals(magic, MAGIC) || width < 1 || height < 1 || sampleBytes(type) == 0) {
+                throw new IOException("Arquivo raw inválido: " + input);
+            }
+            BufferedImage image = pool != null ? pool.acquire(width, height, type)
+                    : new BufferedImage(width, height, type);
+            DataBuffer data = image.getRaster().getDataBuffer();
+            if (data instanceof DataBufferByte) {
+                byte[] array = ((DataBufferByte) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(fill(buffer, channel, 1), array.length - i);
+                    buffer.get(array, i, n);
+                    i += n;
+                }
+            } else if (data instanceof DataBufferUShort) {
+                short[] array = ((DataBufferUShort) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(fill(buffer, channel, 2) / 2, array.length - i);
+                    buffer.asShortBuffer().get(array, i, n);
+                    buffer.position(buffer.position() + 2 * n);
+                    i += n;
+                }
+            } else {
+                int[] array = ((DataBufferInt) data).getData();
+                for (int i = 0; i < array.length; ) {
+                    int n = Math.min(fill(buffer, channel, 4) / 4, array.length - i);
+                    buffer.asIntBuffer().get(array, i, n);
+                    buffer.position(buffer.position() + 4 * n);
+                    i += n;
+                }
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Garante pelo menos 'needed' bytes para ler no buffer (lendo mais do canal
+     * se preciso) e devolve quantos há.
+     */
+    private static int fill(ByteBuffer buffer, FileChannel channel, int needed) throws IOException {
+        if (buffer.remaining() >= needed) return buffer.remaining();
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) throw new EOFException("Arquivo raw truncado");
+        }
+        buffer.flip();
+        return buffer.remaining();
+    }
+
+    /**
+     * Escritor raw em faixas, para os caminhos que não têm a imagem inteira
+     * (fluxo e arquivos mapeados): grava no layout do tipo de BufferedImage
+     * com as mesmas bandas (TYPE_BYTE_GRAY, TYPE_3BYTE_BGR ou TYPE_4BYTE_ABGR).
+     */
+    public static class Writer extends InterleavedRowWriter {
+        private final OutputStream file;
+        private final byte[] row;
+        private boolean closed;
+
+        public Writer(File output, int width, int height, int bands) throws IOException {
+            super(width, height, bands, true);
+            this.file = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+            this.row = new byte[width * bands];
+            try {
+                file.write(header(width, height, MappedImage.bufferedImageType(bands)));
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        @Override
+        protected byte[] rowBuffer() {
+            return row;
+        }
+
+        @Override
+        protected void writeRow(byte[] row) throws IOException {
+            file.write(row);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                checkComplete();
+                file.flush();
+            } finally {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+// Arquivo: ResampleFilter.java
+
+/**
+ * Filtros de reamostragem do Resampler, do mais rápido ao mais nítido. Cada
+ * um é uma função peso(x) em torno do centro da amostra, nula fora de
+ * [-support, support]; ao reduzir, o Resampler estica o filtro pelo fator de
+ * redução, então cada pixel de saída faz a média de todos os que cobre.
+ */
+public enum ResampleFilter {
+    /** Vizinho mais próximo: copia um pixel, sem misturar (nem suavizar) nada. */
+    NEAREST(0.5),
+    /** Triângulo (bilinear): ao ampliar, interpola entre os dois vizinhos. */
+    BILINEAR(1.0),
+    /** Cúbico de Keys com a = -0.5 (Catmull-Rom): mais nítido que o bilinear. */
+    BICUBIC(2.0),
+    /** Lanczos com três lobos: o mais nítido, com algum halo nas bordas fortes. */
+    LANCZOS3(3.0);
+
+    private final double support;
+
+    ResampleFilter(double support) {
+        this.support = support;
+    }
+
+    /** Meia largura do filtro, em pixels da origem (sem a redução). */
+    public double support() {
+        return support;
+    }
+
+    /** Peso de uma amostra à distância x do centro. */
+    public double weight(double x) {
+        x = Math.abs(x);
+        switch (this) {
+            case NEAREST:
+                return x <= 0.5 ? 1 : 0;
+            case BILINEAR:
+                return x < 1 ? 1 - x : 0;
+            case BICUBIC:
+                if (x < 1) return (1.5 * x - 2.5) * x * x + 1;
+                if (x < 2) return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+                return 0;
+            default:
+                return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+        }
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1;
+        x *= Math.PI;
+        return Math.sin(x) / x;
+    }
+
+    /** Filtro pelo nome (nearest, bilinear, bicubic, lanczos3), sem diferenciar maiúsculas. */
+    public static ResampleFilter parse(String name) {
+        for (ResampleFilter filter : values()) {
+            if (filter.name().equalsIgnoreCase(name)) return filter;
+        }
+        throw new IllegalArgumentException("Filtro de reamostragem desconhecido: " + name);
+    }
+}
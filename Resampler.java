@@ -0,0 +1,440 @@
+// Arquivo: Resampler.java
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Redimensionamento separável: um passe horizontal (cada linha da origem vira
+ * uma linha da largura final) e um vertical (cada linha final combina as
+ * linhas intermediárias que o filtro cobre). Os pesos de cada coluna e de
+ * cada linha de saída são calculados uma vez, numa tabela por eixo, e não
+ * por pixel.
+ *
+ * Ao reduzir, o filtro é esticado pelo fator de redução, então todo pixel da
+ * origem contribui para o resultado e não há serrilhado (o drawImage bilinear
+ * só olha os quatro vizinhos do ponto amostrado e ignora o resto).
+ *
+ * As linhas de saída são divididas em faixas do TileScheduler; cada faixa
+ * processa blocos de linhas, fazendo o passe horizontal só das linhas de
+ * origem que o bloco usa, em buffers do ScratchBuffers. O passe vertical usa
+ * os laços do PixelKernels (escalar ou vetorial).
+ *
+ * Em imagens com alfa, as cores são multiplicadas pelo alfa antes de
+ * filtrar e divididas depois, para que pixels transparentes não manchem os
+ * vizinhos com a cor que guardam.
+ *
+ * O modo progressivo (usado por thumbnail) reduz primeiro pela metade,
+ * quantas vezes der, com a média de blocos 2x2, e só aplica o filtro no
+ * último fator (entre 2 e 4): em reduções grandes, o resultado é quase o
+ * mesmo e o custo cai muito, porque o filtro esticado fica curto.
+ */
+public class Resampler {
+
+    // Vagas do ScratchBuffers (int)
+    private static final int ROW = 0;
+    private static final int ALPHA_ROW = 1;
+    private static final int OUT = 2;
+    // Vagas do ScratchBuffers (float): as bandas intermediárias usam 0..3
+    private static final int ACC = 4;
+    private static final int ALPHA_ACC = 5;
+    private static final int LINE = 6;
+
+    /**
+     * Bloco mínimo de linhas de saída por passe horizontal. Os blocos crescem
+     * com o filtro, para que as linhas de origem lidas por dois blocos vizinhos
+     * (o passe horizontal delas é refeito) sejam poucas perto das do bloco.
+     */
+    private static final int MIN_BLOCK_ROWS = 16;
+
+    private static final PixelKernels KERNELS = PixelKernels.get();
+
+    /**
+     * Pesos de um eixo: a saída i combina count[i] amostras da origem a partir
+     * de start[i], com os pesos weights[i * taps ...], que somam 1.
+     */
+    static final class Weights {
+        final int[] start;
+        final int[] count;
+        final float[] weights;
+        final int taps;
+
+        private Weights(int size, int taps) {
+            this.start = new int[size];
+            this.count = new int[size];
+            this.weights = new float[size * taps];
+            this.taps = taps;
+        }
+    }
+
+    /** Tabela de pesos para levar 'srcSize' amostras a 'dstSize'. */
+    static Weights weights(int srcSize, int dstSize, ResampleFilter filter) {
+        double scale = (double) srcSize / dstSize;
+        if (filter == ResampleFilter.NEAREST) {
+            Weights table = new Weights(dstSize, 1);
+            for (int i = 0; i < dstSize; i++) {
+                table.start[i] = Math.min(srcSize - 1, (int) ((i + 0.5) * scale));
+                table.count[i] = 1;
+                table.weights[i] = 1f;
+            }
+            return table;
+        }
+        double filterScale = Math.max(1.0, scale);
+        double support = filter.support() * filterScale;
+        int taps = (int) Math.ceil(2 * support) + 1;
+        Weights table = new Weights(dstSize, taps);
+        double[] w = new double[taps];
+        for (int i = 0; i < dstSize; i++) {
+            double center = (i + 0.5) * scale;
+            int lo = Math.max(0, (int) Math.floor(center - support));
+            int hi = Math.min(srcSize, (int) Math.ceil(center + support));
+            double sum = 0;
+            for (int j = lo; j < hi; j++) {
+                w[j - lo] = filter.weight((j + 0.5 - center) / filterScale);
+                sum += w[j - lo];
+            }
+            if (sum == 0) { // não acontece com os filtros atuais; por garantia, o vizinho mais próximo
+                lo = Math.min(srcSize - 1, (int) center);
+                hi = lo + 1;
+                w[0] = sum = 1;
+            }
+            table.start[i] = lo;
+            table.count[i] = hi - lo;
+            for (int j = 0; j < hi - lo; j++) {
+                table.weights[i * taps + j] = (float) (w[j] / sum);
+            }
+        }
+        return table;
+    }
+
+    public static BufferedImage resize(BufferedImage image, int width, int height, ResampleFilter filter) {
+        return resize(image, width, height, filter, false);
+    }
+
+    /**
+     * Imagem width x height no tipo de ImageProcessor.nativeType(image).
+     * @param progressive reduz pela metade antes de filtrar, quando a redução é grande
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height, ResampleFilter filter,
+                                       boolean progressive) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Tamanho inválido: " + width + "x" + height);
+        }
+        BufferedImage reduced = toNative(image);
+        if (progressive) {
+            while (reduced.getWidth() / 2 >= 2 * width && reduced.getHeight() / 2 >= 2 * height) {
+                reduced = halve(reduced);
+            }
+        }
+        BufferedImage src = reduced;
+        BufferedImage result = new BufferedImage(width, height, src.getType());
+        Weights columns = weights(src.getWidth(), width, filter);
+        Weights rows = weights(src.getHeight(), height, filter);
+        if (filter == ResampleFilter.NEAREST) {
+            TileScheduler.forEachBand(height, 0, (y0, y1) -> nearestRows(src, result, columns, rows, y0, y1));
+            return result;
+        }
+        double scale = (double) src.getHeight() / height;
+        int blockRows = Math.max(MIN_BLOCK_ROWS, (int) Math.ceil(8 * rows.taps / scale));
+
+        TileScheduler.forEachBand(height, 0, (y0, y1) -> {
+            for (int b0 = y0; b0 < y1; b0 += blockRows) {
+                resampleBlock(src, result, columns, rows, b0, Math.min(y1, b0 + blockRows));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Miniatura que cabe em maxWidth x maxHeight mantendo a proporção, em modo
+     * progressivo e com Lanczos-3. Imagens que já cabem são só copiadas.
+     */
+    public static BufferedImage thumbnail(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / image.getWidth(),
+                (double) maxHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        return resize(image, width, height, ResampleFilter.LANCZOS3, true);
+    }
+
+    /** A imagem no tipo que as operações produzem (cópia só se o tipo for outro). */
+    private static BufferedImage toNative(BufferedImage image) {
+        int type = ImageProcessor.nativeType(image);
+        if (image.getType() == type) return image;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /** Banda de alfa da imagem (a última), ou -1 se não houver. */
+    private static int alphaBand(BufferedImage image) {
+        return image.getColorModel().hasAlpha() ? RasterAccess.numBands(image) - 1 : -1;
+    }
+
+    /** As linhas de saída [y0, y1): passe horizontal das linhas de origem que elas usam, depois o vertical. */
+    private static void resampleBlock(BufferedImage src, BufferedImage dst, Weights columns, Weights rows,
+                                      int y0, int y1) {
+        int srcWidth = src.getWidth();
+        int width = dst.getWidth();
+        int bands = RasterAccess.numBands(src);
+        int alpha = alphaBand(src);
+        int first = rows.start[y0];
+        int last = rows.start[y1 - 1] + rows.count[y1 - 1];
+        int count = last - first;
+
+        int[] row = ScratchBuffers.ints(ROW, srcWidth);
+        int[] alphaRow = alpha >= 0 ? ScratchBuffers.ints(ALPHA_ROW, srcWidth) : null;
+        float[] line = ScratchBuffers.floats(LINE, srcWidth);
+        float[][] horizontal = new float[bands][];
+        for (int band = 0; band < bands; band++) {
+            horizontal[band] = ScratchBuffers.floats(band, width * count);
+        }
+        for (int r = 0; r < count; r++) {
+            int y = first + r;
+            if (alpha >= 0) RasterAccess.readRow(src, alpha, 0, y, srcWidth, alphaRow, 0);
+            for (int band = 0; band < bands; band++) {
+                if (band == alpha) {
+                    toFloat(alphaRow, null, line, srcWidth);
+                } else {
+                    RasterAccess.readRow(src, band, 0, y, srcWidth, row, 0);
+                    toFloat(row, alphaRow, line, srcWidth);
+                }
+                horizontalPass(line, columns, horizontal[band], r * width);
+            }
+        }
+
+        int maxValue = RasterAccess.maxValue(src, 0);
+        int[] out = ScratchBuffers.ints(OUT, width);
+        float[] acc = ScratchBuffers.floats(ACC, width);
+        float[] alphaAcc = alpha >= 0 ? ScratchBuffers.floats(ALPHA_ACC, width) : null;
+        for (int y = y0; y < y1; y++) {
+            if (alpha >= 0) {
+                verticalPass(horizontal[alpha], rows, y, first, width, alphaAcc);
+                KERNELS.toSamples(alphaAcc, width, maxValue, out);
+                RasterAccess.writeRow(dst, alpha, 0, y, width, out, 0);
+            }
+            for (int band = 0; band < bands; band++) {
+                if (band == alpha) continue;
+                verticalPass(horizontal[band], rows, y, first, width, acc);
+                if (alpha >= 0) unpremultiply(acc, alphaAcc, width, maxValue);
+                KERNELS.toSamples(acc, width, maxValue, out);
+                RasterAccess.writeRow(dst, band, 0, y, width, out, 0);
+            }
+        }
+    }
+
+    /** Vizinho mais próximo: cada linha de saída copia uma linha da origem, coluna a coluna. */
+    private static void nearestRows(BufferedImage src, BufferedImage dst, Weights columns, Weights rows,
+                                    int y0, int y1) {
+        int srcWidth = src.getWidth();
+        int width = dst.getWidth();
+        int bands = RasterAccess.numBands(src);
+        int[] row = ScratchBuffers.ints(ROW, srcWidth);
+        int[] out = ScratchBuffers.ints(OUT, width);
+        int[] start = columns.start;
+        for (int y = y0; y < y1; y++) {
+            for (int band = 0; band < bands; band++) {
+                RasterAccess.readRow(src, band, 0, rows.start[y], srcWidth, row, 0);
+                for (int x = 0; x < width; x++) {
+                    out[x] = row[start[x]];
+                }
+                RasterAccess.writeRow(dst, band, 0, y, width, out, 0);
+            }
+        }
+    }
+
+    /**
+     * As amostras em float (uma conversão por amostra, não uma por peso),
+     * multiplicadas por alpha / 255 se 'alpha' não for null.
+     */
+    private static void toFloat(int[] src, int[] alpha, float[] dst, int n) {
+        if (alpha == null) {
+            for (int i = 0; i < n; i++) {
+                dst[i] = src[i];
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                dst[i] = src[i] * alpha[i] * (1f / 255);
+            }
+        }
+    }
+
+    /** dst[dstOff + x] = soma dos pesos da coluna x vezes as amostras que ela cobre. */
+    private static void horizontalPass(float[] src, Weights columns, float[] dst, int dstOff) {
+        int taps = columns.taps;
+        float[] weights = columns.weights;
+        for (int x = 0, w = 0; x < columns.start.length; x++, w += taps) {
+            int s = columns.start[x];
+            int n = columns.count[x];
+            float sum = 0f;
+            for (int k = 0; k < n; k++) {
+                sum += weights[w + k] * src[s + k];
+            }
+            dst[dstOff + x] = sum;
+        }
+    }
+
+    /** acc = combinação das linhas intermediárias que a linha de saída y cobre. */
+    private static void verticalPass(float[] horizontal, Weights rows, int y, int first, int width, float[] acc) {
+        Arrays.fill(acc, 0, width, 0f);
+        int s = rows.start[y] - first;
+        for (int k = 0, w = y * rows.taps; k < rows.count[y]; k++, w++) {
+            KERNELS.accumulate(rows.weights[w], horizontal, (s + k) * width, acc, width);
+        }
+    }
+
+    /** Divide as cores pelo alfa filtrado; onde ele é (quase) zero, a cor fica 0. */
+    private static void unpremultiply(float[] color, float[] alpha, int n, int maxValue) {
+        for (int i = 0; i < n; i++) {
+            float a = alpha[i];
+            color[i] = a > 0.5f ? color[i] * maxValue / Math.min(a, maxValue) : 0f;
+        }
+    }
+
+    /**
+     * Metade da largura e da altura (arredondando para cima, com a última
+     * coluna/linha ímpar repetida, como na ImagePyramid), mantendo o tipo:
+     * cada pixel é a média do bloco 2x2, ponderada pelo alfa nas cores.
+     */
+    static BufferedImage halve(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int halfWidth = (width + 1) / 2;
+        int halfHeight = (height + 1) / 2;
+        int bands = RasterAccess.numBands(image);
+        int alpha = alphaBand(image);
+        BufferedImage result = new BufferedImage(halfWidth, halfHeight, image.getType());
+        if (halveDirect(image, result)) return result;
+
+        TileScheduler.forEachBand(halfHeight, 0, (y0, y1) -> {
+            // Colunas com uma a mais (a última repetida) quando a largura é ímpar
+            int padded = 2 * halfWidth;
+            int[] top = ScratchBuffers.ints(ROW, padded);
+            int[] bottom = ScratchBuffers.ints(ALPHA_ROW, padded);
+            int[] out = ScratchBuffers.ints(OUT, halfWidth);
+            int[] sums = new int[padded];
+            int[] alphaTop = alpha >= 0 ? new int[padded] : null;
+            int[] alphaBottom = alpha >= 0 ? new int[padded] : null;
+            float[] inverse = alpha >= 0 ? new float[halfWidth] : null;
+            for (int y = y0; y < y1; y++) {
+                int yTop = 2 * y;
+                int yBottom = Math.min(yTop + 1, height - 1);
+                if (alpha >= 0) {
+                    readPair(image, alpha, yTop, yBottom, width, alphaTop, alphaBottom);
+                    for (int x = 0; x < padded; x++) {
+                        sums[x] = alphaTop[x] + alphaBottom[x];
+                    }
+                    for (int x = 0; x < halfWidth; x++) {
+                        int a = sums[2 * x] + sums[2 * x + 1];
+                        out[x] = (a + 2) >> 2;
+                        inverse[x] = a == 0 ? 0f : 1f / a;
+                    }
+                    RasterAccess.writeRow(result, alpha, 0, y, halfWidth, out, 0);
+                }
+                for (int band = 0; band < bands; band++) {
+                    if (band == alpha) continue;
+                    readPair(image, band, yTop, yBottom, width, top, bottom);
+                    if (alpha >= 0) {
+                        // Cores ponderadas pelo alfa de cada pixel, divididas pela soma dos alfas
+                        for (int x = 0; x < padded; x++) {
+                            sums[x] = top[x] * alphaTop[x] + bottom[x] * alphaBottom[x];
+                        }
+                        for (int x = 0; x < halfWidth; x++) {
+                            out[x] = (int) ((sums[2 * x] + sums[2 * x + 1]) * inverse[x] + 0.5f);
+                        }
+                    } else {
+                        for (int x = 0; x < padded; x++) {
+                            sums[x] = top[x] + bottom[x];
+                        }
+                        for (int x = 0; x < halfWidth; x++) {
+                            out[x] = (sums[2 * x] + sums[2 * x + 1] + 2) >> 2;
+                        }
+                    }
+                    RasterAccess.writeRow(result, band, 0, y, halfWidth, out, 0);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * halve direto nos arrays dos tipos sem alfa mais comuns, sem separar as
+     * bandas: bytes intercalados (cinza, BGR) e pixels INT_RGB, cujos três
+     * canais são somados de uma vez em campos separados do int. Só para
+     * imagens compactas (RawImage.isCompact); devolve false nos outros casos.
+     */
+    private static boolean halveDirect(BufferedImage image, BufferedImage result) {
+        int type = image.getType();
+        boolean bytes = type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_3BYTE_BGR;
+        if (!(bytes || type == BufferedImage.TYPE_INT_RGB) || !RawImage.isCompact(image)) return false;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int halfWidth = result.getWidth();
+
+        if (bytes) {
+            int bands = RasterAccess.numBands(image);
+            byte[] src = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            byte[] dst = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+            int stride = width * bands;
+            TileScheduler.forEachBand(result.getHeight(), 0, (y0, y1) -> {
+                int[] sums = ScratchBuffers.ints(ROW, 2 * halfWidth * bands);
+                for (int y = y0; y < y1; y++) {
+                    int top = 2 * y * stride;
+                    int bottom = Math.min(2 * y + 1, height - 1) * stride;
+                    for (int i = 0; i < stride; i++) {
+                        sums[i] = (src[top + i] & 0xFF) + (src[bottom + i] & 0xFF);
+                    }
+                    if ((width & 1) != 0) {
+                        System.arraycopy(sums, stride - bands, sums, stride, bands);
+                    }
+                    int out = y * halfWidth * bands;
+                    if (bands == 1) {
+                        for (int x = 0; x < halfWidth; x++) {
+                            dst[out + x] = (byte) ((sums[2 * x] + sums[2 * x + 1] + 2) >> 2);
+                        }
+                    } else {
+                        for (int i = 0; i < 6 * halfWidth; i += 6, out += 3) {
+                            dst[out] = (byte) ((sums[i] + sums[i + 3] + 2) >> 2);
+                            dst[out + 1] = (byte) ((sums[i + 1] + sums[i + 4] + 2) >> 2);
+                            dst[out + 2] = (byte) ((sums[i + 2] + sums[i + 5] + 2) >> 2);
+                        }
+                    }
+                }
+            });
+        } else {
+            int[] src = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+            TileScheduler.forEachBand(result.getHeight(), 0, (y0, y1) -> {
+                for (int y = y0; y < y1; y++) {
+                    int top = 2 * y * width;
+                    int bottom = Math.min(2 * y + 1, height - 1) * width;
+                    int out = y * halfWidth;
+                    for (int x = 0; x < halfWidth; x++) {
+                        int x0 = 2 * x;
+                        int x1 = Math.min(x0 + 1, width - 1);
+                        int a = src[top + x0], b = src[top + x1], c = src[bottom + x0], d = src[bottom + x1];
+                        // Vermelho e azul em campos de 16 bits, verde num terceiro: somas de 4 não transbordam
+                        int rb = (a & 0xFF00FF) + (b & 0xFF00FF) + (c & 0xFF00FF) + (d & 0xFF00FF) + 0x20002;
+                        int g = (a & 0xFF00) + (b & 0xFF00) + (c & 0xFF00) + (d & 0xFF00) + 0x200;
+                        dst[out + x] = ((rb >> 2) & 0xFF00FF) | ((g >> 2) & 0xFF00);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /** Lê as linhas yTop e yBottom da banda, repetindo a última coluna se a largura for ímpar. */
+    private static void readPair(BufferedImage image, int band, int yTop, int yBottom, int width,
+                                 int[] top, int[] bottom) {
+        RasterAccess.readRow(image, band, 0, yTop, width, top, 0);
+        RasterAccess.readRow(image, band, 0, yBottom, width, bottom, 0);
+        if ((width & 1) != 0) {
+            top[width] = top[width - 1];
+            bottom[width] = bottom[width - 1];
+        }
+    }
+}
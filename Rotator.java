@@ -0,0 +1,421 @@
+// Arquivo: Rotator.java
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Rotação em torno do centro, direto nos arrays da imagem (tipos de
+ * ImageProcessor.nativeType), sem passar pelo drawImage.
+ *
+ * - Múltiplos de 90 graus só trocam pixels de lugar: cópia exata, sem
+ *   interpolação, em blocos para aproveitar o cache.
+ * - Os demais ângulos usam mapeamento inverso: cada pixel do destino é
+ *   levado de volta à origem e interpolado com o filtro escolhido
+ *   (ResampleFilter). As linhas do destino são divididas em faixas do
+ *   TileScheduler; em cada linha, a posição na origem anda um passo fixo por
+ *   pixel, em ponto fixo (32 bits de fração), sem senos nem divisões.
+ *
+ * O tamanho do resultado é o retângulo que contém a imagem girada,
+ * arredondado para cima. Fora da imagem girada o resultado fica com 0
+ * (transparente com alfa, preto sem). Em imagens com alfa, os canais são
+ * interpolados sem pré-multiplicar, como no EditPipeline.
+ */
+public class Rotator {
+
+    /** Unidade do ponto fixo das coordenadas na origem. */
+    private static final long ONE = 1L << 32;
+    private static final long HALF = ONE >> 1;
+    /** Subdivisões do pixel nas tabelas de pesos (os 8 bits mais altos da fração). */
+    private static final int PHASES = 256;
+    /** Lado dos blocos da rotação de 90 graus. */
+    private static final int BLOCK = 64;
+
+    /** Largura e altura do retângulo que contém uma imagem width x height girada de 'degrees'. */
+    public static int[] outputSize(int width, int height, double degrees) {
+        int quarter = quarterTurns(degrees);
+        if (quarter >= 0) {
+            return quarter % 2 == 0 ? new int[] { width, height } : new int[] { height, width };
+        }
+        double angle = Math.toRadians(degrees);
+        double cos = Math.abs(Math.cos(angle));
+        double sin = Math.abs(Math.sin(angle));
+        // A folga evita que um erro de arredondamento (100.0000000001) vire um pixel a mais
+        int newWidth = (int) Math.ceil(width * cos + height * sin - 1e-6);
+        int newHeight = (int) Math.ceil(height * cos + width * sin - 1e-6);
+        return new int[] { Math.max(1, newWidth), Math.max(1, newHeight) };
+    }
+
+    /** Quantos quartos de volta (0 a 3) são 'degrees', ou -1 se não for múltiplo de 90. */
+    static int quarterTurns(double degrees) {
+        double turns = degrees / 90;
+        long rounded = Math.round(turns);
+        if (Math.abs(turns - rounded) > 1e-9) return -1;
+        return (int) Math.floorMod(rounded, 4L);
+    }
+
+    /**
+     * A imagem girada de 'degrees' (sentido horário na tela, como o
+     * AffineTransform.rotate), no tipo de ImageProcessor.nativeType(image).
+     */
+    public static BufferedImage rotate(BufferedImage image, double degrees, ResampleFilter filter) {
+        BufferedImage src = compactNative(image);
+        int quarter = quarterTurns(degrees);
+        if (quarter >= 0) {
+            return rotateQuarters(src, quarter);
+        }
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] size = outputSize(width, height, degrees);
+        BufferedImage result = new BufferedImage(size[0], size[1], src.getType());
+
+        AffineTransform transform = new AffineTransform();
+        transform.translate(size[0] / 2.0, size[1] / 2.0);
+        transform.rotate(Math.toRadians(degrees));
+        transform.translate(-width / 2.0, -height / 2.0);
+        AffineTransform inverse;
+        try {
+            inverse = transform.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException(e); // rotações sempre têm inversa
+        }
+        long stepX = fixed(inverse.getScaleX());
+        long stepY = fixed(inverse.getShearY());
+
+        Mapping mapping = new Mapping(src, result, filter);
+        TileScheduler.forEachBand(size[1], 0, (y0, y1) -> {
+            double[] point = new double[2];
+            for (int v = y0; v < y1; v++) {
+                // Centro do primeiro pixel da linha, em coordenadas de pixel da origem
+                point[0] = 0.5;
+                point[1] = v + 0.5;
+                inverse.transform(point, 0, point, 0, 1);
+                mapping.row(v, fixed(point[0] - 0.5), fixed(point[1] - 0.5), stepX, stepY);
+            }
+        });
+        return result;
+    }
+
+    private static long fixed(double value) {
+        return Math.round(value * ONE);
+    }
+
+    /** A imagem no tipo nativo e compacta (RawImage.isCompact); cópia só se preciso. */
+    private static BufferedImage compactNative(BufferedImage image) {
+        int type = ImageProcessor.nativeType(image);
+        if (image.getType() == type && RawImage.isCompact(image)) return image;
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Uma rotação por ângulo qualquer: os arrays da origem e do destino (bytes
+     * intercalados ou ints empacotados) e os pesos do filtro. Cada linha do
+     * destino é independente, então row pode rodar em paralelo.
+     */
+    private static final class Mapping {
+        final byte[] srcBytes;
+        final byte[] dstBytes;
+        final int[] srcInts;
+        final int[] dstInts;
+        /** Bytes por pixel (tipos de bytes) ou canais de 8 bits no int. */
+        final int channels;
+        final int srcWidth;
+        final int srcHeight;
+        final int width;
+        final ResampleFilter filter;
+        /** Amostras por eixo e pesos normalizados por fase (só BICUBIC e LANCZOS3). */
+        final int taps;
+        final float[] weights;
+
+        Mapping(BufferedImage src, BufferedImage dst, ResampleFilter filter) {
+            this.srcWidth = src.getWidth();
+            this.srcHeight = src.getHeight();
+            this.width = dst.getWidth();
+            this.filter = filter;
+            if (src.getRaster().getDataBuffer() instanceof DataBufferByte) {
+                srcBytes = ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+                dstBytes = ((DataBufferByte) dst.getRaster().getDataBuffer()).getData();
+                srcInts = dstInts = null;
+                channels = RasterAccess.numBands(src);
+            } else {
+                srcInts = ((DataBufferInt) src.getRaster().getDataBuffer()).getData();
+                dstInts = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+                srcBytes = dstBytes = null;
+                channels = src.getColorModel().hasAlpha() ? 4 : 3;
+            }
+            taps = (int) Math.ceil(2 * filter.support());
+            weights = new float[PHASES * taps];
+            if (filter == ResampleFilter.NEAREST || filter == ResampleFilter.BILINEAR) return;
+            // Com fração f, a posição usa as amostras floor - taps/2 + 1 ... floor + taps/2
+            for (int phase = 0; phase < PHASES; phase++) {
+                double fraction = (double) phase / PHASES;
+                double sum = 0;
+                for (int j = 0; j < taps; j++) {
+                    sum += filter.weight(j - taps / 2 + 1 - fraction);
+                }
+                for (int j = 0; j < taps; j++) {
+                    weights[phase * taps + j] = (float) (filter.weight(j - taps / 2 + 1 - fraction) / sum);
+                }
+            }
+        }
+
+        /** Linha v do destino; (sx, sy) é o primeiro pixel na origem e (dx, dy) o passo, em ponto fixo. */
+        void row(int v, long sx, long sy, long dx, long dy) {
+            // Só os pixels com centro em [-0.5, tamanho - 0.5) na origem caem dentro da imagem girada
+            int[] span = { 0, width };
+            clip(sx, dx, srcWidth, span);
+            clip(sy, dy, srcHeight, span);
+            if (span[0] >= span[1]) return;
+            sx += span[0] * dx;
+            sy += span[0] * dy;
+            int end = v * width + span[1];
+            if (filter == ResampleFilter.NEAREST) {
+                for (int target = v * width + span[0]; target < end; target++, sx += dx, sy += dy) {
+                    copyNearest(target, sx, sy);
+                }
+            } else if (filter == ResampleFilter.BILINEAR && srcInts != null) {
+                for (int target = v * width + span[0]; target < end; target++, sx += dx, sy += dy) {
+                    bilinearInt(target, sx, sy);
+                }
+            } else if (filter == ResampleFilter.BILINEAR) {
+                for (int target = v * width + span[0]; target < end; target++, sx += dx, sy += dy) {
+                    bilinearBytes(target, sx, sy);
+                }
+            } else if (srcInts != null) {
+                for (int target = v * width + span[0]; target < end; target++, sx += dx, sy += dy) {
+                    filteredInt(target, sx, sy);
+                }
+            } else {
+                for (int target = v * width + span[0]; target < end; target++, sx += dx, sy += dy) {
+                    filteredBytes(target, sx, sy);
+                }
+            }
+        }
+
+        /**
+         * Restringe span (pixels [início, fim) da linha) aos u com
+         * s + u * d em [-0.5, size - 0.5), sem testar pixel por pixel.
+         */
+        private static void clip(long s, long d, int size, int[] span) {
+            long low = -HALF - s;
+            long high = size * ONE - HALF - s;
+            long from, to;
+            if (d > 0) {
+                from = -Math.floorDiv(-low, d); // primeiro u com u * d >= low
+                to = -Math.floorDiv(-high, d); // primeiro u com u * d >= high
+            } else if (d < 0) {
+                from = Math.floorDiv(high, d) + 1; // primeiro u com u * d < high
+                to = Math.floorDiv(low, d) + 1; // primeiro u com u * d < low
+            } else {
+                from = low <= 0 && high > 0 ? 0 : span[1];
+                to = span[1];
+            }
+            span[0] = (int) Math.max(span[0], Math.min(from, span[1]));
+            span[1] = (int) Math.max(span[0], Math.min(to, span[1]));
+        }
+
+        /** Dentro da imagem, floor(s + 0.5) já está em [0, tamanho). */
+        private void copyNearest(int target, long sx, long sy) {
+            int source = (int) ((sy + HALF) >> 32) * srcWidth + (int) ((sx + HALF) >> 32);
+            if (srcInts != null) {
+                dstInts[target] = srcInts[source];
+                return;
+            }
+            source *= channels;
+            target *= channels;
+            dstBytes[target] = srcBytes[source];
+            if (channels == 1) return;
+            dstBytes[target + 1] = srcBytes[source + 1];
+            dstBytes[target + 2] = srcBytes[source + 2];
+            if (channels == 4) dstBytes[target + 3] = srcBytes[source + 3];
+        }
+
+        /** Os 4 vizinhos em bytes, com pesos de 8 bits e arredondamento inteiro. */
+        private void bilinearBytes(int target, long sx, long sy) {
+            int x0 = (int) (sx >> 32);
+            int y0 = (int) (sy >> 32);
+            int fx = (int) (sx >>> 24) & 0xFF;
+            int fy = (int) (sy >>> 24) & 0xFF;
+            int left = Math.max(0, x0) * channels;
+            int right = Math.min(srcWidth - 1, x0 + 1) * channels;
+            int top = Math.max(0, y0) * srcWidth * channels;
+            int bottom = Math.min(srcHeight - 1, y0 + 1) * srcWidth * channels;
+            for (int c = 0; c < channels; c++) {
+                int upper = (srcBytes[top + left + c] & 0xFF) * (256 - fx) + (srcBytes[top + right + c] & 0xFF) * fx;
+                int lower = (srcBytes[bottom + left + c] & 0xFF) * (256 - fx)
+                        + (srcBytes[bottom + right + c] & 0xFF) * fx;
+                dstBytes[target * channels + c] = (byte) ((upper * (256 - fy) + lower * fy + 32768) >> 16);
+            }
+        }
+
+        /** Os 4 vizinhos empacotados em int, dois canais por vez (lerp). */
+        private void bilinearInt(int target, long sx, long sy) {
+            int x0 = (int) (sx >> 32);
+            int y0 = (int) (sy >> 32);
+            int fx = (int) (sx >>> 24) & 0xFF;
+            int fy = (int) (sy >>> 24) & 0xFF;
+            int left = Math.max(0, x0);
+            int right = Math.min(srcWidth - 1, x0 + 1);
+            int top = Math.max(0, y0) * srcWidth;
+            int bottom = Math.min(srcHeight - 1, y0 + 1) * srcWidth;
+            int upper = lerp(srcInts[top + left], srcInts[top + right], fx);
+            int lower = lerp(srcInts[bottom + left], srcInts[bottom + right], fx);
+            int mixed = lerp(upper, lower, fy);
+            dstInts[target] = channels == 4 ? mixed : mixed | 0xFF000000;
+        }
+
+        /**
+         * a + (b - a) * f / 256 nos quatro canais, dois por vez (0x00FF00FF):
+         * cada canal ocupa 16 bits, então valor x peso (até 255 x 256) não
+         * invade o vizinho.
+         */
+        private static int lerp(int a, int b, int f) {
+            int g = 256 - f;
+            int rb = (((a & 0x00FF00FF) * g + (b & 0x00FF00FF) * f + 0x00800080) >>> 8) & 0x00FF00FF;
+            int ag = (((a >>> 8) & 0x00FF00FF) * g + ((b >>> 8) & 0x00FF00FF) * f + 0x00800080) & 0xFF00FF00;
+            return ag | rb;
+        }
+
+        /** BICUBIC e LANCZOS3 em ints: cada linha de amostras somada na horizontal e depois na vertical. */
+        private void filteredInt(int target, long sx, long sy) {
+            int x0 = (int) (sx >> 32) - taps / 2 + 1;
+            int y0 = (int) (sy >> 32) - taps / 2 + 1;
+            int wx = ((int) (sx >>> 24) & 0xFF) * taps;
+            int wy = ((int) (sy >>> 24) & 0xFF) * taps;
+            boolean interior = x0 >= 0 && x0 + taps <= srcWidth;
+            float b = 0f, g = 0f, r = 0f, a = 0f;
+            for (int i = 0; i < taps; i++) {
+                int rowStart = Math.min(srcHeight - 1, Math.max(0, y0 + i)) * srcWidth;
+                float hb = 0f, hg = 0f, hr = 0f, ha = 0f;
+                for (int j = 0; j < taps; j++) {
+                    int x = interior ? x0 + j : Math.min(srcWidth - 1, Math.max(0, x0 + j));
+                    int pixel = srcInts[rowStart + x];
+                    float weight = weights[wx + j];
+                    hb += weight * (pixel & 0xFF);
+                    hg += weight * ((pixel >> 8) & 0xFF);
+                    hr += weight * ((pixel >> 16) & 0xFF);
+                    ha += weight * (pixel >>> 24);
+                }
+                float weight = weights[wy + i];
+                b += weight * hb;
+                g += weight * hg;
+                r += weight * hr;
+                a += weight * ha;
+            }
+            int alpha = channels == 4 ? PixelKernels.toSample(a, 255) : 0xFF;
+            dstInts[target] = alpha << 24 | PixelKernels.toSample(r, 255) << 16
+                    | PixelKernels.toSample(g, 255) << 8 | PixelKernels.toSample(b, 255);
+        }
+
+        /** BICUBIC e LANCZOS3 em bytes intercalados (1, 3 ou 4 por pixel). */
+        private void filteredBytes(int target, long sx, long sy) {
+            int x0 = (int) (sx >> 32) - taps / 2 + 1;
+            int y0 = (int) (sy >> 32) - taps / 2 + 1;
+            int wx = ((int) (sx >>> 24) & 0xFF) * taps;
+            int wy = ((int) (sy >>> 24) & 0xFF) * taps;
+            boolean interior = x0 >= 0 && x0 + taps <= srcWidth;
+            float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+            for (int i = 0; i < taps; i++) {
+                int rowStart = Math.min(srcHeight - 1, Math.max(0, y0 + i)) * srcWidth;
+                float h0 = 0f, h1 = 0f, h2 = 0f, h3 = 0f;
+                for (int j = 0; j < taps; j++) {
+                    int x = interior ? x0 + j : Math.min(srcWidth - 1, Math.max(0, x0 + j));
+                    int index = (rowStart + x) * channels;
+                    float weight = weights[wx + j];
+                    h0 += weight * (srcBytes[index] & 0xFF);
+                    if (channels == 1) continue;
+                    h1 += weight * (srcBytes[index + 1] & 0xFF);
+                    h2 += weight * (srcBytes[index + 2] & 0xFF);
+                    if (channels == 4) h3 += weight * (srcBytes[index + 3] & 0xFF);
+                }
+                float weight = weights[wy + i];
+                s0 += weight * h0;
+                s1 += weight * h1;
+                s2 += weight * h2;
+                s3 += weight * h3;
+            }
+            target *= channels;
+            dstBytes[target] = (byte) PixelKernels.toSample(s0, 255);
+            if (channels == 1) return;
+            dstBytes[target + 1] = (byte) PixelKernels.toSample(s1, 255);
+            dstBytes[target + 2] = (byte) PixelKernels.toSample(s2, 255);
+            if (channels == 4) dstBytes[target + 3] = (byte) PixelKernels.toSample(s3, 255);
+        }
+    }
+
+    /**
+     * Rotação exata de quarter * 90 graus: cada pixel só muda de lugar. Ao
+     * longo de uma linha do destino, o pixel da origem anda um passo fixo
+     * (1, -1, largura ou -largura); os blocos mantêm no cache as linhas da
+     * origem visitadas nos passos verticais.
+     */
+    private static BufferedImage rotateQuarters(BufferedImage src, int quarter) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        boolean swap = quarter % 2 == 1;
+        int outWidth = swap ? height : width;
+        int outHeight = swap ? width : height;
+        BufferedImage result = new BufferedImage(outWidth, outHeight, src.getType());
+        // O pixel da origem que cai em (0, v) é first + v * perRow; a cada passo em u, soma step
+        int first, perRow, step;
+        switch (quarter) {
+            case 1: // (u, v) <- (v, height - 1 - u)
+                first = (height - 1) * width;
+                perRow = 1;
+                step = -width;
+                break;
+            case 2: // (u, v) <- (width - 1 - u, height - 1 - v)
+                first = height * width - 1;
+                perRow = -width;
+                step = -1;
+                break;
+            case 3: // (u, v) <- (width - 1 - v, u)
+                first = width - 1;
+                perRow = -1;
+                step = width;
+                break;
+            default:
+                first = 0;
+                perRow = width;
+                step = 1;
+        }
+
+        boolean ints = src.getRaster().getDataBuffer() instanceof DataBufferInt;
+        int[] fromInts = ints ? ((DataBufferInt) src.getRaster().getDataBuffer()).getData() : null;
+        int[] toInts = ints ? ((DataBufferInt) result.getRaster().getDataBuffer()).getData() : null;
+        byte[] fromBytes = ints ? null : ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+        byte[] toBytes = ints ? null : ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+        int pixelSize = ints ? 1 : RasterAccess.numBands(src);
+
+        TileScheduler.forEachBand(outHeight, 0, (y0, y1) -> {
+            for (int by = y0; by < y1; by += BLOCK) {
+                int byEnd = Math.min(y1, by + BLOCK);
+                for (int bx = 0; bx < outWidth; bx += BLOCK) {
+                    int bxEnd = Math.min(outWidth, bx + BLOCK);
+                    for (int v = by; v < byEnd; v++) {
+                        int source = first + v * perRow + bx * step;
+                        int target = v * outWidth + bx;
+                        if (ints) {
+                            for (int u = bx; u < bxEnd; u++, source += step) {
+                                toInts[target++] = fromInts[source];
+                            }
+                        } else {
+                            for (int u = bx; u < bxEnd; u++, source += step, target++) {
+                                for (int c = 0; c < pixelSize; c++) {
+                                    toBytes[target * pixelSize + c] = fromBytes[source * pixelSize + c];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+// Arquivo: RowWriter.java
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Escritor de imagem que recebe as linhas em ordem, em faixas, sem precisar
+ * da imagem inteira (PNG, TIFF, PNM e raw). close termina o arquivo e exige
+ * que todas as linhas tenham sido gravadas.
+ */
+public interface RowWriter extends AutoCloseable {
+
+    /** Grava todas as linhas de 'rows' (mesma largura), depois das já gravadas. */
+    void writeRows(BufferedImage rows) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
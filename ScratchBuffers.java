@@ -0,0 +1,50 @@
+// Arquivo: ScratchBuffers.java
+
+/**
+ * Buffers de trabalho reaproveitados por thread: os filtros pedem um array
+ * de pelo menos n posições numa "vaga" (slot) e recebem o mesmo array da vez
+ * anterior se ele já for grande o bastante. Com imagens do mesmo tamanho, a
+ * partir da segunda as faixas do TileScheduler não alocam mais nada.
+ *
+ * O conteúdo devolvido é indefinido (sobra do último uso) e o array pode ser
+ * maior que o pedido. Cada vaga só pode estar em uso uma vez por thread: quem
+ * usa os buffers não pode chamar, de dentro de uma faixa, outro filtro que
+ * use as mesmas vagas.
+ *
+ * Arrays maiores que MAX_CACHED posições não são guardados, para que uma
+ * imagem enorme não deixe memória presa em todas as threads do pool.
+ */
+public class ScratchBuffers {
+
+    private static final int SLOTS = 8;
+    private static final int MAX_CACHED = 4 << 20;
+
+    private static final ThreadLocal<ScratchBuffers> LOCAL = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    private final int[][] ints = new int[SLOTS][];
+    private final float[][] floats = new float[SLOTS][];
+
+    /** Array int[] de pelo menos 'size' posições na vaga 'slot' da thread atual. */
+    public static int[] ints(int slot, int size) {
+        if (size > MAX_CACHED) return new int[size];
+        int[][] cache = LOCAL.get().ints;
+        int[] buffer = cache[slot];
+        if (buffer == null || buffer.length < size) {
+            buffer = new int[size];
+            cache[slot] = buffer;
+        }
+        return buffer;
+    }
+
+    /** Array float[] de pelo menos 'size' posições na vaga 'slot' da thread atual. */
+    public static float[] floats(int slot, int size) {
+        if (size > MAX_CACHED) return new float[size];
+        float[][] cache = LOCAL.get().floats;
+        float[] buffer = cache[slot];
+        if (buffer == null || buffer.length < size) {
+            buffer = new float[size];
+            cache[slot] = buffer;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,198 @@
+// Arquivo: StreamingFilter.java
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Caminho PNG -> filtros -> PNG em fluxo: o PngStreamReader entrega faixas de
+ * linhas, cada filtro da sequência guarda só as linhas de que ainda precisa
+ * (uma janela que rola pela imagem) e o RowWriter do formato de saída (PNG,
+ * TIFF, PNM ou raw) grava as linhas assim que ficam prontas. A memória é O(largura x (faixa + altura do kernel)) por
+ * filtro, e não O(imagem).
+ *
+ * Cada filtro é aplicado à janela com ImageProcessor.applyFilter; a janela vai
+ * 'raio' linhas além das que são emitidas (ImageProcessor.filterRadius) e é
+ * cortada nas bordas reais da imagem, então o resultado é igual ao do filtro
+ * aplicado à imagem inteira. Filtros sem raio limitado (afinamento) não podem
+ * ser aplicados assim (supports devolve false).
+ *
+ * A exceção é o PNG em cinza com alfa: o ImageIO o lê em 2 bandas de cinza
+ * linear, e os filtros no heap trabalham nesse espaço; aqui as faixas chegam
+ * em RGBA sRGB (ver PngStreamReader), então as cores iniciais são as mesmas,
+ * mas o resultado dos filtros pode diferir em alguns níveis.
+ */
+public class StreamingFilter {
+
+    /** Linhas lidas do PNG e emitidas por cada filtro de cada vez. */
+    private static final int STRIP_ROWS = 64;
+
+    /** Destino das linhas de uma etapa, na ordem da imagem. */
+    interface RowSink {
+        void push(BufferedImage rows) throws IOException;
+
+        /** Todas as linhas foram entregues. */
+        void finish() throws IOException;
+    }
+
+    /** A sequência pode ser aplicada em fluxo (só filtros de vizinhança limitada)? */
+    public static boolean supports(String[] pipeline) {
+        for (String name : pipeline) {
+            if (ImageProcessor.filterRadius(name) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lê 'input' (PNG), aplica os filtros em ordem e grava 'output' (PNG).
+     * @return o tamanho da imagem
+     * @throws IllegalArgumentException se algum filtro não puder ser aplicado em fluxo
+     */
+    public static Dimension filterPng(File input, String[] pipeline, File output) throws IOException {
+        return filterPng(input, pipeline, output, new ExportOptions());
+    }
+
+    /**
+     * Como filterPng(File, String[], File), gravando no formato da extensão de
+     * 'output' (ImageFileManager.openRowWriter) com as opções de PNG dadas.
+     */
+    public static Dimension filterPng(File input, String[] pipeline, File output, ExportOptions options)
+            throws IOException {
+        if (!supports(pipeline)) {
+            throw new IllegalArgumentException("A sequência tem filtros que precisam da imagem inteira");
+        }
+        try (PngStreamReader reader = new PngStreamReader(input)) {
+            int width = reader.getWidth();
+            int height = reader.getHeight();
+            Encoder encoder = new Encoder(output, width, height, options);
+            try {
+                RowSink sink = encoder;
+                for (int i = pipeline.length - 1; i >= 0; i--) {
+                    sink = new FilterStage(pipeline[i], height, sink);
+                }
+                ProgressTracker tracker = ProgressTracker.current();
+                BufferedImage rows;
+                while ((rows = reader.readRows(STRIP_ROWS)) != null) {
+                    if (tracker != null) tracker.checkCancelled();
+                    sink.push(rows);
+                    if (tracker != null) tracker.bandsDone(reader.getRowsRead(), height);
+                }
+                sink.finish();
+                return new Dimension(width, height);
+            } catch (IOException | RuntimeException e) {
+                encoder.abort();
+                output.delete();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Um filtro com janela rolante: acumula as linhas recebidas e, quando já
+     * tem 'raio' linhas além de pelo menos STRIP_ROWS linhas pendentes (ou a
+     * imagem acabou), filtra a janela, emite as pendentes e descarta as que
+     * nenhuma linha futura vai precisar.
+     */
+    private static class FilterStage implements RowSink {
+        private final String filterName;
+        private final int radius;
+        private final int height;
+        private final RowSink next;
+
+        /** Linhas guardadas, começando na linha windowStart da imagem. */
+        private BufferedImage window;
+        private int windowStart;
+        /** Primeira linha ainda não emitida. */
+        private int emitted;
+
+        FilterStage(String filterName, int height, RowSink next) {
+            this.filterName = filterName;
+            this.radius = ImageProcessor.filterRadius(filterName);
+            this.height = height;
+            this.next = next;
+        }
+
+        @Override
+        public void push(BufferedImage rows) throws IOException {
+            window = window == null ? rows : append(window, rows);
+            int available = windowStart + window.getHeight();
+            int ready = available == height ? height : available - radius;
+            if (ready - emitted >= STRIP_ROWS || (available == height && ready > emitted)) {
+                emit(ready);
+            }
+        }
+
+        private void emit(int end) throws IOException {
+            BufferedImage filtered = ImageProcessor.applyFilter(filterName, window);
+            next.push(copyRows(filtered, emitted - windowStart, end - emitted));
+            emitted = end;
+
+            // As próximas linhas só precisam das 'raio' anteriores a elas
+            int keepFrom = Math.max(windowStart, emitted - radius);
+            int keep = windowStart + window.getHeight() - keepFrom;
+            window = keep > 0 ? copyRows(window, keepFrom - windowStart, keep) : null;
+            windowStart = keepFrom;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (emitted < height) {
+                throw new IOException("Imagem terminou antes da hora: " + emitted + " de " + height + " linhas");
+            }
+            next.finish();
+        }
+    }
+
+    /** Grava as linhas no arquivo de saída, criado com as bandas da primeira faixa. */
+    private static class Encoder implements RowSink {
+        private final File output;
+        private final int width;
+        private final int height;
+        private final ExportOptions options;
+        private RowWriter writer;
+
+        Encoder(File output, int width, int height, ExportOptions options) {
+            this.output = output;
+            this.width = width;
+            this.height = height;
+            this.options = options;
+        }
+
+        @Override
+        public void push(BufferedImage rows) throws IOException {
+            if (writer == null) {
+                writer = ImageFileManager.openRowWriter(output, width, height, MappedImage.bandsFor(rows), options);
+            }
+            writer.writeRows(rows);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.close();
+        }
+
+        void abort() {
+            if (writer == null) return;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Arquivo incompleto; quem chamou apaga
+            }
+        }
+    }
+
+    /** As linhas de 'a' seguidas das de 'b' (mesma largura e tipo). */
+    private static BufferedImage append(BufferedImage a, BufferedImage b) {
+        BufferedImage result = RasterAccess.createCompatible(a, a.getWidth(), a.getHeight() + b.getHeight());
+        result.getRaster().setRect(0, 0, a.getRaster());
+        result.getRaster().setRect(0, a.getHeight(), b.getRaster());
+        return result;
+    }
+
+    /** Cópia (não uma vista) das linhas [y, y + rows) de 'image'. */
+    private static BufferedImage copyRows(BufferedImage image, int y, int rows) {
+        BufferedImage result = RasterAccess.createCompatible(image, image.getWidth(), rows);
+        result.getRaster().setRect(image.getRaster().createChild(0, y, image.getWidth(), rows, 0, 0, null));
+        return result;
+    }
+}
@@ -0,0 +1,281 @@
+// Arquivo: StripProcessor.java
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Aplica as operações do ImageProcessor a uma MappedImage, faixa por faixa.
+ *
+ * Cada faixa de linhas é copiada para uma BufferedImage pequena junto com
+ * 'halo' linhas vizinhas de cada lado (cortadas nas bordas reais da imagem,
+ * como no TiledFilter), filtrada no heap e só o miolo vai para a imagem de
+ * saída, que também é mapeada. O resultado é igual ao do filtro aplicado de
+ * uma vez, e o heap usado depende do tamanho da faixa, não da imagem.
+ *
+ * O afinamento é a exceção: ele itera sobre a imagem toda, então a imagem é
+ * binarizada numa BinaryImage (1 bit por pixel, 1/32 de uma imagem ARGB).
+ */
+public class StripProcessor {
+
+    /** Tamanho aproximado de cada faixa no heap. */
+    private static final long STRIP_BYTES = 32L << 20;
+    private static final int MIN_STRIP_ROWS = 16;
+
+    /** Pixels de origem lidos de uma vez por render (16 MB em ARGB). */
+    private static final long MAX_SOURCE_PIXELS = 4L << 20;
+
+    /**
+     * Aplica 'operation' faixa por faixa. A operação recebe a faixa com o halo
+     * e precisa devolver uma imagem da mesma largura e altura, em que cada linha
+     * dependa só das linhas até 'halo' de distância na entrada.
+     */
+    public static MappedImage map(MappedImage source, int halo, UnaryOperator<BufferedImage> operation) throws IOException {
+        return map(source, halo, stripRows((long) source.getWidth() * 4, halo), operation);
+    }
+
+    /** Como map(source, halo, operation), com 'rows' linhas por faixa (os testes usam faixas pequenas). */
+    static MappedImage map(MappedImage source, int halo, int rows, UnaryOperator<BufferedImage> operation)
+            throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        ProgressTracker tracker = ProgressTracker.current();
+        int strips = (height + rows - 1) / rows;
+
+        MappedImage result = null;
+        try {
+            for (int s = 0; s < strips; s++) {
+                if (tracker != null) tracker.checkCancelled();
+                int y0 = s * rows;
+                int y1 = Math.min(height, y0 + rows);
+                int first = Math.max(0, y0 - halo);
+                int last = Math.min(height, y1 + halo);
+
+                BufferedImage filtered = operation.apply(source.readStrip(first, last));
+                if (result == null) {
+                    result = new MappedImage(width, height, MappedImage.bandsFor(filtered));
+                }
+                result.writeRows(filtered, y0 - first, y0, y1 - y0);
+                if (tracker != null) tracker.bandsDone(s + 1, strips);
+            }
+        } catch (RuntimeException | IOException e) {
+            if (result != null) result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /** Linhas por faixa para linhas de 'rowBytes' bytes: cerca de STRIP_BYTES, e bem mais que o halo. */
+    private static int stripRows(long rowBytes, int halo) {
+        long rows = STRIP_BYTES / Math.max(1, rowBytes);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(Math.max(MIN_STRIP_ROWS, 4L * halo), rows));
+    }
+
+    /** Versão em faixas de ImageProcessor.applyFilter (bordas em CLAMP). */
+    public static MappedImage applyFilter(String filterName, MappedImage source) throws IOException {
+        int radius = ImageProcessor.filterRadius(filterName);
+        if (radius >= 0) {
+            ProgressTracker tracker = ProgressTracker.current();
+            ProgressTracker stripTracker = tracker != null ? tracker.silentChild() : null;
+            return map(source, radius, strip -> filterStrip(filterName, strip, stripTracker));
+        }
+        switch (filterName) {
+            case "zhangsuen":
+                return applyZhangSuen(source);
+            case "stentiford":
+                return applyStentiford(source);
+            case "otsu":
+                return fromBinary(Thresholding.binarize(Thresholding.rows(source), source.getWidth(),
+                        source.getHeight(), ThresholdMethod.OTSU));
+            default:
+                throw new IllegalArgumentException("Filtro desconhecido: " + filterName);
+        }
+    }
+
+    /** Os filtros de cada faixa só verificam o cancelamento; o progresso é por faixa. */
+    private static BufferedImage filterStrip(String filterName, BufferedImage strip, ProgressTracker tracker) {
+        if (tracker == null) {
+            return ImageProcessor.applyFilter(filterName, strip);
+        }
+        try {
+            return ProgressTracker.callWith(tracker, () -> ImageProcessor.applyFilter(filterName, strip));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static MappedImage applyConvolution(MappedImage source, ConvolutionKernel kernel, BorderMode borderMode) throws IOException {
+        int halo = Math.max(kernel.getYOrigin(), kernel.getHeight() - 1 - kernel.getYOrigin());
+        return map(source, halo, strip -> ImageProcessor.applyConvolution(strip, kernel, borderMode));
+    }
+
+    public static MappedImage applyErosion(MappedImage source, StructuringElement element, BorderMode borderMode) throws IOException {
+        int halo = Math.max(element.top(), element.bottom());
+        return map(source, halo, strip -> ImageProcessor.applyErosion(strip, element, borderMode));
+    }
+
+    public static MappedImage applyDilation(MappedImage source, StructuringElement element, BorderMode borderMode) throws IOException {
+        int halo = Math.max(element.top(), element.bottom());
+        return map(source, halo, strip -> ImageProcessor.applyDilation(strip, element, borderMode));
+    }
+
+    public static MappedImage applyZhangSuen(MappedImage source) throws IOException {
+        BinaryImage binary = binarize(source);
+        Thinning.zhangSuen(binary);
+        return fromBinary(binary);
+    }
+
+    public static MappedImage applyStentiford(MappedImage source) throws IOException {
+        BinaryImage binary = binarize(source);
+        Thinning.stentiford(binary);
+        return fromBinary(binary);
+    }
+
+    /**
+     * Mesma binarização do afinamento em ImageProcessor (DEFAULT_THRESHOLD_METHOD),
+     * lida linha por linha da imagem mapeada.
+     */
+    static BinaryImage binarize(MappedImage source) {
+        return Thresholding.binarize(Thresholding.rows(source), source.getWidth(), source.getHeight(),
+                ImageProcessor.DEFAULT_THRESHOLD_METHOD);
+    }
+
+    /** Objeto em preto e fundo em branco, numa banda só (o ARGB do heap gastaria 4 vezes mais disco). */
+    private static MappedImage fromBinary(BinaryImage binary) throws IOException {
+        int width = binary.getWidth();
+        int height = binary.getHeight();
+        MappedImage result = new MappedImage(width, height, 1);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = binary.get(x, y) ? 0 : 255;
+            }
+            result.writeRow(y, 0, row, 0);
+        }
+        return result;
+    }
+
+    /**
+     * Versão em faixas de EditPipeline.render: a saída é gerada em faixas de
+     * linhas e, para cada pedaço dela, só o retângulo da origem que ele enxerga
+     * é lido para o heap (pedaços cuja origem passaria de MAX_SOURCE_PIXELS
+     * são divididos ao meio). O resultado tem 4 bandas (RGBA).
+     */
+    public static MappedImage render(MappedImage source, EditPipeline pipeline) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] size = pipeline.outputSize(width, height);
+        int outWidth = size[0];
+        int outHeight = size[1];
+
+        AffineTransform inverse;
+        try {
+            inverse = pipeline.createTransform(width, height, outWidth / 2.0, outHeight / 2.0, 1.0).createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException(e);
+        }
+        IntUnaryOperator color = pipeline.colorFunction();
+        boolean hasColor = pipeline.hasPointOps();
+
+        int rows = stripRows((long) outWidth * 4, 0);
+        ProgressTracker tracker = ProgressTracker.current();
+        int strips = (outHeight + rows - 1) / rows;
+        MappedImage result = new MappedImage(outWidth, outHeight, 4);
+        try {
+            for (int s = 0; s < strips; s++) {
+                if (tracker != null) tracker.checkCancelled();
+                int v0 = s * rows;
+                int v1 = Math.min(outHeight, v0 + rows);
+                int[] strip = new int[(v1 - v0) * outWidth];
+                TileScheduler.forEachBand(v1 - v0, 0, (r0, r1) -> renderRegion(source, inverse, color, hasColor,
+                        new Rectangle(0, v0 + r0, outWidth, r1 - r0), strip, v0, outWidth));
+                int[] row = new int[outWidth];
+                for (int v = v0; v < v1; v++) {
+                    System.arraycopy(strip, (v - v0) * outWidth, row, 0, outWidth);
+                    result.writeArgbRow(v, row);
+                }
+                if (tracker != null) tracker.bandsDone(s + 1, strips);
+            }
+        } catch (RuntimeException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    /** Preenche o retângulo 'out' da saída em strip (que começa na linha stripY). */
+    private static void renderRegion(MappedImage source, AffineTransform inverse, IntUnaryOperator color, boolean hasColor,
+                                     Rectangle out, int[] strip, int stripY, int stride) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Rectangle needed = sourceBounds(inverse, out).intersection(new Rectangle(0, 0, width, height));
+        if ((long) needed.width * needed.height > MAX_SOURCE_PIXELS && (out.width > 1 || out.height > 1)) {
+            if (out.width >= out.height) {
+                int half = out.width / 2;
+                renderRegion(source, inverse, color, hasColor, new Rectangle(out.x, out.y, half, out.height), strip, stripY, stride);
+                renderRegion(source, inverse, color, hasColor, new Rectangle(out.x + half, out.y, out.width - half, out.height), strip, stripY, stride);
+            } else {
+                int half = out.height / 2;
+                renderRegion(source, inverse, color, hasColor, new Rectangle(out.x, out.y, out.width, half), strip, stripY, stride);
+                renderRegion(source, inverse, color, hasColor, new Rectangle(out.x, out.y + half, out.width, out.height - half), strip, stripY, stride);
+            }
+            return;
+        }
+
+        int[] src = null;
+        if (!needed.isEmpty()) {
+            src = new int[needed.width * needed.height];
+            source.readArgb(needed, src);
+        }
+        double dxx = inverse.getScaleX();
+        double dyx = inverse.getShearY();
+        double[] point = new double[2];
+        for (int v = out.y; v < out.y + out.height; v++) {
+            // Mesma acumulação de EditPipeline.render, a partir do início da linha, para dar o mesmo resultado
+            point[0] = 0.5;
+            point[1] = v + 0.5;
+            inverse.transform(point, 0, point, 0, 1);
+            double sx = point[0] - 0.5;
+            double sy = point[1] - 0.5;
+            for (int u = 0; u < out.x; u++) {
+                sx += dxx;
+                sy += dyx;
+            }
+            int off = (v - stripY) * stride;
+            for (int u = out.x; u < out.x + out.width; u++, sx += dxx, sy += dyx) {
+                int argb = src == null ? 0
+                        : EditPipeline.sample(src, needed.x, needed.y, needed.width, width, height, sx, sy);
+                strip[off + u] = (hasColor && argb != 0) ? color.applyAsInt(argb) : argb;
+            }
+        }
+    }
+
+    /** Pixels da origem que os centros dos pixels de 'out' enxergam, com um de folga para a interpolação. */
+    private static Rectangle sourceBounds(AffineTransform inverse, Rectangle out) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        Point2D.Double corner = new Point2D.Double();
+        for (int i = 0; i < 4; i++) {
+            corner.setLocation((i & 1) == 0 ? out.x + 0.5 : out.x + out.width - 0.5,
+                               (i & 2) == 0 ? out.y + 0.5 : out.y + out.height - 0.5);
+            inverse.transform(corner, corner);
+            minX = Math.min(minX, corner.x - 0.5);
+            minY = Math.min(minY, corner.y - 0.5);
+            maxX = Math.max(maxX, corner.x - 0.5);
+            maxY = Math.max(maxY, corner.y - 0.5);
+        }
+        int x0 = (int) Math.floor(minX) - 1;
+        int y0 = (int) Math.floor(minY) - 1;
+        int x1 = (int) Math.ceil(maxX) + 2;
+        int y1 = (int) Math.ceil(maxY) + 2;
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+}
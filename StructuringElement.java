@@ -0,0 +1,155 @@
+// Arquivo: StructuringElement.java
+
+/**
+ * Elemento estruturante para operações morfológicas.
+ * Cada linha do elemento é um único segmento horizontal contíguo, o que cobre
+ * retângulos, cruzes e discos e permite decompor a operação em passes 1-D.
+ */
+public class StructuringElement {
+
+    static final int RECTANGLE = 0;
+    static final int CROSS = 1;
+    static final int GENERIC = 2;
+
+    private final int kind;
+    private final int top;      // linhas acima da origem
+    private final int bottom;   // linhas abaixo da origem
+    private final int[] left;   // extensão à esquerda da origem, por linha
+    private final int[] right;  // extensão à direita da origem, por linha
+
+    private StructuringElement(int kind, int top, int bottom, int[] left, int[] right) {
+        this.kind = kind;
+        this.top = top;
+        this.bottom = bottom;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Retângulo width x height com a origem no centro
+     * (para tamanhos pares, o pixel central é o da esquerda/de cima).
+     */
+    public static StructuringElement rectangle(int width, int height) {
+        checkSize(width, height);
+        int rows = height;
+        int[] left = new int[rows];
+        int[] right = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            left[i] = (width - 1) / 2;
+            right[i] = width / 2;
+        }
+        return new StructuringElement(RECTANGLE, (height - 1) / 2, height / 2, left, right);
+    }
+
+    public static StructuringElement square(int size) {
+        return rectangle(size, size);
+    }
+
+    /**
+     * Cruz (sinal de mais) com braços horizontais de largura 'width'
+     * e vertical de altura 'height', com espessura de 1 pixel.
+     */
+    public static StructuringElement cross(int width, int height) {
+        checkSize(width, height);
+        int top = (height - 1) / 2;
+        int[] left = new int[height];
+        int[] right = new int[height];
+        left[top] = (width - 1) / 2;
+        right[top] = width / 2;
+        return new StructuringElement(CROSS, top, height / 2, left, right);
+    }
+
+    public static StructuringElement cross(int size) {
+        return cross(size, size);
+    }
+
+    /**
+     * Disco de raio 'radius': todos os (dx, dy) com dx² + dy² <= radius².
+     */
+    public static StructuringElement disk(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Raio inválido: " + radius);
+        }
+        int rows = 2 * radius + 1;
+        int[] left = new int[rows];
+        int[] right = new int[rows];
+        for (int dy = -radius; dy <= radius; dy++) {
+            int half = (int) Math.floor(Math.sqrt((double) radius * radius - (double) dy * dy));
+            left[dy + radius] = half;
+            right[dy + radius] = half;
+        }
+        return new StructuringElement(radius == 0 ? RECTANGLE : GENERIC, radius, radius, left, right);
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Tamanho inválido: " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Elemento refletido pela origem (usado na abertura e no fechamento
+     * para que elementos assimétricos, como retângulos pares, fiquem corretos).
+     */
+    public StructuringElement reflect() {
+        int rows = left.length;
+        int[] newLeft = new int[rows];
+        int[] newRight = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            newLeft[i] = right[rows - 1 - i];
+            newRight[i] = left[rows - 1 - i];
+        }
+        return new StructuringElement(kind, bottom, top, newLeft, newRight);
+    }
+
+    int kind() {
+        return kind;
+    }
+
+    /** Número de linhas acima da origem. */
+    public int top() {
+        return top;
+    }
+
+    /** Número de linhas abaixo da origem. */
+    public int bottom() {
+        return bottom;
+    }
+
+    /** Extensão à esquerda da origem na linha dy (dy de -top() a bottom()). */
+    public int left(int dy) {
+        return left[dy + top];
+    }
+
+    /** Extensão à direita da origem na linha dy (dy de -top() a bottom()). */
+    public int right(int dy) {
+        return right[dy + top];
+    }
+
+    /** Maior extensão à esquerda da origem, considerando todas as linhas. */
+    public int maxLeft() {
+        int max = 0;
+        for (int v : left) max = Math.max(max, v);
+        return max;
+    }
+
+    /** Maior extensão à direita da origem, considerando todas as linhas. */
+    public int maxRight() {
+        int max = 0;
+        for (int v : right) max = Math.max(max, v);
+        return max;
+    }
+
+    public int getWidth() {
+        return maxLeft() + maxRight() + 1;
+    }
+
+    public int getHeight() {
+        return top + bottom + 1;
+    }
+
+    public boolean contains(int dx, int dy) {
+        if (dy < -top || dy > bottom) return false;
+        return dx >= -left(dy) && dx <= right(dy);
+    }
+}
@@ -0,0 +1,377 @@
+// Arquivo: Thinning.java
+import java.util.Arrays;
+
+/**
+ * Afinamento (esqueletização) sobre BinaryImage, 64 pixels por operação.
+ *
+ * Para cada palavra de uma linha montamos as oito vizinhas (P2..P9) com
+ * deslocamentos de bits das linhas de cima, do meio e de baixo, e avaliamos
+ * as condições de Zhang-Suen ou dos templates de Stentiford com operações
+ * lógicas. Como no algoritmo original, os pixels marcados num sub-passo só
+ * são apagados depois que todos foram avaliados, e a moldura de 1 pixel da
+ * imagem nunca é apagada.
+ *
+ *   P9 P2 P3
+ *   P8 P1 P4
+ *   P7 P6 P5
+ */
+public class Thinning {
+
+    static final int ZHANG_SUEN_1 = 0;
+    static final int ZHANG_SUEN_2 = 1;
+    static final int STENTIFORD_NORTH = 2;
+    static final int STENTIFORD_SOUTH = 3;
+    static final int STENTIFORD_EAST = 4;
+    static final int STENTIFORD_WEST = 5;
+
+    private static final int[] ZHANG_SUEN_PASSES = { ZHANG_SUEN_1, ZHANG_SUEN_2 };
+    private static final int[] STENTIFORD_PASSES = {
+        STENTIFORD_NORTH, STENTIFORD_SOUTH, STENTIFORD_EAST, STENTIFORD_WEST
+    };
+
+    /**
+     * Zhang-Suen: alterna os dois sub-passos até que nenhum pixel seja apagado,
+     * na varredura padrão (ImageProcessor.DEFAULT_THINNING_MODE).
+     */
+    public static void zhangSuen(BinaryImage image) {
+        zhangSuen(image, ImageProcessor.DEFAULT_THINNING_MODE, null);
+    }
+
+    /**
+     * Zhang-Suen com o modo de varredura escolhido.
+     * @param stats recebe os contadores de convergência (pode ser null)
+     */
+    public static void zhangSuen(BinaryImage image, ThinningMode mode, ThinningStats stats) {
+        run(image, ZHANG_SUEN_PASSES, mode, stats);
+    }
+
+    /**
+     * Stentiford: aplica os templates Norte, Sul, Leste e Oeste até que nenhum pixel seja apagado,
+     * na varredura padrão (ImageProcessor.DEFAULT_THINNING_MODE).
+     */
+    public static void stentiford(BinaryImage image) {
+        stentiford(image, ImageProcessor.DEFAULT_THINNING_MODE, null);
+    }
+
+    /**
+     * Stentiford com o modo de varredura escolhido.
+     * @param stats recebe os contadores de convergência (pode ser null)
+     */
+    public static void stentiford(BinaryImage image, ThinningMode mode, ThinningStats stats) {
+        run(image, STENTIFORD_PASSES, mode, stats);
+    }
+
+    private static void run(BinaryImage image, int[] passes, ThinningMode mode, ThinningStats stats) {
+        if (stats == null) {
+            stats = new ThinningStats();
+        }
+        if (mode == ThinningMode.BORDER_TRACKING) {
+            track(image, passes, stats);
+            return;
+        }
+
+        long interior = (long) Math.max(0, image.getWidth() - 2) * Math.max(0, image.getHeight() - 2);
+        ProgressTracker tracker = ProgressTracker.current();
+        boolean hasChanged;
+        do {
+            checkpoint(tracker, stats);
+            hasChanged = false;
+            for (int kind : passes) {
+                long deleted = subIteration(image, kind);
+                stats.recordPass(interior, deleted);
+                hasChanged |= deleted > 0;
+            }
+            stats.recordIteration();
+        } while (hasChanged);
+    }
+
+    /**
+     * Afinamento por lista de trabalho de palavras: cada sub-passo guarda um bit
+     * "sujo" por palavra de 64 pixels e só reavalia as palavras marcadas, com as
+     * mesmas operações lógicas da varredura completa. No início todas as palavras
+     * com objeto estão sujas; depois, quando um sub-passo apaga pixels de uma
+     * palavra, ela e as oito palavras vizinhas voltam a ficar sujas em todos os
+     * sub-passos. Uma palavra limpa tem a mesma vizinhança da última vez em que
+     * não apagou nada naquele sub-passo, então o resultado é idêntico ao da
+     * varredura completa. As remoções de um sub-passo só são aplicadas depois
+     * de avaliar todas as palavras sujas.
+     */
+    private static void track(BinaryImage image, int[] passes, ThinningStats stats) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width < 3 || height < 3) {
+            for (int i = 0; i < passes.length; i++) stats.recordPass(0, 0);
+            stats.recordIteration();
+            return;
+        }
+
+        long[] words = image.words();
+        int wpr = image.getWordsPerRow();
+        long[] columnMask = columnMask(width, wpr);
+
+        // Um bit por palavra da imagem, em linhas de dirtyPerRow longs
+        int dirtyPerRow = (wpr + 63) >>> 6;
+        long[][] dirty = new long[passes.length][dirtyPerRow * height];
+        long[] changed = new long[dirtyPerRow * height];
+        for (int y = 1; y < height - 1; y++) {
+            for (int j = 0; j < wpr; j++) {
+                if (words[y * wpr + j] != 0) {
+                    for (long[] d : dirty) d[y * dirtyPerRow + (j >>> 6)] |= 1L << j;
+                }
+            }
+        }
+
+        // Remoções pendentes do sub-passo: índice da palavra e máscara dos bits apagados
+        int[] pendingIndex = new int[16];
+        long[] pendingMask = new long[16];
+
+        ProgressTracker tracker = ProgressTracker.current();
+        boolean hasChanged;
+        do {
+            checkpoint(tracker, stats);
+            hasChanged = false;
+            for (int i = 0; i < passes.length; i++) {
+                int kind = passes[i];
+                long[] d = dirty[i];
+                int pending = 0;
+                long examined = 0;
+
+                for (int y = 1; y < height - 1; y++) {
+                    int cur = y * wpr;
+                    int up = cur - wpr;
+                    int below = cur + wpr;
+                    for (int k = 0; k < dirtyPerRow; k++) {
+                        int di = y * dirtyPerRow + k;
+                        long bits = d[di];
+                        if (bits == 0) continue;
+                        d[di] = 0;
+                        while (bits != 0) {
+                            int j = (k << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            long c = words[cur + j];
+                            if (c == 0) continue;
+                            examined += Long.bitCount(c);
+                            boolean hasPrev = j > 0;
+                            boolean hasNext = j + 1 < wpr;
+
+                            long n = words[up + j];
+                            long s = words[below + j];
+                            long p2 = n;
+                            long p3 = east(n, hasNext ? words[up + j + 1] : 0L);
+                            long p4 = east(c, hasNext ? words[cur + j + 1] : 0L);
+                            long p5 = east(s, hasNext ? words[below + j + 1] : 0L);
+                            long p6 = s;
+                            long p7 = west(s, hasPrev ? words[below + j - 1] : 0L);
+                            long p8 = west(c, hasPrev ? words[cur + j - 1] : 0L);
+                            long p9 = west(n, hasPrev ? words[up + j - 1] : 0L);
+
+                            long del = c & columnMask[j] & deletable(kind, p2, p3, p4, p5, p6, p7, p8, p9);
+                            if (del != 0) {
+                                if (pending == pendingIndex.length) {
+                                    pendingIndex = Arrays.copyOf(pendingIndex, pending * 2);
+                                    pendingMask = Arrays.copyOf(pendingMask, pending * 2);
+                                }
+                                pendingIndex[pending] = cur + j;
+                                pendingMask[pending] = del;
+                                pending++;
+                            }
+                        }
+                    }
+                }
+
+                long deleted = 0;
+                for (int p = 0; p < pending; p++) {
+                    int idx = pendingIndex[p];
+                    int j = idx % wpr;
+                    words[idx] &= ~pendingMask[p];
+                    deleted += Long.bitCount(pendingMask[p]);
+                    changed[(idx / wpr) * dirtyPerRow + (j >>> 6)] |= 1L << j;
+                }
+                if (pending > 0) {
+                    markNeighbors(changed, dirty, dirtyPerRow, wpr, height);
+                }
+
+                stats.recordPass(examined, deleted);
+                hasChanged |= deleted > 0;
+            }
+            stats.recordIteration();
+        } while (hasChanged);
+    }
+
+    /**
+     * Suja, em todos os sub-passos, as palavras alteradas (bits de 'changed') e as
+     * oito vizinhas de cada uma, fora da moldura, e limpa 'changed'.
+     */
+    private static void markNeighbors(long[] changed, long[][] dirty, int dirtyPerRow, int wpr, int height) {
+        // Bits além de wpr - 1 no último long de cada linha não são palavras
+        long lastValid = -1L >>> (63 - ((wpr - 1) & 63));
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * dirtyPerRow;
+            for (int k = 0; k < dirtyPerRow; k++) {
+                long m = changed[row - dirtyPerRow + k] | changed[row + k] | changed[row + dirtyPerRow + k];
+                long prev = k > 0 ? changed[row - dirtyPerRow + k - 1] | changed[row + k - 1]
+                        | changed[row + dirtyPerRow + k - 1] : 0L;
+                long next = k + 1 < dirtyPerRow ? changed[row - dirtyPerRow + k + 1] | changed[row + k + 1]
+                        | changed[row + dirtyPerRow + k + 1] : 0L;
+                long spread = m | (m << 1) | (m >>> 1) | (prev >>> 63) | (next << 63);
+                if (k + 1 == dirtyPerRow) spread &= lastValid;
+                if (spread == 0) continue;
+                for (long[] d : dirty) d[row + k] |= spread;
+            }
+        }
+        Arrays.fill(changed, 0L);
+    }
+
+    /** Antes de cada iteração: para se o trabalho foi cancelado e informa o progresso. */
+    private static void checkpoint(ProgressTracker tracker, ThinningStats stats) {
+        if (tracker == null) return;
+        tracker.checkCancelled();
+        tracker.iteration(stats.getIterationCount() + 1);
+    }
+
+    /**
+     * Avalia um sub-passo em toda a imagem e apaga os pixels marcados.
+     * Mantém uma cópia da linha anterior antes da remoção, para que cada linha
+     * seja avaliada sobre o estado do início do sub-passo.
+     * @return número de pixels apagados
+     */
+    static long subIteration(BinaryImage image, int kind) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width < 3 || height < 3) return 0;
+
+        long[] words = image.words();
+        int wpr = image.getWordsPerRow();
+
+        long[] columnMask = columnMask(width, wpr);
+
+        long[] above = new long[wpr];
+        long[] saved = new long[wpr];
+        System.arraycopy(words, 0, above, 0, wpr);
+
+        long deleted = 0;
+        for (int y = 1; y < height - 1; y++) {
+            int cur = y * wpr;
+            int below = cur + wpr;
+            System.arraycopy(words, cur, saved, 0, wpr);
+
+            for (int j = 0; j < wpr; j++) {
+                long c = saved[j];
+                if (c == 0) continue;
+                boolean hasPrev = j > 0;
+                boolean hasNext = j + 1 < wpr;
+
+                long n = above[j];
+                long s = words[below + j];
+                long p2 = n;
+                long p3 = east(n, hasNext ? above[j + 1] : 0L);
+                long p4 = east(c, hasNext ? saved[j + 1] : 0L);
+                long p5 = east(s, hasNext ? words[below + j + 1] : 0L);
+                long p6 = s;
+                long p7 = west(s, hasPrev ? words[below + j - 1] : 0L);
+                long p8 = west(c, hasPrev ? saved[j - 1] : 0L);
+                long p9 = west(n, hasPrev ? above[j - 1] : 0L);
+
+                long del = c & columnMask[j] & deletable(kind, p2, p3, p4, p5, p6, p7, p8, p9);
+                if (del != 0) {
+                    deleted += Long.bitCount(del);
+                    words[cur + j] = c & ~del;
+                }
+            }
+
+            long[] swap = above;
+            above = saved;
+            saved = swap;
+        }
+        return deleted;
+    }
+
+    /** Colunas 1..width-2 de cada palavra de uma linha. */
+    private static long[] columnMask(int width, int wpr) {
+        long[] columnMask = new long[wpr];
+        for (int j = 0; j < wpr; j++) {
+            int x0 = j << 6;
+            long mask = -1L;
+            if (x0 == 0) mask &= ~1L;
+            int last = width - 2 - x0; // última coluna interna relativa à palavra
+            if (last < 63) mask &= last < 0 ? 0L : (-1L >>> (63 - last));
+            columnMask[j] = mask;
+        }
+        return columnMask;
+    }
+
+    /** Vizinho da direita (x + 1) alinhado no bit de x. */
+    private static long east(long word, long next) {
+        return (word >>> 1) | (next << 63);
+    }
+
+    /** Vizinho da esquerda (x - 1) alinhado no bit de x. */
+    private static long west(long word, long prev) {
+        return (word << 1) | (prev >>> 63);
+    }
+
+    /**
+     * Máscara dos pixels que satisfazem as condições do sub-passo, dadas as vizinhas.
+     */
+    private static long deletable(int kind, long p2, long p3, long p4, long p5,
+                                  long p6, long p7, long p8, long p9) {
+        // B(P1): número de vizinhos em 1. "Pelo menos dois" acumulado bit a bit
+        long one = p2, two = 0;
+        two |= one & p3; one |= p3;
+        two |= one & p4; one |= p4;
+        two |= one & p5; one |= p5;
+        two |= one & p6; one |= p6;
+        two |= one & p7; one |= p7;
+        two |= one & p8; one |= p8;
+        two |= one & p9; one |= p9;
+        long atLeastTwoOnes = two;
+
+        // A(P1): transições 0 -> 1 na sequência P2, P3, ..., P9, P2
+        long t = ~p2 & p3;
+        long tOne = t, tTwo = 0;
+        t = ~p3 & p4; tTwo |= tOne & t; tOne |= t;
+        t = ~p4 & p5; tTwo |= tOne & t; tOne |= t;
+        t = ~p5 & p6; tTwo |= tOne & t; tOne |= t;
+        t = ~p6 & p7; tTwo |= tOne & t; tOne |= t;
+        t = ~p7 & p8; tTwo |= tOne & t; tOne |= t;
+        t = ~p8 & p9; tTwo |= tOne & t; tOne |= t;
+        t = ~p9 & p2; tTwo |= tOne & t; tOne |= t;
+        long exactlyOneTransition = tOne & ~tTwo;
+
+        switch (kind) {
+            case ZHANG_SUEN_1:
+            case ZHANG_SUEN_2: {
+                // 2 <= B <= 6: pelo menos dois vizinhos em 1 e pelo menos dois em 0
+                long z2 = ~p2, z3 = ~p3, z4 = ~p4, z5 = ~p5, z6 = ~p6, z7 = ~p7, z8 = ~p8, z9 = ~p9;
+                long zOne = z2, zTwo = 0;
+                zTwo |= zOne & z3; zOne |= z3;
+                zTwo |= zOne & z4; zOne |= z4;
+                zTwo |= zOne & z5; zOne |= z5;
+                zTwo |= zOne & z6; zOne |= z6;
+                zTwo |= zOne & z7; zOne |= z7;
+                zTwo |= zOne & z8; zOne |= z8;
+                zTwo |= zOne & z9; zOne |= z9;
+
+                long common = atLeastTwoOnes & zTwo & exactlyOneTransition;
+                if (kind == ZHANG_SUEN_1) {
+                    return common & ~(p2 & p4 & p6) & ~(p4 & p6 & p8);
+                }
+                return common & ~(p2 & p4 & p8) & ~(p2 & p6 & p8);
+            }
+            default: {
+                // Não é ponto final (B >= 2) e A(P1) != 1, como no teste de conectividade original
+                long common = atLeastTwoOnes & ~exactlyOneTransition;
+                switch (kind) {
+                    case STENTIFORD_NORTH:
+                        return common & ~p2 & p6 & (p4 | p5 | p8 | p7) & (p4 | p2 | p8 | p9);
+                    case STENTIFORD_SOUTH:
+                        return common & ~p6 & p2 & (p8 | p9 | p4 | p3) & (p8 | p6 | p4 | p5);
+                    case STENTIFORD_EAST:
+                        return common & ~p4 & p8 & (p2 | p3 | p6 | p5) & (p2 | p9 | p6 | p7);
+                    default:
+                        return common & ~p8 & p4 & (p6 | p7 | p2 | p9) & (p6 | p5 | p2 | p3);
+                }
+            }
+        }
+    }
+}
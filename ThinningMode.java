@@ -0,0 +1,23 @@
+// Arquivo: ThinningMode.java
+
+/**
+ * Estratégia de varredura dos algoritmos de afinamento.
+ * Os dois modos avaliam 64 pixels por operação e produzem exatamente o mesmo resultado.
+ * O padrão (ImageProcessor.DEFAULT_THINNING_MODE, propriedade "pdi.thinning") é
+ * BORDER_TRACKING: depois das primeiras iterações só o contorno ainda muda, e
+ * reavaliar só as palavras em volta dele custa menos que varrer a imagem toda.
+ */
+public enum ThinningMode {
+    /** Reavalia a imagem inteira a cada sub-passo. */
+    FULL_SCAN,
+    /** Reavalia só as palavras de 64 pixels vizinhas de pixels apagados. */
+    BORDER_TRACKING;
+
+    /** Modo pelo nome (full_scan, border_tracking), sem diferenciar maiúsculas. */
+    public static ThinningMode parse(String name) {
+        for (ThinningMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) return mode;
+        }
+        throw new IllegalArgumentException("Modo de afinamento desconhecido: " + name);
+    }
+}
@@ -0,0 +1,79 @@
+// Arquivo: ThinningStats.java
+import java.util.Arrays;
+
+/**
+ * Contadores de convergência de um afinamento: para cada sub-passo,
+ * quantos pixels foram examinados e quantos foram apagados.
+ */
+public class ThinningStats {
+
+    private long[] examined = new long[16];
+    private long[] deleted = new long[16];
+    private int passes;
+    private int iterations;
+
+    void recordPass(long examinedPixels, long deletedPixels) {
+        if (passes == examined.length) {
+            examined = Arrays.copyOf(examined, passes * 2);
+            deleted = Arrays.copyOf(deleted, passes * 2);
+        }
+        examined[passes] = examinedPixels;
+        deleted[passes] = deletedPixels;
+        passes++;
+    }
+
+    void recordIteration() {
+        iterations++;
+    }
+
+    /** Número de sub-passos executados (2 por iteração no Zhang-Suen, 4 no Stentiford). */
+    public int getPassCount() {
+        return passes;
+    }
+
+    /** Número de iterações completas, incluindo a última, que não apaga nada. */
+    public int getIterationCount() {
+        return iterations;
+    }
+
+    public long getExamined(int pass) {
+        checkPass(pass);
+        return examined[pass];
+    }
+
+    public long getDeleted(int pass) {
+        checkPass(pass);
+        return deleted[pass];
+    }
+
+    public long getTotalExamined() {
+        long total = 0;
+        for (int i = 0; i < passes; i++) total += examined[i];
+        return total;
+    }
+
+    public long getTotalDeleted() {
+        long total = 0;
+        for (int i = 0; i < passes; i++) total += deleted[i];
+        return total;
+    }
+
+    private void checkPass(int pass) {
+        if (pass < 0 || pass >= passes) {
+            throw new IndexOutOfBoundsException("Sub-passo inexistente: " + pass);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(iterations).append(" iterações, ").append(passes).append(" sub-passos, ")
+          .append(getTotalExamined()).append(" pixels examinados, ")
+          .append(getTotalDeleted()).append(" apagados");
+        for (int i = 0; i < passes; i++) {
+            sb.append("\n  sub-passo ").append(i).append(": ")
+              .append(examined[i]).append(" examinados, ").append(deleted[i]).append(" apagados");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+// Arquivo: ThresholdMethod.java
+
+/**
+ * Como a binarização (Thresholding) decide o que é objeto (preto) e o que é
+ * fundo, sempre pela intensidade (R + G + B) / 3 de cada pixel.
+ */
+public enum ThresholdMethod {
+    /** Limiar fixo de 128 (ImageProcessor.THRESHOLD), o critério original. */
+    FIXED,
+    /** Limiar global de Otsu: o que melhor separa o histograma em duas classes. */
+    OTSU,
+    /** Limiar local de Sauvola: média da janela, rebaixado onde o desvio padrão é pequeno. */
+    SAUVOLA,
+    /** Limiar local de Niblack: média da janela mais k vezes o desvio padrão. */
+    NIBLACK;
+
+    /** Método pelo nome (fixed, otsu, sauvola, niblack), sem diferenciar maiúsculas. */
+    public static ThresholdMethod parse(String name) {
+        for (ThresholdMethod method : values()) {
+            if (method.name().equalsIgnoreCase(name)) return method;
+        }
+        throw new IllegalArgumentException("Método de binarização desconhecido: " + name);
+    }
+}
@@ -0,0 +1,300 @@
+// Arquivo: Thresholding.java
+import java.awt.image.BufferedImage;
+
+/**
+ * Binarização: converte a intensidade (R + G + B) / 3 de cada pixel em
+ * objeto (1, preto) ou fundo (0, branco) de uma BinaryImage. Um pixel é
+ * objeto quando a intensidade fica abaixo do limiar.
+ *
+ * - FIXED e OTSU usam um limiar só para a imagem inteira. O de Otsu sai do
+ *   histograma, contado em paralelo: cada faixa do TileScheduler conta o seu
+ *   e os histogramas das faixas são somados no fim.
+ * - SAUVOLA e NIBLACK calculam um limiar por pixel, a partir da média e do
+ *   desvio padrão de uma janela em volta dele (recortada nas bordas da
+ *   imagem). Com imagens integrais da soma e da soma dos quadrados, cada
+ *   janela custa quatro leituras de cada, qualquer que seja o tamanho. As
+ *   integrais são montadas por pedaços de CHUNK_ROWS linhas (mais o raio da
+ *   janela acima e abaixo) dentro de cada faixa, para a memória não crescer
+ *   com a imagem.
+ *
+ * A leitura das linhas é separada (IntensityRows), para que a mesma conta
+ * sirva à BufferedImage e à MappedImage do StripProcessor.
+ */
+public class Thresholding {
+
+    /** Janela padrão dos métodos locais (propriedade "pdi.threshold.window"), em pixels. */
+    public static final int DEFAULT_WINDOW = Math.max(3, Integer.getInteger("pdi.threshold.window", 25) | 1);
+    /** k de Sauvola: quanto o limiar cai nas regiões lisas (0.2 a 0.5 na literatura). */
+    public static final double SAUVOLA_K = 0.34;
+    /** k de Niblack: negativo, para o limiar ficar abaixo da média. */
+    public static final double NIBLACK_K = -0.2;
+    /** Maior desvio padrão possível para amostras de 8 bits (R de Sauvola). */
+    private static final double SAUVOLA_RANGE = 128;
+
+    /** Linhas de cada pedaço das imagens integrais. */
+    private static final int CHUNK_ROWS = 64;
+
+    // Vagas de ScratchBuffers
+    private static final int LINE = 0;
+    private static final int GREEN = 1;
+    private static final int BLUE = 2;
+
+    /** Fonte das intensidades: escreve a da linha y em intensity[0 .. largura). */
+    interface IntensityRows {
+        void read(int y, int[] intensity);
+    }
+
+    /**
+     * Intensidades de uma BufferedImage, iguais às que getRGB daria. Em
+     * TYPE_BYTE_GRAY as amostras são lidas do raster e passam pela tabela
+     * cinza → sRGB do ColorModel; nos tipos RGB diretos são lidas banda por
+     * banda; nos demais, por getRGB.
+     */
+    static IntensityRows rows(BufferedImage image) {
+        int width = image.getWidth();
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_BYTE_GRAY) {
+            int[] srgb = RasterAccess.graySrgbTable(image.getColorModel());
+            return (y, intensity) -> {
+                RasterAccess.readRow(image, 0, 0, y, width, intensity, 0);
+                for (int x = 0; x < width; x++) {
+                    intensity[x] = srgb[intensity[x]];
+                }
+            };
+        }
+        // Nos tipos RGB diretos as amostras do raster são exatamente o que getRGB devolveria
+        boolean direct = type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_BGR || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR;
+        if (direct) {
+            return (y, intensity) -> {
+                int[] g = ScratchBuffers.ints(GREEN, width);
+                int[] b = ScratchBuffers.ints(BLUE, width);
+                RasterAccess.readRow(image, 0, 0, y, width, intensity, 0);
+                RasterAccess.readRow(image, 1, 0, y, width, g, 0);
+                RasterAccess.readRow(image, 2, 0, y, width, b, 0);
+                for (int x = 0; x < width; x++) {
+                    intensity[x] = (intensity[x] + g[x] + b[x]) / 3;
+                }
+            };
+        }
+        return (y, intensity) -> {
+            image.getRGB(0, y, width, 1, intensity, 0, width);
+            toIntensity(intensity, width);
+        };
+    }
+
+    /** Intensidades de uma MappedImage, linha por linha (readArgbRow). */
+    static IntensityRows rows(MappedImage image) {
+        int width = image.getWidth();
+        return (y, intensity) -> {
+            image.readArgbRow(y, intensity);
+            toIntensity(intensity, width);
+        };
+    }
+
+    /** Troca cada ARGB de argb[0 .. width) pela sua intensidade. */
+    private static void toIntensity(int[] argb, int width) {
+        for (int x = 0; x < width; x++) {
+            int p = argb[x];
+            argb[x] = (((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF)) / 3;
+        }
+    }
+
+    /** Binariza com o método escolhido, com a janela e o k padrão nos métodos locais. */
+    public static BinaryImage binarize(BufferedImage image, ThresholdMethod method) {
+        return binarize(rows(image), image.getWidth(), image.getHeight(), method);
+    }
+
+    static BinaryImage binarize(IntensityRows rows, int width, int height, ThresholdMethod method) {
+        switch (method) {
+            case FIXED:
+                return global(rows, width, height, ImageProcessor.THRESHOLD);
+            case OTSU:
+                return global(rows, width, height, otsuThreshold(histogram(rows, width, height)));
+            case SAUVOLA:
+                return adaptive(rows, width, height, method, DEFAULT_WINDOW, SAUVOLA_K);
+            default:
+                return adaptive(rows, width, height, method, DEFAULT_WINDOW, NIBLACK_K);
+        }
+    }
+
+    /** Limiar de Otsu da imagem: os pixels com intensidade abaixo dele são objeto. */
+    public static int otsuThreshold(BufferedImage image) {
+        return otsuThreshold(histogram(rows(image), image.getWidth(), image.getHeight()));
+    }
+
+    /** Histograma das intensidades (256 posições), uma contagem por faixa somada no fim. */
+    static long[] histogram(IntensityRows rows, int width, int height) {
+        long[] total = new long[256];
+        TileScheduler.forEachBand(height, 0, (y0, y1) -> {
+            int[] counts = new int[256];
+            int[] line = ScratchBuffers.ints(LINE, width);
+            for (int y = y0; y < y1; y++) {
+                rows.read(y, line);
+                for (int x = 0; x < width; x++) {
+                    counts[line[x]]++;
+                }
+            }
+            synchronized (total) {
+                for (int i = 0; i < 256; i++) {
+                    total[i] += counts[i];
+                }
+            }
+        });
+        return total;
+    }
+
+    /**
+     * Limiar de Otsu de um histograma: o que maximiza a variância entre as
+     * classes "abaixo" e "a partir dele". Imagens de uma intensidade só não têm
+     * o que separar e ficam inteiras como fundo (limiar 0).
+     */
+    static int otsuThreshold(long[] histogram) {
+        double count = 0;
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+            sum += (double) i * histogram[i];
+        }
+        double countBelow = 0;
+        double sumBelow = 0;
+        double best = -1;
+        int first = 0;
+        int last = 0;
+        for (int t = 1; t < histogram.length; t++) {
+            // Classe de baixo: intensidades 0 .. t - 1
+            countBelow += histogram[t - 1];
+            sumBelow += (double) (t - 1) * histogram[t - 1];
+            double countAbove = count - countBelow;
+            if (countBelow == 0) continue;
+            if (countAbove == 0) break;
+            double difference = sumBelow / countBelow - (sum - sumBelow) / countAbove;
+            double between = countBelow * countAbove * difference * difference;
+            if (between > best) {
+                best = between;
+                first = last = t;
+            } else if (between == best) {
+                last = t;
+            }
+        }
+        // Entre intensidades vazias todos os limiares empatam; fica o do meio do intervalo
+        return (first + last + 1) / 2;
+    }
+
+    /** Binarização com um limiar só: objeto onde a intensidade é menor que 'threshold'. */
+    static BinaryImage global(IntensityRows rows, int width, int height, int threshold) {
+        BinaryImage result = new BinaryImage(width, height);
+        long[] words = result.words();
+        int wpr = result.getWordsPerRow();
+        TileScheduler.forEachBand(height, 0, (y0, y1) -> {
+            int[] line = ScratchBuffers.ints(LINE, width);
+            for (int y = y0; y < y1; y++) {
+                rows.read(y, line);
+                int row = y * wpr;
+                for (int x0 = 0; x0 < width; x0 += 64) {
+                    long word = 0;
+                    int end = Math.min(64, width - x0);
+                    for (int i = 0; i < end; i++) {
+                        if (line[x0 + i] < threshold) {
+                            word |= 1L << i;
+                        }
+                    }
+                    words[row + (x0 >>> 6)] = word;
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Binarização local (SAUVOLA ou NIBLACK) com janela window x window (ímpar)
+     * e o k do método: para média m e desvio padrão s da janela, o limiar é
+     * m * (1 + k * (s / 128 - 1)) em Sauvola e m + k * s em Niblack.
+     */
+    public static BinaryImage adaptive(BufferedImage image, ThresholdMethod method, int window, double k) {
+        return adaptive(rows(image), image.getWidth(), image.getHeight(), method, window, k);
+    }
+
+    static BinaryImage adaptive(IntensityRows rows, int width, int height, ThresholdMethod method,
+                                int window, double k) {
+        if (method != ThresholdMethod.SAUVOLA && method != ThresholdMethod.NIBLACK) {
+            throw new IllegalArgumentException("Método não é local: " + method);
+        }
+        if (window < 1 || window % 2 == 0) {
+            throw new IllegalArgumentException("Janela inválida: " + window);
+        }
+        boolean sauvola = method == ThresholdMethod.SAUVOLA;
+        int radius = window / 2;
+        BinaryImage result = new BinaryImage(width, height);
+        long[] words = result.words();
+        int wpr = result.getWordsPerRow();
+        int stride = width + 1;
+
+        TileScheduler.forEachBand(height, radius, (y0, y1) -> {
+            int chunk = Math.max(CHUNK_ROWS, 2 * radius);
+            int capacity = (Math.min(y1 - y0, chunk) + 2 * radius + 1) * stride;
+            // Integrais: sum[(y - top + 1) * stride + x + 1] soma as intensidades de [top, y] x [0, x]
+            long[] sum = new long[capacity];
+            long[] squares = new long[capacity];
+            int[] line = ScratchBuffers.ints(LINE, width);
+
+            for (int c0 = y0; c0 < y1; c0 += chunk) {
+                int c1 = Math.min(y1, c0 + chunk);
+                int top = Math.max(0, c0 - radius);
+                int bottom = Math.min(height, c1 + radius);
+                for (int y = top; y < bottom; y++) {
+                    rows.read(y, line);
+                    int above = (y - top) * stride;
+                    int here = above + stride;
+                    long rowSum = 0;
+                    long rowSquares = 0;
+                    for (int x = 0; x < width; x++) {
+                        int v = line[x];
+                        rowSum += v;
+                        rowSquares += v * v;
+                        sum[here + x + 1] = sum[above + x + 1] + rowSum;
+                        squares[here + x + 1] = squares[above + x + 1] + rowSquares;
+                    }
+                }
+
+                for (int y = c0; y < c1; y++) {
+                    // Linhas da janela, relativas a top, e a linha do próprio pixel
+                    int upper = (Math.max(0, y - radius) - top) * stride;
+                    int lower = (Math.min(height, y + radius + 1) - top) * stride;
+                    int self = (y - top) * stride;
+                    int windowRows = (lower - upper) / stride;
+                    // Longe das bordas esquerda e direita a janela tem sempre window colunas
+                    double interior = 1.0 / ((double) windowRows * Math.min(width, window));
+                    int row = y * wpr;
+                    for (int x0 = 0; x0 < width; x0 += 64) {
+                        long word = 0;
+                        int end = Math.min(64, width - x0);
+                        for (int i = 0; i < end; i++) {
+                            int x = x0 + i;
+                            int left = Math.max(0, x - radius);
+                            int right = Math.min(width, x + radius + 1);
+                            double inverse = right - left == window ? interior
+                                    : 1.0 / ((double) windowRows * (right - left));
+                            double s1 = sum[lower + right] - sum[lower + left] - sum[upper + right] + sum[upper + left];
+                            double s2 = squares[lower + right] - squares[lower + left]
+                                    - squares[upper + right] + squares[upper + left];
+                            double mean = s1 * inverse;
+                            double deviation = Math.sqrt(Math.max(0, s2 * inverse - mean * mean));
+                            double threshold = sauvola
+                                    ? mean * (1 + k * (deviation / SAUVOLA_RANGE - 1))
+                                    : mean + k * deviation;
+                            // Intensidade do pixel, da própria integral
+                            long v = sum[self + stride + x + 1] - sum[self + stride + x] - sum[self + x + 1] + sum[self + x];
+                            if (v < threshold) {
+                                word |= 1L << i;
+                            }
+                        }
+                        words[row + (x0 >>> 6)] = word;
+                    }
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+// Arquivo: TiffStreamWriter.java
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escritor de TIFF baseline sem compressão (big-endian, uma única faixa de
+ * amostras intercaladas de 8 bits): cinza, RGB ou RGB com alfa não
+ * pré-multiplicado. Como o tamanho dos dados é conhecido de antemão, o
+ * diretório (IFD) vai depois deles e as linhas são gravadas à medida que chegam.
+ *
+ * O TIFF clássico usa deslocamentos de 32 bits, então a imagem tem de caber em 4 GB.
+ */
+public class TiffStreamWriter extends InterleavedRowWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 8;
+
+    // Tags e tipos usados
+    private static final int IMAGE_WIDTH = 256;
+    private static final int IMAGE_LENGTH = 257;
+    private static final int BITS_PER_SAMPLE = 258;
+    private static final int COMPRESSION = 259;
+    private static final int PHOTOMETRIC = 262;
+    private static final int STRIP_OFFSETS = 273;
+    private static final int SAMPLES_PER_PIXEL = 277;
+    private static final int ROWS_PER_STRIP = 278;
+    private static final int STRIP_BYTE_COUNTS = 279;
+    private static final int PLANAR_CONFIGURATION = 284;
+    private static final int EXTRA_SAMPLES = 338;
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+
+    private final DataOutputStream file;
+    private final byte[] row;
+    private final long dataSize;
+    private boolean closed;
+
+    public TiffStreamWriter(File output, int width, int height, int bands) throws IOException {
+        this(new FileOutputStream(output), width, height, bands);
+    }
+
+    public TiffStreamWriter(OutputStream output, int width, int height, int bands) throws IOException {
+        super(width, height, bands, false);
+        this.file = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        this.row = new byte[width * bands];
+        this.dataSize = (long) width * height * bands;
+        try {
+            if (HEADER_SIZE + dataSize + 1 + 256 > 0xFFFFFFFFL) {
+                throw new IOException("Imagem grande demais para TIFF: " + width + "x" + height);
+            }
+            file.writeShort(0x4D4D); // "MM": big-endian
+            file.writeShort(42);
+            file.writeInt((int) ifdOffset());
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** O IFD começa depois dos dados, num deslocamento par. */
+    private long ifdOffset() {
+        return (HEADER_SIZE + dataSize + 1) & ~1L;
+    }
+
+    @Override
+    protected byte[] rowBuffer() {
+        return row;
+    }
+
+    @Override
+    protected void writeRow(byte[] row) throws IOException {
+        file.write(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            checkComplete();
+            if ((dataSize & 1) != 0) file.writeByte(0);
+            writeDirectory();
+            file.flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeDirectory() throws IOException {
+        int entries = bands == 4 ? 11 : 10;
+        // Valores que não cabem nos 4 bytes da entrada vão logo depois do IFD
+        long bitsOffset = ifdOffset() + 2 + 12L * entries + 4;
+
+        file.writeShort(entries);
+        entry(IMAGE_WIDTH, LONG, 1, width);
+        entry(IMAGE_LENGTH, LONG, 1, height);
+        if (bands == 1) {
+            entry(BITS_PER_SAMPLE, SHORT, bands, 8 << 16);
+        } else {
+            entry(BITS_PER_SAMPLE, SHORT, bands, bitsOffset);
+        }
+        entry(COMPRESSION, SHORT, 1, 1 << 16);
+        entry(PHOTOMETRIC, SHORT, 1, (bands == 1 ? 1 : 2) << 16);
+        entry(STRIP_OFFSETS, LONG, 1, HEADER_SIZE);
+        entry(SAMPLES_PER_PIXEL, SHORT, 1, bands << 16);
+        entry(ROWS_PER_STRIP, LONG, 1, height);
+        entry(STRIP_BYTE_COUNTS, LONG, 1, dataSize);
+        entry(PLANAR_CONFIGURATION, SHORT, 1, 1 << 16);
+        if (bands == 4) {
+            entry(EXTRA_SAMPLES, SHORT, 1, 2 << 16); // alfa não pré-multiplicado
+        }
+        file.writeInt(0); // não há outro IFD
+
+        if (bands > 1) {
+            for (int b = 0; b < bands; b++) {
+                file.writeShort(8);
+            }
+        }
+    }
+
+    /**
+     * Uma entrada do IFD. Valores SHORT que cabem na entrada ficam alinhados à
+     * esquerda dos 4 bytes (por isso os "<< 16" acima).
+     */
+    private void entry(int tag, int type, int count, long value) throws IOException {
+        file.writeShort(tag);
+        file.writeShort(type);
+        file.writeInt(count);
+        file.writeInt((int) value);
+    }
+}
@@ -0,0 +1,109 @@
+// Arquivo: TileGrid.java
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Divisão de uma imagem em ladrilhos quadrados (256x256 por padrão; os da
+ * última coluna e da última linha podem ser menores). Usada para desenhar e
+ * filtrar só a parte visível de imagens grandes, na ordem em que interessa.
+ */
+public class TileGrid {
+
+    public static final int TILE_SIZE = 256;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+
+    public TileGrid(int width, int height) {
+        this(width, height, TILE_SIZE);
+    }
+
+    public TileGrid(int width, int height, int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tamanho de ladrilho inválido: " + tileSize);
+        }
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.columns = (width + tileSize - 1) / tileSize;
+        this.rows = (height + tileSize - 1) / tileSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getTileCount() {
+        return columns * rows;
+    }
+
+    /** Retângulo, em pixels da imagem, do ladrilho de índice tile = linha * colunas + coluna. */
+    public Rectangle tileBounds(int tile) {
+        int x = (tile % columns) * tileSize;
+        int y = (tile / columns) * tileSize;
+        return new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+    }
+
+    /**
+     * Índices dos ladrilhos que tocam 'region', do centro da região para fora.
+     * Região nula ou fora da imagem: nenhum ladrilho.
+     */
+    public List<Integer> tilesIn(Rectangle region) {
+        List<Integer> tiles = new ArrayList<>();
+        if (region == null) return tiles;
+        Rectangle clipped = region.intersection(new Rectangle(0, 0, width, height));
+        if (clipped.isEmpty()) return tiles;
+
+        int firstColumn = clipped.x / tileSize;
+        int lastColumn = (clipped.x + clipped.width - 1) / tileSize;
+        int firstRow = clipped.y / tileSize;
+        int lastRow = (clipped.y + clipped.height - 1) / tileSize;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                tiles.add(row * columns + column);
+            }
+        }
+        tiles.sort(byDistanceTo(clipped.getCenterX(), clipped.getCenterY()));
+        return tiles;
+    }
+
+    /**
+     * Todos os ladrilhos: primeiro os que tocam 'priority' (do centro para fora),
+     * depois os demais, também pela distância ao centro da região.
+     */
+    public List<Integer> orderFrom(Rectangle priority) {
+        List<Integer> first = tilesIn(priority);
+        boolean[] taken = new boolean[getTileCount()];
+        for (int tile : first) taken[tile] = true;
+
+        List<Integer> rest = new ArrayList<>();
+        for (int tile = 0; tile < taken.length; tile++) {
+            if (!taken[tile]) rest.add(tile);
+        }
+        double cx = priority != null ? priority.getCenterX() : width / 2.0;
+        double cy = priority != null ? priority.getCenterY() : height / 2.0;
+        rest.sort(byDistanceTo(cx, cy));
+
+        List<Integer> order = new ArrayList<>(first);
+        order.addAll(rest);
+        return order;
+    }
+
+    private Comparator<Integer> byDistanceTo(double cx, double cy) {
+        return Comparator.comparingDouble(tile -> {
+            Rectangle r = tileBounds(tile);
+            double dx = r.getCenterX() - cx;
+            double dy = r.getCenterY() - cy;
+            return dx * dx + dy * dy;
+        });
+    }
+}
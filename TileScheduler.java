@@ -0,0 +1,165 @@
+// Arquivo: TileScheduler.java
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executa um filtro em faixas horizontais da imagem, em paralelo, num ForkJoinPool.
+ *
+ * Cada faixa escreve apenas as suas próprias linhas do destino (sem travas);
+ * o halo, isto é, as linhas vizinhas de que o kernel precisa, é lido
+ * diretamente da origem, que não é alterada. Por isso o resultado é idêntico
+ * ao da execução serial.
+ *
+ * Se a thread que chama tiver um ProgressTracker (ProgressTracker.callWith),
+ * o cancelamento é verificado antes de cada faixa e cada faixa pronta é
+ * contada no progresso. Com o OperationMetrics ligado, cada faixa que roda em
+ * outra thread soma o que alocou na conta da thread que chamou, para que a
+ * operação medida lá inclua a memória das suas faixas.
+ *
+ * O número de threads vem da propriedade de sistema "pdi.threads" (padrão:
+ * todos os núcleos) e pode ser alterado com setParallelism, por exemplo para
+ * deixar um núcleo livre para a thread da interface.
+ */
+public class TileScheduler {
+
+    /** Trabalho de uma faixa: produzir as linhas [y0, y1) do destino. */
+    public interface BandTask {
+        void run(int y0, int y1);
+    }
+
+    /** Faixas por thread: mais faixas equilibram melhor a carga. */
+    private static final int BANDS_PER_THREAD = 4;
+    private static final int MIN_BAND_ROWS = 16;
+
+    private static ForkJoinPool pool = createPool(
+            Integer.getInteger("pdi.threads", Runtime.getRuntime().availableProcessors()));
+
+    private static ForkJoinPool createPool(int parallelism) {
+        return new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * Define quantas threads os filtros podem usar (1 = execução serial).
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Paralelismo inválido: " + parallelism);
+        }
+        if (parallelism == pool.getParallelism()) return;
+        ForkJoinPool old = pool;
+        pool = createPool(parallelism);
+        old.shutdown();
+    }
+
+    public static synchronized int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Divide as linhas [0, height) em faixas e executa 'task' em cada uma.
+     * @param halo linhas extras que cada faixa lê acima e abaixo; faixas menores
+     *             que alguns halos desperdiçariam leitura, então o tamanho mínimo cresce com ele
+     */
+    public static void forEachBand(int height, int halo, BandTask task) {
+        if (height <= 0) return;
+
+        ForkJoinPool executor = pool();
+        int parallelism = executor.getParallelism();
+        int minRows = Math.max(MIN_BAND_ROWS, 4 * halo);
+        int bandRows = Math.max(minRows, (height + parallelism * BANDS_PER_THREAD - 1) / (parallelism * BANDS_PER_THREAD));
+        int bands = (height + bandRows - 1) / bandRows;
+
+        ProgressTracker tracker = ProgressTracker.current();
+        if (tracker != null) {
+            task = tracked(task, tracker, bands);
+        }
+
+        if (parallelism == 1 || bands == 1) {
+            for (int b = 0; b < bands; b++) {
+                task.run(b * bandRows, Math.min(height, (b + 1) * bandRows));
+            }
+            return;
+        }
+        LongAdder allocations = OperationMetrics.bandAllocations();
+        if (allocations != null) {
+            task = counted(task, allocations, Thread.currentThread());
+        }
+        executor.invoke(new BandAction(task, 0, bands, bandRows, height));
+    }
+
+    /**
+     * Executa uma tarefa avulsa no mesmo pool dos filtros (por exemplo, a
+     * compressão de um segmento do PngStreamWriter), respeitando pdi.threads.
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return pool().submit(task);
+    }
+
+    /** Envolve a tarefa com a verificação de cancelamento e a contagem de faixas. */
+    private static BandTask tracked(BandTask task, ProgressTracker tracker, int bands) {
+        AtomicInteger done = new AtomicInteger();
+        return (y0, y1) -> {
+            tracker.checkCancelled();
+            task.run(y0, y1);
+            tracker.bandsDone(done.incrementAndGet(), bands);
+        };
+    }
+
+    /**
+     * Envolve a tarefa com a medição da memória alocada, somada em 'allocations'
+     * quando a faixa roda fora de 'caller' (na própria thread, a medição de quem
+     * chamou já a inclui).
+     */
+    private static BandTask counted(BandTask task, LongAdder allocations, Thread caller) {
+        return (y0, y1) -> {
+            if (Thread.currentThread() == caller) {
+                task.run(y0, y1);
+                return;
+            }
+            long before = OperationMetrics.allocatedByCurrentThread();
+            try {
+                task.run(y0, y1);
+            } finally {
+                allocations.add(OperationMetrics.allocatedByCurrentThread() - before);
+            }
+        };
+    }
+
+    /** Divide recursivamente o intervalo de faixas até sobrar uma por tarefa. */
+    private static class BandAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BandTask task;
+        private final int firstBand;
+        private final int endBand;
+        private final int bandRows;
+        private final int height;
+
+        BandAction(BandTask task, int firstBand, int endBand, int bandRows, int height) {
+            this.task = task;
+            this.firstBand = firstBand;
+            this.endBand = endBand;
+            this.bandRows = bandRows;
+            this.height = height;
+        }
+
+        @Override
+        protected void compute() {
+            if (endBand - firstBand == 1) {
+                task.run(firstBand * bandRows, Math.min(height, (firstBand + 1) * bandRows));
+                return;
+            }
+            int mid = (firstBand + endBand) >>> 1;
+            invokeAll(new BandAction(task, firstBand, mid, bandRows, height),
+                      new BandAction(task, mid, endBand, bandRows, height));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// Arquivo: TiledFilter.java
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Aplica um filtro ladrilho por ladrilho, começando pelos que estão na tela.
+ *
+ * Cada ladrilho é filtrado a partir de um recorte da entrada com 'raio'
+ * pixels a mais de cada lado (ImageProcessor.filterRadius), então o miolo do
+ * recorte enxerga os mesmos vizinhos que enxergaria na imagem inteira, e
+ * nas bordas reais da imagem o recorte termina junto com ela. O resultado é
+ * igual ao do filtro aplicado de uma vez.
+ *
+ * Filtros sem raio limitado (afinamento, que itera sobre a imagem toda)
+ * são aplicados de uma vez.
+ */
+public class TiledFilter {
+
+    /**
+     * @param priority         região (em pixels da imagem) calculada primeiro, ou null
+     * @param onPriorityDone   recebe, assim que a região prioritária fica pronta, uma
+     *                         imagem do tamanho da saída só com essa região; pode ser null.
+     *                         É uma imagem à parte, que não é mais alterada: a saída
+     *                         continua sendo escrita enquanto o resto é calculado
+     */
+    public static BufferedImage apply(String filterName, BufferedImage input, Rectangle priority,
+                                      Consumer<BufferedImage> onPriorityDone) {
+        int radius = ImageProcessor.filterRadius(filterName);
+        if (radius < 0) {
+            return ImageProcessor.applyFilter(filterName, input);
+        }
+
+        BufferedImage src = RasterAccess.toDirect(input);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        TileGrid grid = new TileGrid(width, height);
+        List<Integer> order = grid.orderFrom(priority);
+        int priorityCount = grid.tilesIn(priority).size();
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+
+        // Os filtros de cada ladrilho só verificam o cancelamento; o progresso é por ladrilho
+        ProgressTracker tracker = ProgressTracker.current();
+        ProgressTracker tileTracker = tracker != null ? tracker.silentChild() : null;
+
+        BufferedImage output = null;
+        BufferedImage preview = null;
+        for (int k = 0; k < order.size(); k++) {
+            Rectangle tile = grid.tileBounds(order.get(k));
+            Rectangle region = new Rectangle(tile.x - radius, tile.y - radius,
+                    tile.width + 2 * radius, tile.height + 2 * radius).intersection(bounds);
+            BufferedImage crop = src.getSubimage(region.x, region.y, region.width, region.height);
+
+            BufferedImage filtered = filterTile(filterName, crop, tileTracker);
+            if (output == null) {
+                output = RasterAccess.createCompatible(filtered, width, height);
+            }
+            boolean priorityTile = k < priorityCount && onPriorityDone != null;
+            if (priorityTile && preview == null) {
+                preview = RasterAccess.createCompatible(filtered, width, height);
+            }
+            Raster part = filtered.getRaster().createChild(
+                    tile.x - region.x, tile.y - region.y, tile.width, tile.height, tile.x, tile.y, null);
+            output.getRaster().setRect(part);
+            if (priorityTile) preview.getRaster().setRect(part);
+
+            if (tracker != null) tracker.bandsDone(k + 1, order.size());
+            if (k + 1 == priorityCount && onPriorityDone != null) {
+                onPriorityDone.accept(preview);
+            }
+        }
+        return output;
+    }
+
+    private static BufferedImage filterTile(String filterName, BufferedImage crop, ProgressTracker tracker) {
+        if (tracker == null) {
+            return ImageProcessor.applyFilter(filterName, crop);
+        }
+        try {
+            return ProgressTracker.callWith(tracker, () -> ImageProcessor.applyFilter(filterName, crop));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Arquivo: ImageFileManagerTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Gravar e ler de volta (ImageFileManager) preserva as cores em todos os
+ * formatos com escritor próprio: PNG, TIFF, PNM e raw. Imagens com paleta
+ * são gravadas como cores, nunca como índices.
+ */
+class ImageFileManagerTest {
+
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 61;
+
+    @TempDir
+    Path dir;
+
+    static Stream<Arguments> formatsAndKinds() {
+        return Stream.of("png", "tif", "raw", "ppm")
+                .flatMap(format -> TestImages.kinds().map(kind -> Arguments.of(format, kind)));
+    }
+
+    @ParameterizedTest(name = "{0} de {1}")
+    @MethodSource("formatsAndKinds")
+    void roundTrip(String format, String kind) throws IOException {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 11);
+        File file = dir.resolve(kind + "." + format).toFile();
+        ImageFileManager.saveImage(input, file, new ExportOptions());
+
+        BufferedImage read = format.equals("ppm") ? readPnm(file) : ImageFileManager.loadImage(file);
+        TestImages.assertSamePixels(input, read);
+    }
+
+    /** PNM sem alfa e com paleta: cores em P6 (nunca os índices em P5). */
+    @Test
+    void opaquePaletteIsWrittenAsRgbPnm() throws IOException {
+        File file = dir.resolve("paleta.ppm").toFile();
+        ImageFileManager.saveImage(TestImages.create("indexed", WIDTH, HEIGHT, 12), file);
+        try (InputStream in = new FileInputStream(file)) {
+            assertEquals('P', in.read());
+            assertEquals('6', in.read());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#kinds")
+    void mappedRoundTrip(String kind) throws IOException {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 13);
+        for (String format : new String[] { "png", "tif", "pam", "raw" }) {
+            File file = dir.resolve(kind + "-mapeada." + format).toFile();
+            try (MappedImage mapped = MappedImage.fromImage(input)) {
+                ImageFileManager.saveImage(mapped, file);
+            }
+            BufferedImage read = format.equals("pam") ? readPnm(file) : ImageFileManager.loadImage(file);
+            TestImages.assertSamePixels(input, read);
+        }
+    }
+
+    /** PNG grande o bastante para a compressão em segmentos paralelos (PngStreamWriter). */
+    @Test
+    void parallelDeflateRoundTrip() throws IOException {
+        int parallelism = TileScheduler.getParallelism();
+        TileScheduler.setParallelism(4);
+        try {
+            BufferedImage input = TestImages.create("argb", 1200, 700, 14);
+            for (ExportOptions.PngFilter filter : ExportOptions.PngFilter.values()) {
+                ExportOptions options = new ExportOptions();
+                options.setPngFilter(filter);
+                options.setCompressionLevel(1);
+                File file = dir.resolve("grande-" + filter + ".png").toFile();
+                ImageFileManager.saveImage(input, file, options);
+                TestImages.assertSamePixels(input, ImageIO.read(file));
+            }
+        } finally {
+            TileScheduler.setParallelism(parallelism);
+        }
+    }
+
+    /** Lê P5, P6 e P7 (cinza, RGB e RGB_ALPHA, 8 bits), os que o PnmStreamWriter grava. */
+    private static BufferedImage readPnm(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(new FileInputStream(file)))) {
+            String magic = token(in);
+            int width;
+            int height;
+            int bands;
+            if (magic.equals("P7")) {
+                Map<String, String> header = new HashMap<>();
+                for (String key = token(in); !key.equals("ENDHDR"); key = token(in)) {
+                    header.put(key, token(in));
+                }
+                width = Integer.parseInt(header.get("WIDTH"));
+                height = Integer.parseInt(header.get("HEIGHT"));
+                bands = Integer.parseInt(header.get("DEPTH"));
+            } else {
+                width = Integer.parseInt(token(in));
+                height = Integer.parseInt(token(in));
+                assertEquals("255", token(in));
+                bands = magic.equals("P5") ? 1 : 3;
+            }
+            BufferedImage image = new BufferedImage(width, height, MappedImage.bufferedImageType(bands));
+            WritableRaster raster = image.getRaster();
+            byte[] row = new byte[width * bands];
+            for (int y = 0; y < height; y++) {
+                in.readFully(row);
+                for (int x = 0; x < width; x++) {
+                    for (int band = 0; band < bands; band++) {
+                        raster.setSample(x, y, band, row[x * bands + band] & 0xFF);
+                    }
+                }
+            }
+            return image;
+        }
+    }
+
+    /** Próxima palavra do cabeçalho; consome exatamente um espaço depois dela. */
+    private static String token(InputStream in) throws IOException {
+        StringBuilder word = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (Character.isWhitespace(c)) {
+                if (word.length() > 0) break;
+            } else {
+                word.append((char) c);
+            }
+        }
+        return word.toString();
+    }
+}
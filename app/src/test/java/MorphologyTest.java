@@ -0,0 +1,26 @@
+// Arquivo: MorphologyTest.java
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Com paleta, a morfologia opera sobre as cores (RasterAccess.toDirect):
+ * o resultado tem de ser o mesmo da imagem já convertida.
+ */
+class MorphologyTest {
+
+    private static final StructuringElement ELEMENT = StructuringElement.square(3);
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#indexedKinds")
+    void paletteMatchesDirectColors(String kind) {
+        BufferedImage indexed = TestImages.create(kind, 83, 59, 15);
+        BufferedImage direct = RasterAccess.toDirect(indexed);
+
+        TestImages.assertSamePixels(Morphology.erode(direct, ELEMENT), Morphology.erode(indexed, ELEMENT));
+        TestImages.assertSamePixels(Morphology.dilate(direct, ELEMENT), Morphology.dilate(indexed, ELEMENT));
+        TestImages.assertSamePixels(Morphology.gradient(direct, ELEMENT), Morphology.gradient(indexed, ELEMENT));
+        TestImages.assertSamePixels(Morphology.topHat(direct, ELEMENT), Morphology.topHat(indexed, ELEMENT));
+        TestImages.assertSamePixels(Morphology.blackHat(direct, ELEMENT), Morphology.blackHat(indexed, ELEMENT));
+    }
+}
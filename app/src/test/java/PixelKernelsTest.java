@@ -0,0 +1,151 @@
+// Arquivo: PixelKernelsTest.java
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A implementação vetorial (VectorKernels) tem de dar o mesmo resultado que a
+ * escalar, bit a bit. Os tamanhos cobrem linhas menores que um vetor, múltiplos
+ * exatos e restos, com deslocamentos diferentes de zero.
+ */
+class PixelKernelsTest {
+
+    private static final int[] LENGTHS = { 0, 1, 3, 7, 8, 15, 16, 17, 31, 64, 100, 257 };
+    private static final int OFFSET = 5;
+
+    private final PixelKernels scalar = PixelKernels.scalar();
+    private final PixelKernels vector = PixelKernels.get();
+    private final Random random = new Random(6);
+
+    @BeforeEach
+    void requireVector() {
+        // O surefire roda com --add-modules jdk.incubator.vector; sem ele, não há o que comparar
+        assumeFalse(vector.name().equals(scalar.name()), "PixelKernels vetorial não carregado");
+    }
+
+    @Test
+    void accumulateInts() {
+        for (int n : LENGTHS) {
+            int[] src = samples(n + OFFSET, 255);
+            float[] expected = floats(n + OFFSET);
+            float[] actual = expected.clone();
+            scalar.accumulate(0.3f, src, OFFSET, expected, OFFSET, n);
+            vector.accumulate(0.3f, src, OFFSET, actual, OFFSET, n);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void accumulateFloats() {
+        for (int n : LENGTHS) {
+            float[] src = floats(n + OFFSET);
+            float[] expected = floats(n);
+            float[] actual = expected.clone();
+            scalar.accumulate(-1.7f, src, OFFSET, expected, n);
+            vector.accumulate(-1.7f, src, OFFSET, actual, n);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void toSamples() {
+        for (int n : LENGTHS) {
+            float[] acc = floats(n);
+            int[] expected = new int[n];
+            int[] actual = new int[n];
+            scalar.toSamples(acc, n, 255, expected);
+            vector.toSamples(acc, n, 255, actual);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void scaleToSamples() {
+        for (int n : LENGTHS) {
+            int[] sums = samples(n, 255 * 9);
+            int[] expected = new int[n];
+            int[] actual = new int[n];
+            scalar.scaleToSamples(sums, 1f / 9, n, 255, expected);
+            vector.scaleToSamples(sums, 1f / 9, n, 255, actual);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void slide() {
+        for (int n : LENGTHS) {
+            int[] src = samples(n + 2 * OFFSET, 255);
+            int[] expected = samples(n, 255 * 5);
+            int[] actual = expected.clone();
+            scalar.slide(expected, src, 2 * OFFSET, OFFSET, n);
+            vector.slide(actual, src, 2 * OFFSET, OFFSET, n);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void minAndSlidingMin() {
+        for (int n : LENGTHS) {
+            int[] a = samples(n + OFFSET, 255);
+            int[] b = samples(n + OFFSET, 255);
+            int[] expected = new int[n + OFFSET];
+            int[] actual = new int[n + OFFSET];
+            scalar.min(a, OFFSET, b, OFFSET, expected, OFFSET, n);
+            vector.min(a, OFFSET, b, OFFSET, actual, OFFSET, n);
+            assertArrayEquals(expected, actual, "min, n = " + n);
+
+            for (int k : new int[] { 1, 3, 5 }) {
+                int[] src = samples(n + k + OFFSET, 255);
+                int[] slidExpected = new int[n];
+                int[] slidActual = new int[n];
+                scalar.slidingMin(src, OFFSET, n, k, slidExpected, 0);
+                vector.slidingMin(src, OFFSET, n, k, slidActual, 0);
+                assertArrayEquals(slidExpected, slidActual, "slidingMin, n = " + n + ", k = " + k);
+            }
+        }
+    }
+
+    @Test
+    void invert() {
+        for (int n : LENGTHS) {
+            int[] expected = samples(n, 255);
+            int[] actual = expected.clone();
+            scalar.invert(expected, n);
+            vector.invert(actual, n);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+
+    @Test
+    void rescaleArgb() {
+        for (int n : LENGTHS) {
+            int[] src = new int[n + OFFSET];
+            for (int i = 0; i < src.length; i++) src[i] = random.nextInt();
+            for (float factor : new float[] { 0.5f, 1f, 1.37f, 3f }) {
+                for (int brightness : new int[] { -90, 0, 40 }) {
+                    int[] expected = new int[n + OFFSET];
+                    int[] actual = new int[n + OFFSET];
+                    scalar.rescaleArgb(src, OFFSET, expected, OFFSET, n, factor, brightness);
+                    vector.rescaleArgb(src, OFFSET, actual, OFFSET, n, factor, brightness);
+                    assertArrayEquals(expected, actual, "n = " + n + ", fator " + factor + ", brilho " + brightness);
+                }
+            }
+        }
+    }
+
+    private int[] samples(int n, int max) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) values[i] = random.nextInt(max + 1);
+        return values;
+    }
+
+    /** Valores fora de [0, 255] de propósito, para exercitar a saturação. */
+    private float[] floats(int n) {
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) values[i] = random.nextFloat() * 400f - 60f;
+        return values;
+    }
+}
@@ -0,0 +1,79 @@
+// Arquivo: StreamingFilterTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Ler um PNG, filtrar e gravar linha a linha (StreamingFilter, PngStreamReader
+ * e os escritores em faixas) tem de dar o mesmo que ler a imagem inteira com o
+ * ImageIO e aplicar os filtros no heap.
+ */
+class StreamingFilterTest {
+
+    /** Mais linhas que algumas faixas do StreamingFilter, para a janela rolar. */
+    private static final int WIDTH = 131;
+    private static final int HEIGHT = 301;
+    private static final String[] PIPELINE = { "gaussianblur", "dilation", "sauvola" };
+
+    @TempDir
+    Path dir;
+
+    /** Cinza com alfa fica de fora: no heap é filtrado em cinza linear, em fluxo em RGBA (ver StreamingFilter). */
+    static Stream<String> filteredKinds() {
+        return TestImages.pngKinds().filter(kind -> !kind.equals("gray-alpha"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("filteredKinds")
+    void streamedPngMatchesHeap(String kind) throws IOException {
+        assertStreamMatchesHeap(kind, "png");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("filteredKinds")
+    void streamedTiffMatchesHeap(String kind) throws IOException {
+        assertStreamMatchesHeap(kind, "tif");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#pngKinds")
+    void readerMatchesImageIO(String kind) throws IOException {
+        File input = dir.resolve(kind + ".png").toFile();
+        ImageIO.write(TestImages.create(kind, WIDTH, HEIGHT, 9), "png", input);
+        BufferedImage expected = ImageIO.read(input);
+
+        try (PngStreamReader reader = new PngStreamReader(input)) {
+            BufferedImage rows;
+            int y = 0;
+            while ((rows = reader.readRows(50)) != null) {
+                TestImages.assertSamePixels(expected.getSubimage(0, y, WIDTH, rows.getHeight()), rows);
+                y += rows.getHeight();
+            }
+            assertEquals(HEIGHT, y);
+        }
+    }
+
+    private void assertStreamMatchesHeap(String kind, String format) throws IOException {
+        File input = dir.resolve(kind + ".png").toFile();
+        ImageIO.write(TestImages.create(kind, WIDTH, HEIGHT, 10), "png", input);
+
+        BufferedImage expected = ImageIO.read(input);
+        for (String filterName : PIPELINE) {
+            expected = ImageProcessor.applyFilter(filterName, expected);
+        }
+
+        File output = dir.resolve(kind + "-saida." + format).toFile();
+        Dimension size = StreamingFilter.filterPng(input, PIPELINE, output);
+        assertEquals(new Dimension(WIDTH, HEIGHT), size);
+        TestImages.assertSamePixels(expected, ImageIO.read(output));
+    }
+}
@@ -0,0 +1,69 @@
+// Arquivo: StripProcessorTest.java
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Filtrar uma MappedImage em faixas (StripProcessor) tem de dar o mesmo
+ * resultado que o filtro aplicado à imagem no heap.
+ */
+class StripProcessorTest {
+
+    private static final int WIDTH = 173;
+    private static final int HEIGHT = 241;
+    /** Faixas pequenas, para que o halo cruze várias fronteiras. */
+    private static final int STRIP_ROWS = 37;
+
+    @TempDir
+    Path dir;
+
+    static Stream<Arguments> filtersAndKinds() {
+        return Stream.of(ImageProcessor.FILTER_NAMES)
+                .flatMap(name -> TestImages.kinds().map(kind -> Arguments.of(name, kind)));
+    }
+
+    @ParameterizedTest(name = "{0} em {1}")
+    @MethodSource("filtersAndKinds")
+    void stripsMatchHeap(String filterName, String kind) throws IOException {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 3);
+        BufferedImage expected = ImageProcessor.applyFilter(filterName, input);
+
+        try (MappedImage source = MappedImage.fromImage(input)) {
+            int radius = ImageProcessor.filterRadius(filterName);
+            MappedImage filtered = radius >= 0
+                    ? StripProcessor.map(source, radius, STRIP_ROWS, strip -> ImageProcessor.applyFilter(filterName, strip))
+                    : StripProcessor.applyFilter(filterName, source);
+            try (MappedImage result = filtered) {
+                TestImages.assertSamePixels(expected, result.toBufferedImage());
+            }
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#kinds")
+    void fromImageKeepsColors(String kind) throws IOException {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 4);
+        try (MappedImage mapped = MappedImage.fromImage(input)) {
+            TestImages.assertSamePixels(input, mapped.toBufferedImage());
+        }
+    }
+
+    /** loadMapped de um PNG com paleta guarda as cores, não os índices. */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#indexedKinds")
+    void loadMappedStoresPaletteColors(String kind) throws IOException {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 5);
+        File file = dir.resolve(kind + ".png").toFile();
+        ImageIO.write(input, "png", file);
+        try (MappedImage mapped = ImageFileManager.loadMapped(file)) {
+            TestImages.assertSamePixels(input, mapped.toBufferedImage());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+// Arquivo: TestImages.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Imagens de teste geradas (sempre as mesmas para a mesma semente) e a
+ * comparação pixel a pixel usada pelos testes de paridade.
+ *
+ * Os tipos cobrem os layouts que o projeto trata de forma diferente: ARGB e
+ * RGB em int, BGR em bytes, cinza de 8 bits e as imagens com paleta
+ * (IndexColorModel de 8 bits, com e sem alfa, e a binária de 1 bit).
+ */
+final class TestImages {
+
+    static final String[] KINDS = { "argb", "rgb", "bgr", "gray", "indexed", "indexed-alpha", "binary" };
+
+    private TestImages() {
+    }
+
+    static Stream<String> kinds() {
+        return Stream.of(KINDS);
+    }
+
+    /**
+     * Variantes de PNG que o ImageIO lê de um jeito próprio: cinza com alfa (no
+     * espaço cinza linear do Java) e cinza de 4 bits (uma paleta de tons de cinza).
+     * Só entram nos testes de leitura de PNG.
+     */
+    static Stream<String> pngKinds() {
+        return Stream.concat(kinds(), Stream.of("gray-alpha", "gray-4bit"));
+    }
+
+    /** Só os tipos com paleta. */
+    static Stream<String> indexedKinds() {
+        return Stream.of("indexed", "indexed-alpha", "binary");
+    }
+
+    /**
+     * Ruído com blocos e um gradiente por baixo, para que binarização,
+     * morfologia e afinamento tenham regiões de verdade para trabalhar.
+     */
+    static BufferedImage create(String kind, int width, int height, long seed) {
+        Random random = new Random(seed);
+        switch (kind) {
+            case "argb":
+                return direct(BufferedImage.TYPE_INT_ARGB, width, height, random, true);
+            case "rgb":
+                return direct(BufferedImage.TYPE_INT_RGB, width, height, random, false);
+            case "bgr":
+                return direct(BufferedImage.TYPE_3BYTE_BGR, width, height, random, false);
+            case "gray": {
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+                WritableRaster raster = image.getRaster();
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        raster.setSample(x, y, 0, level(x, y, width, random));
+                    }
+                }
+                return image;
+            }
+            case "indexed":
+                return indexed(width, height, random, false);
+            case "indexed-alpha":
+                return indexed(width, height, random, true);
+            case "binary": {
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+                WritableRaster raster = image.getRaster();
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        raster.setSample(x, y, 0, level(x, y, width, random) >= 128 ? 1 : 0);
+                    }
+                }
+                return image;
+            }
+            case "gray-alpha": {
+                ColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), true, false,
+                        Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+                WritableRaster raster = model.createCompatibleWritableRaster(width, height);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        raster.setSample(x, y, 0, level(x, y, width, random));
+                        raster.setSample(x, y, 1, random.nextInt(4) == 0 ? random.nextInt(256) : 255);
+                    }
+                }
+                return new BufferedImage(model, raster, false, null);
+            }
+            case "gray-4bit": {
+                byte[] ramp = new byte[16];
+                for (int i = 0; i < 16; i++) ramp[i] = (byte) (i * 17);
+                IndexColorModel model = new IndexColorModel(4, 16, ramp, ramp, ramp);
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, model);
+                WritableRaster raster = image.getRaster();
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        raster.setSample(x, y, 0, level(x, y, width, random) >> 4);
+                    }
+                }
+                return image;
+            }
+            default:
+                throw new IllegalArgumentException("Tipo de imagem de teste desconhecido: " + kind);
+        }
+    }
+
+    private static BufferedImage direct(int type, int width, int height, Random random, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = level(x, y, width, random);
+                int g = level(y, x, height, random);
+                int b = random.nextInt(256);
+                int a = alpha && random.nextInt(4) == 0 ? random.nextInt(256) : 255;
+                image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage indexed(int width, int height, Random random, boolean alpha) {
+        int colors = 37;
+        byte[] r = new byte[colors];
+        byte[] g = new byte[colors];
+        byte[] b = new byte[colors];
+        byte[] a = new byte[colors];
+        for (int i = 0; i < colors; i++) {
+            r[i] = (byte) (i * 255 / (colors - 1));
+            g[i] = (byte) random.nextInt(256);
+            b[i] = (byte) random.nextInt(256);
+            a[i] = (byte) (alpha && i % 5 == 0 ? i * 3 : 255);
+        }
+        IndexColorModel model = alpha ? new IndexColorModel(8, colors, r, g, b, a)
+                : new IndexColorModel(8, colors, r, g, b);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, model);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Índice segue o vermelho da paleta, que cresce com o índice
+                raster.setSample(x, y, 0, level(x, y, width, random) * (colors - 1) / 255);
+            }
+        }
+        return image;
+    }
+
+    /** Blocos claros e escuros sobre um gradiente, com um pouco de ruído. */
+    private static int level(int x, int y, int width, Random random) {
+        boolean block = ((x / 23) + (y / 17)) % 3 == 0;
+        int base = block ? 40 : 90 + 120 * x / Math.max(1, width);
+        return Math.max(0, Math.min(255, base + random.nextInt(41) - 20));
+    }
+
+    /** Mesmo tamanho e mesma cor (getRGB) em todos os pixels. */
+    static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth(), "largura");
+        assertEquals(expected.getHeight(), actual.getHeight(), "altura");
+        int width = expected.getWidth();
+        int[] want = new int[width];
+        int[] got = new int[width];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.getRGB(0, y, width, 1, want, 0, width);
+            actual.getRGB(0, y, width, 1, got, 0, width);
+            for (int x = 0; x < width; x++) {
+                if (want[x] != got[x]) {
+                    fail(String.format("pixel (%d, %d): esperado %08x, obtido %08x", x, y, want[x], got[x]));
+                }
+            }
+        }
+    }
+}
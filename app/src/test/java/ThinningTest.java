@@ -0,0 +1,126 @@
+// Arquivo: ThinningTest.java
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** As duas varreduras do afinamento (ThinningMode) têm de dar exatamente o mesmo resultado. */
+class ThinningTest {
+
+    @Test
+    void modesAgreeOnRandomImages() {
+        Random random = new Random(7);
+        for (int t = 0; t < 120; t++) {
+            // Linhas de uma, de várias e de mais de 64 palavras, e imagens menores que 3x3
+            int width = 1 + random.nextInt(t < 100 ? 140 : 4300);
+            int height = 1 + random.nextInt(t < 100 ? 140 : 24);
+            BinaryImage image = new BinaryImage(width, height);
+            double density = random.nextDouble();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (random.nextDouble() < density) image.set(x, y, true);
+                }
+            }
+            assertModesAgree(image, width + "x" + height);
+        }
+    }
+
+    @Test
+    void modesAgreeOnThickStrokes() {
+        assertModesAgree(strokes(600, 9), "traços grossos");
+        assertModesAgree(strokes(600, 1), "traços finos");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#kinds")
+    void modesAgreeThroughImageProcessor(String kind) {
+        BufferedImage input = TestImages.create(kind, 150, 110, 8);
+        ThinningStats full = new ThinningStats();
+        ThinningStats tracking = new ThinningStats();
+        TestImages.assertSamePixels(ImageProcessor.applyZhangSuen(input, ThinningMode.FULL_SCAN, full),
+                ImageProcessor.applyZhangSuen(input, ThinningMode.BORDER_TRACKING, tracking));
+        assertEquals(full.getIterationCount(), tracking.getIterationCount());
+        TestImages.assertSamePixels(ImageProcessor.applyStentiford(input, ThinningMode.FULL_SCAN, null),
+                ImageProcessor.applyStentiford(input, ThinningMode.BORDER_TRACKING, null));
+    }
+
+    @Test
+    void thickBarBecomesLine() {
+        BinaryImage image = new BinaryImage(40, 20);
+        for (int y = 6; y < 13; y++) {
+            for (int x = 5; x < 35; x++) image.set(x, y, true);
+        }
+        Thinning.zhangSuen(image);
+        // Sobra uma linha de um pixel de espessura no meio da barra
+        for (int x = 10; x < 30; x++) {
+            int count = 0;
+            for (int y = 0; y < 20; y++) {
+                if (image.get(x, y)) count++;
+            }
+            assertEquals(1, count, "coluna " + x);
+        }
+        assertTrue(image.countOnes() > 0);
+    }
+
+    @Test
+    void parse() {
+        assertEquals(ThinningMode.FULL_SCAN, ThinningMode.parse("full_scan"));
+        assertEquals(ThinningMode.BORDER_TRACKING, ThinningMode.parse("BORDER_TRACKING"));
+        assertThrows(IllegalArgumentException.class, () -> ThinningMode.parse("lista"));
+    }
+
+    private static void assertModesAgree(BinaryImage image, String label) {
+        for (boolean zhangSuen : new boolean[] { true, false }) {
+            BinaryImage full = image.copy();
+            BinaryImage tracking = image.copy();
+            ThinningStats fullStats = new ThinningStats();
+            ThinningStats trackingStats = new ThinningStats();
+            if (zhangSuen) {
+                Thinning.zhangSuen(full, ThinningMode.FULL_SCAN, fullStats);
+                Thinning.zhangSuen(tracking, ThinningMode.BORDER_TRACKING, trackingStats);
+            } else {
+                Thinning.stentiford(full, ThinningMode.FULL_SCAN, fullStats);
+                Thinning.stentiford(tracking, ThinningMode.BORDER_TRACKING, trackingStats);
+            }
+            String name = (zhangSuen ? "Zhang-Suen, " : "Stentiford, ") + label;
+            assertArrayEquals(full.words(), tracking.words(), name);
+            assertEquals(fullStats.getIterationCount(), trackingStats.getIterationCount(), name);
+            assertEquals(fullStats.getPassCount(), trackingStats.getPassCount(), name);
+            for (int pass = 0; pass < fullStats.getPassCount(); pass++) {
+                assertEquals(fullStats.getDeleted(pass), trackingStats.getDeleted(pass), name + ", sub-passo " + pass);
+            }
+        }
+    }
+
+    /** Linhas retas grossas em várias direções, como letras de um texto grande. */
+    private static BinaryImage strokes(int size, int radius) {
+        BinaryImage image = new BinaryImage(size, size);
+        Random random = new Random(size + radius);
+        for (int s = 0; s < 25; s++) {
+            int x0 = random.nextInt(size), y0 = random.nextInt(size);
+            int x1 = random.nextInt(size), y1 = random.nextInt(size);
+            int steps = Math.max(1, Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0)));
+            for (int i = 0; i <= steps; i++) {
+                int cx = x0 + (x1 - x0) * i / steps;
+                int cy = y0 + (y1 - y0) * i / steps;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int x = cx + dx, y = cy + dy;
+                        if (x >= 0 && y >= 0 && x < size && y < size && dx * dx + dy * dy <= radius * radius) {
+                            image.set(x, y, true);
+                        }
+                    }
+                }
+            }
+        }
+        assertFalse(image.countOnes() == 0);
+        return image;
+    }
+}
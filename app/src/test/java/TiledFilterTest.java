@@ -0,0 +1,51 @@
+// Arquivo: TiledFilterTest.java
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** TiledFilter tem de dar o mesmo resultado que o filtro aplicado à imagem inteira. */
+class TiledFilterTest {
+
+    /** Maior que um ladrilho nas duas direções, e sem ser múltiplo dele. */
+    private static final int WIDTH = TileGrid.TILE_SIZE * 2 + 37;
+    private static final int HEIGHT = TileGrid.TILE_SIZE + 91;
+
+    static Stream<Arguments> filtersAndKinds() {
+        return Stream.of(ImageProcessor.FILTER_NAMES)
+                .filter(name -> ImageProcessor.filterRadius(name) >= 0)
+                .flatMap(name -> TestImages.kinds().map(kind -> Arguments.of(name, kind)));
+    }
+
+    @ParameterizedTest(name = "{0} em {1}")
+    @MethodSource("filtersAndKinds")
+    void tiledMatchesWholeImage(String filterName, String kind) {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 1);
+        BufferedImage expected = ImageProcessor.applyFilter(filterName, input);
+
+        // Região prioritária no meio, cruzando as fronteiras dos ladrilhos
+        Rectangle priority = new Rectangle(WIDTH / 2 - 40, HEIGHT / 2 - 30, 80, 60);
+        AtomicReference<BufferedImage> preview = new AtomicReference<>();
+        BufferedImage tiled = TiledFilter.apply(filterName, input, priority, preview::set);
+
+        TestImages.assertSamePixels(expected, tiled);
+        assertNotNull(preview.get(), "a região prioritária não foi entregue");
+        TestImages.assertSamePixels(expected.getSubimage(priority.x, priority.y, priority.width, priority.height),
+                preview.get().getSubimage(priority.x, priority.y, priority.width, priority.height));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("TestImages#kinds")
+    void unboundedFiltersRunOnWholeImage(String kind) {
+        BufferedImage input = TestImages.create(kind, WIDTH, HEIGHT, 2);
+        for (String filterName : new String[] { "zhangsuen", "otsu" }) {
+            TestImages.assertSamePixels(ImageProcessor.applyFilter(filterName, input),
+                    TiledFilter.apply(filterName, input, null, null));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+// Arquivo: Fixtures.java
+package bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Imagens de entrada das medições: as imagens de teste do projeto
+ * (empacotadas no benchmarks.jar) redimensionadas para o tamanho pedido, ou
+ * um texto sintético para o afinamento, sempre no tipo pedido.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /** Largura e altura de "N" (N x N), "LxA" ou "8k" (7680 x 4320). */
+    static int[] size(String size) {
+        if (size.equals("8k")) return new int[] { 7680, 4320 };
+        int x = size.indexOf('x');
+        int width = Integer.parseInt(x < 0 ? size : size.substring(0, x));
+        int height = x < 0 ? width : Integer.parseInt(size.substring(x + 1));
+        return new int[] { width, height };
+    }
+
+    /** BufferedImage.TYPE_* de "argb", "bgr" ou "gray". */
+    static int type(String type) {
+        switch (type) {
+            case "argb":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "bgr":
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case "gray":
+                return BufferedImage.TYPE_BYTE_GRAY;
+            default:
+                throw new IllegalArgumentException("Tipo desconhecido: " + type);
+        }
+    }
+
+    /** A imagem de teste "lenna", "teste", "teste2" ou "teste3" em width x height, no tipo 'type'. */
+    static BufferedImage image(String fixture, int width, int height, int type) throws IOException {
+        String file = fixture.equals("lenna") ? "Lenna_(test_image).png" : fixture + ".png";
+        BufferedImage source;
+        try (InputStream in = Fixtures.class.getResourceAsStream("/" + file)) {
+            if (in == null) throw new IOException("Imagem de teste não encontrada: " + file);
+            source = ImageIO.read(in);
+        }
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Linhas de texto preto em fundo branco, sem suavização (já binário),
+     * ocupando a imagem toda: numa foto o afinamento mede pouco mais que a binarização.
+     */
+    static BufferedImage text(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        int fontSize = Math.max(10, Math.min(width, height) / 16);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, fontSize));
+        String text = "Processamento Digital de Imagem: afinamento Zhang-Suen e Stentiford 0123456789 ";
+        StringBuilder line = new StringBuilder(text);
+        while (g.getFontMetrics().stringWidth(line.toString()) < 2 * width) {
+            line.append(text);
+        }
+        int lineHeight = fontSize * 3 / 2;
+        for (int y = fontSize, n = 0; y < height; y += lineHeight, n++) {
+            // Cada linha começa num ponto diferente do texto, para as colunas não se repetirem
+            g.drawString(line.toString(), -(n * fontSize * 7) % width, y);
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,122 @@
+// Arquivo: ImageProcessorBenchmark.java
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações do ImageProcessor sobre as imagens de teste, em cada tamanho e
+ * tipo de imagem. O afinamento fica no ThinningBenchmark, com texto.
+ *
+ *   java -jar jmh/target/benchmarks.jar ImageProcessorBenchmark -p size=1024 -p type=gray -rf json
+ *
+ * Com --add-modules jdk.incubator.vector nos forks, a convolução e a
+ * morfologia usam o VectorKernels; -jvmArgsAppend -Dpdi.simd=false mede os laços escalares.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true" })
+@State(Scope.Benchmark)
+public class ImageProcessorBenchmark {
+
+    private static final MethodHandle ROTATE = Operations.bound("rotateImage", new Class<?>[] { double.class }, 30.0);
+    private static final MethodHandle RESIZE = Operations.bound("resizeImage", new Class<?>[] { double.class }, 0.5);
+    private static final MethodHandle THUMBNAIL = Operations.bound("createThumbnail",
+            new Class<?>[] { int.class, int.class }, 256, 256);
+    private static final MethodHandle BOX_BLUR = Operations.unary("applyBoxBlur");
+    private static final MethodHandle GAUSSIAN_BLUR = Operations.unary("applyGaussianBlur");
+    private static final MethodHandle SHARPEN = Operations.unary("applySharpen");
+    private static final MethodHandle EDGE_DETECTION = Operations.unary("applyEdgeDetection");
+    private static final MethodHandle EROSION = Operations.unary("applyErosion");
+    private static final MethodHandle DILATION = Operations.unary("applyDilation");
+    private static final MethodHandle OTSU = Operations.threshold("OTSU");
+    private static final MethodHandle SAUVOLA = Operations.threshold("SAUVOLA");
+
+    /** N (N x N), LxA ou 8k (7680 x 4320). */
+    @Param({ "256", "1024", "4096", "8k" })
+    public String size;
+
+    @Param({ "argb", "bgr", "gray" })
+    public String type;
+
+    @Param({ "lenna", "teste", "teste2", "teste3" })
+    public String fixture;
+
+    private BufferedImage input;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] dims = Fixtures.size(size);
+        input = Fixtures.image(fixture, dims[0], dims[1], Fixtures.type(type));
+    }
+
+    @Benchmark
+    public BufferedImage rotate() throws Throwable {
+        return (BufferedImage) ROTATE.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage resize() throws Throwable {
+        return (BufferedImage) RESIZE.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail() throws Throwable {
+        return (BufferedImage) THUMBNAIL.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage boxBlur() throws Throwable {
+        return (BufferedImage) BOX_BLUR.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage gaussianBlur() throws Throwable {
+        return (BufferedImage) GAUSSIAN_BLUR.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage sharpen() throws Throwable {
+        return (BufferedImage) SHARPEN.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage edgeDetection() throws Throwable {
+        return (BufferedImage) EDGE_DETECTION.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage erosion() throws Throwable {
+        return (BufferedImage) EROSION.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage dilation() throws Throwable {
+        return (BufferedImage) DILATION.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage otsu() throws Throwable {
+        return (BufferedImage) OTSU.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage sauvola() throws Throwable {
+        return (BufferedImage) SAUVOLA.invokeExact(input);
+    }
+}
@@ -0,0 +1,73 @@
+// Arquivo: Operations.java
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Os métodos do ImageProcessor medidos, como MethodHandle (BufferedImage)BufferedImage.
+ *
+ * O editor fica no pacote padrão, que não pode ser importado de um pacote
+ * com nome (e o JMH não aceita medições no pacote padrão), então os métodos
+ * são achados por nome. Guardados em campos static final, os handles são
+ * constantes para o JIT, e invokeExact custa o mesmo que a chamada direta.
+ */
+final class Operations {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final MethodType UNARY = MethodType.methodType(BufferedImage.class, BufferedImage.class);
+
+    private Operations() {
+    }
+
+    /** ImageProcessor.name(BufferedImage). */
+    static MethodHandle unary(String name) {
+        try {
+            return LOOKUP.findStatic(imageProcessor(), name, UNARY);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** ImageProcessor.name(BufferedImage, extra...), com os argumentos extras fixos. */
+    static MethodHandle bound(String name, Class<?>[] types, Object... extra) {
+        Class<?>[] parameters = new Class<?>[types.length + 1];
+        parameters[0] = BufferedImage.class;
+        System.arraycopy(types, 0, parameters, 1, types.length);
+        try {
+            MethodHandle handle = LOOKUP.findStatic(imageProcessor(), name,
+                    MethodType.methodType(BufferedImage.class, parameters));
+            return MethodHandles.insertArguments(handle, 1, extra).asType(UNARY);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** ImageProcessor.applyThreshold(BufferedImage, ThresholdMethod.method). */
+    static MethodHandle threshold(String method) {
+        try {
+            Class<?> methods = Class.forName("ThresholdMethod");
+            Object value = methods.getMethod("valueOf", String.class).invoke(null, method);
+            return bound("applyThreshold", new Class<?>[] { methods }, value);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** ImageProcessor.name(BufferedImage, ThinningMode.mode, null): afinamento na varredura escolhida. */
+    static MethodHandle thinning(String name, String mode) {
+        try {
+            Class<?> modes = Class.forName("ThinningMode");
+            Object value = modes.getMethod("valueOf", String.class).invoke(null, mode);
+            return bound(name, new Class<?>[] { modes, Class.forName("ThinningStats") }, value, null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Class<?> imageProcessor() throws ClassNotFoundException {
+        return Class.forName("ImageProcessor");
+    }
+}
@@ -0,0 +1,62 @@
+// Arquivo: ThinningBenchmark.java
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Afinamento (Zhang-Suen e Stentiford) de um texto sintético, em cada tamanho e
+ * tipo de imagem e nas duas varreduras (ThinningMode).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true" })
+@State(Scope.Benchmark)
+public class ThinningBenchmark {
+
+    /** N (N x N), LxA ou 8k (7680 x 4320). */
+    @Param({ "256", "1024", "4096", "8k" })
+    public String size;
+
+    @Param({ "argb", "bgr", "gray" })
+    public String type;
+
+    @Param({ "FULL_SCAN", "BORDER_TRACKING" })
+    public String mode;
+
+    private BufferedImage input;
+    private MethodHandle zhangSuen;
+    private MethodHandle stentiford;
+
+    @Setup
+    public void setUp() {
+        int[] dims = Fixtures.size(size);
+        input = Fixtures.text(dims[0], dims[1], Fixtures.type(type));
+        zhangSuen = Operations.thinning("applyZhangSuen", mode);
+        stentiford = Operations.thinning("applyStentiford", mode);
+    }
+
+    @Benchmark
+    public BufferedImage zhangSuen() throws Throwable {
+        return (BufferedImage) zhangSuen.invokeExact(input);
+    }
+
+    @Benchmark
+    public BufferedImage stentiford() throws Throwable {
+        return (BufferedImage) stentiford.invokeExact(input);
+    }
+}
@@ -0,0 +1,178 @@
+// Arquivo: simd/VectorKernels.java
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PixelKernels com a API de vetores (jdk.incubator.vector): cada instrução
+ * processa uma linha de SIMD inteira (8 amostras com AVX2, 16 com AVX-512) e o
+ * resto da linha cai no laço escalar da classe base.
+ *
+ * Fica fora da pasta principal porque só compila com o módulo incubado:
+ *   javac --add-modules jdk.incubator.vector -cp . -d . simd/VectorKernels.java
+ * e só é usada quando a JVM roda com "--add-modules jdk.incubator.vector".
+ *
+ * Os resultados são idênticos aos da versão escalar: as mesmas operações
+ * float (multiplicação e soma separadas, sem FMA) na mesma ordem, e as
+ * conversões float -> int com a mesma semântica do cast do Java.
+ *
+ * No JDK 17 a conversão F2I da API não vira instrução (fica mais lenta que o
+ * laço escalar), então o truncamento é feito com aritmética float; ver truncate.
+ * O invert não é sobrescrito: o laço escalar já é vetorizado pelo próprio JIT.
+ */
+public class VectorKernels extends PixelKernels {
+
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT = VectorSpecies.of(float.class, INT.vectorShape());
+
+    /** 2^23: a partir daqui os floats são inteiros consecutivos. */
+    private static final float TWO_23 = 8388608f;
+    private static final int TWO_23_BITS = Float.floatToIntBits(TWO_23);
+
+    public VectorKernels() {
+        // Com vetores de 128 bits ou menos o ganho não paga o custo
+        if (INT.length() < 8) {
+            throw new UnsupportedOperationException("Vetores de " + INT.vectorBitSize() + " bits");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vetorial (" + INT.vectorBitSize() + " bits)";
+    }
+
+    private static FloatVector toFloat(IntVector v) {
+        return (FloatVector) v.convert(VectorOperators.I2F, 0);
+    }
+
+    /**
+     * (int) v para 0 <= v < 2^23. Somar 2^23 arredonda para o inteiro mais
+     * próximo (empate para o par); se passou de v, volta um. Com o inteiro já
+     * somado a 2^23, os bits do float são 2^23 + n, e basta subtrair.
+     */
+    private static IntVector truncate(FloatVector v) {
+        FloatVector rounded = v.add(TWO_23).sub(TWO_23);
+        rounded = rounded.sub(1f, rounded.compare(VectorOperators.GT, v));
+        return rounded.add(TWO_23).reinterpretAsInts().sub(TWO_23_BITS);
+    }
+
+    @Override
+    public void accumulate(float w, int[] src, int srcOff, float[] acc, int accOff, int n) {
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            FloatVector s = toFloat(IntVector.fromArray(INT, src, srcOff + i));
+            FloatVector.fromArray(FLOAT, acc, accOff + i).add(s.mul(w)).intoArray(acc, accOff + i);
+        }
+        super.accumulate(w, src, srcOff + i, acc, accOff + i, n - i);
+    }
+
+    @Override
+    public void accumulate(float w, float[] src, int srcOff, float[] acc, int n) {
+        int bound = FLOAT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            FloatVector s = FloatVector.fromArray(FLOAT, src, srcOff + i);
+            FloatVector.fromArray(FLOAT, acc, i).add(s.mul(w)).intoArray(acc, i);
+        }
+        for (; i < n; i++) {
+            acc[i] += w * src[srcOff + i];
+        }
+    }
+
+    @Override
+    public void toSamples(float[] acc, int n, int maxValue, int[] out) {
+        int bound = FLOAT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += FLOAT.length()) {
+            round(FloatVector.fromArray(FLOAT, acc, i), maxValue).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = toSample(acc[i], maxValue);
+        }
+    }
+
+    @Override
+    public void scaleToSamples(int[] sums, float weight, int n, int maxValue, int[] out) {
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            round(toFloat(IntVector.fromArray(INT, sums, i)).mul(weight), maxValue).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = toSample(sums[i] * weight, maxValue);
+        }
+    }
+
+    /**
+     * O mesmo que toSample: saturar antes de somar 0,5 dá 0 para v <= 0 (e NaN)
+     * e maxValue para v >= maxValue, e no meio o truncamento é o do cast.
+     */
+    private static IntVector round(FloatVector v, int maxValue) {
+        FloatVector positive = v.blend(0f, v.compare(VectorOperators.GT, 0f).not());
+        return truncate(positive.min((float) maxValue).add(0.5f));
+    }
+
+    @Override
+    public void slide(int[] sums, int[] src, int add, int sub, int n) {
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            IntVector delta = IntVector.fromArray(INT, src, add + i).sub(IntVector.fromArray(INT, src, sub + i));
+            IntVector.fromArray(INT, sums, i).add(delta).intoArray(sums, i);
+        }
+        for (; i < n; i++) {
+            sums[i] += src[add + i] - src[sub + i];
+        }
+    }
+
+    @Override
+    public void min(int[] a, int aOff, int[] b, int bOff, int[] dst, int dstOff, int n) {
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            IntVector.fromArray(INT, a, aOff + i).min(IntVector.fromArray(INT, b, bOff + i))
+                    .intoArray(dst, dstOff + i);
+        }
+        super.min(a, aOff + i, b, bOff + i, dst, dstOff + i, n - i);
+    }
+
+    @Override
+    public void slidingMin(int[] src, int srcOff, int n, int k, int[] dst, int dstOff) {
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            IntVector m = IntVector.fromArray(INT, src, srcOff + i);
+            for (int j = 1; j < k; j++) {
+                m = m.min(IntVector.fromArray(INT, src, srcOff + i + j));
+            }
+            m.intoArray(dst, dstOff + i);
+        }
+        if (i < n) super.slidingMin(src, srcOff + i, n - i, k, dst, dstOff + i);
+    }
+
+    @Override
+    public void rescaleArgb(int[] src, int srcOff, int[] dst, int dstOff, int n, float factor, int brightness) {
+        float offset = brightness;
+        int bound = INT.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += INT.length()) {
+            IntVector argb = IntVector.fromArray(INT, src, srcOff + i);
+            IntVector r = rescale(argb.lanewise(VectorOperators.LSHR, 16).and(0xFF), factor, offset);
+            IntVector g = rescale(argb.lanewise(VectorOperators.LSHR, 8).and(0xFF), factor, offset);
+            IntVector b = rescale(argb.and(0xFF), factor, offset);
+            argb.and(0xFF000000)
+                    .or(r.lanewise(VectorOperators.LSHL, 16))
+                    .or(g.lanewise(VectorOperators.LSHL, 8))
+                    .or(b)
+                    .intoArray(dst, dstOff + i);
+        }
+        super.rescaleArgb(src, srcOff + i, dst, dstOff + i, n - i, factor, brightness);
+    }
+
+    /** (int) v saturado em [0, 255] é o truncamento de v já saturado em [0, 255]. */
+    private static IntVector rescale(IntVector c, float factor, float offset) {
+        return truncate(toFloat(c).mul(factor).add(offset).max(0f).min(255f));
+    }
+}